@@ -0,0 +1,81 @@
+package com.quadra.ecommerce_api.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * So kết quả JMH (-rf json) với baseline đã commit: benchmark nào chậm hơn baseline quá maxRegressionPercent
+ * thì thoát mã 1 để CI đánh lỗi. Benchmark chưa có trong baseline chỉ được in ra.
+ * Cập nhật baseline: chạy profile benchmark trên máy CI rồi chép target/jmh-result.json đè lên jmh-baseline.json.
+ * Dùng: BaselineCheck &lt;result.json&gt; &lt;baseline.json&gt; &lt;maxRegressionPercent&gt;
+ */
+public final class BaselineCheck {
+
+    private record Score(String mode, double value, String unit) {
+    }
+
+    private BaselineCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        File resultFile = new File(args[0]);
+        File baselineFile = new File(args[1]);
+        double maxRegressionPercent = Double.parseDouble(args[2]);
+
+        if (!baselineFile.isFile()) {
+            System.out.printf("No baseline at %s, copy %s there to start tracking regressions%n", baselineFile, resultFile);
+            return;
+        }
+
+        Map<String, Score> results = read(resultFile);
+        Map<String, Score> baseline = read(baselineFile);
+        List<String> regressions = new ArrayList<>();
+
+        results.forEach((key, current) -> {
+            Score base = baseline.get(key);
+            if (base == null || !base.mode().equals(current.mode()) || !base.unit().equals(current.unit())) {
+                System.out.printf("NEW        %s: %.3f %s%n", key, current.value(), current.unit());
+                return;
+            }
+            // thrpt: càng cao càng tốt, các mode còn lại đo thời gian: càng thấp càng tốt
+            double change = "thrpt".equals(current.mode())
+                    ? (base.value() - current.value()) / base.value() * 100
+                    : (current.value() - base.value()) / base.value() * 100;
+            String status = change > maxRegressionPercent ? "REGRESSION" : "OK";
+            System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f%% slower)%n",
+                    status, key, base.value(), current.value(), current.unit(), change);
+            if (change > maxRegressionPercent) regressions.add(key);
+        });
+
+        if (!regressions.isEmpty()) {
+            System.out.printf("%d benchmark(s) regressed more than %.0f%%: %s%n",
+                    regressions.size(), maxRegressionPercent, regressions);
+            System.exit(1);
+        }
+    }
+
+    // Khoá: tên benchmark + @Param theo thứ tự tên, vd. PricingBenchmark.itemsTotals{cartSize=30, storeCount=3}
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            Map<String, String> params = new TreeMap<>();
+            run.path("params").properties().forEach(param -> params.put(param.getKey(), param.getValue().asText()));
+
+            String benchmark = run.path("benchmark").asText();
+            String key = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1)
+                    + (params.isEmpty() ? "" : params.toString());
+            JsonNode metric = run.path("primaryMetric");
+            scores.put(key, new Score(run.path("mode").asText(),
+                    metric.path("score").asDouble(), metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+}
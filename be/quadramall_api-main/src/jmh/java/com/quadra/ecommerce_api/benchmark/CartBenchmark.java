@@ -0,0 +1,74 @@
+package com.quadra.ecommerce_api.benchmark;
+
+import com.quadra.ecommerce_api.dto.custom.cart.response.CartStoreDTO;
+import com.quadra.ecommerce_api.entity.cart.CartItem;
+import com.quadra.ecommerce_api.repository.cart.CartItemAddonRepo;
+import com.quadra.ecommerce_api.repository.flashsale.FlashSaleRepo;
+import com.quadra.ecommerce_api.repository.product.ProductDetailRepo;
+import com.quadra.ecommerce_api.repository.product.ProductVariantRepo;
+import com.quadra.ecommerce_api.service.customer.cart.CartReadModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Dựng giỏ hàng nhóm theo shop của CartService.getCartItems khi không có cache (CartReadModel.assemble):
+ * ghép addon, flash sale, thuộc tính và biến thể từ 4 kết quả IN đã nạp sẵn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"5", "30", "100"})
+    int cartSize;
+
+    @Param({"3"})
+    int storeCount;
+
+    private CartReadModel cartReadModel;
+    private List<CartItem> cartItems;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CheckoutFixtures fixtures = CheckoutFixtures.of(cartSize, storeCount, 0);
+        cartItems = fixtures.cartItems;
+
+        CartItemAddonRepo cartItemAddonRepo = mock(CartItemAddonRepo.class, withSettings().stubOnly());
+        FlashSaleRepo flashSaleRepo = mock(FlashSaleRepo.class, withSettings().stubOnly());
+        ProductDetailRepo productDetailRepo = mock(ProductDetailRepo.class, withSettings().stubOnly());
+        ProductVariantRepo productVariantRepo = mock(ProductVariantRepo.class, withSettings().stubOnly());
+        when(cartItemAddonRepo.findWithAddonByCartItemIdIn(any())).thenReturn(fixtures.cartItemAddons);
+        when(flashSaleRepo.findActiveFlashSalesByProductIds(anyList())).thenReturn(fixtures.flashSales);
+        when(productDetailRepo.findWithAttributesByProductIdIn(any())).thenReturn(fixtures.details);
+        when(productVariantRepo.findByProductIdInAndIsActiveTrue(anyList())).thenReturn(fixtures.variants);
+
+        cartReadModel = new CartReadModel(cartItemAddonRepo, flashSaleRepo, productDetailRepo, productVariantRepo);
+    }
+
+    @Benchmark
+    public List<CartStoreDTO> assembleCart() {
+        return cartReadModel.assemble(cartItems);
+    }
+}
@@ -0,0 +1,156 @@
+package com.quadra.ecommerce_api.benchmark;
+
+import com.quadra.ecommerce_api.entity.cart.CartItem;
+import com.quadra.ecommerce_api.entity.cart.CartItemAddon;
+import com.quadra.ecommerce_api.entity.discount.DiscountCode;
+import com.quadra.ecommerce_api.entity.discount.FlashSale;
+import com.quadra.ecommerce_api.entity.order.Order;
+import com.quadra.ecommerce_api.entity.order.OrderItem;
+import com.quadra.ecommerce_api.entity.product.Addon;
+import com.quadra.ecommerce_api.entity.product.Attribute;
+import com.quadra.ecommerce_api.entity.product.AttributeValue;
+import com.quadra.ecommerce_api.entity.product.Product;
+import com.quadra.ecommerce_api.entity.product.ProductDetail;
+import com.quadra.ecommerce_api.entity.product.ProductVariant;
+import com.quadra.ecommerce_api.entity.store.Store;
+import com.quadra.ecommerce_api.enums.discount.AppliesTo;
+import com.quadra.ecommerce_api.enums.discount.DiscountType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Dữ liệu giỏ hàng / đơn hàng giả lập cho benchmark: giỏ trải trên vài shop, mỗi dòng 0-2 addon,
+ * khoảng 1/4 sản phẩm có flash sale, voucher SHOP và PRODUCTS xen kẽ. Seed cố định để các lần chạy so sánh được.
+ */
+final class CheckoutFixtures {
+
+    static final long SEED = 20251018L;
+
+    private static final Attribute COLOR = Attribute.builder().id(1L).name("Màu sắc").build();
+    private static final Attribute SIZE = Attribute.builder().id(2L).name("Kích thước").build();
+    private static final String[] COLORS = {"Đen", "Trắng", "Xanh", "Đỏ"};
+    private static final String[] SIZES = {"S", "M", "L", "XL"};
+
+    final List<Store> stores = new ArrayList<>();
+    final List<Product> products = new ArrayList<>();
+    final List<ProductVariant> variants = new ArrayList<>();
+    final List<ProductDetail> details = new ArrayList<>();
+    final List<FlashSale> flashSales = new ArrayList<>();
+    final List<CartItem> cartItems = new ArrayList<>();
+    final List<CartItemAddon> cartItemAddons = new ArrayList<>();
+    final List<Order> orders = new ArrayList<>();
+    final List<OrderItem> orderItems = new ArrayList<>();
+    // [orderItemId, priceAdjust] như OrderItemAddonRepo.findPricesByOrderIdIn
+    final List<Object[]> orderItemAddonPrices = new ArrayList<>();
+    final List<DiscountCode> vouchers = new ArrayList<>();
+
+    private CheckoutFixtures() {
+    }
+
+    /**
+     * Giỏ cartSize dòng của 1 khách, chia cho storeCount shop; mỗi shop có 1 đơn tương ứng và voucherCount voucher
+     */
+    static CheckoutFixtures of(int cartSize, int storeCount, int voucherCount) {
+        CheckoutFixtures fixtures = new CheckoutFixtures();
+        SplittableRandom random = new SplittableRandom(SEED);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (long s = 1; s <= storeCount; s++) {
+            fixtures.stores.add(Store.builder().id(s).name("Shop " + s).slug("shop-" + s).build());
+            fixtures.orders.add(Order.builder().id(s).store(fixtures.stores.getLast()).build());
+        }
+
+        long addonId = 1;
+        for (long i = 1; i <= cartSize; i++) {
+            Store store = fixtures.stores.get((int) ((i - 1) % storeCount));
+            Order order = fixtures.orders.get((int) ((i - 1) % storeCount));
+
+            Product product = Product.builder().id(i).store(store).name("Sản phẩm " + i).slug("san-pham-" + i)
+                    .thumbnailUrl("https://cdn.quadramall.vn/p/" + i + ".jpg").build();
+            fixtures.products.add(product);
+
+            // 4 biến thể / sản phẩm, mỗi biến thể 2 thuộc tính
+            ProductVariant chosen = null;
+            for (int v = 0; v < 4; v++) {
+                long variantId = i * 10 + v;
+                ProductVariant variant = ProductVariant.builder().id(variantId).product(product)
+                        .sku("SKU-" + variantId).price(price(random)).stockQuantity(random.nextInt(0, 200)).build();
+                fixtures.variants.add(variant);
+                fixtures.details.add(detail(variantId * 2, variant, COLOR, COLORS[v % COLORS.length]));
+                fixtures.details.add(detail(variantId * 2 + 1, variant, SIZE, SIZES[random.nextInt(SIZES.length)]));
+                if (chosen == null || random.nextInt(4) == 0) chosen = variant;
+            }
+
+            if (random.nextInt(4) == 0) {
+                fixtures.flashSales.add(FlashSale.builder().id(i).product(product)
+                        .percentageDiscount(random.nextInt(5, 60)).quantity(500).soldCount(random.nextInt(0, 500))
+                        .startTime(now.minusHours(1)).endTime(now.plusHours(3)).build());
+            }
+
+            int quantity = random.nextInt(1, 4);
+            CartItem cartItem = CartItem.builder().id(i).variant(chosen).quantity(quantity).build();
+            fixtures.cartItems.add(cartItem);
+
+            BigDecimal priceAtTime = chosen.getPrice();
+            OrderItem orderItem = OrderItem.builder().id(i).order(order).variant(chosen)
+                    .quantity(quantity).priceAtTime(priceAtTime).build();
+            fixtures.orderItems.add(orderItem);
+
+            int addonCount = random.nextInt(3);
+            for (int a = 0; a < addonCount; a++, addonId++) {
+                Addon addon = Addon.builder().id(addonId).name("Addon " + addonId)
+                        .priceAdjust(BigDecimal.valueOf(random.nextInt(1, 10) * 5_000L)).build();
+                fixtures.cartItemAddons.add(CartItemAddon.builder().id(addonId).cartItem(cartItem).addon(addon).build());
+                fixtures.orderItemAddonPrices.add(new Object[]{orderItem.getId(), addon.getPriceAdjust()});
+            }
+        }
+
+        for (long v = 1; v <= voucherCount; v++) {
+            Store store = fixtures.stores.get((int) ((v - 1) % storeCount));
+            boolean percentage = v % 2 == 1;
+            boolean productScoped = v % 3 == 0;
+            DiscountCode.DiscountCodeBuilder voucher = DiscountCode.builder().id(v).store(store)
+                    .code("AUTO" + v).description("Voucher " + v)
+                    .quantity(1_000).maxUses(1_000).usedCount(random.nextInt(0, 1_000)).usagePerCustomer(2)
+                    .discountType(percentage ? DiscountType.PERCENTAGE : DiscountType.FIXED)
+                    .discountValue(percentage ? BigDecimal.valueOf(random.nextInt(5, 30)) : BigDecimal.valueOf(random.nextInt(1, 20) * 10_000L))
+                    .maxDiscountValue(percentage ? BigDecimal.valueOf(100_000) : null)
+                    .minOrderAmount(BigDecimal.valueOf(random.nextInt(0, 10) * 50_000L))
+                    .startDate(now.minusDays(7)).endDate(now.plusDays(7))
+                    .autoApply(true).priority(random.nextInt(5));
+            if (productScoped) {
+                voucher.appliesTo(AppliesTo.PRODUCTS).products(fixtures.products.stream()
+                        .filter(p -> p.getStore() == store && random.nextBoolean())
+                        .toList());
+            }
+            fixtures.vouchers.add(voucher.build());
+        }
+        return fixtures;
+    }
+
+    List<Long> productIds() {
+        return products.stream().map(Product::getId).toList();
+    }
+
+    List<Long> orderIds() {
+        return orders.stream().map(Order::getId).toList();
+    }
+
+    List<Long> voucherIds() {
+        return vouchers.stream().map(DiscountCode::getId).toList();
+    }
+
+    // Giá 50k - 2tr, làm tròn nghìn đồng
+    private static BigDecimal price(SplittableRandom random) {
+        return BigDecimal.valueOf(random.nextInt(50, 2_000) * 1_000L);
+    }
+
+    private static ProductDetail detail(long id, ProductVariant variant, Attribute attribute, String value) {
+        AttributeValue attributeValue = AttributeValue.builder().id(id).attribute(attribute).value(value).build();
+        return ProductDetail.builder().id(id).variant(variant).attributeValue(attributeValue).build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.quadra.ecommerce_api.benchmark;
+
+import com.quadra.ecommerce_api.dto.custom.discount.response.DiscountCalculationResponse;
+import com.quadra.ecommerce_api.entity.discount.DiscountCode;
+import com.quadra.ecommerce_api.entity.order.OrderItem;
+import com.quadra.ecommerce_api.repository.discount.DiscountCodeRepository;
+import com.quadra.ecommerce_api.repository.discount.UserDiscountRepository;
+import com.quadra.ecommerce_api.service.discount.DiscountCodeServiceImpl;
+import com.quadra.ecommerce_api.service.discount.DiscountRuleIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Chọn voucher tự động tốt nhất cho 1 shop trong giỏ (DiscountCodeServiceImpl.getAutoBestDiscount)
+ * với voucherCount voucher auto-apply của shop. Voucher được lọc trên DiscountRuleIndex (nạp 1 lần từ repository mock),
+ * lượt dùng của user được đếm bằng 1 lần gọi repository cho cả danh sách.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscountBenchmark {
+
+    @Param({"30"})
+    int cartSize;
+
+    @Param({"4", "20", "80"})
+    int voucherCount;
+
+    private DiscountCodeServiceImpl discountCodeService;
+    private Long storeId;
+    private List<Long> productIds;
+    private BigDecimal orderAmount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 1 shop để mọi voucher đều thuộc shop đang tính
+        CheckoutFixtures fixtures = CheckoutFixtures.of(cartSize, 1, voucherCount);
+        storeId = fixtures.stores.getFirst().getId();
+        productIds = fixtures.productIds();
+        orderAmount = BigDecimal.ZERO;
+        for (OrderItem item : fixtures.orderItems) {
+            orderAmount = orderAmount.add(item.getPriceAtTime().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+
+        List<Object[]> usageCounts = fixtures.voucherIds().stream()
+                .map(id -> new Object[]{id, 1L})
+                .toList();
+        DiscountCodeRepository discountCodeRepository = mock(DiscountCodeRepository.class, withSettings().stubOnly());
+        UserDiscountRepository userDiscountRepository = mock(UserDiscountRepository.class, withSettings().stubOnly());
+        when(discountCodeRepository.findIndexableByStoreId(anyLong(), any())).thenReturn(fixtures.vouchers);
+        when(userDiscountRepository.countUserDiscountUsages(anyLong(), anyCollection())).thenReturn(usageCounts);
+
+        DiscountRuleIndex discountRuleIndex = new DiscountRuleIndex(discountCodeRepository, null, null, 10, 0);
+        discountCodeService = new DiscountCodeServiceImpl(discountCodeRepository, userDiscountRepository,
+                null, null, null, null, null, null, discountRuleIndex);
+    }
+
+    @Benchmark
+    public DiscountCalculationResponse autoBestDiscount() {
+        return discountCodeService.getAutoBestDiscount(storeId, productIds, 1L, orderAmount);
+    }
+}
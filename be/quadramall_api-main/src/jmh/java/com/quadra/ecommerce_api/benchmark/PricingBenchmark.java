@@ -0,0 +1,119 @@
+package com.quadra.ecommerce_api.benchmark;
+
+import com.quadra.ecommerce_api.entity.discount.DiscountCode;
+import com.quadra.ecommerce_api.entity.discount.FlashSale;
+import com.quadra.ecommerce_api.entity.order.OrderItem;
+import com.quadra.ecommerce_api.repository.discount.DiscountCodeRepository;
+import com.quadra.ecommerce_api.repository.order.OrderItemAddonRepo;
+import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
+import com.quadra.ecommerce_api.service.payment.CheckoutPricingService;
+import com.quadra.ecommerce_api.service.payment.FlashSaleHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Tính tiền trong bộ nhớ của luồng thanh toán: giá flash sale từng dòng (FlashSaleHelper),
+ * nạp CheckoutPricing + tổng tiền hàng + giảm giá voucher cho mọi đơn (CheckoutPricingService).
+ * Repository được thay bằng mock trả dữ liệu đã dựng sẵn nên kết quả chỉ đo phần tính toán.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({"5", "30", "100"})
+    int cartSize;
+
+    @Param({"3"})
+    int storeCount;
+
+    private CheckoutFixtures fixtures;
+    private FlashSaleHelper flashSaleHelper;
+    private CheckoutPricingService checkoutPricingService;
+    private Map<Long, Double> flashSaleDiscounts;
+    private List<Long> orderIds;
+    private List<Long> voucherIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixtures = CheckoutFixtures.of(cartSize, storeCount, storeCount * 4);
+        orderIds = fixtures.orderIds();
+        voucherIds = fixtures.voucherIds();
+
+        // calculateDiscountedPrice không chạm tới repository
+        flashSaleHelper = new FlashSaleHelper(null, null);
+        flashSaleDiscounts = new HashMap<>();
+        for (FlashSale flashSale : fixtures.flashSales) {
+            flashSaleDiscounts.put(flashSale.getProduct().getId(), flashSale.getPercentageDiscount().doubleValue());
+        }
+
+        OrderItemRepo orderItemRepo = mock(OrderItemRepo.class, withSettings().stubOnly());
+        OrderItemAddonRepo orderItemAddonRepo = mock(OrderItemAddonRepo.class, withSettings().stubOnly());
+        DiscountCodeRepository discountCodeRepository = mock(DiscountCodeRepository.class, withSettings().stubOnly());
+        when(orderItemRepo.findWithProductByOrderIdIn(any())).thenReturn(fixtures.orderItems);
+        when(orderItemAddonRepo.findPricesByOrderIdIn(any())).thenReturn(fixtures.orderItemAddonPrices);
+        when(discountCodeRepository.findAllWithProductsByIdIn(any())).thenReturn(fixtures.vouchers);
+        checkoutPricingService = new CheckoutPricingService(orderItemRepo, orderItemAddonRepo, discountCodeRepository, null);
+    }
+
+    /**
+     * Giá sau flash sale của mọi dòng trong giỏ
+     */
+    @Benchmark
+    public BigDecimal flashSalePrices() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderItem item : fixtures.orderItems) {
+            Double discount = flashSaleDiscounts.get(item.getVariant().getProduct().getId());
+            total = total.add(flashSaleHelper.calculateDiscountedPrice(item.getVariant().getPrice(), discount));
+        }
+        return total;
+    }
+
+    /**
+     * Nạp dữ liệu giá rồi tính tổng tiền hàng từng đơn
+     */
+    @Benchmark
+    public void itemsTotals(Blackhole blackhole) {
+        CheckoutPricingService.CheckoutPricing pricing = checkoutPricingService.load(orderIds, List.of());
+        for (Long orderId : orderIds) {
+            blackhole.consume(pricing.itemsTotal(orderId));
+        }
+    }
+
+    /**
+     * Nạp dữ liệu giá rồi tính giảm giá của mọi voucher trên đơn cùng shop
+     */
+    @Benchmark
+    public void voucherDiscounts(Blackhole blackhole) {
+        CheckoutPricingService.CheckoutPricing pricing = checkoutPricingService.load(orderIds, voucherIds);
+        for (DiscountCode voucher : fixtures.vouchers) {
+            // Mỗi shop có đúng 1 đơn, id đơn = id shop
+            blackhole.consume(pricing.discountFor(voucher.getStore().getId(), voucher));
+        }
+    }
+}
@@ -26,6 +26,10 @@ public final class RedisKey {
         return build("order", subKey, id);
     }
 
+    public static String flashSale(String subKey, Long id) {
+        return build("flashSale", subKey, id);
+    }
+
     // --------- Dạng key cố định không có id ---------
 
     public static String fixed(String fullKey) {
@@ -0,0 +1,49 @@
+package com.quadra.ecommerce_api.config;
+
+import com.quadra.ecommerce_api.service.auth.PrincipalCacheEventListener;
+import com.quadra.ecommerce_api.service.customer.product.ProductSearchEventListener;
+import com.quadra.ecommerce_api.service.customer.product.ProductStatsEventListener;
+import com.quadra.ecommerce_api.service.orderManagement.OrderStatsEventListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Đăng ký các Hibernate event listener là Spring bean
+ */
+@Configuration
+@RequiredArgsConstructor
+public class HibernateEventConfig {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final OrderStatsEventListener orderStatsEventListener;
+    private final PrincipalCacheEventListener principalCacheEventListener;
+    private final ProductSearchEventListener productSearchEventListener;
+    private final ProductStatsEventListener productStatsEventListener;
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, orderStatsEventListener);
+        registry.appendListeners(EventType.POST_UPDATE, orderStatsEventListener);
+        registry.appendListeners(EventType.POST_DELETE, orderStatsEventListener);
+
+        registry.appendListeners(EventType.POST_UPDATE, principalCacheEventListener);
+        registry.appendListeners(EventType.POST_DELETE, principalCacheEventListener);
+
+        registry.appendListeners(EventType.POST_INSERT, productSearchEventListener);
+        registry.appendListeners(EventType.POST_UPDATE, productSearchEventListener);
+        registry.appendListeners(EventType.POST_DELETE, productSearchEventListener);
+
+        registry.appendListeners(EventType.POST_INSERT, productStatsEventListener);
+        registry.appendListeners(EventType.POST_UPDATE, productStatsEventListener);
+        registry.appendListeners(EventType.POST_DELETE, productStatsEventListener);
+    }
+}
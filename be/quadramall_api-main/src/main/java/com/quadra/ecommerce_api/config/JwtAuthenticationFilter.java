@@ -2,6 +2,7 @@ package com.quadra.ecommerce_api.config;
 
 import com.quadra.ecommerce_api.entity.user.User;
 import com.quadra.ecommerce_api.repository.user.UserRepo;
+import com.quadra.ecommerce_api.service.auth.PrincipalCacheService;
 import com.quadra.ecommerce_api.utils.JwtUtil;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
@@ -13,22 +14,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Optional;
 
 @Component
+@Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserRepo userRepository;
+    private final PrincipalCacheService principalCacheService;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserRepo userRepository) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserRepo userRepository, PrincipalCacheService principalCacheService) {
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
+        this.principalCacheService = principalCacheService;
     }
 
     @Override
@@ -41,9 +45,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             try {
                 String userId = jwtUtil.validateTokenForUserId(token);
                 if (userId != null) {
-                    Optional<User> userOpt = userRepository.findById(Long.parseLong(userId));
-                    if (userOpt.isPresent()) {
-                        User user = userOpt.get();
+                    // Principal lấy từ cache, chỉ truy vấn DB khi miss / vừa bị evict
+                    User user = principalCacheService.getOrLoad(Long.parseLong(userId),
+                            id -> userRepository.findById(id).orElse(null));
+                    if (user != null) {
                         UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
                                 user,
                                 null,
@@ -51,8 +56,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                         .map(r -> new SimpleGrantedAuthority(r.getName()))
                                         .toList()
                         );
-                        System.out.println("Authenticated user: " + user.getFullName() + ", " + user.getEmail() +
-                                ", Roles: " + user.getRoles().stream().map(r -> r.getName()).toList());
+                        log.debug("Authenticated user {} with roles {}", user.getId(),
+                                user.getRoles().stream().map(r -> r.getName()).toList());
                         SecurityContextHolder.getContext().setAuthentication(auth);
                     } else {
                         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -1,11 +1,16 @@
 package com.quadra.ecommerce_api.config;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import org.springframework.context.annotation.Bean;
@@ -24,6 +29,20 @@ public class ObjectMapperConfig {
         JavaTimeModule javaTimeModule = new JavaTimeModule();
         javaTimeModule.addSerializer(LocalDateTime.class,
             new LocalDateTimeSerializer(DateTimeFormatter.ofPattern(DATETIME_FORMAT)));
+        // Đọc được cả định dạng ghi ra ở trên (DTO cache trong Redis), ngoài ISO mặc định
+        javaTimeModule.addDeserializer(LocalDateTime.class,
+            new LocalDateTimeDeserializer(DateTimeFormatter.ISO_LOCAL_DATE_TIME) {
+                @Override
+                public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                    if (parser.hasToken(JsonToken.VALUE_STRING)) {
+                        String text = parser.getText().trim();
+                        if (text.length() == DATETIME_FORMAT.length() && text.charAt(10) == ' ') {
+                            return LocalDateTime.parse(text, DateTimeFormatter.ofPattern(DATETIME_FORMAT));
+                        }
+                    }
+                    return super.deserialize(parser, context);
+                }
+            });
         mapper.registerModule(javaTimeModule);
         mapper.disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
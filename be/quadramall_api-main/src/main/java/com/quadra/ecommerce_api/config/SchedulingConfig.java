@@ -0,0 +1,15 @@
+package com.quadra.ecommerce_api.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Bật các job @Scheduled (scheduler/, DeliverySchedulerService, FlashSaleReconcileTasks...)
+ * Tắt bằng scheduling.enabled=false
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -2,6 +2,7 @@ package com.quadra.ecommerce_api.config.websocket;
 
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -86,6 +87,44 @@ public class AsyncConfig implements WebMvcConfigurer {
         return executor;
     }
 
+    /**
+     * Executor gửi SMTP của EmailOutboxService, mỗi luồng gửi 1 nhóm email trên 1 kết nối
+     */
+    @Bean(name = "emailSenderExecutor")
+    public ThreadPoolTaskExecutor emailSenderExecutor(@Value("${mail.outbox.sender-threads:4}") int senderThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(senderThreads);
+        executor.setMaxPoolSize(senderThreads);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("Email-Sender-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor của OrderPaidEventListener (delivery assignment, thông báo, xoá giỏ hàng sau khi thanh toán VNPay)
+     */
+    @Bean(name = "orderPaidExecutor")
+    public ThreadPoolTaskExecutor orderPaidExecutor(@Value("${vnpay.callback.worker-threads:4}") int workerThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("Order-Paid-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        executor.initialize();
+        return executor;
+    }
+
     /**
      * ✅ General purpose async executor
      */
@@ -0,0 +1,135 @@
+package com.quadra.ecommerce_api.config.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quadra.ecommerce_api.service.chatBot.WebSocketPresenceService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Chuyển tiếp message của simple broker giữa các node qua Redis pub/sub để chạy được nhiều node API:
+ * - /user/{name}/...     chỉ gửi tới các node đang giữ session của user (theo WebSocketPresenceService)
+ * - /topic/..., /queue/... gửi tới mọi node
+ * Node nhận đưa message vào brokerChannel của mình, simple broker / UserDestinationMessageHandler giao tiếp như bình thường.
+ * Đăng ký làm interceptor của brokerChannel trong WebSocketConfig.
+ */
+@Component
+@Slf4j
+public class RedisBrokerRelay implements ChannelInterceptor {
+
+    private static final String NODE_CHANNEL_PREFIX = "ws:relay:node:";
+    private static final String BROADCAST_CHANNEL = "ws:relay:broadcast";
+    private static final String USER_PREFIX = "/user/";
+    private static final List<String> BROADCAST_PREFIXES = List.of("/topic/", "/queue/");
+    // Đánh dấu message đến từ node khác để không chuyển tiếp lần nữa
+    private static final String RELAYED_HEADER = "wsRelayed";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final WebSocketPresenceService presenceService;
+    private final ObjectMapper objectMapper;
+    private final MessageChannel brokerChannel;
+
+    public RedisBrokerRelay(StringRedisTemplate redisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            WebSocketPresenceService presenceService,
+                            ObjectMapper objectMapper,
+                            @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.presenceService = presenceService;
+        this.objectMapper = objectMapper;
+        this.brokerChannel = brokerChannel;
+    }
+
+    record Envelope(String origin, String destination, String contentType, byte[] payload) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> receive(message.getBody()),
+                List.of(new ChannelTopic(NODE_CHANNEL_PREFIX + presenceService.getNodeId()),
+                        new ChannelTopic(BROADCAST_CHANNEL)));
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(RELAYED_HEADER)
+                // Message đã được UserDestinationMessageHandler phân giải sang session cục bộ
+                || headers.containsKey(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null) return message;
+
+        try {
+            if (destination.startsWith(USER_PREFIX)) {
+                relayToUserNodes(destination, headers, payload);
+            } else if (BROADCAST_PREFIXES.stream().anyMatch(destination::startsWith)) {
+                publish(BROADCAST_CHANNEL, destination, headers, payload);
+            }
+        } catch (Exception e) {
+            // Không chặn việc giao message cho session trên node hiện tại
+            log.error("Error relaying WebSocket message to {}: {}", destination, e.getMessage());
+        }
+        return message;
+    }
+
+    private void relayToUserNodes(String destination, MessageHeaders headers, byte[] payload) throws Exception {
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        if (end < 0) return;
+
+        String userName = destination.substring(USER_PREFIX.length(), end);
+        for (String node : presenceService.nodesOf(userName)) {
+            if (!node.equals(presenceService.getNodeId())) {
+                publish(NODE_CHANNEL_PREFIX + node, destination, headers, payload);
+            }
+        }
+    }
+
+    private void publish(String channel, String destination, MessageHeaders headers, byte[] payload) throws Exception {
+        MimeType contentType = headers.get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        Envelope envelope = new Envelope(presenceService.getNodeId(), destination,
+                contentType != null ? contentType.toString() : null, payload);
+        redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(envelope));
+    }
+
+    private void receive(byte[] body) {
+        try {
+            Envelope envelope = objectMapper.readValue(new String(body, StandardCharsets.UTF_8), Envelope.class);
+            if (presenceService.getNodeId().equals(envelope.origin())) return;
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(envelope.destination());
+            if (envelope.contentType() != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+            }
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            accessor.setLeaveMutable(true);
+
+            brokerChannel.send(MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("Error delivering relayed WebSocket message: {}", e.getMessage());
+        }
+    }
+}
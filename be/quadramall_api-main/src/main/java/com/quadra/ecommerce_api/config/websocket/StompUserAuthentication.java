@@ -0,0 +1,26 @@
+package com.quadra.ecommerce_api.config.websocket;
+
+import com.quadra.ecommerce_api.entity.user.User;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Authentication của session STOMP. Principal name là id của user (không phải User.toString()),
+ * dùng chung cho convertAndSendToUser, presence trong Redis và RedisBrokerRelay.
+ */
+public class StompUserAuthentication extends UsernamePasswordAuthenticationToken {
+
+    private final String userId;
+
+    public StompUserAuthentication(User user) {
+        super(user, null, user.getRoles().stream()
+                .map(r -> new SimpleGrantedAuthority(r.getName()))
+                .toList());
+        this.userId = String.valueOf(user.getId());
+    }
+
+    @Override
+    public String getName() {
+        return userId;
+    }
+}
@@ -17,6 +17,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketSecurityInterceptor webSocketSecurityInterceptor;
     private final WebSocketHandshakeInterceptor webSocketHandshakeInterceptor;
+    private final RedisBrokerRelay redisBrokerRelay;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
@@ -29,6 +30,9 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // ✅ Set prefix for user-specific destinations
         config.setUserDestinationPrefix("/user");
 
+        // ✅ Relay broker messages to other nodes through Redis pub/sub
+        config.configureBrokerChannel().interceptors(redisBrokerRelay);
+
         log.info("✅ Message broker configured successfully");
     }
 
@@ -13,9 +13,7 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -52,13 +50,8 @@ public class WebSocketSecurityInterceptor implements ChannelInterceptor {
                             if (userOpt.isPresent()) {
                                 User user = userOpt.get();
 
-                                Authentication auth = new UsernamePasswordAuthenticationToken(
-                                        user,
-                                        null,
-                                        user.getRoles().stream()
-                                                .map(r -> new SimpleGrantedAuthority(r.getName()))
-                                                .toList()
-                                );
+                                // Principal name là id user, xem StompUserAuthentication
+                                Authentication auth = new StompUserAuthentication(user);
 
                                 SecurityContextHolder.getContext().setAuthentication(auth);
                                 accessor.setUser(auth);
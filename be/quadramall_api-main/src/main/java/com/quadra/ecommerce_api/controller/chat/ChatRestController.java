@@ -4,6 +4,7 @@ package com.quadra.ecommerce_api.controller.chat;
 import com.quadra.ecommerce_api.dto.ChatMessageDTO;
 import com.quadra.ecommerce_api.dto.ConversationDTO;
 import com.quadra.ecommerce_api.dto.NotificationDTO;
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.service.chat.ChatService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -39,6 +40,35 @@ public class ChatRestController {
         return ResponseEntity.ok(messages);
     }
 
+    @Operation(summary = "Lấy tin nhắn theo cursor",
+            description = "Trả về tin nhắn mới nhất trước, gửi lại nextCursor để lấy các tin cũ hơn")
+    @GetMapping("/conversations/{conversationId}/messages/cursor")
+    public ResponseEntity<CursorPage<ChatMessageDTO>> getMessagesByCursor(
+            @Parameter(description = "ID của cuộc trò chuyện", example = "1")
+            @PathVariable Long conversationId,
+            @Parameter(description = "nextCursor của trang trước, bỏ trống để lấy trang mới nhất")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số tin nhắn mỗi trang (tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer size,
+            @Parameter(description = "Có đếm tổng số tin nhắn hay không")
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        logger.info("Lấy tin nhắn theo cursor cho cuộc trò chuyện {}", conversationId);
+        return ResponseEntity.ok(chatService.getMessages(conversationId, cursor, size, withTotal));
+    }
+
+    @Operation(summary = "Đánh dấu cuộc trò chuyện đã đọc",
+            description = "Đánh dấu đã đọc các tin nhắn của bên kia và đặt lại số tin chưa đọc của người đọc")
+    @PutMapping("/conversations/{conversationId}/read")
+    public ResponseEntity<Void> markConversationAsRead(
+            @Parameter(description = "ID của cuộc trò chuyện", example = "1")
+            @PathVariable Long conversationId,
+            @Parameter(description = "ID của người đọc (khách hàng hoặc chủ cửa hàng)", example = "123")
+            @RequestParam Long readerId) {
+        logger.info("Đánh dấu cuộc trò chuyện {} đã đọc bởi user {}", conversationId, readerId);
+        chatService.markConversationAsRead(conversationId, readerId);
+        return ResponseEntity.ok().build();
+    }
+
     @Operation(summary = "Lấy danh sách thông báo chưa đọc",
             description = "Trả về danh sách thông báo chưa đọc của user hoặc store")
     @GetMapping("/notifications")
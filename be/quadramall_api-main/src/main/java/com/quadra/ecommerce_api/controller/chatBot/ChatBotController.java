@@ -2,6 +2,7 @@ package com.quadra.ecommerce_api.controller.chatBot;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.quadra.ecommerce_api.dto.custom.chatBot.*;
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.service.chatBot.ChatBotService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -210,6 +211,19 @@ public class ChatBotController {
         }
     }
 
+    @GetMapping("/sessions/{sessionId}/messages")
+    @Operation(summary = "Get session messages", description = "Get messages of a session, newest first, paged by cursor")
+    public ResponseEntity<CursorPage<ChatMessageDto>> getSessionMessages(
+            @PathVariable String sessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @Parameter(hidden = true) @AuthenticationPrincipal com.quadra.ecommerce_api.entity.user.User user) {
+
+        log.debug("Getting messages of session {} for user: {}", sessionId, user.getId());
+        return ResponseEntity.ok(chatBotService.getSessionMessages(sessionId, user.getId(), cursor, size, withTotal));
+    }
+
     @GetMapping("/health")
     @Operation(summary = "Health check", description = "Check ChatBot service health")
     public ResponseEntity<HealthCheckDto> healthCheck() {
@@ -1,6 +1,7 @@
 package com.quadra.ecommerce_api.controller.customer.wallet;
 
 import com.quadra.ecommerce_api.dto.base.wallet.WalletDTO;
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.dto.custom.wallet.response.TransactionHistory;
 import com.quadra.ecommerce_api.dto.custom.wallet.response.WalletDashboardResponse;
 import com.quadra.ecommerce_api.entity.user.User;
@@ -41,6 +42,7 @@ public class WalletController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message","Ví không khả dụng"));
         }
         WalletDTO walletDTO = walletMapper.toDto(wallet);
+        walletDTO.setBalance(walletDTO.getBalance().add(walletService.getShardBalance(wallet.getId())));
         return   ResponseEntity.status(HttpStatus.OK).body(walletDTO);
     }
 
@@ -77,6 +79,28 @@ public class WalletController {
         return ResponseEntity.ok(transactions);
     }
 
+    @GetMapping("/transactions/cursor")
+    public ResponseEntity<CursorPage<TransactionHistory>> getTransactionHistoryByCursor(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        if (user == null) {
+            throw new ExCustom(HttpStatus.UNAUTHORIZED, "Vui lòng đăng nhập để sử dụng.");
+        }
+
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new ExCustom(HttpStatus.BAD_REQUEST, "Ngày bắt đầu phải trước hoặc bằng ngày kết thúc .");
+        }
+
+        return ResponseEntity.ok(walletService.getTransactionHistory(
+                user.getId(), type, status, startDate, endDate, cursor, size, withTotal));
+    }
+
 
 
 
@@ -52,7 +52,7 @@ public class NotificationController {
 
     @PostMapping("/read-all")
     public ResponseEntity<Void> markAllAsRead(@AuthenticationPrincipal User user) {
-        notificationService.markAllAsRead(user.getId());
+        notificationService.markAllAsRead(user);
         System.out.println("Đã đọc tất cả ");
         return ResponseEntity.ok().build();
     }
@@ -3,6 +3,7 @@ package com.quadra.ecommerce_api.controller.order;
 import com.quadra.ecommerce_api.common.base.AbstractSellerController;
 import com.quadra.ecommerce_api.common.response.ApiResponse;
 import com.quadra.ecommerce_api.common.response.ApiResponseUtils;
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.dto.custom.orderManagerment.request.OrderFilterRequest;
 import com.quadra.ecommerce_api.dto.custom.orderManagerment.request.UpdateOrderStatusRequest;
 import com.quadra.ecommerce_api.dto.custom.orderManagerment.response.*;
@@ -107,6 +108,45 @@ public class OrderManagementController extends AbstractSellerController {
         return ok(response, "Lấy danh sách đơn hàng thành công");
     }
 
+    @Operation(
+            summary = "Lấy danh sách đơn hàng theo cursor",
+            description = "Trang kế tiếp lấy bằng nextCursor của trang trước, mới nhất trước; chỉ đếm tổng khi withTotal = true"
+    )
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<CursorPage<OrderSummaryResponse>>> getOrdersByCursor(
+            @AuthenticationPrincipal User user,
+            @Parameter(description = "ID cửa hàng (tùy chọn)")
+            @RequestParam(required = false) Long storeId,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống để lấy trang đầu)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số lượng item mỗi trang")
+            @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "Có đếm tổng số đơn hàng hay không")
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @Parameter(description = "Lọc theo trạng thái đơn hàng")
+            @RequestParam(required = false) OrderStatus status,
+            @Parameter(description = "Ngày bắt đầu (yyyy-MM-dd)")
+            @RequestParam(required = false) String startDate,
+            @Parameter(description = "Ngày kết thúc (yyyy-MM-dd)")
+            @RequestParam(required = false) String endDate,
+            @Parameter(description = "Tìm kiếm theo tên khách hàng")
+            @RequestParam(required = false) String customerName,
+            @Parameter(description = "Tìm kiếm theo mã đơn hàng")
+            @RequestParam(required = false) String orderId) {
+
+        OrderFilterRequest filterRequest = OrderFilterRequest.builder()
+                .status(status)
+                .startDate(startDate)
+                .endDate(endDate)
+                .customerName(customerName)
+                .orderId(orderId)
+                .build();
+
+        CursorPage<OrderSummaryResponse> response = orderManagementService.getOrders(
+                user.getId(), storeId, cursor, size, withTotal, filterRequest);
+        return ok(response, "Lấy danh sách đơn hàng thành công");
+    }
+
     @Operation(
             summary = "Lấy chi tiết đơn hàng",
             description = "Lấy thông tin chi tiết của một đơn hàng cụ thể"
@@ -63,9 +63,10 @@ public class ShipperController {
     @GetMapping("/available-orders")
     public ResponseEntity<Page<AvailableOrderDTO>> getAvailableOrders(
             @AuthenticationPrincipal User user,
+            @RequestParam(required = false) String province,
             Pageable pageable) {
 
-        Page<AvailableOrderDTO> orders = deliveryService.getAvailableOrders(user, pageable);
+        Page<AvailableOrderDTO> orders = deliveryService.getAvailableOrders(user, province, pageable);
         return ResponseEntity.ok(orders);
     }
 
@@ -23,4 +23,22 @@ public class ConversationDTO {
 
     @Schema(description = "Thời điểm cuộc trò chuyện được cập nhật lần cuối", example = "2025-07-21T16:30:00")
     private LocalDateTime updatedAt;
+
+    @Schema(description = "ID của tin nhắn cuối cùng, null nếu chưa có tin nhắn", example = "99", nullable = true)
+    private Long lastMessageId;
+
+    @Schema(description = "Nội dung xem trước của tin nhắn cuối cùng", example = "Shop còn hàng không ạ?", nullable = true)
+    private String lastMessageText;
+
+    @Schema(description = "Thời điểm gửi tin nhắn cuối cùng", example = "2025-07-21T16:30:00", nullable = true)
+    private LocalDateTime lastMessageAt;
+
+    @Schema(description = "ID của người gửi tin nhắn cuối cùng", example = "123", nullable = true)
+    private Long lastSenderId;
+
+    @Schema(description = "Số tin nhắn khách hàng chưa đọc", example = "0")
+    private Integer customerUnreadCount;
+
+    @Schema(description = "Số tin nhắn cửa hàng chưa đọc", example = "2")
+    private Integer storeUnreadCount;
 }
@@ -0,0 +1,22 @@
+package com.quadra.ecommerce_api.dto.custom.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 1 trang phân trang theo cursor: gửi lại nextCursor để lấy trang kế tiếp, hasNext = false là trang cuối.
+ * totalElements chỉ có khi client yêu cầu (withTotal=true) vì phải đếm toàn bộ kết quả.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private int size;
+    private Long totalElements;
+}
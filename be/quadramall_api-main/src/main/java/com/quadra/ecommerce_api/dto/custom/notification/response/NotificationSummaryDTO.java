@@ -0,0 +1,20 @@
+package com.quadra.ecommerce_api.dto.custom.notification.response;
+
+import com.quadra.ecommerce_api.entity.notification.Notification;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Message gộp trên /user/{email}/queue/notifications/summary: số thông báo mới / đã đọc / đã xoá
+ * trong 1 cửa sổ gộp, client tải lại danh sách thay vì nhận từng thông báo
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationSummaryDTO {
+    private int created;
+    private int read;
+    private int deleted;
+    private Notification latest;
+}
@@ -0,0 +1,21 @@
+package com.quadra.ecommerce_api.dto.custom.shipping.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Message trên /topic/shipper/new-orders: đơn mới có thể nhận (AVAILABLE) hoặc đơn không còn nhận được
+ * (CLAIMED, CANCELLED) để app shipper thêm / bỏ khỏi danh sách đang hiển thị
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShipperFeedEventDTO {
+    private String type;
+    private Long orderId;
+    private String provinceCode;
+    private LocalDateTime createdAt;
+}
@@ -18,7 +18,10 @@ import java.time.LocalDateTime;
 @Builder
 
 @Entity
-@Table(name = "conversations")
+@Table(name = "conversations", indexes = {
+        @Index(name = "idx_conversations_customer_updated", columnList = "customer_id, updated_at"),
+        @Index(name = "idx_conversations_store_updated", columnList = "store_id, updated_at")
+})
 public class Conversation {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -39,4 +42,29 @@ public class Conversation {
     @UpdateTimestamp
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
+
+    // Tin nhắn cuối và số tin chưa đọc của mỗi bên, cập nhật cùng lúc với lưu tin nhắn (ChatStatsService)
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_text")
+    private String lastMessageText;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "last_sender_id")
+    private Long lastSenderId;
+
+    @Builder.Default
+    @Column(name = "customer_unread_count", nullable = false)
+    private Integer customerUnreadCount = 0;
+
+    @Builder.Default
+    @Column(name = "store_unread_count", nullable = false)
+    private Integer storeUnreadCount = 0;
+
+    // Thời điểm cửa hàng trả lời lần đầu, null là chưa trả lời
+    @Column(name = "store_replied_at")
+    private LocalDateTime storeRepliedAt;
 }
@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
 @Builder
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_conversation_created", columnList = "conversation_id, created_at")
+})
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
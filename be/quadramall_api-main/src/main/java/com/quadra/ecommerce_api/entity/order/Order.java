@@ -23,7 +23,10 @@ import java.time.LocalDateTime;
 @Builder
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_store_created", columnList = "store_id, created_at"),
+        @Index(name = "idx_orders_store_status_created", columnList = "store_id, status, created_at")
+})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -61,6 +64,10 @@ public class Order {
     @Column
     private String note;
 
+    // Shard ví ký quỹ admin giữ tiền của đơn, chốt lúc nhận tiền để chuyển cho shop / hoàn tiền trừ đúng shard đó
+    @Column(name = "escrow_shard_index")
+    private Integer escrowShardIndex;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,49 @@
+package com.quadra.ecommerce_api.entity.order;
+
+import com.quadra.ecommerce_api.entity.store.Store;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bộ đếm thống kê đơn hàng của cửa hàng, được cộng dồn mỗi khi đơn đổi trạng thái.
+ * statKey: status:{OrderStatus}, revenue:total, revenue:month:{yyyy-MM}, revenue:week:{yyyy-MM-dd thứ 2}
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+
+@Entity
+@Table(name = "store_order_stats",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"store_id", "stat_key"}))
+public class StoreOrderStat {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "store_id", nullable = false)
+    private Store store;
+
+    @Column(name = "stat_key", nullable = false, length = 50)
+    private String statKey;
+
+    @Builder.Default
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount = 0L;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -23,6 +23,11 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "payment_transactions", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"gateway_name", "transaction_code"})
+}, indexes = {
+        // Callback VNPay khoá giao dịch theo transaction_code, không có index sẽ quét và khoá cả bảng
+        @Index(name = "idx_payment_transactions_transaction_code", columnList = "transaction_code"),
+        // Job bù delivery assignment quét giao dịch COMPLETED theo paid_at
+        @Index(name = "idx_payment_transactions_status_paid", columnList = "status, paid_at")
 })
 public class PaymentTransaction {
     @Id
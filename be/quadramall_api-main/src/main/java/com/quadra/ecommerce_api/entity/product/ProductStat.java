@@ -0,0 +1,57 @@
+package com.quadra.ecommerce_api.entity.product;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Số lượng đã bán, doanh thu và đánh giá của sản phẩm, được cộng dồn khi đơn được giao / review được tạo
+ * (xem ProductStatsService). Sản phẩm chưa có dòng nghĩa là chưa bán và chưa có đánh giá.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+
+@Entity
+@Table(name = "product_stats", indexes = {
+        @Index(name = "idx_product_stats_store", columnList = "store_id")
+})
+public class ProductStat {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "store_id", nullable = false)
+    private Long storeId;
+
+    @Builder.Default
+    @Column(name = "sold_count", nullable = false)
+    private Long soldCount = 0L;
+
+    @Builder.Default
+    @Column(nullable = false, precision = 38, scale = 2)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "review_count", nullable = false)
+    private Long reviewCount = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    @Builder.Default
+    @Column(name = "average_rating", nullable = false)
+    private Double averageRating = 0.0;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
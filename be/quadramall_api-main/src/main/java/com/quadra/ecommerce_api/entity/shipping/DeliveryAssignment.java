@@ -60,6 +60,10 @@ public class DeliveryAssignment {
     @Column(name = "delivery_notes", columnDefinition = "TEXT")
     private String deliveryNotes;
 
+    // Mã tỉnh lấy hàng (theo AdministrativeDivisionCatalog), dùng để lọc đơn theo tỉnh cho shipper
+    @Column(name = "province_code", length = 10)
+    private String provinceCode;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,42 @@
+package com.quadra.ecommerce_api.entity.store;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số cuộc trò chuyện và số cuộc cửa hàng đã trả lời, dùng tính tỉ lệ phản hồi chat trên trang shop
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+
+@Entity
+@Table(name = "store_chat_stats")
+public class StoreChatStat {
+    @Id
+    @Column(name = "store_id")
+    private Long storeId;
+
+    @Builder.Default
+    @Column(name = "conversation_count", nullable = false)
+    private Long conversationCount = 0L;
+
+    @Builder.Default
+    @Column(name = "responded_count", nullable = false)
+    private Long respondedCount = 0L;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public double responseRate() {
+        return conversationCount > 0 ? (double) respondedCount / conversationCount * 100 : 0.0;
+    }
+}
@@ -0,0 +1,53 @@
+package com.quadra.ecommerce_api.entity.store;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng số lượng đã bán, doanh thu và đánh giá của mọi sản phẩm trong cửa hàng, cộng dồn cùng lúc với product_stats
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+
+@Entity
+@Table(name = "store_stats", indexes = {
+        @Index(name = "idx_store_stats_rating", columnList = "average_rating")
+})
+public class StoreStat {
+    @Id
+    @Column(name = "store_id")
+    private Long storeId;
+
+    @Builder.Default
+    @Column(name = "sold_count", nullable = false)
+    private Long soldCount = 0L;
+
+    @Builder.Default
+    @Column(nullable = false, precision = 38, scale = 2)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "review_count", nullable = false)
+    private Long reviewCount = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    @Builder.Default
+    @Column(name = "average_rating", nullable = false)
+    private Double averageRating = 0.0;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -15,7 +15,10 @@ import java.time.LocalDateTime;
 @Builder
 
 @Entity
-@Table(name = "user_behavior_log")
+@Table(name = "user_behavior_log", indexes = {
+        @Index(name = "idx_user_behavior_user_time", columnList = "user_id, behavior_time"),
+        @Index(name = "idx_user_behavior_time", columnList = "behavior_time")
+})
 public class UserBehaviorLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,43 @@
+package com.quadra.ecommerce_api.entity.wallet;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Ví con (shard) của ví ký quỹ admin. Số dư thật = wallets.balance + SUM(wallet_shards.balance)
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+
+@Entity
+@Table(name = "wallet_shards",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"wallet_id", "shard_index"}))
+public class WalletShard {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @Column(name = "shard_index", nullable = false)
+    private Integer shardIndex;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
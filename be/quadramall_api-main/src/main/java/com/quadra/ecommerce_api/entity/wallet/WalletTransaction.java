@@ -19,7 +19,11 @@ import java.time.LocalDateTime;
 @Data
 @Builder
 @Entity
-@Table(name = "wallet_transactions")
+@Table(name = "wallet_transactions", indexes = {
+        @Index(name = "idx_wallet_tx_wallet_created", columnList = "wallet_id, created_at"),
+        @Index(name = "idx_wallet_tx_wallet_status_created", columnList = "wallet_id, status, created_at"),
+        @Index(name = "idx_wallet_tx_wallet_type_created", columnList = "wallet_id, type, created_at")
+})
 public class WalletTransaction {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,5 @@
+package com.quadra.ecommerce_api.enums.notification;
+
+public enum EmailOutboxStatus {
+    PENDING, SENDING, DEAD
+}
@@ -39,6 +39,24 @@ public enum RedisCacheKey {
     PRODUCT_DETAIL(Duration.ofMinutes(30), args -> {
         Long productId = (Long) args[0];
         return RedisKey.product("detail", productId);
+    }),
+
+    // Chi tiết shop theo từng người xem (có trạng thái yêu thích / đã lưu mã giảm giá)
+    STORE_DETAIL(Duration.ofHours(1), args -> {
+        String storeSlug = (String) args[0];
+        Long userId = (Long) args[1];
+        return "STORE_DETAIL_" + storeSlug + "_USER_" + (userId != null ? userId : "ANONYMOUS");
+    }),
+
+    FAVORITE_PRODUCT_CARDS(Duration.ofMinutes(10), args -> {
+        Long userId = (Long) args[0];
+        return RedisKey.user("favoriteCards", userId);
+    }),
+
+    // Giỏ hàng đã dựng (nhóm theo shop), TTL ngắn vì còn phụ thuộc flash sale / tồn kho
+    CART_VIEW(Duration.ofMinutes(2), args -> {
+        Long userId = (Long) args[0];
+        return RedisKey.user("cart", userId);
     });
 
     // =================== FIELDS ===================
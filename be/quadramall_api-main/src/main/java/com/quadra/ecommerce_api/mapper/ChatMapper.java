@@ -22,6 +22,14 @@ public interface ChatMapper {
     @Mapping(source = "store.id", target = "storeId")
     ConversationDTO toConversationDTO(Conversation conversation);
 
+    // Tin nhắn cuối / số chưa đọc / thời điểm phản hồi do ChatStatsService ghi, không lấy từ DTO
+    @Mapping(target = "lastMessageId", ignore = true)
+    @Mapping(target = "lastMessageText", ignore = true)
+    @Mapping(target = "lastMessageAt", ignore = true)
+    @Mapping(target = "lastSenderId", ignore = true)
+    @Mapping(target = "customerUnreadCount", ignore = true)
+    @Mapping(target = "storeUnreadCount", ignore = true)
+    @Mapping(target = "storeRepliedAt", ignore = true)
     @Mapping(source = "customerId", target = "customer.id")
     @Mapping(source = "storeId", target = "store.id")
     Conversation toConversation(ConversationDTO conversationDTO);
@@ -5,9 +5,18 @@ import com.quadra.ecommerce_api.entity.conversation.Conversation;
 import com.quadra.ecommerce_api.mapper.base.store.StoreMapper;
 import com.quadra.ecommerce_api.mapper.base.user.UserMapper;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(componentModel = "spring", uses = {UserMapper.class, StoreMapper.class})
 public interface ConversationMapper {
     ConversationDTO toDto(Conversation entity);
+    // Tin nhắn cuối / số chưa đọc / thời điểm phản hồi do ChatStatsService ghi, không lấy từ DTO
+    @Mapping(target = "lastMessageId", ignore = true)
+    @Mapping(target = "lastMessageText", ignore = true)
+    @Mapping(target = "lastMessageAt", ignore = true)
+    @Mapping(target = "lastSenderId", ignore = true)
+    @Mapping(target = "customerUnreadCount", ignore = true)
+    @Mapping(target = "storeUnreadCount", ignore = true)
+    @Mapping(target = "storeRepliedAt", ignore = true)
     Conversation toEntity(ConversationDTO dto);
 }
@@ -2,8 +2,11 @@ package com.quadra.ecommerce_api.repository.cart;
 
 import com.quadra.ecommerce_api.entity.cart.CartItemAddon;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +15,7 @@ public interface CartItemAddonRepo extends JpaRepository<CartItemAddon, Long> {
     void deleteByCartItemId(Long cartItemId);
     List<CartItemAddon> findByCartItemId(Long cartItemId);
     Optional<CartItemAddon> findByCartItemIdAndAddonId(Long cartItemId, Long addonId);
+
+    @Query("SELECT cia FROM CartItemAddon cia JOIN FETCH cia.addon WHERE cia.cartItem.id IN :cartItemIds")
+    List<CartItemAddon> findWithAddonByCartItemIdIn(@Param("cartItemIds") Collection<Long> cartItemIds);
 }
@@ -20,6 +20,14 @@ public interface CartItemRepo extends JpaRepository<CartItem, Long> {
     @Query("SELECT c FROM CartItem c WHERE c.user.id = :userId")
     List<CartItem> findByUserId(@Param("userId") Long userId);
 
+    // Giỏ hàng kèm biến thể, sản phẩm và shop trong 1 truy vấn
+    @Query("SELECT c FROM CartItem c " +
+            "JOIN FETCH c.variant v " +
+            "JOIN FETCH v.product p " +
+            "JOIN FETCH p.store " +
+            "WHERE c.user.id = :userId ORDER BY c.id")
+    List<CartItem> findWithProductByUserId(@Param("userId") Long userId);
+
     void deleteByIdAndUserId(Long id, Long userId);
 
     /*
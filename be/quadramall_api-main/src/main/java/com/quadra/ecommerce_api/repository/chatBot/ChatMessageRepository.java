@@ -24,6 +24,18 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     @Query("SELECT cm FROM ChatMessage cm WHERE cm.session.sessionId = :sessionId ORDER BY cm.createdAt DESC")
     Page<ChatMessage> findBySessionIdOrderByCreatedAtDesc(@Param("sessionId") String sessionId, Pageable pageable);
 
+    @Query("""
+        SELECT cm FROM ChatMessage cm
+        WHERE cm.session.id = :sessionPk
+        AND (:cursorId IS NULL OR cm.createdAt < :cursorCreatedAt
+             OR (cm.createdAt = :cursorCreatedAt AND cm.id < :cursorId))
+        ORDER BY cm.createdAt DESC, cm.id DESC
+        """)
+    List<ChatMessage> findPageAfterCursor(@Param("sessionPk") Long sessionPk,
+                                          @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                          @Param("cursorId") Long cursorId,
+                                          Pageable limit);
+
     @Query("SELECT cm FROM ChatMessage cm WHERE cm.userId = :userId ORDER BY cm.createdAt DESC")
     Page<ChatMessage> findByUserIdOrderByCreatedAtDesc(@Param("userId") Long userId, Pageable pageable);
 
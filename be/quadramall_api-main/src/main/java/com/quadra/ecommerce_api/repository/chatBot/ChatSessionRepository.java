@@ -49,6 +49,10 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, Long>
                               @Param("currentStatus") SessionStatus currentStatus,
                               @Param("newStatus") SessionStatus newStatus);
 
+    @Modifying
+    @Query("UPDATE ChatSession cs SET cs.status = :status WHERE cs.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") SessionStatus status);
+
     @Modifying
     @Query("DELETE FROM ChatSession cs WHERE cs.lastActivity < :cutoffTime AND cs.status = :status")
     int deleteOldSessions(@Param("cutoffTime") LocalDateTime cutoffTime, @Param("status") SessionStatus status);
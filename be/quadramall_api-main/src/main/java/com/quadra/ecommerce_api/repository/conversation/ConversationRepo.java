@@ -18,7 +18,4 @@ public interface ConversationRepo extends JpaRepository<Conversation, Long> {
 
     @Query("SELECT COUNT(c) FROM Conversation c WHERE c.store.id = :storeId")
     long countByStoreId(Long storeId);
-
-    @Query("SELECT COUNT(DISTINCT m.conversation.id) FROM Message m WHERE m.sender.id = :storeOwnerId AND m.conversation.store.id = :storeId")
-    long countRespondedConversationsByStoreId(Long storeId, Long storeOwnerId);
 }
@@ -1,14 +1,40 @@
 package com.quadra.ecommerce_api.repository.conversation;
 
 import com.quadra.ecommerce_api.entity.conversation.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface MessageRepo extends JpaRepository<Message, Long> {
     List<Message> findByConversationIdOrderByCreatedAtAsc(Long conversationId);
-    
+
+    @Query("""
+        SELECT m FROM Message m
+        JOIN FETCH m.conversation c
+        WHERE c.id = :conversationId
+        AND (:cursorId IS NULL OR m.createdAt < :cursorCreatedAt
+             OR (m.createdAt = :cursorCreatedAt AND m.id < :cursorId))
+        ORDER BY m.createdAt DESC, m.id DESC
+        """)
+    List<Message> findPageBeforeCursor(@Param("conversationId") Long conversationId,
+                                       @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                       @Param("cursorId") Long cursorId,
+                                       Pageable limit);
+
+    long countByConversationId(Long conversationId);
+
+    // Đánh dấu đã đọc các tin của bên kia gửi trong cuộc trò chuyện
+    @Modifying
+    @Query("UPDATE Message m SET m.isRead = true " +
+            "WHERE m.conversation.id = :conversationId AND m.sender.id <> :readerId AND m.isRead = false")
+    int markReadByConversationId(@Param("conversationId") Long conversationId, @Param("readerId") Long readerId);
+
     void deleteByConversationId(Long conversationId);
 }
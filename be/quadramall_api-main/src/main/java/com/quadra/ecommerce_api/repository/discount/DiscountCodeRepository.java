@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -115,9 +116,10 @@ public interface DiscountCodeRepository extends JpaRepository<DiscountCode, Long
     // ===== MODIFICATION METHODS =====
 
     // Cập nhật số lượng đã sử dụng
+    // Chỉ cộng khi còn lượt dùng, trả về 0 nếu voucher đã hết lượt
     @Modifying
-    @Query("UPDATE DiscountCode dc SET dc.usedCount = dc.usedCount + 1 WHERE dc.id = :discountCodeId")
-    void incrementUsedCount(@Param("discountCodeId") Long discountCodeId);
+    @Query("UPDATE DiscountCode dc SET dc.usedCount = dc.usedCount + 1 WHERE dc.id = :discountCodeId AND dc.usedCount < dc.maxUses")
+    int incrementUsedCountIfAvailable(@Param("discountCodeId") Long discountCodeId);
 
     // Kích hoạt/vô hiệu hóa voucher
     @Modifying
@@ -160,5 +162,18 @@ public interface DiscountCodeRepository extends JpaRepository<DiscountCode, Long
             @Param("productIds") List<Long> productIds,
             @Param("currentTime") LocalDateTime currentTime);
 
+    @Query("SELECT DISTINCT dc FROM DiscountCode dc LEFT JOIN FETCH dc.products WHERE dc.id IN :ids")
+    List<DiscountCode> findAllWithProductsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Voucher active chưa hết hạn của shop, nạp sẵn products / store / createdBy cho DiscountRuleIndex
+    @Query("SELECT DISTINCT dc FROM DiscountCode dc " +
+            "JOIN FETCH dc.store " +
+            "LEFT JOIN FETCH dc.createdBy " +
+            "LEFT JOIN FETCH dc.products " +
+            "WHERE dc.store.id = :storeId " +
+            "AND dc.isActive = true " +
+            "AND dc.endDate >= :currentTime")
+    List<DiscountCode> findIndexableByStoreId(@Param("storeId") Long storeId,
+                                              @Param("currentTime") LocalDateTime currentTime);
 
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,6 +20,13 @@ public interface UserDiscountRepository extends JpaRepository<UserDiscount, User
     Integer countUserDiscountUsage(@Param("discountCodeId") Long discountCodeId,
                                    @Param("userId") Long userId);
 
+    // Số lần user đã dùng từng voucher trong danh sách, 1 truy vấn thay cho countUserDiscountUsage từng mã
+    @Query("SELECT ud.discountId, COUNT(ud) FROM UserDiscount ud WHERE " +
+            "ud.userId = :userId AND ud.discountId IN :discountCodeIds " +
+            "GROUP BY ud.discountId")
+    List<Object[]> countUserDiscountUsages(@Param("userId") Long userId,
+                                           @Param("discountCodeIds") Collection<Long> discountCodeIds);
+
     // Lấy danh sách voucher đã sử dụng của user
     @Query("SELECT ud FROM UserDiscount ud WHERE ud.user.id = :userId ORDER BY ud.usedAt DESC")
     List<UserDiscount> findByUserId(@Param("userId") Long userId);
@@ -83,4 +83,9 @@ public interface FlashSaleRepo extends JpaRepository<FlashSale, Long> {
     @Transactional
     @Query("UPDATE FlashSale fs SET fs.soldCount = CASE WHEN fs.soldCount >= :decrement THEN fs.soldCount - :decrement ELSE 0 END WHERE fs.id = :flashSaleId")
     void decrementSoldCount(@Param("flashSaleId") Long flashSaleId, @Param("decrement") Integer decrement);
+
+    // Ghi bù delta soldCount (âm hoặc dương) do FlashSaleReservationService gom lại từ Redis
+    @Modifying
+    @Query("UPDATE FlashSale fs SET fs.soldCount = CASE WHEN fs.soldCount + :delta > 0 THEN fs.soldCount + :delta ELSE 0 END WHERE fs.id = :flashSaleId")
+    int applySoldCountDelta(@Param("flashSaleId") Long flashSaleId, @Param("delta") Integer delta);
 }
@@ -0,0 +1,40 @@
+package com.quadra.ecommerce_api.repository.notification;
+
+import com.quadra.ecommerce_api.entity.notification.EmailOutbox;
+import com.quadra.ecommerce_api.enums.notification.EmailOutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepo extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * Đánh dấu tối đa :limit email đến hạn (PENDING, hoặc SENDING đã quá hạn giữ) là của lần gửi :token.
+     * Các node chạy song song không nhận trùng dòng.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE email_outbox
+               SET status = 'SENDING', claim_token = :token, next_attempt_at = :leaseUntil
+             WHERE status IN ('PENDING', 'SENDING')
+               AND next_attempt_at <= :now
+             ORDER BY next_attempt_at
+             LIMIT :limit
+            """, nativeQuery = true)
+    int claimDue(@Param("token") String token,
+                 @Param("now") LocalDateTime now,
+                 @Param("leaseUntil") LocalDateTime leaseUntil,
+                 @Param("limit") int limit);
+
+    List<EmailOutbox> findByClaimToken(String claimToken);
+
+    long countByStatus(EmailOutboxStatus status);
+}
@@ -3,11 +3,18 @@ package com.quadra.ecommerce_api.repository.order;
 import com.quadra.ecommerce_api.entity.order.OrderItem;
 import com.quadra.ecommerce_api.entity.order.OrderItemAddon;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemAddonRepo extends JpaRepository<OrderItemAddon, Long> {
     List<OrderItemAddon> findByOrderItem(OrderItem orderItem);
+
+    // [orderItemId, priceAdjustAtTime] của mọi addon thuộc các đơn
+    @Query("SELECT oia.orderItem.id, oia.priceAdjustAtTime FROM OrderItemAddon oia WHERE oia.orderItem.order.id IN :orderIds")
+    List<Object[]> findPricesByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
 }
@@ -6,15 +6,21 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepo extends JpaRepository<OrderItem, Long> {
-    @Query("SELECT SUM(oi.quantity) FROM OrderItem oi WHERE oi.variant.product.id = :productId AND oi.order.status = 'DELIVERED'")
-    Long calculateSoldCount(@Param("productId") Long productId);
+    @Query("SELECT DISTINCT oi.variant.product.id FROM OrderItem oi WHERE oi.order.id IN :orderIds")
+    List<Long> findProductIdsByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 
     List<OrderItem> findByOrderId(Long orderId);
 
+    // Item của nhiều đơn kèm biến thể và sản phẩm trong 1 truy vấn
+    @Query("SELECT oi FROM OrderItem oi JOIN FETCH oi.variant v JOIN FETCH v.product p " +
+            "JOIN FETCH p.itemType LEFT JOIN FETCH p.category WHERE oi.order.id IN :orderIds")
+    List<OrderItem> findWithProductByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
 
     // OrderManagement
     @Query("SELECT COUNT(oi) FROM OrderItem oi WHERE oi.order.id = :orderId")
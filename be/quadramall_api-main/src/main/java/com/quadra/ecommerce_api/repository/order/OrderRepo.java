@@ -3,12 +3,14 @@ import com.quadra.ecommerce_api.enums.order.OrderStatus;
 
 import com.quadra.ecommerce_api.entity.order.Order;
 import com.quadra.ecommerce_api.enums.order.OrderStatus;
-import io.lettuce.core.dynamic.annotation.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -16,12 +18,16 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface OrderRepo extends JpaRepository<Order, Long> {
+public interface OrderRepo extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
     List<Order> findByStatusAndCustomer_Id(OrderStatus status, Long userId);
     List<Order> findByCustomer_Id(Long userId);
     Optional<Order> findById(Long orderId);
 
     List<Order> findByIdInAndCustomer_Id(List<Long> orderIds, Long id);
+
+    @Query("SELECT o FROM Order o JOIN FETCH o.store JOIN FETCH o.customer " +
+            "WHERE o.id IN :orderIds AND o.customer.id = :customerId")
+    List<Order> findWithStoreByIdInAndCustomerId(@Param("orderIds") List<Long> orderIds, @Param("customerId") Long customerId);
     List<Order> findByIdIn(List<Long> orderIds);
 
     // Add these new methods for order management
@@ -61,4 +67,26 @@ public interface OrderRepo extends JpaRepository<Order, Long> {
     Page<Order> findAll(Specification<Order> spec, Pageable pageable);
 
     List<Order> findByStatusAndUpdatedAtBefore(OrderStatus orderStatus, LocalDateTime threshold);
+
+    // Chỉ ghi shard lần đầu, các lần sau giữ nguyên shard đã chốt
+    @Modifying
+    @Query("UPDATE Order o SET o.escrowShardIndex = :shardIndex WHERE o.id = :orderId AND o.escrowShardIndex IS NULL")
+    int assignEscrowShardIndex(@Param("orderId") Long orderId, @Param("shardIndex") Integer shardIndex);
+
+    // Dựng lại store_order_stats: [status, count, revenue]
+    @Query(value = "SELECT status, COUNT(*), COALESCE(SUM(total_amount), 0) FROM orders " +
+            "WHERE store_id = :storeId GROUP BY status", nativeQuery = true)
+    List<Object[]> aggregateByStatus(@Param("storeId") Long storeId);
+
+    // [yyyy-MM, revenue] của các đơn được tính doanh thu
+    @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m'), SUM(total_amount) FROM orders " +
+            "WHERE store_id = :storeId AND status NOT IN ('CANCELLED', 'RETURNED') " +
+            "GROUP BY DATE_FORMAT(created_at, '%Y-%m')", nativeQuery = true)
+    List<Object[]> aggregateMonthlyRevenue(@Param("storeId") Long storeId);
+
+    // [thứ 2 đầu tuần, revenue] của các đơn được tính doanh thu
+    @Query(value = "SELECT DATE_SUB(DATE(created_at), INTERVAL WEEKDAY(created_at) DAY), SUM(total_amount) FROM orders " +
+            "WHERE store_id = :storeId AND status NOT IN ('CANCELLED', 'RETURNED') " +
+            "GROUP BY DATE_SUB(DATE(created_at), INTERVAL WEEKDAY(created_at) DAY)", nativeQuery = true)
+    List<Object[]> aggregateWeeklyRevenue(@Param("storeId") Long storeId);
 }
@@ -7,8 +7,10 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Optional;
 
+/**
+ * Điểm trung bình / số review theo sản phẩm, cửa hàng đọc từ product_stats, store_stats (xem ProductStatsService)
+ */
 @Repository
 public interface ProductReviewRepo extends JpaRepository<ProductReview, Long> {
     @Query("SELECT pr FROM ProductReview pr " +
@@ -19,18 +21,7 @@ public interface ProductReviewRepo extends JpaRepository<ProductReview, Long> {
             "WHERE v.product.id = :productId")
     List<ProductReview> findByProductIdWithUser(@Param("productId") Long productId);
 
-    @Query("SELECT AVG(pr.rating) FROM ProductReview pr JOIN pr.orderItem oi JOIN oi.variant v WHERE v.product.id = :productId AND pr.rating IS NOT NULL")
-    Optional<Double> findAverageRatingByProductId(@Param("productId") Long productId);
-
     @Query("SELECT COUNT(pr) FROM ProductReview pr JOIN pr.orderItem oi JOIN oi.variant v WHERE v.product.id = :productId")
     Long countReviewsByProductId(@Param("productId") Long productId);
 
-    @Query("SELECT AVG(pr.rating) FROM ProductReview pr " +
-            "WHERE pr.orderItem.variant.product.store.id = :storeId")
-    Optional<Double> findAverageRatingByStoreId(@Param("storeId") Long storeId);
-
-
-    @Query("SELECT COUNT(pr) FROM ProductReview pr WHERE pr.orderItem.variant.product.store.id = :storeId")
-    long countByStoreId(Long storeId);
-
 }
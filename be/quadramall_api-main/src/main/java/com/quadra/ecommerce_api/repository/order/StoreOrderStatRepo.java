@@ -0,0 +1,23 @@
+package com.quadra.ecommerce_api.repository.order;
+
+import com.quadra.ecommerce_api.entity.order.StoreOrderStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StoreOrderStatRepo extends JpaRepository<StoreOrderStat, Long> {
+
+    @Query("SELECT s FROM StoreOrderStat s WHERE s.store.id IN :storeIds AND s.statKey IN :statKeys")
+    List<StoreOrderStat> findByStoreIdsAndStatKeys(@Param("storeIds") Collection<Long> storeIds,
+                                                   @Param("statKeys") Collection<String> statKeys);
+
+    // Cửa hàng chưa có dòng statKey (chưa được dựng lại lần nào)
+    @Query("SELECT st.id FROM Store st WHERE NOT EXISTS " +
+            "(SELECT 1 FROM StoreOrderStat s WHERE s.store = st AND s.statKey = :statKey)")
+    List<Long> findStoreIdsMissingStatKey(@Param("statKey") String statKey);
+}
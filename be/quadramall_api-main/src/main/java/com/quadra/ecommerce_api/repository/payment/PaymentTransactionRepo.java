@@ -1,9 +1,18 @@
 package com.quadra.ecommerce_api.repository.payment;
 
 import com.quadra.ecommerce_api.entity.payment.PaymentTransaction;
+import com.quadra.ecommerce_api.enums.order.OrderStatus;
+import com.quadra.ecommerce_api.enums.payment.TransactionStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +21,24 @@ public interface PaymentTransactionRepo extends JpaRepository<PaymentTransaction
     Optional<PaymentTransaction> findByOrderIdAndTransactionCode(Long orderId, String transactionCode);
 
     boolean existsByTransactionCode(String txnRef);
+
+    // Khoá các giao dịch của 1 lượt callback, callback trùng (return / IPN / retry) phải chờ lượt đang xử lý commit
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT pt FROM PaymentTransaction pt WHERE pt.transactionCode IN :transactionCodes")
+    List<PaymentTransaction> findForUpdateByTransactionCodeIn(@Param("transactionCodes") Collection<String> transactionCodes);
+
+    // Đơn đã thanh toán qua :gatewayName trong [from, to) nhưng chưa có delivery assignment
+    @Query("""
+            SELECT DISTINCT pt.order.id FROM PaymentTransaction pt
+            WHERE pt.gatewayName = :gatewayName
+              AND pt.status = :status
+              AND pt.paidAt >= :from AND pt.paidAt < :to
+              AND pt.order.status IN :orderStatuses
+              AND NOT EXISTS (SELECT da.id FROM DeliveryAssignment da WHERE da.order.id = pt.order.id)
+            """)
+    List<Long> findPaidOrderIdsWithoutDeliveryAssignment(@Param("gatewayName") String gatewayName,
+                                                         @Param("status") TransactionStatus status,
+                                                         @Param("orderStatuses") Collection<OrderStatus> orderStatuses,
+                                                         @Param("from") LocalDateTime from,
+                                                         @Param("to") LocalDateTime to);
 }
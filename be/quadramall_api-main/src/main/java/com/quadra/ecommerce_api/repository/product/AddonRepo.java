@@ -14,6 +14,9 @@ public interface AddonRepo extends JpaRepository<Addon, Long> {
     @Query("SELECT a FROM Addon a WHERE a.addonGroup.id = :addonGroupId AND a.active = true")
     List<Addon> findByAddonGroupIdAndIsActiveTrue(@Param("addonGroupId") Long addonGroupId);
 
+    @Query("SELECT a FROM Addon a JOIN FETCH a.addonGroup g WHERE g.product.id = :productId AND a.active = true")
+    List<Addon> findActiveByProductId(@Param("productId") Long productId);
+
     List<Addon> findByAddonGroupId(Long addonGroupId);
 
     @Modifying
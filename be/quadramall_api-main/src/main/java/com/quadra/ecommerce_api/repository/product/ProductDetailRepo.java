@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,6 +24,13 @@ public interface ProductDetailRepo extends JpaRepository<ProductDetail, Long> {
     @Query("SELECT pd FROM ProductDetail pd WHERE pd.variant.product.id = :productId")
     List<ProductDetail> findByProductId(@Param("productId") Long productId);
 
+    @Query("SELECT pd FROM ProductDetail pd " +
+            "JOIN FETCH pd.variant v " +
+            "JOIN FETCH pd.attributeValue av " +
+            "JOIN FETCH av.attribute " +
+            "WHERE v.product.id = :productId")
+    List<ProductDetail> findByProductIdWithAttributes(@Param("productId") Long productId);
+
     void deleteByVariantId(Long variantId);
 
     List<ProductDetail> findByVariantIdIn(List<Long> variantIds);
@@ -30,5 +38,12 @@ public interface ProductDetailRepo extends JpaRepository<ProductDetail, Long> {
     @Query("SELECT pd FROM ProductDetail pd WHERE pd.variant.product.id IN :productIds")
     List<ProductDetail> findByProductIdIn(@Param("productIds") List<Long> productIds);
 
+    @Query("SELECT pd FROM ProductDetail pd " +
+            "JOIN FETCH pd.variant v " +
+            "JOIN FETCH pd.attributeValue av " +
+            "JOIN FETCH av.attribute " +
+            "WHERE v.product.id IN :productIds ORDER BY pd.id")
+    List<ProductDetail> findWithAttributesByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
 
 }
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +21,21 @@ public interface ProductRepo extends JpaRepository<Product, Long> {
             "WHERE p.slug = :slug AND p.isActive = true")
     Optional<Product> findBySlugAndIsActiveTrue(@Param("slug") String slug);
 
+    @Query("SELECT p.id FROM Product p WHERE p.slug = :slug AND p.isActive = true")
+    Optional<Long> findActiveIdBySlug(@Param("slug") String slug);
+
+    // [id, name, storeId, storeAddress, itemTypeId, createdAt, isActive] dùng để dựng chỉ mục tìm kiếm
+    @Query("SELECT p.id, p.name, s.id, s.address, p.itemType.id, p.createdAt, p.isActive FROM Product p JOIN p.store s")
+    List<Object[]> findSearchRows();
+
+    @Query("SELECT p.id, p.name, s.id, s.address, p.itemType.id, p.createdAt, p.isActive FROM Product p JOIN p.store s " +
+            "WHERE p.id IN :productIds")
+    List<Object[]> findSearchRowsByIds(@Param("productIds") Collection<Long> productIds);
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.store JOIN FETCH p.itemType LEFT JOIN FETCH p.category " +
+            "WHERE p.id IN :productIds")
+    List<Product> findAllWithStoreByIdIn(@Param("productIds") Collection<Long> productIds);
+
     @Query("SELECT COUNT(p) FROM Product p WHERE p.store.id = :storeId AND p.isActive = true")
     Long countByStoreIdAndIsActiveTrue(@Param("storeId") Long storeId);
 
@@ -30,11 +46,12 @@ public interface ProductRepo extends JpaRepository<Product, Long> {
     List<Product> findByStoreIdAndOwnerId(@Param("storeId") Long storeId, @Param("ownerId") Long ownerId);
 
 
+    // Số lượng đã bán đọc từ product_stats
     @Query("SELECT p.id, p.name, p.isActive, " +
-            "MIN(pv.price), MAX(pv.price), SUM(pv.stockQuantity), COALESCE(SUM(oi.quantity), 0) " +
+            "MIN(pv.price), MAX(pv.price), SUM(pv.stockQuantity), COALESCE(MAX(ps.soldCount), 0) " +
             "FROM Product p " +
             "LEFT JOIN ProductVariant pv ON p.id = pv.product.id " +
-            "LEFT JOIN OrderItem oi ON pv.id = oi.variant.id " +
+            "LEFT JOIN ProductStat ps ON ps.productId = p.id " +
             "WHERE p.store.id = :storeId " +
             "GROUP BY p.id, p.name, p.isActive")
     List<Object[]> findProductDataByStoreId(@Param("storeId") Long storeId);
@@ -61,7 +78,7 @@ public interface ProductRepo extends JpaRepository<Product, Long> {
             "AND (:categoryIds IS NULL OR p.category.id IN :categoryIds) " +
             "ORDER BY " +
             "CASE WHEN :sort = 'comprehensive' THEN p.id END, " +
-            "CASE WHEN :sort = 'best_selling' THEN (SELECT COALESCE(SUM(oi.quantity), 0) FROM OrderItem oi WHERE oi.variant.product.id = p.id) END DESC, " +
+            "CASE WHEN :sort = 'best_selling' THEN COALESCE((SELECT ps.soldCount FROM ProductStat ps WHERE ps.productId = p.id), 0) END DESC, " +
             "CASE WHEN :sort = 'newest' THEN p.createdAt END DESC, " +
             "CASE WHEN :sort = 'price_asc' THEN (SELECT MIN(pv.price) FROM ProductVariant pv WHERE pv.product.id = p.id) END ASC, " +
             "CASE WHEN :sort = 'price_desc' THEN (SELECT MIN(pv.price) FROM ProductVariant pv WHERE pv.product.id = p.id) END DESC")
@@ -75,8 +92,8 @@ public interface ProductRepo extends JpaRepository<Product, Long> {
     @Query("""
         SELECT p, 
                (SELECT MIN(pv.price) FROM ProductVariant pv WHERE pv.product.id = p.id AND pv.isActive = true) as minPrice,
-               (SELECT COALESCE(SUM(oi.quantity), 0) FROM OrderItem oi WHERE oi.variant.product.id = p.id AND oi.order.status = 'DELIVERED') as soldCount,
-               (SELECT COALESCE(AVG(pr.rating), 0) FROM ProductReview pr JOIN pr.orderItem oi JOIN oi.variant v WHERE v.product.id = p.id AND pr.rating IS NOT NULL) as rating
+               COALESCE((SELECT ps.soldCount FROM ProductStat ps WHERE ps.productId = p.id), 0) as soldCount,
+               COALESCE((SELECT ps.averageRating FROM ProductStat ps WHERE ps.productId = p.id), 0) as rating
         FROM Product p
         JOIN FETCH p.store s
         WHERE (:itemTypeIds IS NULL OR p.itemType.id IN :itemTypeIds)
@@ -0,0 +1,29 @@
+package com.quadra.ecommerce_api.repository.product;
+
+import com.quadra.ecommerce_api.entity.product.ProductStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductStatRepo extends JpaRepository<ProductStat, Long> {
+
+    // [productId, soldCount] cho nhiều sản phẩm trong 1 truy vấn
+    @Query("SELECT ps.productId, ps.soldCount FROM ProductStat ps WHERE ps.productId IN :productIds")
+    List<Object[]> findSoldCountsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    // [productId, averageRating], chỉ các sản phẩm đã có đánh giá
+    @Query("SELECT ps.productId, ps.averageRating FROM ProductStat ps " +
+            "WHERE ps.productId IN :productIds AND ps.reviewCount > 0")
+    List<Object[]> findAverageRatingsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    @Query("SELECT ps.productId, ps.soldCount FROM ProductStat ps WHERE ps.soldCount > 0")
+    List<Object[]> findAllSoldCounts();
+
+    @Query("SELECT ps.productId, ps.averageRating FROM ProductStat ps WHERE ps.reviewCount > 0")
+    List<Object[]> findAllAverageRatings();
+}
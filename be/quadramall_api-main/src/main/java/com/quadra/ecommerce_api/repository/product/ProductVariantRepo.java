@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +32,23 @@ public interface ProductVariantRepo extends JpaRepository<ProductVariant, Long>
     @Query("SELECT MIN(pv.price) FROM ProductVariant pv WHERE pv.product.id = :productId AND pv.isActive = true")
     Optional<BigDecimal> findMinPriceByProductId(@Param("productId") Long productId);
 
+    // [productId, minPrice] cho nhiều sản phẩm trong 1 truy vấn
+    @Query("SELECT pv.product.id, MIN(pv.price) FROM ProductVariant pv " +
+            "WHERE pv.product.id IN :productIds AND pv.isActive = true " +
+            "GROUP BY pv.product.id")
+    List<Object[]> findMinPricesByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    // [productId, price] của mọi biến thể đang bán
+    @Query("SELECT pv.product.id, pv.price FROM ProductVariant pv WHERE pv.isActive = true")
+    List<Object[]> findAllActivePrices();
+
+    @Query("SELECT pv.product.id, pv.price FROM ProductVariant pv WHERE pv.product.id IN :productIds AND pv.isActive = true")
+    List<Object[]> findActivePricesByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    // [variantId, stockQuantity] của các biến thể đang bán
+    @Query("SELECT pv.id, pv.stockQuantity FROM ProductVariant pv WHERE pv.product.id = :productId AND pv.isActive = true")
+    List<Object[]> findActiveStockByProductId(@Param("productId") Long productId);
+
     @Query("SELECT MAX(pv.price) FROM ProductVariant pv WHERE pv.product.id = :productId AND pv.isActive = true")
     Optional<BigDecimal> findMaxPriceByProductId(@Param("productId") Long productId);
 
@@ -14,6 +14,9 @@ public interface SpecificationValueRepo extends JpaRepository<SpecificationValue
 
     List<SpecificationValue> findByProductId(Long productId);
 
+    @Query("SELECT sv FROM SpecificationValue sv JOIN FETCH sv.specification WHERE sv.product.id = :productId")
+    List<SpecificationValue> findByProductIdWithSpecification(Long productId);
+
     List<SpecificationValue> findByProduct(Product product);
 
 
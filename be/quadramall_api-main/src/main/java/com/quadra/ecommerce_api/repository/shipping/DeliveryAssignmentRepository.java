@@ -1,10 +1,12 @@
 package com.quadra.ecommerce_api.repository.shipping;
 
 import com.quadra.ecommerce_api.entity.shipping.DeliveryAssignment;
+import com.quadra.ecommerce_api.entity.shipping.Shipper;
 import com.quadra.ecommerce_api.enums.shipping.DeliveryStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,14 +25,44 @@ public interface DeliveryAssignmentRepository extends JpaRepository<DeliveryAssi
     Page<DeliveryAssignment> findByShipperIdOrderByCreatedAtDesc(Long shipperId, Pageable pageable);
 
     @Query("SELECT da FROM DeliveryAssignment da WHERE da.status = 'AVAILABLE' " +
-            "AND da.order.store.address LIKE %:province% " +
+            "AND da.provinceCode = :provinceCode " +
             "ORDER BY da.createdAt ASC")
-    Page<DeliveryAssignment> findAvailableOrdersByProvince(@Param("province") String province, Pageable pageable);
+    Page<DeliveryAssignment> findAvailableOrdersByProvince(@Param("provinceCode") String provinceCode, Pageable pageable);
 
     @Query("SELECT da FROM DeliveryAssignment da WHERE da.status = 'AVAILABLE' " +
             "ORDER BY da.createdAt ASC")
     Page<DeliveryAssignment> findAvailableOrders(Pageable pageable);
 
+    // id, orderId, provinceCode, createdAt của các assignment đang chờ nhận, dùng cho ShipperDispatchService
+    @Query("SELECT da.id, da.order.id, da.provinceCode, da.createdAt FROM DeliveryAssignment da " +
+            "WHERE da.status = 'AVAILABLE'")
+    List<Object[]> findAvailableDispatchRows();
+
+    // id và địa chỉ cửa hàng của các assignment chưa có mã tỉnh (tạo trước khi có cột province_code)
+    @Query("SELECT da.id, st.address FROM DeliveryAssignment da JOIN da.order o JOIN o.store st " +
+            "WHERE da.provinceCode IS NULL")
+    List<Object[]> findWithoutProvinceCode();
+
+    @Modifying
+    @Query("UPDATE DeliveryAssignment da SET da.provinceCode = :provinceCode WHERE da.id = :id AND da.provinceCode IS NULL")
+    int updateProvinceCode(@Param("id") Long id, @Param("provinceCode") String provinceCode);
+
+    /**
+     * Nhận đơn nguyên tử: chỉ cập nhật khi assignment vẫn AVAILABLE, trả về 0 nếu đã có shipper khác nhận.
+     * Không clear persistence context (các entity khác của transaction vẫn được quản lý), người gọi tự đọc lại assignment.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DeliveryAssignment da SET da.shipper = :shipper, da.status = :status, " +
+            "da.assignedAt = :assignedAt, da.updatedAt = :assignedAt, " +
+            "da.deliveryNotes = :notes, da.estimatedDelivery = :estimatedDelivery " +
+            "WHERE da.id = :id AND da.status = 'AVAILABLE'")
+    int claimAvailable(@Param("id") Long id,
+                       @Param("shipper") Shipper shipper,
+                       @Param("status") DeliveryStatus status,
+                       @Param("assignedAt") LocalDateTime assignedAt,
+                       @Param("notes") String notes,
+                       @Param("estimatedDelivery") LocalDateTime estimatedDelivery);
+
     @Query("SELECT COUNT(da) FROM DeliveryAssignment da WHERE da.shipper.id = :shipperId " +
             "AND da.status IN ('ASSIGNED', 'PICKED_UP', 'IN_TRANSIT')")
     Long countActiveDeliveriesByShipper(@Param("shipperId") Long shipperId);
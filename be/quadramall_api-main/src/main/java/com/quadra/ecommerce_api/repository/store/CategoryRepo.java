@@ -15,9 +15,20 @@ public interface CategoryRepo extends JpaRepository<Category, Long> {
     List<Category> findByStoreId(Long storeId);
 
 
-    @Query("SELECT c.id FROM Category c WHERE c.id = :categoryId OR c.parent.id = :categoryId")
+    @Query(value = """
+            WITH RECURSIVE subtree AS (
+                SELECT id FROM categories WHERE id = :categoryId
+                UNION ALL
+                SELECT c.id FROM categories c JOIN subtree s ON c.parent_id = s.id
+            )
+            SELECT id FROM subtree
+            """, nativeQuery = true)
     List<Long> findAllDescendantIds(@Param("categoryId") Long categoryId);
 
+    // id, name, slug, description, parentId của mọi danh mục trong shop, để dựng TaxonomyTree
+    @Query("SELECT c.id, c.name, c.slug, c.description, p.id FROM Category c LEFT JOIN c.parent p WHERE c.store.id = :storeId")
+    List<Object[]> findTaxonomyRowsByStoreId(Long storeId);
+
     @Query("SELECT c FROM Category c WHERE c.slug = :slug AND c.store.id = :storeId")
     Optional<Category> findBySlugAndStoreId(String slug, Long storeId);
 
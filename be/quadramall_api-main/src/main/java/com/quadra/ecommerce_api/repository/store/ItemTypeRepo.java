@@ -24,4 +24,8 @@ public interface ItemTypeRepo extends JpaRepository<ItemType, Long> {
     List<ItemType> findAllActiveWithParent();
 
     List<ItemType> findByParentIsNullAndIsActiveTrue();
+
+    // id, parentId của mọi loại hàng (kể cả đã ẩn, như findByParentId trước đây), để dựng TaxonomyTree
+    @Query("SELECT it.id, p.id FROM ItemType it LEFT JOIN it.parent p")
+    List<Object[]> findTaxonomyRows();
 }
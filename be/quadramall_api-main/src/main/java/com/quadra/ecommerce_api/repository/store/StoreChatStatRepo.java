@@ -0,0 +1,9 @@
+package com.quadra.ecommerce_api.repository.store;
+
+import com.quadra.ecommerce_api.entity.store.StoreChatStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StoreChatStatRepo extends JpaRepository<StoreChatStat, Long> {
+}
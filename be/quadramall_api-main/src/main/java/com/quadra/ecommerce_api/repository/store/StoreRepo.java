@@ -15,47 +15,25 @@ import java.util.Optional;
 @Repository
 public interface StoreRepo extends JpaRepository<Store, Long> {
 
-    /**
-     * Tìm top 10 stores có rating trung bình cao nhất
-     * Join với Product, ProductVariant, OrderItem và ProductReview để tính rating
-     * @param pageable Thông tin phân trang để giới hạn kết quả
-     * @return Danh sách StoreHomeResponseDTO với thông tin store và rating
-     */
-    @Query("SELECT new com.quadra.ecommerce_api.dto.custom.store.response.StoreHomeResponseDTO(" +
-            "s.id, s.name, COALESCE(AVG(pr.rating), 0), s.slug, s.logoUrl) " +
-            "FROM Store s " +
-            "LEFT JOIN Product p ON p.store = s " +
-            "LEFT JOIN ProductVariant pv ON pv.product = p " +
-            "LEFT JOIN OrderItem oi ON oi.variant = pv " +
-            "LEFT JOIN ProductReview pr ON pr.orderItem = oi " +
-            "GROUP BY s.id, s.name " +
-            "ORDER BY AVG(pr.rating) DESC")
-    List<StoreHomeResponseDTO> findTop10StoresByAverageRating(Pageable pageable);
-
     /**
      * Tìm top stores theo loại sản phẩm và rating
-     * Lọc stores có sản phẩm thuộc các itemType được chỉ định
+     * Lọc stores có sản phẩm thuộc các itemType được chỉ định, rating đọc từ store_stats
      * @param itemTypeIds Danh sách ID của item types cần lọc
      * @param pageable Thông tin phân trang
      * @return Danh sách stores có sản phẩm thuộc itemTypes được sắp xếp theo rating
      */
     @Query("""
         SELECT new com.quadra.ecommerce_api.dto.custom.store.response.StoreHomeResponseDTO(
-            s.id, s.name, COALESCE(AVG(pr.rating), 0), s.slug, s.logoUrl
+            s.id, s.name, COALESCE(ss.averageRating, 0), s.slug, s.logoUrl
         )
         FROM Store s
-        LEFT JOIN Product p ON p.store = s
-        LEFT JOIN ProductVariant pv ON pv.product = p
-        LEFT JOIN OrderItem oi ON oi.variant = pv
-        LEFT JOIN ProductReview pr ON pr.orderItem = oi
+        LEFT JOIN StoreStat ss ON ss.storeId = s.id
         WHERE s.id IN (
-            SELECT DISTINCT s2.id
-            FROM Store s2
-            JOIN Product p2 ON p2.store = s2
+            SELECT DISTINCT p2.store.id
+            FROM Product p2
             WHERE (:itemTypeIds IS NULL OR p2.itemType.id IN :itemTypeIds)
         )
-        GROUP BY s.id, s.name, s.slug, s.logoUrl
-        ORDER BY AVG(pr.rating) DESC
+        ORDER BY COALESCE(ss.averageRating, 0) DESC
     """)
     List<StoreHomeResponseDTO> findTopStoresByItemTypeIds(
             @Param("itemTypeIds") List<Long> itemTypeIds,
@@ -122,4 +100,7 @@ public interface StoreRepo extends JpaRepository<Store, Long> {
      * @return Danh sách stores của user có status được chỉ định
      */
     List<Store> findByOwnerIdAndStatus(Long ownerId, StoreStatus status);
-}
\ No newline at end of file
+
+    @Query("SELECT s.id FROM Store s")
+    List<Long> findAllIds();
+}
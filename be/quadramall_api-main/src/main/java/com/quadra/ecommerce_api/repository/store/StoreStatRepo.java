@@ -0,0 +1,31 @@
+package com.quadra.ecommerce_api.repository.store;
+
+import com.quadra.ecommerce_api.dto.custom.store.response.StoreHomeResponseDTO;
+import com.quadra.ecommerce_api.entity.store.StoreStat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StoreStatRepo extends JpaRepository<StoreStat, Long> {
+
+    /**
+     * Các store có rating trung bình cao nhất, đọc từ store_stats (theo idx_store_stats_rating)
+     */
+    @Query("SELECT new com.quadra.ecommerce_api.dto.custom.store.response.StoreHomeResponseDTO(" +
+            "s.id, s.name, ss.averageRating, s.slug, s.logoUrl) " +
+            "FROM StoreStat ss JOIN Store s ON s.id = ss.storeId " +
+            "WHERE ss.reviewCount > 0 " +
+            "ORDER BY ss.averageRating DESC")
+    List<StoreHomeResponseDTO> findTopRated(Pageable pageable);
+
+    // Store chưa có đánh giá (rating 0), dùng để lấp đủ danh sách top store
+    @Query("SELECT new com.quadra.ecommerce_api.dto.custom.store.response.StoreHomeResponseDTO(" +
+            "s.id, s.name, 0.0, s.slug, s.logoUrl) " +
+            "FROM Store s " +
+            "WHERE s.id NOT IN (SELECT ss.storeId FROM StoreStat ss WHERE ss.reviewCount > 0)")
+    List<StoreHomeResponseDTO> findUnrated(Pageable pageable);
+}
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +15,9 @@ public interface FavoriteRepo extends JpaRepository<Favorite, Long> {
     Optional<Favorite> findByUserIdAndProductId(Long userId, Long productId);
     Boolean existsByUserIdAndProductId(Long userId, Long productId);
 
+    @Query("SELECT f.product.id FROM Favorite f WHERE f.user.id = :userId AND f.product.id IN :productIds")
+    List<Long> findProductIdsByUserIdAndProductIdIn(Long userId, Collection<Long> productIds);
+
 
     @Query("SELECT COUNT(DISTINCT f.user.id) FROM Favorite f WHERE f.product.store.id = :storeId")
     long countDistinctUsersByStoreId(Long storeId);
@@ -19,7 +19,11 @@ public interface WalletRepo  extends JpaRepository<Wallet, Long> {
 
     @Query(value = """
         SELECT 
-            w.balance AS balance,
+            w.balance + COALESCE((
+                SELECT SUM(ws.balance)
+                FROM wallet_shards ws
+                WHERE ws.wallet_id = w.id
+            ), 0) AS balance,
             w.updated_at AS updatedAt,
             COALESCE((
                 SELECT SUM(wt.amount)
@@ -0,0 +1,32 @@
+package com.quadra.ecommerce_api.repository.wallet;
+
+import com.quadra.ecommerce_api.entity.wallet.WalletShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface WalletShardRepo extends JpaRepository<WalletShard, Long> {
+
+    @Query("SELECT s.shardIndex FROM WalletShard s WHERE s.wallet.id = :walletId")
+    List<Integer> findShardIndexesByWalletId(@Param("walletId") Long walletId);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM WalletShard s WHERE s.wallet.id = :walletId")
+    BigDecimal sumBalanceByWalletId(@Param("walletId") Long walletId);
+
+    // Cộng dồn trực tiếp trên DB, chỉ khoá 1 shard thay vì cả ví admin
+    @Modifying
+    @Query("""
+            UPDATE WalletShard s
+            SET s.balance = s.balance + :delta, s.updatedAt = CURRENT_TIMESTAMP
+            WHERE s.wallet.id = :walletId AND s.shardIndex = :shardIndex
+            """)
+    int addToBalance(@Param("walletId") Long walletId,
+                     @Param("shardIndex") Integer shardIndex,
+                     @Param("delta") BigDecimal delta);
+}
@@ -2,12 +2,56 @@ package com.quadra.ecommerce_api.repository.wallet;
 
 import com.quadra.ecommerce_api.entity.payment.PaymentTransaction;
 import com.quadra.ecommerce_api.entity.wallet.WalletTransaction;
+import com.quadra.ecommerce_api.enums.payment.TransactionStatus;
+import com.quadra.ecommerce_api.enums.wallet.WalletTransactionType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WalletTransactionRepo  extends JpaRepository<WalletTransaction, Long> {
     Optional<WalletTransaction> findByWalletId(long l);
+
+    /**
+     * Lịch sử giao dịch theo cursor (createdAt, id) giảm dần, đi theo index (wallet_id[, status|type], created_at)
+     */
+    @Query("""
+        SELECT wt FROM WalletTransaction wt
+        WHERE wt.wallet.id = :walletId
+        AND (:status IS NULL OR wt.status = :status)
+        AND (:type IS NULL OR wt.type = :type)
+        AND (:startDate IS NULL OR wt.createdAt >= :startDate)
+        AND (:endDate IS NULL OR wt.createdAt <= :endDate)
+        AND (:cursorId IS NULL OR wt.createdAt < :cursorCreatedAt
+             OR (wt.createdAt = :cursorCreatedAt AND wt.id < :cursorId))
+        ORDER BY wt.createdAt DESC, wt.id DESC
+        """)
+    List<WalletTransaction> findPageAfterCursor(@Param("walletId") Long walletId,
+                                                @Param("status") TransactionStatus status,
+                                                @Param("type") WalletTransactionType type,
+                                                @Param("startDate") LocalDateTime startDate,
+                                                @Param("endDate") LocalDateTime endDate,
+                                                @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                                @Param("cursorId") Long cursorId,
+                                                Pageable limit);
+
+    @Query("""
+        SELECT COUNT(wt) FROM WalletTransaction wt
+        WHERE wt.wallet.id = :walletId
+        AND (:status IS NULL OR wt.status = :status)
+        AND (:type IS NULL OR wt.type = :type)
+        AND (:startDate IS NULL OR wt.createdAt >= :startDate)
+        AND (:endDate IS NULL OR wt.createdAt <= :endDate)
+        """)
+    long countByFilters(@Param("walletId") Long walletId,
+                        @Param("status") TransactionStatus status,
+                        @Param("type") WalletTransactionType type,
+                        @Param("startDate") LocalDateTime startDate,
+                        @Param("endDate") LocalDateTime endDate);
 }
@@ -0,0 +1,40 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.chat.ChatStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatStatsTasks {
+
+    private final ChatStatsService chatStatsService;
+
+    /**
+     * Lần đầu triển khai (bảng store_chat_stats còn trống) thì dựng tin nhắn cuối / bộ đếm cho các cuộc trò chuyện cũ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (chatStatsService.isEmpty()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Dựng lại read model của chat từ messages để sửa sai lệch của bộ đếm cộng dồn
+     * Mặc định chạy lúc 4h15 sáng mỗi ngày
+     */
+    @Scheduled(cron = "${chat.stats.rebuild-cron:0 15 4 * * *}")
+    public void rebuild() {
+        try {
+            chatStatsService.rebuild();
+        } catch (Exception e) {
+            log.error("Error rebuilding chat stats: {}", e.getMessage());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.quadra.ecommerce_api.scheduler;
 
 import com.quadra.ecommerce_api.entity.discount.DiscountCode;
 import com.quadra.ecommerce_api.repository.discount.DiscountCodeRepository;
+import com.quadra.ecommerce_api.service.discount.DiscountRuleIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -16,6 +17,7 @@ import java.util.List;
 public class DiscountCodeScheduledTasks {
 
     private final DiscountCodeRepository discountCodeRepository;
+    private final DiscountRuleIndex discountRuleIndex;
 
     /**
      * Tự động vô hiệu hóa các mã giảm giá hết hạn
@@ -34,6 +36,7 @@ public class DiscountCodeScheduledTasks {
             if (discountCode.getIsActive() && now.isAfter(discountCode.getEndDate())) {
                 discountCode.setIsActive(false);
                 discountCodeRepository.save(discountCode);
+                discountRuleIndex.storeChanged(discountCode.getStore().getId());
                 deactivatedCount++;
                 log.debug("Deactivated expired discount code: {}", discountCode.getCode());
             }
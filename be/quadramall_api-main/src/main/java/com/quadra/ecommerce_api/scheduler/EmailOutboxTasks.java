@@ -0,0 +1,28 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.notification.EmailOutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxTasks {
+
+    private final EmailOutboxService emailOutboxService;
+
+    /**
+     * Gửi các email đến hạn thử lại, email của node đã dừng và email không được gửi ngay sau commit
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:5000}")
+    public void drain() {
+        try {
+            emailOutboxService.refreshMetrics();
+            emailOutboxService.requestDrain();
+        } catch (Exception e) {
+            log.error("Error polling email outbox: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.repository.flashsale.FlashSaleRepo;
+import com.quadra.ecommerce_api.service.flashsale.FlashSaleReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FlashSaleReconcileTasks {
+
+    private static final int EXPIRED_HOLD_BATCH_SIZE = 500;
+
+    private final FlashSaleReservationService flashSaleReservationService;
+    private final FlashSaleRepo flashSaleRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Trả lại kho các suất Flash Sale bị giữ nhưng VNPay không xác nhận
+     * Chạy mỗi 30 giây
+     */
+    @Scheduled(fixedDelayString = "${flashsale.reservation.release-interval-ms:30000}")
+    public void releaseExpiredHolds() {
+        int released;
+        do {
+            released = flashSaleReservationService.releaseExpiredHolds(EXPIRED_HOLD_BATCH_SIZE);
+            if (released > 0) {
+                log.info("Released {} expired Flash Sale holds", released);
+            }
+        } while (released == EXPIRED_HOLD_BATCH_SIZE);
+    }
+
+    /**
+     * Ghi bù soldCount từ Redis xuống bảng flash_sale theo lô, 1 transaction cho mỗi lần chạy
+     * Chạy mỗi 2 giây
+     */
+    @Scheduled(fixedDelayString = "${flashsale.reservation.flush-interval-ms:2000}")
+    public void flushSoldCounts() {
+        try {
+            Map<Long, Integer> flushed = flashSaleReservationService.flushPendingSoldCounts(deltas ->
+                    transactionTemplate.executeWithoutResult(status ->
+                            deltas.forEach(flashSaleRepo::applySoldCountDelta)));
+
+            if (!flushed.isEmpty()) {
+                log.debug("Flushed Flash Sale sold count deltas: {}", flushed);
+            }
+        } catch (Exception e) {
+            log.error("Error flushing Flash Sale sold counts, will retry: {}", e.getMessage());
+        }
+    }
+}
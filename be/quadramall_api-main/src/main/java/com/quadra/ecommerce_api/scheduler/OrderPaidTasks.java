@@ -0,0 +1,28 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.payment.OrderPaidEventListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPaidTasks {
+
+    private final OrderPaidEventListener orderPaidEventListener;
+
+    /**
+     * Tạo bù delivery assignment của đơn VNPay đã thanh toán mà OrderPaidEvent chưa kịp xử lý (tiến trình dừng / deploy)
+     */
+    @Scheduled(fixedDelayString = "${vnpay.callback.assignment-sweep-interval-ms:60000}",
+            initialDelayString = "${vnpay.callback.assignment-sweep-interval-ms:60000}")
+    public void createMissingDeliveryAssignments() {
+        try {
+            orderPaidEventListener.createMissingDeliveryAssignments();
+        } catch (Exception e) {
+            log.error("Error creating missing delivery assignments: {}", e.getMessage());
+        }
+    }
+}
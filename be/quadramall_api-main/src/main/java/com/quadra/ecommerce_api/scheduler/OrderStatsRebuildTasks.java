@@ -0,0 +1,56 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.repository.store.StoreRepo;
+import com.quadra.ecommerce_api.service.orderManagement.OrderStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStatsRebuildTasks {
+
+    private final OrderStatsService orderStatsService;
+    private final StoreRepo storeRepo;
+
+    /**
+     * Dựng thống kê cho cửa hàng chưa có (cửa hàng mới / trước khi có store_order_stats), dashboard không tự dựng lúc đọc
+     */
+    @Scheduled(fixedDelayString = "${order.stats.backfill-interval-ms:60000}", initialDelayString = "${order.stats.backfill-interval-ms:60000}")
+    public void buildMissing() {
+        try {
+            int built = 0;
+            for (Long storeId : orderStatsService.findStoresMissingStats()) {
+                if (orderStatsService.buildIfMissing(storeId)) built++;
+            }
+            if (built > 0) {
+                log.info("Built order stats for {} stores", built);
+            }
+        } catch (Exception e) {
+            log.error("Error building missing order stats: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Dựng lại store_order_stats từ bảng orders để sửa sai lệch (nếu có) của bộ đếm cộng dồn
+     * Mặc định chạy lúc 3h30 sáng mỗi ngày
+     */
+    @Scheduled(cron = "${order.stats.rebuild-cron:0 30 3 * * *}")
+    public void rebuildAll() {
+        List<Long> storeIds = storeRepo.findAllIds();
+        int failed = 0;
+        for (Long storeId : storeIds) {
+            try {
+                orderStatsService.rebuild(storeId);
+            } catch (Exception e) {
+                failed++;
+                log.error("Error rebuilding order stats for store {}: {}", storeId, e.getMessage());
+            }
+        }
+        log.info("Rebuilt order stats for {} stores ({} failed)", storeIds.size() - failed, failed);
+    }
+}
@@ -0,0 +1,50 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.customer.product.ProductSearchIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndexTasks {
+
+    private final ProductSearchIndex productSearchIndex;
+
+    /**
+     * Dựng chỉ mục tìm kiếm khi ứng dụng khởi động xong, trong lúc dựng tìm kiếm vẫn chạy bằng SQL
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Áp dụng các thay đổi sản phẩm / đơn hàng đang chờ
+     */
+    @Scheduled(fixedDelayString = "${search.index.refresh-interval-ms:2000}")
+    public void applyPendingChanges() {
+        try {
+            productSearchIndex.applyPendingChanges();
+        } catch (Exception e) {
+            log.error("Error applying product search index changes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ để cập nhật những thay đổi không đi qua event (địa chỉ cửa hàng, cập nhật hàng loạt...)
+     * Mặc định chạy lúc 4h sáng mỗi ngày
+     */
+    @Scheduled(cron = "${search.index.rebuild-cron:0 0 4 * * *}")
+    public void rebuild() {
+        try {
+            productSearchIndex.rebuild();
+        } catch (Exception e) {
+            log.error("Error rebuilding product search index: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.repository.store.StoreRepo;
+import com.quadra.ecommerce_api.service.customer.product.ProductStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductStatsTasks {
+
+    private final ProductStatsService productStatsService;
+    private final StoreRepo storeRepo;
+
+    /**
+     * Lần đầu triển khai (bảng store_stats còn trống) thì dựng thống kê trước khi chỉ mục tìm kiếm được dựng
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfillOnStartup() {
+        if (productStatsService.isEmpty()) {
+            rebuildAll();
+        }
+    }
+
+    /**
+     * Dựng lại product_stats / store_stats từ đơn hàng và review để sửa sai lệch của bộ đếm cộng dồn
+     * Mặc định chạy lúc 3h45 sáng mỗi ngày, trước lần dựng lại chỉ mục tìm kiếm
+     */
+    @Scheduled(cron = "${product.stats.rebuild-cron:0 45 3 * * *}")
+    public void rebuildAll() {
+        List<Long> storeIds = storeRepo.findAllIds();
+        int failed = 0;
+        for (Long storeId : storeIds) {
+            try {
+                productStatsService.rebuild(storeId);
+            } catch (Exception e) {
+                failed++;
+                log.error("Error rebuilding product stats for store {}: {}", storeId, e.getMessage());
+            }
+        }
+        log.info("Rebuilt product stats for {} stores ({} failed)", storeIds.size() - failed, failed);
+    }
+}
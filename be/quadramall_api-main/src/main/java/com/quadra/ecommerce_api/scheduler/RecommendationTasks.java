@@ -0,0 +1,42 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.ml.ItemCooccurrenceRecommender;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationTasks {
+
+    private final ItemCooccurrenceRecommender cooccurrenceRecommender;
+
+    /**
+     * Nạp ma trận gợi ý từ file / user_behavior_log khi ứng dụng khởi động xong, trong lúc nạp gợi ý trả về ít hơn
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        try {
+            cooccurrenceRecommender.warmUp();
+        } catch (Exception e) {
+            log.error("Error warming up co-occurrence recommender: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lưu ma trận ra file để lần khởi động sau không phải phát lại toàn bộ hành vi
+     */
+    @Scheduled(fixedDelayString = "${recommendation.cooc.snapshot-interval-ms:600000}",
+            initialDelayString = "${recommendation.cooc.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        try {
+            cooccurrenceRecommender.writeSnapshot();
+        } catch (Exception e) {
+            log.error("Error saving co-occurrence snapshot: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.shiping.DeliveryService;
+import com.quadra.ecommerce_api.service.shiping.ShipperDispatchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShipperDispatchTasks {
+
+    private final ShipperDispatchService shipperDispatchService;
+    private final DeliveryService deliveryService;
+
+    /**
+     * Điền mã tỉnh còn thiếu của assignment cũ rồi dựng hàng đợi đơn chờ nhận khi ứng dụng khởi động xong,
+     * trong lúc dựng danh sách vẫn đọc từ MySQL
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        try {
+            deliveryService.backfillProvinceCodes();
+        } catch (Exception e) {
+            log.error("Error backfilling delivery assignment province codes: {}", e.getMessage());
+        }
+        rebuild();
+    }
+
+    /**
+     * Dựng lại định kỳ để sửa những thay đổi node này bỏ lỡ (message pub/sub bị mất, cập nhật ngoài ứng dụng...)
+     */
+    @Scheduled(fixedDelayString = "${shipping.dispatch.rebuild-interval-ms:60000}",
+            initialDelayString = "${shipping.dispatch.rebuild-interval-ms:60000}")
+    public void rebuild() {
+        try {
+            shipperDispatchService.rebuild();
+        } catch (Exception e) {
+            log.error("Error rebuilding shipper dispatch queue: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.base.TaxonomySnapshotService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TaxonomySnapshotTasks {
+
+    private final TaxonomySnapshotService taxonomySnapshotService;
+
+    /**
+     * Làm mới ảnh chụp loại hàng, phòng khi node bỏ lỡ message thay đổi qua Redis
+     */
+    @Scheduled(fixedDelayString = "${taxonomy.refresh-interval-ms:600000}", initialDelayString = "${taxonomy.refresh-interval-ms:600000}")
+    public void refresh() {
+        try {
+            taxonomySnapshotService.refresh();
+        } catch (Exception e) {
+            log.error("Error refreshing taxonomy snapshot: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.quadra.ecommerce_api.scheduler;
+
+import com.quadra.ecommerce_api.service.chatBot.WebSocketPresenceService;
+import com.quadra.ecommerce_api.service.chatBot.WebSocketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebSocketPresenceTasks {
+
+    private final WebSocketPresenceService presenceService;
+    private final WebSocketService webSocketService;
+
+    /**
+     * Gia hạn presence của node và các user đang kết nối, phải chạy dày hơn websocket.presence.ttl-seconds
+     */
+    @Scheduled(fixedDelayString = "${websocket.presence.heartbeat-interval-ms:20000}")
+    public void heartbeat() {
+        try {
+            presenceService.heartbeat();
+        } catch (Exception e) {
+            log.error("Error sending WebSocket presence heartbeat: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.presence.cleanup-interval-ms:60000}")
+    public void cleanupStaleConnections() {
+        try {
+            webSocketService.cleanupStaleConnections();
+        } catch (Exception e) {
+            log.error("Error cleaning up stale WebSocket connections: {}", e.getMessage());
+        }
+    }
+}
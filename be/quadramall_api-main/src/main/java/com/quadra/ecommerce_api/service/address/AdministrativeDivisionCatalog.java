@@ -0,0 +1,257 @@
+package com.quadra.ecommerce_api.service.address;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quadra.ecommerce_api.dto.custom.address.ProvinceResponse;
+import com.quadra.ecommerce_api.entity.address.District;
+import com.quadra.ecommerce_api.entity.address.Province;
+import com.quadra.ecommerce_api.entity.address.Ward;
+import com.quadra.ecommerce_api.exception.ExCustom;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Danh mục tỉnh / quận huyện / phường xã nạp 1 lần lúc khởi động từ file JSON (address.catalog.location,
+ * cùng định dạng với provinces.open-api.vn ?depth=3). Tên được so khớp không phân biệt dấu, hoa thường và tiền tố
+ * "Tỉnh" / "Thành phố", trả về mã tỉnh chuẩn hoá để tính phí ship và lọc đơn theo tỉnh.
+ * File đóng gói kèm ứng dụng chỉ có 63 tỉnh / thành (chưa có quận huyện, phường xã): chỉ danh sách tỉnh
+ * và tra mã tỉnh được phục vụ hoàn toàn tại chỗ. Quận huyện / phường xã vẫn lấy từ API ngoài ở lần đầu rồi
+ * giữ trong bộ nhớ (tắt bằng address.catalog.remote-fallback=false); API ngoài lỗi thì trả 503 và lần sau gọi lại.
+ * Muốn bỏ hẳn API ngoài thì trỏ address.catalog.location tới bản dump ?depth=3 đầy đủ.
+ */
+@Service
+@Slf4j
+public class AdministrativeDivisionCatalog {
+
+    private static final String REMOTE_API_URL = "https://provinces.open-api.vn/api";
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final List<String> NAME_PREFIXES = List.of("thanh pho ", "tinh ", "tp ");
+    // Cách viết tắt thường gặp trong địa chỉ nhập tay
+    private static final Map<String, String> ALIASES = Map.of(
+            "hcm", "79",
+            "tphcm", "79",
+            "sai gon", "79",
+            "hue", "46",
+            "vung tau", "77",
+            "ba ria", "77"
+    );
+
+    private final ObjectMapper objectMapper;
+    private final RestTemplate restTemplate;
+    private final Resource location;
+    private final boolean remoteFallback;
+
+    private Map<String, Province> provincesByCode = Map.of();
+    // Khoá đã chuẩn hoá ("ho chi minh", "ha noi"...) → mã tỉnh, dùng cho tra cứu chính xác và theo tiền tố
+    private NavigableMap<String, String> provinceCodesByKey = new TreeMap<>();
+    private final Map<String, List<District>> districtsByProvince = new ConcurrentHashMap<>();
+    private final Map<String, List<Ward>> wardsByDistrict = new ConcurrentHashMap<>();
+    private String version;
+
+    record DatasetFile(String version, List<ProvinceResponse> provinces) {
+    }
+
+    public AdministrativeDivisionCatalog(ObjectMapper objectMapper,
+                                         RestTemplate restTemplate,
+                                         @Value("${address.catalog.location:classpath:address/vn-administrative-divisions.json}") Resource location,
+                                         @Value("${address.catalog.remote-fallback:true}") boolean remoteFallback) {
+        this.objectMapper = objectMapper;
+        this.restTemplate = restTemplate;
+        this.location = location;
+        this.remoteFallback = remoteFallback;
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        DatasetFile dataset;
+        try (InputStream in = location.getInputStream()) {
+            dataset = objectMapper.readerFor(DatasetFile.class)
+                    .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(in);
+        }
+
+        Map<String, Province> provinces = new LinkedHashMap<>();
+        NavigableMap<String, String> keys = new TreeMap<>();
+        int districtCount = 0;
+        for (ProvinceResponse source : dataset.provinces()) {
+            String code = String.valueOf(source.getCode());
+            Province province = new Province();
+            province.setName(source.getName());
+            province.setCode(code);
+            province.setDivisionType(source.getDivisionType());
+            provinces.put(code, province);
+            keys.put(normalizeName(source.getName()), code);
+
+            if (source.getDistricts() == null || source.getDistricts().isEmpty()) continue;
+            districtsByProvince.put(code, detachWards(source.getDistricts()));
+            districtCount += source.getDistricts().size();
+        }
+        ALIASES.forEach(keys::putIfAbsent);
+
+        this.provincesByCode = Collections.unmodifiableMap(provinces);
+        this.provinceCodesByKey = Collections.unmodifiableNavigableMap(keys);
+        this.version = dataset.version();
+        log.info("Loaded administrative divisions {}: {} provinces, {} districts, {} wards", version,
+                provinces.size(), districtCount, wardsByDistrict.values().stream().mapToInt(List::size).sum());
+        if (districtCount == 0) {
+            log.warn("Administrative division catalog {} has no districts, district / ward lookups use the remote API{}",
+                    location.getDescription(), remoteFallback ? "" : " (disabled, they will be empty)");
+        }
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<Province> getProvinces() {
+        return List.copyOf(provincesByCode.values());
+    }
+
+    public Optional<Province> findProvince(String provinceCode) {
+        return Optional.ofNullable(provinceCode).map(String::trim).map(provincesByCode::get);
+    }
+
+    public List<District> getDistricts(String provinceCode) {
+        List<District> districts = districtsByProvince.get(provinceCode);
+        if (districts != null) return districts;
+        if (!remoteFallback || !provincesByCode.containsKey(provinceCode)) return List.of();
+
+        ProvinceResponse response;
+        try {
+            response = restTemplate.getForObject(
+                    REMOTE_API_URL + "/p/" + provinceCode + "?depth=2", ProvinceResponse.class);
+        } catch (RestClientException e) {
+            // Không lưu kết quả lỗi, lần gọi sau thử lại
+            log.warn("Error loading districts of province {} from remote API: {}", provinceCode, e.getMessage());
+            throw new ExCustom(HttpStatus.SERVICE_UNAVAILABLE, "Chưa tải được danh sách quận / huyện, vui lòng thử lại sau");
+        }
+        if (response == null || response.getDistricts() == null) return List.of();
+
+        districts = detachWards(response.getDistricts());
+        districtsByProvince.put(provinceCode, districts);
+        return districts;
+    }
+
+    public List<Ward> getWards(String districtCode) {
+        List<Ward> wards = wardsByDistrict.get(districtCode);
+        if (wards != null) return wards;
+        if (!remoteFallback || !districtCode.chars().allMatch(Character::isDigit)) return List.of();
+
+        District district;
+        try {
+            district = restTemplate.getForObject(
+                    REMOTE_API_URL + "/d/" + districtCode + "?depth=2", District.class);
+        } catch (RestClientException e) {
+            log.warn("Error loading wards of district {} from remote API: {}", districtCode, e.getMessage());
+            throw new ExCustom(HttpStatus.SERVICE_UNAVAILABLE, "Chưa tải được danh sách phường / xã, vui lòng thử lại sau");
+        }
+        wards = district == null || district.getWards() == null ? List.of() : List.copyOf(district.getWards());
+        wardsByDistrict.put(districtCode, wards);
+        return wards;
+    }
+
+    /**
+     * Mã tỉnh của 1 tên tỉnh viết tự do: "Thành phố Hồ Chí Minh", "TP. HCM", "ho chi minh" → "79".
+     * Chấp nhận cả mã tỉnh.
+     */
+    public Optional<String> resolveProvinceCode(String provinceName) {
+        if (provinceName == null || provinceName.isBlank()) return Optional.empty();
+
+        String trimmed = provinceName.trim();
+        if (provincesByCode.containsKey(trimmed)) return Optional.of(trimmed);
+        return Optional.ofNullable(provinceCodesByKey.get(normalizeName(trimmed)));
+    }
+
+    /**
+     * Mã tỉnh của 1 địa chỉ đầy đủ phân tách bằng dấu phẩy, tỉnh được tìm từ phần cuối trở về trước
+     */
+    public Optional<String> resolveProvinceCodeFromAddress(String address) {
+        if (address == null) return Optional.empty();
+
+        String[] parts = address.split(",");
+        for (int i = parts.length - 1; i >= 0; i--) {
+            Optional<String> code = resolveProvinceCode(parts[i]);
+            if (code.isPresent()) return code;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Tỉnh có tên bắt đầu bằng chuỗi nhập vào, không phân biệt dấu: "da" → Đà Nẵng, Đắk Lắk, Đắk Nông
+     */
+    public List<Province> searchProvinces(String prefix) {
+        if (prefix == null || prefix.isBlank()) return getProvinces();
+
+        String key = normalizeName(prefix);
+        Set<String> codes = new LinkedHashSet<>(
+                provinceCodesByKey.subMap(key, true, key + Character.MAX_VALUE, false).values());
+        List<Province> result = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            result.add(provincesByCode.get(code));
+        }
+        return result;
+    }
+
+    /**
+     * 2 tên tỉnh có cùng 1 tỉnh không; tên không có trong danh mục thì so sánh sau khi chuẩn hoá
+     */
+    public boolean isSameProvince(String provinceA, String provinceB) {
+        Optional<String> codeA = resolveProvinceCode(provinceA);
+        Optional<String> codeB = resolveProvinceCode(provinceB);
+        if (codeA.isPresent() && codeB.isPresent()) {
+            return codeA.get().equals(codeB.get());
+        }
+        return provinceA != null && provinceB != null && normalizeName(provinceA).equals(normalizeName(provinceB));
+    }
+
+    // Tách phường xã vào bảng riêng, danh sách huyện trả về không kèm wards như API ?depth=2
+    private List<District> detachWards(List<District> districts) {
+        for (District district : districts) {
+            if (district.getWards() != null && !district.getWards().isEmpty()) {
+                wardsByDistrict.put(String.valueOf(district.getCode()), List.copyOf(district.getWards()));
+            }
+            district.setWards(List.of());
+        }
+        return List.copyOf(districts);
+    }
+
+    /**
+     * Bỏ dấu, ký tự đặc biệt và tiền tố hành chính: "Tỉnh Bà Rịa - Vũng Tàu" → "ba ria vung tau"
+     */
+    static String normalizeName(String name) {
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("")
+                .replace('đ', 'd').replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+        String key = NON_ALPHANUMERIC.matcher(folded).replaceAll(" ").trim();
+        for (String prefix : NAME_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return key.substring(prefix.length());
+            }
+        }
+        return key;
+    }
+}
@@ -10,6 +10,7 @@ import com.quadra.ecommerce_api.enums.store.StoreStatus;
 import com.quadra.ecommerce_api.repository.store.SellerRegistrationRepo;
 import com.quadra.ecommerce_api.repository.store.StoreRepo;
 import com.quadra.ecommerce_api.repository.user.RoleRepo;
+import com.quadra.ecommerce_api.service.auth.PrincipalCacheService;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.transaction.Transactional;
@@ -31,6 +32,7 @@ public class AdminSellerRegistrationService {
     private final StoreRepo storeRepository;
     private final RoleRepo roleRepository;
     private final JavaMailSender mailSender;
+    private final PrincipalCacheService principalCacheService;
 
     /**
      * Lấy danh sách yêu cầu đăng ký cửa hàng, có thể lọc theo trạng thái.
@@ -77,6 +79,7 @@ public class AdminSellerRegistrationService {
                 .orElseThrow(() -> new IllegalArgumentException("Vai trò SELLER không tồn tại"));
         registration.getUser().getRoles().add(sellerRole);
         sellerRegistrationRepository.save(registration); // Lưu lại để cập nhật mối quan hệ @ManyToMany
+        principalCacheService.evict(registration.getUser().getId());
 
         // Tạo bản ghi trong bảng stores
         String slug = generateUniqueSlug(registration.getStoreName(), id);
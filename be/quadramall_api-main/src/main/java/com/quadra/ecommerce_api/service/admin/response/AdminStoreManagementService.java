@@ -3,16 +3,20 @@ package com.quadra.ecommerce_api.service.admin.response;
 
 import com.quadra.ecommerce_api.dto.admin.request.LockStoreRequestDto;
 import com.quadra.ecommerce_api.dto.admin.response.store.*;
+import com.quadra.ecommerce_api.dto.custom.orderManagerment.response.OrderStatsResponse;
 import com.quadra.ecommerce_api.entity.store.Store;
+import com.quadra.ecommerce_api.entity.store.StoreStat;
 import com.quadra.ecommerce_api.enums.store.StoreStatus;
 import com.quadra.ecommerce_api.repository.product.ProductRepo;
-import com.quadra.ecommerce_api.repository.product.ProductStatsRepo;
 import com.quadra.ecommerce_api.repository.store.StoreRepo;
+import com.quadra.ecommerce_api.repository.store.StoreStatRepo;
+import com.quadra.ecommerce_api.service.orderManagement.OrderStatsService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,7 +28,8 @@ public class AdminStoreManagementService {
 
     private final StoreRepo storeRepo;
     private final ProductRepo productRepo;
-    private final ProductStatsRepo productStatsRepo;
+    private final StoreStatRepo storeStatRepo;
+    private final OrderStatsService orderStatsService;
 
     public List<StoreManagementResponseDto> getStoreManagementData(String status) {
         // Chuyển String status thành StoreStatus enum
@@ -76,36 +81,24 @@ public class AdminStoreManagementService {
                             .collect(Collectors.toList())
                             : Collections.emptyList();
 
-                    // Thống kê nghiệp vụ
-                    Object[] statsData = productStatsRepo.findProductStatsByStoreId(store.getId());
-                    ProductStatsDto statsDto;
-                    if (statsData == null || statsData.length < 5) {
-                        statsDto = ProductStatsDto.builder()
-                                .totalOrders(0)
-                                .completionRate(BigDecimal.ZERO)
-                                .averageRating(BigDecimal.ZERO)
-                                .totalRevenue(BigDecimal.ZERO)
-                                .build();
-                    } else {
-                        Long totalOrders = statsData[0] != null ? (Long) statsData[0] : 0L;
-                        Long deliveredOrders = statsData[1] != null ? (Long) statsData[1] : 0L;
-                        Long totalOrdersForRate = statsData[2] != null ? (Long) statsData[2] : 0L;
-                        Double averageRating = statsData[3] != null ? (Double) statsData[3] : null;
-                        BigDecimal totalRevenue = statsData[4] != null ? (BigDecimal) statsData[4] : null;
-
-                        BigDecimal completionRate = totalOrdersForRate > 0
-                                ? BigDecimal.valueOf(deliveredOrders)
-                                .multiply(BigDecimal.valueOf(100.0))
-                                .divide(BigDecimal.valueOf(totalOrdersForRate), 2, BigDecimal.ROUND_HALF_UP)
-                                : BigDecimal.ZERO;
-
-                        statsDto = ProductStatsDto.builder()
-                                .totalOrders(totalOrders.intValue())
-                                .completionRate(completionRate)
-                                .averageRating(averageRating != null ? new BigDecimal(averageRating.toString()) : BigDecimal.ZERO)
-                                .totalRevenue(totalRevenue != null ? totalRevenue : BigDecimal.ZERO)
-                                .build();
-                    }
+                    // Thống kê nghiệp vụ: số đơn từ store_order_stats, đánh giá / doanh thu đã bán từ store_stats
+                    OrderStatsResponse orderStats = orderStatsService.getStats(List.of(store.getId()));
+                    StoreStat storeStat = storeStatRepo.findById(store.getId())
+                            .orElseGet(() -> StoreStat.builder().storeId(store.getId()).build());
+
+                    long totalOrders = orderStats.getTotalOrders();
+                    BigDecimal completionRate = totalOrders > 0
+                            ? BigDecimal.valueOf(orderStats.getDeliveredOrders())
+                            .multiply(BigDecimal.valueOf(100.0))
+                            .divide(BigDecimal.valueOf(totalOrders), 2, RoundingMode.HALF_UP)
+                            : BigDecimal.ZERO;
+
+                    ProductStatsDto statsDto = ProductStatsDto.builder()
+                            .totalOrders((int) totalOrders)
+                            .completionRate(completionRate)
+                            .averageRating(BigDecimal.valueOf(storeStat.getAverageRating()))
+                            .totalRevenue(storeStat.getRevenue())
+                            .build();
 
                     return StoreManagementResponseDto.builder()
                             .store(storeDto)
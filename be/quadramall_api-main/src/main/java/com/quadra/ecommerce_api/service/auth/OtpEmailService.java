@@ -1,19 +1,23 @@
 package com.quadra.ecommerce_api.service.auth;
-import jakarta.mail.internet.InternetAddress;
+import com.quadra.ecommerce_api.service.notification.EmailOutboxService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
+/**
+ * Soạn email OTP / đặt lại mật khẩu rồi đưa vào EmailOutboxService, không gửi SMTP trên luồng request
+ */
 @Service
 public class OtpEmailService {
 
+    // Cùng thời hạn với OTP / reset token lưu trong Redis, email gửi muộn hơn thì mã đã vô hiệu
+    private static final Duration CODE_VALIDITY = Duration.ofMinutes(5);
+
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutboxService emailOutboxService;
 
     @Value("PUBLIC_DOMAIN")
     private String PUBLIC_DOMAIN;
@@ -28,24 +32,7 @@ public class OtpEmailService {
 
         String content = "Mã OTP của bạn là: " + otp + "\nMã này có hiệu lực trong 5 phút.";
 
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(toEmail);
-
-            // 👇 Đây là dòng quan trọng — đổi tên người gửi:
-            helper.setFrom(new InternetAddress("tavandat205@gmail.com", "QuadraMall"));
-
-            helper.setSubject(subject);
-            helper.setText(content, false);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Gửi email thất bại", e);
-        } catch (Exception e) {
-            throw new RuntimeException("Lỗi khi tạo địa chỉ email", e);
-        }
+        emailOutboxService.enqueue(toEmail, subject, content, LocalDateTime.now().plus(CODE_VALIDITY));
     }
 
     public void sendResetLink(String toEmail, String resetToken) {
@@ -54,40 +41,11 @@ public class OtpEmailService {
         String content = "Bạn đã yêu cầu đặt lại mật khẩu. Vui lòng nhấp vào liên kết dưới đây để đặt lại mật khẩu:\n" +
                 resetUrl + "\nLiên kết này có hiệu lực trong 5 phút.";
 
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(toEmail);
-            helper.setFrom(new InternetAddress("tavandat205@gmail.com", "QuadraMall"));
-            helper.setSubject(subject);
-            helper.setText(content, false);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Gửi email đặt lại mật khẩu thất bại", e);
-        } catch (Exception e) {
-            throw new RuntimeException("Lỗi khi tạo địa chỉ email", e);
-        }
+        emailOutboxService.enqueue(toEmail, subject, content, LocalDateTime.now().plus(CODE_VALIDITY));
     }
 
     public void sendNotification(String toEmail, String content) {
         String subject = "QuadraMall - Bạn vừa thay đổi mật khẩu thành công.";
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(toEmail);
-            helper.setFrom(new InternetAddress("tavandat205@gmail.com", "QuadraMall"));
-            helper.setSubject(subject);
-            helper.setText(content, false);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Gửi email đặt lại mật khẩu thất bại", e);
-        } catch (Exception e) {
-            throw new RuntimeException("Lỗi khi tạo địa chỉ email", e);
-        }
-
+        emailOutboxService.enqueue(toEmail, subject, content);
     }
 }
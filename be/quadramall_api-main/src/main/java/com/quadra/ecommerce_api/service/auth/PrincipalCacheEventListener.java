@@ -0,0 +1,40 @@
+package com.quadra.ecommerce_api.service.auth;
+
+import com.quadra.ecommerce_api.entity.user.User;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+/**
+ * Xoá principal đã cache khi bản ghi User thay đổi (mật khẩu, refresh token, hồ sơ, trạng thái).
+ * Thay đổi role (bảng user_roles) được evict trực tiếp ở nơi gán role.
+ */
+@Component
+@RequiredArgsConstructor
+public class PrincipalCacheEventListener implements PostUpdateEventListener, PostDeleteEventListener {
+
+    private final PrincipalCacheService principalCacheService;
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof User user) {
+            principalCacheService.evict(user.getId());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof User user) {
+            principalCacheService.evict(user.getId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
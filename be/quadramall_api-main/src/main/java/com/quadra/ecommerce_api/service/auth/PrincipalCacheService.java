@@ -0,0 +1,154 @@
+package com.quadra.ecommerce_api.service.auth;
+
+import com.quadra.ecommerce_api.entity.user.User;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache principal (User + roles) cho JwtAuthenticationFilter để request đã xác thực không phải truy vấn DB.
+ * Mỗi node giữ 1 LRU cục bộ có TTL; khi user đổi role / thông tin thì evict được phát qua Redis pub/sub
+ * để mọi node cùng xoá.
+ */
+@Service
+@Slf4j
+public class PrincipalCacheService {
+
+    private static final String EVICT_CHANNEL = "auth:principal:evict";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final Map<Long, Entry> cache;
+    // Tăng mỗi lần evict, để không ghi vào cache dữ liệu đã nạp trước khi evict xảy ra
+    private long evictGeneration;
+
+    private record Entry(User user, long expiresAt) {
+    }
+
+    public PrincipalCacheService(
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            @Value("${auth.principal-cache.max-size:10000}") int maxSize,
+            @Value("${auth.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = Duration.ofSeconds(ttlSeconds).toMillis();
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > PrincipalCacheService.this.maxSize;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                evictLocal(Long.parseLong(body));
+            } catch (NumberFormatException e) {
+                log.warn("Invalid principal evict message: {}", body);
+            }
+        }, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    /**
+     * Lấy principal từ cache, nếu không có thì gọi loader (trả null nếu user không tồn tại).
+     * Luôn trả về bản sao để request này có sửa User cũng không ảnh hưởng request khác.
+     */
+    public User getOrLoad(Long userId, Function<Long, User> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        long generation;
+        synchronized (cache) {
+            entry = cache.get(userId);
+            generation = evictGeneration;
+        }
+        if (entry != null && entry.expiresAt() > now) {
+            return copyOf(entry.user());
+        }
+
+        User loaded = loader.apply(userId);
+        if (loaded == null) return null;
+
+        User snapshot = copyOf(loaded);
+        synchronized (cache) {
+            if (generation == evictGeneration) {
+                cache.put(userId, new Entry(snapshot, now + ttlMillis));
+            }
+        }
+        return copyOf(snapshot);
+    }
+
+    /**
+     * Xoá principal của user trên mọi node. Nếu đang trong transaction thì chỉ xoá sau khi commit,
+     * tránh request khác nạp lại dữ liệu cũ trước khi thay đổi được ghi xuống DB.
+     */
+    public void evict(Long userId) {
+        if (userId == null) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishEvict(userId);
+                }
+            });
+        } else {
+            publishEvict(userId);
+        }
+    }
+
+    private void publishEvict(Long userId) {
+        evictLocal(userId);
+        try {
+            redisTemplate.convertAndSend(EVICT_CHANNEL, userId.toString());
+        } catch (Exception e) {
+            // Node khác sẽ tự hết hạn theo TTL
+            log.error("Error publishing principal evict for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void evictLocal(Long userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+            evictGeneration++;
+        }
+    }
+
+    private User copyOf(User user) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .password(user.getPassword())
+                .fullName(user.getFullName())
+                .provider(user.getProvider())
+                .providerId(user.getProviderId())
+                .refreshToken(user.getRefreshToken())
+                .phone(user.getPhone())
+                .avatarUrl(user.getAvatarUrl())
+                .status(user.getStatus())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .roles(new HashSet<>(user.getRoles()))
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.quadra.ecommerce_api.service.base;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.quadra.ecommerce_api.dto.base.product.ProductDTO;
 import com.quadra.ecommerce_api.dto.custom.product.response.ProductCardDTO;
 import com.quadra.ecommerce_api.entity.product.Product;
@@ -7,22 +8,18 @@ import com.quadra.ecommerce_api.entity.user.Favorite;
 import com.quadra.ecommerce_api.entity.user.User;
 import com.quadra.ecommerce_api.enums.redis.RedisCacheKey;
 import com.quadra.ecommerce_api.mapper.base.product.ProductMapper;
-import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
-import com.quadra.ecommerce_api.repository.order.ProductReviewRepo;
 import com.quadra.ecommerce_api.repository.product.ProductRepo;
-import com.quadra.ecommerce_api.repository.product.ProductVariantRepo;
 import com.quadra.ecommerce_api.repository.user.FavoriteRepo;
 import com.quadra.ecommerce_api.repository.user.UserRepo;
+import com.quadra.ecommerce_api.service.home.ProductCardEnricher;
 import com.quadra.ecommerce_api.utils.RedisCacheUtil;
 
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,28 +27,22 @@ public class FavoriteService {
     private final FavoriteRepo favoriteRepo;
     private final UserRepo userRepo;
     private final ProductRepo productRepo;
-    private final ProductVariantRepo productVariantRepo;
     private final ProductMapper productMapper;
-    private final OrderItemRepo orderItemRepo;
-    private final ProductReviewRepo productReviewRepo;
+    private final ProductCardEnricher productCardEnricher;
     private final RedisCacheUtil redisCacheUtil;
 
     @Autowired
     public FavoriteService(FavoriteRepo favoriteRepo,
                            UserRepo userRepo,
                            ProductRepo productRepo,
-                           ProductVariantRepo productVariantRepo,
                            ProductMapper productMapper,
-                           OrderItemRepo orderItemRepo,
-                           ProductReviewRepo productReviewRepo,
+                           ProductCardEnricher productCardEnricher,
                            RedisCacheUtil redisCacheUtil) {
         this.favoriteRepo = favoriteRepo;
         this.userRepo = userRepo;
         this.productRepo = productRepo;
-        this.productVariantRepo = productVariantRepo;
         this.productMapper = productMapper;
-        this.orderItemRepo = orderItemRepo;
-        this.productReviewRepo = productReviewRepo;
+        this.productCardEnricher = productCardEnricher;
         this.redisCacheUtil = redisCacheUtil;
     }
 
@@ -71,12 +62,14 @@ public class FavoriteService {
                 .product(product)
                 .build();
         favoriteRepo.save(favorite);
+        redisCacheUtil.evict(RedisCacheKey.FAVORITE_PRODUCT_CARDS, userId);
     }
 
     public void removeFavorite(Long userId, Long productId) {
         Favorite favorite = favoriteRepo.findByUserIdAndProductId(userId, productId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy sản phẩm yêu thích"));
         favoriteRepo.delete(favorite);
+        redisCacheUtil.evict(RedisCacheKey.FAVORITE_PRODUCT_CARDS, userId);
     }
 
     public List<ProductDTO> findFavoriteProducts(Long userId) {
@@ -88,24 +81,29 @@ public class FavoriteService {
     }
 
     public List<ProductCardDTO> findFavoriteProductCards(Long userId) {
-        List<Favorite> favorites = favoriteRepo.findByUserId(userId);
-        return favorites.stream()
+        return redisCacheUtil.getOrLoad(RedisCacheKey.FAVORITE_PRODUCT_CARDS, new Object[]{userId},
+                new TypeReference<List<ProductCardDTO>>() {}, () -> loadFavoriteProductCards(userId));
+    }
+
+    private List<ProductCardDTO> loadFavoriteProductCards(Long userId) {
+        List<Product> products = favoriteRepo.findByUserId(userId).stream()
                 .map(Favorite::getProduct)
+                .toList();
+        Map<Long, ProductCardEnricher.CardMetrics> metricsById = productCardEnricher.enrich(
+                products.stream().map(Product::getId).toList());
+
+        return products.stream()
                 .map(product -> {
+                    ProductCardEnricher.CardMetrics metrics = metricsById.get(product.getId());
+
                     ProductCardDTO cardDTO = new ProductCardDTO();
                     cardDTO.setId(product.getId());
                     cardDTO.setName(product.getName());
                     cardDTO.setSlug(product.getSlug());
                     cardDTO.setThumbnailUrl(product.getThumbnailUrl());
-                    
-                    // Lấy giá minimum từ product variants
-                    BigDecimal minPrice = productVariantRepo.findMinPriceByProductId(product.getId())
-                            .orElse(BigDecimal.ZERO);
-                    cardDTO.setPrice(minPrice.doubleValue());
-                    
-                    // Tạm thời set rating và soldCount = 0, có thể cần thêm query để tính toán
-                    cardDTO.setRating(findAverageRatingForProduct(product.getId()));
-                    cardDTO.setSoldCount(findSoldCount(product.getId()));
+                    cardDTO.setPrice(metrics.price());
+                    cardDTO.setRating(metrics.rating());
+                    cardDTO.setSoldCount(metrics.soldCount());
                     cardDTO.setFav(true); // Đây là sản phẩm yêu thích nên luôn true
                     
                     // TODO: Set seller info if needed - cần thêm SellerInfoDTO mapping
@@ -115,29 +113,5 @@ public class FavoriteService {
                 })
                 .collect(Collectors.toList());
     }
-
-        public Long findSoldCount(Long productId) {
-        String key = RedisCacheKey.PRODUCT_SOLD_COUNT.key(productId);
-        Duration ttl = RedisCacheKey.PRODUCT_SOLD_COUNT.ttl();
-
-        Long cached = redisCacheUtil.getLong(key);
-        if (cached != null) return cached;
-
-        Long actual = Optional.ofNullable(orderItemRepo.calculateSoldCount(productId)).orElse(0L);
-        redisCacheUtil.setLong(key, actual, ttl);
-        return actual;
-    }
-
-    public double findAverageRatingForProduct(Long productId) {
-        String key = RedisCacheKey.PRODUCT_RATING.key(productId);
-        Duration ttl = RedisCacheKey.PRODUCT_RATING.ttl();
-
-        Double cached = redisCacheUtil.getDouble(key);
-        if (cached != null) return cached;
-
-        double rating = productReviewRepo.findAverageRatingByProductId(productId).orElse(0.0);
-        redisCacheUtil.setDouble(key, rating, ttl);
-          return rating;
-    }
 }
 
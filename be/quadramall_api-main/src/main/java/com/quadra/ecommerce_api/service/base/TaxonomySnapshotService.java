@@ -0,0 +1,156 @@
+package com.quadra.ecommerce_api.service.base;
+
+import com.quadra.ecommerce_api.repository.store.CategoryRepo;
+import com.quadra.ecommerce_api.repository.store.ItemTypeRepo;
+import com.quadra.ecommerce_api.utils.KeyedSnapshotCache;
+import com.quadra.ecommerce_api.utils.TransactionHooks;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giữ ảnh chụp TaxonomyTree của loại hàng (toàn sàn, gồm cả loại hàng đã ẩn) và danh mục của từng shop.
+ * Người đọc chỉ đọc tham chiếu hiện tại, không khoá; mỗi lần ghi (ItemTypeService, CategoryCommandService...)
+ * dựng lại cây mới từ MySQL sau khi commit rồi thay tham chiếu, nên không ai thấy cây đang dựng dở.
+ * Cây danh mục của shop được nạp riêng từng shop (KeyedSnapshotCache), không chờ shop khác hay cây loại hàng.
+ * Node khác được báo qua Redis pub/sub; cây loại hàng được làm mới định kỳ (TaxonomySnapshotTasks),
+ * cây danh mục shop được nạp lại khi cũ hơn max-age-ms.
+ */
+@Service
+@Slf4j
+public class TaxonomySnapshotService {
+
+    private static final String CHANGED_CHANNEL = "taxonomy:changed";
+    private static final String STORE_CATEGORIES_CHANNEL = "taxonomy:store-categories:changed";
+    private static final String ITEM_TYPES_MESSAGE = "item-types";
+
+    private final ItemTypeRepo itemTypeRepo;
+    private final CategoryRepo categoryRepo;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final AtomicLong versions = new AtomicLong();
+    private volatile TaxonomyTree<ItemTypeNode> itemTypes;
+    private final KeyedSnapshotCache<Long, TaxonomyTree<CategoryNode>> storeCategories;
+    // Dựng lại cây loại hàng không được chạy chồng lên nhau, để cây cũ không ghi đè cây mới hơn
+    private final Object itemTypesLock = new Object();
+
+    public record ItemTypeNode(Long id, Long parentId) {
+    }
+
+    public record CategoryNode(Long id, String name, String slug, String description, Long parentId) {
+    }
+
+    public TaxonomySnapshotService(ItemTypeRepo itemTypeRepo,
+                                   CategoryRepo categoryRepo,
+                                   StringRedisTemplate redisTemplate,
+                                   RedisMessageListenerContainer listenerContainer,
+                                   @Value("${taxonomy.store-categories.max-stores:10000}") int maxStores,
+                                   @Value("${taxonomy.store-categories.max-age-ms:600000}") long maxAgeMs) {
+        this.itemTypeRepo = itemTypeRepo;
+        this.categoryRepo = categoryRepo;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.storeCategories = new KeyedSnapshotCache<>(STORE_CATEGORIES_CHANNEL, this::loadStore, Long::valueOf,
+                redisTemplate, maxStores, Duration.ofMillis(maxAgeMs));
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                if (ITEM_TYPES_MESSAGE.equals(body)) {
+                    rebuildItemTypes();
+                }
+            } catch (Exception e) {
+                log.error("Error applying taxonomy change {}: {}", body, e.getMessage());
+            }
+        }, new ChannelTopic(CHANGED_CHANNEL));
+        storeCategories.subscribe(listenerContainer);
+    }
+
+    /**
+     * Cây loại hàng, dựng lần đầu khi được dùng
+     */
+    public TaxonomyTree<ItemTypeNode> itemTypes() {
+        TaxonomyTree<ItemTypeNode> current = itemTypes;
+        return current != null ? current : rebuildItemTypes();
+    }
+
+    /**
+     * Cây danh mục của shop, dựng lần đầu khi được dùng
+     */
+    public TaxonomyTree<CategoryNode> storeCategories(Long storeId) {
+        return storeCategories.get(storeId);
+    }
+
+    /**
+     * Loại hàng vừa thay đổi: dựng lại sau khi transaction hiện tại (nếu có) commit và báo các node khác
+     */
+    public void itemTypesChanged() {
+        TransactionHooks.afterCommit(() -> {
+            rebuildItemTypes();
+            publish(ITEM_TYPES_MESSAGE);
+        });
+    }
+
+    /**
+     * Danh mục của shop vừa thay đổi
+     */
+    public void storeCategoriesChanged(Long storeId) {
+        storeCategories.changed(storeId);
+    }
+
+    /**
+     * Dựng lại cây loại hàng, phòng khi node bỏ lỡ message thay đổi
+     */
+    public void refresh() {
+        rebuildItemTypes();
+    }
+
+    private TaxonomyTree<ItemTypeNode> rebuildItemTypes() {
+        synchronized (itemTypesLock) {
+            List<ItemTypeNode> nodes = new ArrayList<>();
+            for (Object[] row : itemTypeRepo.findTaxonomyRows()) {
+                nodes.add(new ItemTypeNode(toLong(row[0]), toLong(row[1])));
+            }
+            TaxonomyTree<ItemTypeNode> tree = TaxonomyTree.of(versions.incrementAndGet(), nodes,
+                    ItemTypeNode::id, ItemTypeNode::parentId);
+            itemTypes = tree;
+            log.debug("Item type taxonomy rebuilt: version {}, {} nodes", tree.version(), tree.size());
+            return tree;
+        }
+    }
+
+    private TaxonomyTree<CategoryNode> loadStore(Long storeId) {
+        List<CategoryNode> nodes = new ArrayList<>();
+        for (Object[] row : categoryRepo.findTaxonomyRowsByStoreId(storeId)) {
+            nodes.add(new CategoryNode(toLong(row[0]), (String) row[1], (String) row[2], (String) row[3], toLong(row[4])));
+        }
+        return TaxonomyTree.of(versions.incrementAndGet(), nodes, CategoryNode::id, CategoryNode::parentId);
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(CHANGED_CHANNEL, message);
+        } catch (Exception e) {
+            // Node khác sẽ được sửa ở lần làm mới định kỳ
+            log.error("Error publishing taxonomy change {}: {}", message, e.getMessage());
+        }
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+}
@@ -0,0 +1,202 @@
+package com.quadra.ecommerce_api.service.base;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Ảnh chụp bất biến của 1 cây phân loại (loại hàng, danh mục shop), dùng chung giữa các luồng không cần khoá.
+ * Các nút được sắp theo thứ tự duyệt trước (pre-order), nên cây con của 1 nút là 1 đoạn liên tiếp:
+ * lấy id của cả cây con chỉ là tạo 1 subList, không truy vấn và không duyệt cây.
+ * Nút có cha không nằm trong cây (cha đã bị ẩn / xoá) được coi là gốc của cây con riêng nhưng không nằm trong rootIds().
+ */
+public final class TaxonomyTree<T> {
+
+    private final long version;
+    private final List<T> nodes;
+    private final Map<Long, Integer> indexById;
+    private final Long[] parentIds;
+    // Vị trí của nút trong thứ tự pre-order và kích thước cây con
+    private final int[] preorderStart;
+    private final int[] subtreeSize;
+    private final List<Long> preorderIds;
+    private final List<Long>[] ancestorPaths;
+    private final List<Long>[] childIds;
+    private final List<Long> rootIds;
+
+    @SuppressWarnings("unchecked")
+    private TaxonomyTree(long version, List<T> nodes, Function<T, Long> idOf, Function<T, Long> parentOf) {
+        int size = nodes.size();
+        this.version = version;
+        this.nodes = List.copyOf(nodes);
+        this.indexById = new HashMap<>(size * 2);
+        this.parentIds = new Long[size];
+        this.preorderStart = new int[size];
+        this.subtreeSize = new int[size];
+        this.ancestorPaths = new List[size];
+        this.childIds = new List[size];
+
+        for (int i = 0; i < size; i++) {
+            indexById.put(idOf.apply(this.nodes.get(i)), i);
+        }
+
+        List<Integer>[] children = new List[size];
+        List<Integer> subtreeRoots = new ArrayList<>();
+        List<Long> roots = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            children[i] = new ArrayList<>();
+        }
+        for (int i = 0; i < size; i++) {
+            T node = this.nodes.get(i);
+            Long parentId = parentOf.apply(node);
+            Integer parent = parentId != null ? indexById.get(parentId) : null;
+            parentIds[i] = parentId;
+            if (parent != null && parent != i) {
+                children[parent].add(i);
+            } else {
+                subtreeRoots.add(i);
+                if (parentId == null) roots.add(idOf.apply(node));
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            childIds[i] = children[i].stream().map(c -> idOf.apply(this.nodes.get(c))).toList();
+        }
+
+        Long[] order = new Long[size];
+        boolean[] visited = new boolean[size];
+        int position = 0;
+        for (int root : subtreeRoots) {
+            position = walk(root, position, order, visited, children, idOf);
+        }
+        // Nút nằm trong vòng lặp cha - con không tới được từ gốc nào: mỗi nút là 1 cây con riêng
+        for (int i = 0; i < size; i++) {
+            if (!visited[i]) {
+                position = walk(i, position, order, visited, children, idOf);
+            }
+        }
+        this.preorderIds = List.of(order);
+        this.rootIds = List.copyOf(roots);
+    }
+
+    // Duyệt pre-order không đệ quy, ghi vị trí bắt đầu và kích thước cây con của từng nút
+    private int walk(int start, int position, Long[] order, boolean[] visited, List<Integer>[] children,
+                     Function<T, Long> idOf) {
+        Deque<int[]> stack = new ArrayDeque<>();
+        Deque<Integer> path = new ArrayDeque<>();
+        stack.push(new int[]{start, 0});
+        while (!stack.isEmpty()) {
+            int[] frame = stack.peek();
+            int node = frame[0];
+            if (frame[1] == 0) {
+                visited[node] = true;
+                preorderStart[node] = position;
+                order[position++] = idOf.apply(nodes.get(node));
+                List<Long> ancestors = new ArrayList<>(path.size() + 1);
+                path.descendingIterator().forEachRemaining(index -> ancestors.add(idOf.apply(nodes.get(index))));
+                ancestors.add(order[position - 1]);
+                ancestorPaths[node] = List.copyOf(ancestors);
+                path.push(node);
+            }
+            if (frame[1] < children[node].size()) {
+                int child = children[node].get(frame[1]++);
+                if (!visited[child]) stack.push(new int[]{child, 0});
+            } else {
+                subtreeSize[node] = position - preorderStart[node];
+                path.pop();
+                stack.pop();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Dựng cây từ danh sách nút, anh em được sắp theo id tăng dần
+     */
+    public static <T> TaxonomyTree<T> of(long version, List<T> nodes, Function<T, Long> idOf, Function<T, Long> parentOf) {
+        List<T> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparing(idOf));
+        return new TaxonomyTree<>(version, sorted, idOf, parentOf);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean contains(Long id) {
+        return indexById.containsKey(id);
+    }
+
+    public T node(Long id) {
+        Integer index = indexById.get(id);
+        return index != null ? nodes.get(index) : null;
+    }
+
+    public List<Long> rootIds() {
+        return rootIds;
+    }
+
+    public List<Long> childIds(Long id) {
+        Integer index = indexById.get(id);
+        return index != null ? childIds[index] : List.of();
+    }
+
+    /**
+     * id của nút và toàn bộ cây con (pre-order); id không có trong cây thì chỉ trả về chính nó
+     */
+    public List<Long> descendantIds(Long id) {
+        Integer index = indexById.get(id);
+        if (index == null) return List.of(id);
+        return preorderIds.subList(preorderStart[index], preorderStart[index] + subtreeSize[index]);
+    }
+
+    /**
+     * Đường đi từ gốc tới nút (gồm cả nút)
+     */
+    public List<Long> ancestorIds(Long id) {
+        Integer index = indexById.get(id);
+        return index != null ? ancestorPaths[index] : List.of();
+    }
+
+    /**
+     * candidateId có nằm trong cây con của ancestorId (kể cả chính nó) hay không
+     */
+    public boolean isInSubtree(Long ancestorId, Long candidateId) {
+        Integer ancestor = indexById.get(ancestorId);
+        Integer candidate = indexById.get(candidateId);
+        if (ancestor == null || candidate == null) return ancestorId.equals(candidateId);
+        int start = preorderStart[ancestor];
+        return preorderStart[candidate] >= start && preorderStart[candidate] < start + subtreeSize[ancestor];
+    }
+
+    /**
+     * Chuyển cây sang DTO phân cấp (mỗi lần gọi tạo DTO mới). Nút có cha không nằm trong cây bị bỏ qua như trước.
+     */
+    public <D> List<D> mapTree(Function<T, D> mapper, BiConsumer<D, D> addChild) {
+        Object[] dtos = new Object[nodes.size()];
+        List<D> roots = new ArrayList<>(rootIds.size());
+        for (Long id : preorderIds) {
+            int index = indexById.get(id);
+            D dto = mapper.apply(nodes.get(index));
+            dtos[index] = dto;
+            Integer parent = parentIds[index] != null ? indexById.get(parentIds[index]) : null;
+            if (parentIds[index] == null) {
+                roots.add(dto);
+            } else if (parent != null && dtos[parent] != null) {
+                @SuppressWarnings("unchecked")
+                D parentDto = (D) dtos[parent];
+                addChild.accept(parentDto, dto);
+            }
+        }
+        return roots;
+    }
+}
@@ -1,44 +1,195 @@
 package com.quadra.ecommerce_api.service.base;
 
 import com.quadra.ecommerce_api.dto.custom.user.request.BehaviorRequest;
-import com.quadra.ecommerce_api.entity.product.Product;
-import com.quadra.ecommerce_api.entity.user.User;
-import com.quadra.ecommerce_api.entity.user.UserBehaviorLog;
-import com.quadra.ecommerce_api.exception.ResourceNotFound;
-import com.quadra.ecommerce_api.repository.product.ProductRepo;
-import com.quadra.ecommerce_api.repository.user.UserBehaviorLogRepo;
-import com.quadra.ecommerce_api.repository.user.UserRepo;
-import lombok.RequiredArgsConstructor;
-import org.springframework.stereotype.Service;
+import com.quadra.ecommerce_api.service.ml.ItemCooccurrenceRecommender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ghi nhận hành vi người dùng (xem, thích, thêm giỏ...) theo kiểu write-behind:
+ * request chỉ đẩy sự kiện vào buffer trong bộ nhớ, 1 luồng nền gom lại rồi ghi user_behavior_log bằng JDBC batch
+ * và gửi Kafka topic user_behaviors, mỗi batch-size sự kiện hoặc mỗi flush-interval-ms.
+ * Sự kiện đã ghi DB cũng được chuyển sang hàng đợi của ItemCooccurrenceRecommender (không chờ ma trận được cập nhật).
+ * Buffer đầy thì sự kiện mới bị bỏ (đếm ở metric user_behavior.dropped), không bao giờ chặn request.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class UserBehaviorService {
-    private final UserBehaviorLogRepo behaviorRepo;
-    private final ProductRepo productRepo;
-    private final UserRepo userRepo;
+
+    private static final String TOPIC = "user_behaviors";
+
+    // INSERT IGNORE: sản phẩm / user không tồn tại bị MySQL bỏ qua thay vì làm hỏng cả batch
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO user_behavior_log (user_id, product_id, behavior_type, behavior_time) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
     private final KafkaTemplate<String, BehaviorRequest> kafkaTemplate;
+    private final ItemCooccurrenceRecommender cooccurrenceRecommender;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private final Queue<BehaviorEvent> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferSize = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+    // Đặt trước khi tắt flusher: logBehavior không gửi thêm việc flush sớm, phần còn lại do stop() ghi nốt
+    private volatile boolean closed;
+
+    private final Counter acceptedCounter;
+    private final Counter droppedCounter;
+    private final Counter persistedCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+
+    public record BehaviorEvent(Long userId, Long productId, String behaviorType, LocalDateTime behaviorTime) {
+    }
+
+    public UserBehaviorService(JdbcTemplate jdbcTemplate,
+                               KafkaTemplate<String, BehaviorRequest> kafkaTemplate,
+                               ItemCooccurrenceRecommender cooccurrenceRecommender,
+                               MeterRegistry meterRegistry,
+                               @Value("${behavior.buffer.capacity:50000}") int capacity,
+                               @Value("${behavior.flush.batch-size:500}") int batchSize,
+                               @Value("${behavior.flush.interval-ms:1000}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.cooccurrenceRecommender = cooccurrenceRecommender;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+
+        meterRegistry.gauge("user_behavior.buffer.size", bufferSize);
+        this.acceptedCounter = meterRegistry.counter("user_behavior.accepted");
+        this.droppedCounter = meterRegistry.counter("user_behavior.dropped");
+        this.persistedCounter = meterRegistry.counter("user_behavior.persisted");
+        this.failedCounter = meterRegistry.counter("user_behavior.failed");
+        this.flushTimer = meterRegistry.timer("user_behavior.flush");
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-behavior-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        closed = true;
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        // Ghi nốt phần còn lại trước khi tắt
+        flushSafely();
+    }
+
+    /**
+     * Nhận sự kiện mà không truy vấn DB. Trả về false nếu sự kiện không hợp lệ hoặc bị bỏ do buffer đầy.
+     */
+    public boolean logBehavior(Long userId, Long productId, String behaviorType) {
+        if (userId == null || productId == null || behaviorType == null || behaviorType.isBlank()) {
+            return false;
+        }
+
+        if (bufferSize.incrementAndGet() > capacity) {
+            bufferSize.decrementAndGet();
+            droppedCounter.increment();
+            return false;
+        }
+        buffer.offer(new BehaviorEvent(userId, productId, behaviorType.trim().toUpperCase(Locale.ROOT), LocalDateTime.now()));
+        acceptedCounter.increment();
+
+        // Đủ 1 batch thì flush sớm, không chờ tới chu kỳ kế tiếp
+        if (!closed && bufferSize.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushSafely);
+            } catch (RejectedExecutionException e) {
+                // Đang tắt giữa lúc kiểm tra closed và execute: stop() sẽ ghi nốt buffer
+                flushRequested.set(false);
+            }
+        }
+        return true;
+    }
+
+    private void flushSafely() {
+        flushRequested.set(false);
+        try {
+            List<BehaviorEvent> batch;
+            while (!(batch = pollBatch()).isEmpty()) {
+                List<BehaviorEvent> current = batch;
+                flushTimer.record(() -> flush(current));
+            }
+        } catch (Exception e) {
+            log.error("Error flushing user behaviors: {}", e.getMessage());
+        }
+    }
+
+    private List<BehaviorEvent> pollBatch() {
+        List<BehaviorEvent> batch = new ArrayList<>(Math.min(batchSize, bufferSize.get()));
+        BehaviorEvent event;
+        while (batch.size() < batchSize && (event = buffer.poll()) != null) {
+            bufferSize.decrementAndGet();
+            batch.add(event);
+        }
+        return batch;
+    }
+
+    private void flush(List<BehaviorEvent> batch) {
+        int[] results;
+        try {
+            List<Object[]> args = new ArrayList<>(batch.size());
+            for (BehaviorEvent event : batch) {
+                args.add(new Object[]{event.userId(), event.productId(), event.behaviorType(),
+                        Timestamp.valueOf(event.behaviorTime())});
+            }
+            results = jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            log.error("Error inserting {} user behaviors: {}", batch.size(), e.getMessage());
+            return;
+        }
+
+        int persisted = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            // 0 = dòng bị IGNORE (user / sản phẩm không tồn tại), không gửi sang Kafka
+            if (i < results.length && results[i] == 0) continue;
+            persisted++;
 
-    public void logBehavior(Long userId, Long productId, String behaviorType) {
-        // Tìm User và Product
-        Product product = productRepo.findById(productId)
-                .orElseThrow(() -> new ResourceNotFound("Product not found"));
-        User user = userRepo.findById(userId)
-                .orElseThrow(() -> new ResourceNotFound("User not found"));
-
-        // Ghi vào user_behavior_log
-        UserBehaviorLog log = UserBehaviorLog.builder()
-                .user(user)
-                .product(product)
-                .behaviorType(behaviorType.toUpperCase())
-                .build();
-        behaviorRepo.save(log);
-
-        // Gửi đến Kafka topic
-        BehaviorRequest kafkaMessage = new BehaviorRequest();
-        kafkaMessage.setProductId(productId);
-        kafkaMessage.setBehaviorType(behaviorType.toUpperCase());
-        kafkaTemplate.send("user_behaviors", String.valueOf(userId), kafkaMessage);
+            BehaviorEvent event = batch.get(i);
+            BehaviorRequest message = new BehaviorRequest();
+            message.setProductId(event.productId());
+            message.setBehaviorType(event.behaviorType());
+            kafkaTemplate.send(TOPIC, String.valueOf(event.userId()), message);
+            cooccurrenceRecommender.submit(event);
+        }
+        persistedCounter.increment(persisted);
+        if (persisted < batch.size()) {
+            failedCounter.increment(batch.size() - persisted);
+        }
     }
 }
@@ -4,6 +4,7 @@ package com.quadra.ecommerce_api.service.chat;
 import com.quadra.ecommerce_api.dto.ChatMessageDTO;
 import com.quadra.ecommerce_api.dto.ConversationDTO;
 import com.quadra.ecommerce_api.dto.NotificationDTO;
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.entity.NotificationChat;
 import com.quadra.ecommerce_api.entity.conversation.Conversation;
 import com.quadra.ecommerce_api.entity.conversation.Message;
@@ -13,6 +14,7 @@ import com.quadra.ecommerce_api.mapper.ChatMapper;
 import com.quadra.ecommerce_api.repository.conversation.ConversationRepo;
 import com.quadra.ecommerce_api.repository.conversation.MessageRepo;
 import com.quadra.ecommerce_api.repository.conversation.NotificationChatRepo;
+import com.quadra.ecommerce_api.utils.KeysetCursor;
 import jakarta.transaction.Transactional;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,16 +32,18 @@ public class ChatService {
     private final NotificationChatRepo notificationRepo;
     private final ChatMapper chatMapper;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChatStatsService chatStatsService;
 
     @Autowired
     public ChatService(ConversationRepo conversationRepo, MessageRepo messageRepo,
                        NotificationChatRepo notificationRepo, ChatMapper chatMapper,
-                       SimpMessagingTemplate messagingTemplate) {
+                       SimpMessagingTemplate messagingTemplate, ChatStatsService chatStatsService) {
         this.conversationRepo = conversationRepo;
         this.messageRepo = messageRepo;
         this.notificationRepo = notificationRepo;
         this.chatMapper = chatMapper;
         this.messagingTemplate = messagingTemplate;
+        this.chatStatsService = chatStatsService;
     }
 
 
@@ -57,15 +61,7 @@ public class ChatService {
         } else {
             conversation = conversationRepo.findByCustomerIdAndStoreId(
                             chatMessageDTO.getSenderId(), chatMessageDTO.getReceiverId())
-                    .orElseGet(() -> {
-                        Conversation newConv = Conversation.builder()
-                                .customer(User.builder().id(chatMessageDTO.getSenderId()).build())
-                                .store(Store.builder().id(chatMessageDTO.getReceiverId()).build())
-                                .createdAt(LocalDateTime.now())
-                                .updatedAt(LocalDateTime.now())
-                                .build();
-                        return conversationRepo.save(newConv);
-                    });
+                    .orElseGet(() -> createConversation(chatMessageDTO.getSenderId(), chatMessageDTO.getReceiverId()));
             chatMessageDTO.setConversationId(conversation.getId());
         }
 
@@ -75,6 +71,11 @@ public class ChatService {
         message.setIsRead(false); // Đảm bảo luôn set isRead = false khi tạo mới
         messageRepo.save(message);
 
+        // Cập nhật tin nhắn cuối / số tin chưa đọc của cuộc trò chuyện trong cùng transaction
+        chatStatsService.messageSent(conversation.getId(), conversation.getStore().getId(), message.getId(),
+                message.getMessageText(), message.getCreatedAt(), chatMessageDTO.getSenderId(),
+                !chatMessageDTO.getSenderId().equals(conversation.getCustomer().getId()));
+
         // Tạo Notification
         Long receiverId = chatMessageDTO.getReceiverId();
         NotificationChat notification = NotificationChat.builder()
@@ -104,6 +105,34 @@ public class ChatService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Tin nhắn của cuộc trò chuyện theo cursor (createdAt, id), mới nhất trước. Chỉ đếm tổng khi withTotal = true.
+     */
+    public CursorPage<ChatMessageDTO> getMessages(Long conversationId, String cursor, Integer size, boolean withTotal) {
+        int pageSize = KeysetCursor.normalizeSize(size);
+        KeysetCursor before = KeysetCursor.decode(cursor);
+        List<Message> rows = messageRepo.findPageBeforeCursor(conversationId,
+                before != null ? before.createdAt() : null, before != null ? before.id() : null,
+                KeysetCursor.fetchLimit(pageSize));
+        Long total = withTotal ? messageRepo.countByConversationId(conversationId) : null;
+
+        return KeysetCursor.page(rows, pageSize,
+                message -> new KeysetCursor(message.getCreatedAt(), message.getId()),
+                message -> chatMapper.toChatMessageDTO(message, message.getSender().getId()),
+                total);
+    }
+
+    /**
+     * Người đọc (khách hàng hoặc chủ cửa hàng) mở cuộc trò chuyện: đánh dấu đã đọc tin của bên kia và xoá số chưa đọc
+     */
+    @Transactional
+    public void markConversationAsRead(Long conversationId, Long readerId) {
+        Conversation conversation = conversationRepo.findById(conversationId)
+                .orElseThrow(() -> new IllegalArgumentException("Cuộc trò chuyện không tồn tại"));
+        messageRepo.markReadByConversationId(conversationId, readerId);
+        chatStatsService.markRead(conversationId, readerId.equals(conversation.getCustomer().getId()));
+    }
+
     public List<NotificationDTO> getUnreadNotifications(Long userId, Long storeId) {
         List<NotificationChat> notifications;
         if (userId != null) {
@@ -118,20 +147,25 @@ public class ChatService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional
     public ConversationDTO getOrCreateConversation(Long customerId, Long storeId) {
         Conversation conversation = conversationRepo.findByCustomerIdAndStoreId(customerId, storeId)
-                .orElseGet(() -> {
-                    Conversation newConv = Conversation.builder()
-                            .customer(User.builder().id(customerId).build())
-                            .store(Store.builder().id(storeId).build())
-                            .createdAt(LocalDateTime.now())
-                            .updatedAt(LocalDateTime.now())
-                            .build();
-                    return conversationRepo.save(newConv);
-                });
+                .orElseGet(() -> createConversation(customerId, storeId));
         return chatMapper.toConversationDTO(conversation);
     }
 
+    private Conversation createConversation(Long customerId, Long storeId) {
+        Conversation newConv = Conversation.builder()
+                .customer(User.builder().id(customerId).build())
+                .store(Store.builder().id(storeId).build())
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        Conversation saved = conversationRepo.save(newConv);
+        chatStatsService.conversationCreated(storeId);
+        return saved;
+    }
+
     public List<ConversationDTO> getUserConversations(Long customerId) {
         List<Conversation> conversations = conversationRepo.findByCustomerIdOrderByUpdatedAtDesc(customerId);
         return conversations.stream()
@@ -179,6 +213,7 @@ public class ChatService {
         
         // Xóa cuộc trò chuyện
         conversationRepo.delete(conversation);
+        chatStatsService.conversationDeleted(conversation.getStore().getId(), conversation.getStoreRepliedAt() != null);
     }
 
     public Long getUnreadNotificationCount(Long userId, Long storeId) {
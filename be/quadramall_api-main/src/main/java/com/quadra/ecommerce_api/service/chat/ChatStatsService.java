@@ -0,0 +1,144 @@
+package com.quadra.ecommerce_api.service.chat;
+
+import com.quadra.ecommerce_api.entity.store.StoreChatStat;
+import com.quadra.ecommerce_api.repository.store.StoreChatStatRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model của chat: tin nhắn cuối / số tin chưa đọc trên conversations và tỉ lệ phản hồi trong store_chat_stats.
+ * Các câu UPDATE cộng dồn chạy bằng JDBC trong transaction gửi tin nhắn nên 2 tin gửi đồng thời không ghi đè nhau.
+ * Dựng lại từ messages mỗi đêm (ChatStatsTasks) để sửa sai lệch, vd. tin gửi qua MessageService.
+ */
+@Service
+@Slf4j
+public class ChatStatsService {
+
+    static final int PREVIEW_LENGTH = 255;
+
+    private static final String CUSTOMER_MESSAGE_SQL =
+            "UPDATE conversations SET last_message_id = ?, last_message_text = ?, last_message_at = ?, " +
+            "last_sender_id = ?, store_unread_count = store_unread_count + 1, updated_at = ? WHERE id = ?";
+
+    private static final String STORE_MESSAGE_SQL =
+            "UPDATE conversations SET last_message_id = ?, last_message_text = ?, last_message_at = ?, " +
+            "last_sender_id = ?, customer_unread_count = customer_unread_count + 1, updated_at = ? WHERE id = ?";
+
+    // Chỉ 1 transaction đổi được store_replied_at từ NULL nên lần trả lời đầu được đếm đúng 1 lần
+    private static final String FIRST_REPLY_SQL =
+            "UPDATE conversations SET store_replied_at = ? WHERE id = ? AND store_replied_at IS NULL";
+
+    private static final String RESET_CUSTOMER_UNREAD_SQL =
+            "UPDATE conversations SET customer_unread_count = 0 WHERE id = ? AND customer_unread_count <> 0";
+
+    private static final String RESET_STORE_UNREAD_SQL =
+            "UPDATE conversations SET store_unread_count = 0 WHERE id = ? AND store_unread_count <> 0";
+
+    private static final String STORE_COUNTER_SQL =
+            "INSERT INTO store_chat_stats (store_id, conversation_count, responded_count, updated_at) " +
+            "VALUES (?, ?, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE conversation_count = conversation_count + VALUES(conversation_count), " +
+            "responded_count = responded_count + VALUES(responded_count), updated_at = NOW()";
+
+    // Tin của bên không phải khách hàng là tin của cửa hàng
+    private static final String REBUILD_REPLIED_SQL =
+            "UPDATE conversations c SET c.store_replied_at = " +
+            "(SELECT MIN(m.created_at) FROM messages m WHERE m.conversation_id = c.id AND m.sender_id <> c.customer_id) " +
+            "WHERE c.store_replied_at IS NULL";
+
+    private static final String REBUILD_LAST_MESSAGE_SQL =
+            "UPDATE conversations c " +
+            "JOIN (SELECT conversation_id, MAX(id) AS last_id FROM messages GROUP BY conversation_id) lm " +
+            "  ON lm.conversation_id = c.id " +
+            "JOIN messages m ON m.id = lm.last_id " +
+            "SET c.last_message_id = m.id, c.last_message_text = LEFT(m.message_text, " + PREVIEW_LENGTH + "), " +
+            "c.last_message_at = m.created_at, c.last_sender_id = m.sender_id " +
+            "WHERE c.last_message_id IS NULL OR c.last_message_id <> m.id";
+
+    private static final String REBUILD_UNREAD_SQL =
+            "UPDATE conversations c " +
+            "LEFT JOIN (SELECT m.conversation_id, " +
+            "  SUM(m.sender_id <> cv.customer_id) AS customer_unread, SUM(m.sender_id = cv.customer_id) AS store_unread " +
+            "  FROM messages m JOIN conversations cv ON cv.id = m.conversation_id " +
+            "  WHERE m.is_read = FALSE GROUP BY m.conversation_id) u ON u.conversation_id = c.id " +
+            "SET c.customer_unread_count = COALESCE(u.customer_unread, 0), c.store_unread_count = COALESCE(u.store_unread, 0)";
+
+    private static final String REBUILD_STORE_COUNTERS_SQL =
+            "INSERT INTO store_chat_stats (store_id, conversation_count, responded_count, updated_at) " +
+            "SELECT store_id, COUNT(*), COUNT(store_replied_at), NOW() FROM conversations GROUP BY store_id " +
+            "ON DUPLICATE KEY UPDATE conversation_count = VALUES(conversation_count), " +
+            "responded_count = VALUES(responded_count), updated_at = NOW()";
+
+    private static final String CLEAR_EMPTY_STORES_SQL =
+            "UPDATE store_chat_stats s SET s.conversation_count = 0, s.responded_count = 0, s.updated_at = NOW() " +
+            "WHERE s.conversation_count <> 0 AND NOT EXISTS (SELECT 1 FROM conversations c WHERE c.store_id = s.store_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StoreChatStatRepo storeChatStatRepo;
+    private final TransactionTemplate requiresNewTemplate;
+
+    public ChatStatsService(JdbcTemplate jdbcTemplate,
+                            StoreChatStatRepo storeChatStatRepo,
+                            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storeChatStatRepo = storeChatStatRepo;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void conversationCreated(Long storeId) {
+        jdbcTemplate.update(STORE_COUNTER_SQL, storeId, 1, 0);
+    }
+
+    public void conversationDeleted(Long storeId, boolean replied) {
+        jdbcTemplate.update(STORE_COUNTER_SQL, storeId, -1, replied ? -1 : 0);
+    }
+
+    /**
+     * Ghi tin nhắn cuối và tăng số tin chưa đọc của bên nhận; tin đầu tiên của cửa hàng tính cuộc trò chuyện là đã phản hồi
+     */
+    public void messageSent(Long conversationId, Long storeId, Long messageId, String text,
+                            LocalDateTime sentAt, Long senderId, boolean fromStore) {
+        String preview = text != null && text.length() > PREVIEW_LENGTH ? text.substring(0, PREVIEW_LENGTH) : text;
+        jdbcTemplate.update(fromStore ? STORE_MESSAGE_SQL : CUSTOMER_MESSAGE_SQL,
+                messageId, preview, sentAt, senderId, sentAt, conversationId);
+
+        if (fromStore && jdbcTemplate.update(FIRST_REPLY_SQL, sentAt, conversationId) == 1) {
+            jdbcTemplate.update(STORE_COUNTER_SQL, storeId, 0, 1);
+        }
+    }
+
+    public void markRead(Long conversationId, boolean byCustomer) {
+        jdbcTemplate.update(byCustomer ? RESET_CUSTOMER_UNREAD_SQL : RESET_STORE_UNREAD_SQL, conversationId);
+    }
+
+    public double responseRate(Long storeId) {
+        return storeChatStatRepo.findById(storeId)
+                .map(StoreChatStat::responseRate)
+                .orElse(0.0);
+    }
+
+    public boolean isEmpty() {
+        return storeChatStatRepo.count() == 0;
+    }
+
+    /**
+     * Dựng lại tin nhắn cuối, số tin chưa đọc và bộ đếm phản hồi của mọi cửa hàng từ messages (backfill / đối soát)
+     */
+    public void rebuild() {
+        requiresNewTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(REBUILD_REPLIED_SQL);
+            jdbcTemplate.update(REBUILD_LAST_MESSAGE_SQL);
+            jdbcTemplate.update(REBUILD_UNREAD_SQL);
+            jdbcTemplate.update(REBUILD_STORE_COUNTERS_SQL);
+            jdbcTemplate.update(CLEAR_EMPTY_STORES_SQL);
+        });
+        log.info("Rebuilt chat stats");
+    }
+}
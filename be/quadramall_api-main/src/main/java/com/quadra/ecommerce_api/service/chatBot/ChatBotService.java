@@ -5,16 +5,20 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.quadra.ecommerce_api.config.websocket.ChatBotConfig;
 import com.quadra.ecommerce_api.dto.custom.chatBot.*;
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.entity.chatBot.ChatMessage;
 import com.quadra.ecommerce_api.entity.chatBot.ChatSession;
 import com.quadra.ecommerce_api.enums.chatBot.*;
+import com.quadra.ecommerce_api.exception.ExCustom;
 import com.quadra.ecommerce_api.exception.ResourceNotFound;
 import com.quadra.ecommerce_api.repository.chatBot.ChatMessageRepository;
 import com.quadra.ecommerce_api.repository.chatBot.ChatSessionRepository;
+import com.quadra.ecommerce_api.utils.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -41,6 +45,8 @@ public class ChatBotService {
     private final WebSocketService webSocketService;
     private final ChatBotConfig chatBotConfig;
     private final ObjectMapper objectMapper;
+    private final ChatStreamCoalescer streamCoalescer;
+    private final ChatSessionActivityWriter sessionActivityWriter;
 
     /**
      * Process chat message synchronously
@@ -112,6 +118,8 @@ public class ChatBotService {
                 .subscribeOn(Schedulers.boundedElastic())
                 .flatMapMany(session -> {
                     StringBuilder fullResponse = new StringBuilder();
+                    ChatStreamCoalescer.Stream stream = streamCoalescer.open(
+                            userId, session.getSessionId(), session.getConversationId());
 
                     return chatAIService.sendMessageStream(request, userId, session.getSessionId())
                             .map(chunk -> {
@@ -129,15 +137,12 @@ public class ChatBotService {
                                     fullResponse.append(chunk.content());
                                 }
 
-                                // Send to WebSocket
-                                try {
-                                    webSocketService.sendToUser(userId, enhancedChunk);
-                                } catch (Exception e) {
-                                    log.warn("Failed to send WebSocket message: {}", e.getMessage());
-                                }
+                                // Send to WebSocket, gộp theo chatbot.stream.*
+                                stream.accept(enhancedChunk);
 
                                 return enhancedChunk;
                             })
+                            .doFinally(signal -> stream.complete())
                             .doOnComplete(() -> {
                                 // Save complete response asynchronously
                                 CompletableFuture.runAsync(() -> {
@@ -150,7 +155,6 @@ public class ChatBotService {
                                                     .build();
 
                                             saveAssistantMessage(session, aiResponse, userId);
-                                            updateSessionActivity(session);
                                         }
                                     } catch (Exception e) {
                                         log.error("Error saving streaming response: {}", e.getMessage());
@@ -181,8 +185,8 @@ public class ChatBotService {
             Optional<ChatSession> existing = sessionRepository.findBySessionId(request.sessionId());
             if (existing.isPresent() && existing.get().getUserId().equals(userId)) {
                 ChatSession session = existing.get();
-                session.setLastActivity(LocalDateTime.now());
-                return sessionRepository.save(session);
+                sessionActivityWriter.touch(session);
+                return session;
             }
         }
 
@@ -209,8 +213,7 @@ public class ChatBotService {
                 .build();
 
         ChatMessage saved = messageRepository.save(message);
-        session.incrementMessageCount();
-        sessionRepository.save(session);
+        sessionActivityWriter.messageAdded(session);
 
         return saved;
     }
@@ -242,8 +245,7 @@ public class ChatBotService {
         }
 
         ChatMessage saved = messageRepository.save(message);
-        session.incrementMessageCount();
-        sessionRepository.save(session);
+        sessionActivityWriter.messageAdded(session);
 
         return saved;
     }
@@ -259,24 +261,11 @@ public class ChatBotService {
                 .build();
 
         messageRepository.save(message);
-        session.incrementMessageCount();
-        sessionRepository.save(session);
+        sessionActivityWriter.messageAdded(session);
     }
 
     private void updateSessionFromResponse(ChatSession session, ChatResponseDto aiResponse) {
-        if (aiResponse.conversationId() != null) {
-            session.setConversationId(aiResponse.conversationId());
-        }
-        if (aiResponse.conversationType() != null) {
-            session.setConversationType(aiResponse.conversationType());
-        }
-        session.setLastActivity(LocalDateTime.now());
-        sessionRepository.save(session);
-    }
-
-    private void updateSessionActivity(ChatSession session) {
-        session.setLastActivity(LocalDateTime.now());
-        sessionRepository.save(session);
+        sessionActivityWriter.conversationUpdated(session, aiResponse.conversationId(), aiResponse.conversationType());
     }
 
     // All other methods remain the same...
@@ -300,12 +289,35 @@ public class ChatBotService {
         return messages.map(this::mapToMessageDto);
     }
 
+    /**
+     * Tin nhắn của session theo cursor (createdAt, id), mới nhất trước. Chỉ đếm tổng khi withTotal = true.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ChatMessageDto> getSessionMessages(String sessionId, Long userId, String cursor,
+                                                         Integer size, boolean withTotal) {
+        ChatSession session = sessionRepository.findBySessionId(sessionId)
+                .filter(s -> s.getUserId().equals(userId))
+                .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Không tìm thấy phiên chat"));
+
+        int pageSize = KeysetCursor.normalizeSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        List<ChatMessage> rows = messageRepository.findPageAfterCursor(session.getId(),
+                after != null ? after.createdAt() : null, after != null ? after.id() : null,
+                KeysetCursor.fetchLimit(pageSize));
+        Long total = withTotal ? messageRepository.countBySessionId(session.getId()) : null;
+
+        return KeysetCursor.page(rows, pageSize,
+                message -> new KeysetCursor(message.getCreatedAt(), message.getId()),
+                this::mapToMessageDto,
+                total);
+    }
+
     public void closeSession(String sessionId, Long userId) {
         sessionRepository.findBySessionId(sessionId)
                 .ifPresent(session -> {
                     if (session.getUserId().equals(userId)) {
-                        session.setStatus(SessionStatus.CLOSED);
-                        sessionRepository.save(session);
+                        // Chỉ cập nhật status: message_count / last_activity do ChatSessionActivityWriter ghi
+                        sessionRepository.updateStatus(session.getId(), SessionStatus.CLOSED);
                         log.info("Session closed: {} by user: {}", sessionId, userId);
 
                         try {
@@ -365,7 +377,7 @@ public class ChatBotService {
         return ChatResponseDto.builder()
                 .messageId(assistantMessage.getMessageId())
                 .sessionId(session.getSessionId())
-                .conversationId(session.getConversationId())
+                .conversationId(aiResponse.conversationId() != null ? aiResponse.conversationId() : session.getConversationId())
                 .message(assistantMessage.getContent())
                 .role(MessageRole.ASSISTANT)
                 .timestamp(assistantMessage.getCreatedAt())
@@ -0,0 +1,186 @@
+package com.quadra.ecommerce_api.service.chatBot;
+
+import com.quadra.ecommerce_api.entity.chatBot.ChatSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cập nhật chat_sessions theo kiểu write-behind: mỗi tin nhắn chỉ cộng dồn số tin / lastActivity / conversation
+ * của session trong bộ nhớ, 1 luồng nền ghi tất cả session đã thay đổi bằng 1 JDBC batch mỗi flush-interval-ms
+ * thay vì sessionRepository.save sau từng tin nhắn.
+ * Thay đổi chỉ được ghi nhận sau khi transaction hiện tại commit, để không UPDATE session chưa được INSERT.
+ */
+@Service
+@Slf4j
+public class ChatSessionActivityWriter {
+
+    // last_activity chỉ tiến lên: các lần flush không ghi đè mốc mới hơn của node khác
+    private static final String UPDATE_SQL = """
+            UPDATE chat_sessions
+            SET message_count = COALESCE(message_count, 0) + ?,
+                last_activity = GREATEST(last_activity, ?),
+                conversation_id = COALESCE(?, conversation_id),
+                conversation_type = COALESCE(?, conversation_type)
+            WHERE id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long flushIntervalMs;
+
+    private final Map<Long, Activity> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingSize = new AtomicInteger();
+    private ScheduledExecutorService flusher;
+
+    private final Timer flushTimer;
+    private final Timer lagTimer;
+
+    private static final class Activity {
+        // Thời điểm thay đổi đầu tiên chưa được ghi, để đo độ trễ ghi xuống DB
+        final long recordedAtNanos = System.nanoTime();
+        int messages;
+        LocalDateTime lastActivity;
+        String conversationId;
+        String conversationType;
+
+        void merge(Activity other) {
+            messages += other.messages;
+            if (lastActivity == null || other.lastActivity.isAfter(lastActivity)) {
+                lastActivity = other.lastActivity;
+            }
+            if (other.conversationId != null) conversationId = other.conversationId;
+            if (other.conversationType != null) conversationType = other.conversationType;
+        }
+    }
+
+    public ChatSessionActivityWriter(JdbcTemplate jdbcTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${chatbot.session.activity-flush-interval-ms:1000}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+
+        meterRegistry.gauge("chatbot.session.activity.pending", pendingSize);
+        this.flushTimer = meterRegistry.timer("chatbot.session.activity.flush");
+        this.lagTimer = meterRegistry.timer("chatbot.session.activity.lag");
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-session-activity-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        // Ghi nốt phần còn lại trước khi tắt
+        flushSafely();
+    }
+
+    /**
+     * Session vừa có hoạt động (không thêm tin nhắn)
+     */
+    public void touch(ChatSession session) {
+        record(session.getId(), 0, null, null);
+    }
+
+    /**
+     * Session vừa có thêm 1 tin nhắn
+     */
+    public void messageAdded(ChatSession session) {
+        record(session.getId(), 1, null, null);
+    }
+
+    /**
+     * Cập nhật conversation của session theo phản hồi AI (giá trị null được giữ nguyên)
+     */
+    public void conversationUpdated(ChatSession session, String conversationId, String conversationType) {
+        record(session.getId(), 0, conversationId, conversationType);
+    }
+
+    private void record(Long sessionId, int messages, String conversationId, String conversationType) {
+        if (sessionId == null) return;
+
+        Activity activity = new Activity();
+        activity.messages = messages;
+        activity.lastActivity = LocalDateTime.now();
+        activity.conversationId = conversationId;
+        activity.conversationType = conversationType;
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(sessionId, activity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(sessionId, activity);
+            }
+        });
+    }
+
+    private void add(Long sessionId, Activity activity) {
+        pending.merge(sessionId, activity, (current, added) -> {
+            current.merge(added);
+            return current;
+        });
+        pendingSize.set(pending.size());
+    }
+
+    private void flushSafely() {
+        try {
+            flushTimer.record(this::flush);
+        } catch (Exception e) {
+            log.error("Error flushing chat session activity: {}", e.getMessage());
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) return;
+
+        Map<Long, Activity> batch = new HashMap<>();
+        for (Long sessionId : List.copyOf(pending.keySet())) {
+            Activity activity = pending.remove(sessionId);
+            if (activity != null) batch.put(sessionId, activity);
+        }
+        pendingSize.set(pending.size());
+        if (batch.isEmpty()) return;
+
+        List<Object[]> args = new ArrayList<>(batch.size());
+        batch.forEach((sessionId, activity) -> args.add(new Object[]{activity.messages,
+                Timestamp.valueOf(activity.lastActivity), activity.conversationId, activity.conversationType, sessionId}));
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+            long now = System.nanoTime();
+            batch.values().forEach(activity -> lagTimer.record(now - activity.recordedAtNanos, TimeUnit.NANOSECONDS));
+        } catch (Exception e) {
+            // Trả lại buffer để lần flush sau ghi tiếp
+            batch.forEach(this::add);
+            log.error("Error updating {} chat sessions: {}", batch.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.quadra.ecommerce_api.service.chatBot;
+
+import com.quadra.ecommerce_api.dto.custom.chatBot.StreamChunkDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gộp các chunk "content" của 1 luồng trả lời chatbot thành ít frame STOMP hơn: nội dung được giữ lại
+ * và gửi mỗi chatbot.stream.flush-interval-ms hoặc khi đủ chatbot.stream.max-buffer-bytes.
+ * Chunk loại khác (products, done, error...) làm gửi ngay phần nội dung đang giữ rồi gửi chính nó, nên thứ tự được giữ nguyên.
+ * Client vẫn nhận chunk "content" như trước, chỉ là mỗi chunk dài hơn. Cửa sổ = 0 thì gửi từng chunk, không gộp.
+ */
+@Component
+@Slf4j
+public class ChatStreamCoalescer {
+
+    private static final String CONTENT_TYPE = "content";
+
+    private final WebSocketService webSocketService;
+    private final long flushIntervalMs;
+    private final int maxBufferBytes;
+    private ScheduledExecutorService flusher;
+
+    private final Counter chunksCounter;
+    private final Counter framesCounter;
+
+    public ChatStreamCoalescer(WebSocketService webSocketService,
+                               MeterRegistry meterRegistry,
+                               @Value("${chatbot.stream.flush-interval-ms:50}") long flushIntervalMs,
+                               @Value("${chatbot.stream.max-buffer-bytes:1024}") int maxBufferBytes) {
+        this.webSocketService = webSocketService;
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+        this.maxBufferBytes = Math.max(1, maxBufferBytes);
+
+        this.chunksCounter = meterRegistry.counter("chatbot.stream.chunks");
+        this.framesCounter = meterRegistry.counter("chatbot.stream.frames");
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-stream-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Mở 1 luồng gửi cho 1 câu trả lời; gọi complete() khi luồng kết thúc để gửi nốt phần còn lại
+     */
+    public Stream open(Long userId, String sessionId, String conversationId) {
+        return new Stream(userId, sessionId, conversationId);
+    }
+
+    public final class Stream {
+
+        private final Long userId;
+        private final String sessionId;
+        private final String conversationId;
+        private final StringBuilder buffer = new StringBuilder();
+        private int bufferedBytes;
+        private boolean flushScheduled;
+
+        private Stream(Long userId, String sessionId, String conversationId) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.conversationId = conversationId;
+        }
+
+        public synchronized void accept(StreamChunkDto chunk) {
+            chunksCounter.increment();
+
+            if (!CONTENT_TYPE.equals(chunk.type()) || chunk.content() == null || chunk.data() != null) {
+                flush();
+                send(chunk);
+                return;
+            }
+
+            buffer.append(chunk.content());
+            bufferedBytes += chunk.content().getBytes(StandardCharsets.UTF_8).length;
+            if (flushIntervalMs == 0 || bufferedBytes >= maxBufferBytes) {
+                flush();
+            } else if (!flushScheduled) {
+                // Chunk đầu tiên của cửa sổ đặt lịch gửi, các chunk sau chỉ cộng dồn
+                flushScheduled = true;
+                flusher.schedule(this::scheduledFlush, flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        public synchronized void complete() {
+            flush();
+        }
+
+        private synchronized void scheduledFlush() {
+            flushScheduled = false;
+            flush();
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) return;
+            StreamChunkDto merged = StreamChunkDto.builder()
+                    .type(CONTENT_TYPE)
+                    .content(buffer.toString())
+                    .sessionId(sessionId)
+                    .conversationId(conversationId)
+                    .build();
+            buffer.setLength(0);
+            bufferedBytes = 0;
+            send(merged);
+        }
+
+        private void send(StreamChunkDto chunk) {
+            try {
+                webSocketService.sendToUser(userId, chunk);
+                framesCounter.increment();
+            } catch (Exception e) {
+                log.warn("Failed to send WebSocket message: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.quadra.ecommerce_api.service.chatBot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Trạng thái online của user WebSocket trên toàn cụm, lưu trong Redis:
+ * - ws:presence:online   ZSET user → thời điểm heartbeat gần nhất (ms)
+ * - ws:presence:user:{u} SET các node đang giữ session của user, hết hạn nếu không node nào heartbeat
+ * - ws:node:{nodeId}     node còn sống
+ * Tên user là Principal name của session STOMP = id user (StompUserAuthentication), cũng là tham số user của convertAndSendToUser.
+ * SimpUserRegistry được inject lazy vì nó do cấu hình WebSocket tạo ra, mà cấu hình đó lại cần RedisBrokerRelay.
+ */
+@Service
+@Slf4j
+public class WebSocketPresenceService {
+
+    private static final String ONLINE_KEY = "ws:presence:online";
+    private static final String USER_NODES_PREFIX = "ws:presence:user:";
+    private static final String NODE_PREFIX = "ws:node:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final SimpUserRegistry localUserRegistry;
+    private final Duration ttl;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public WebSocketPresenceService(StringRedisTemplate redisTemplate,
+                                    @Lazy SimpUserRegistry localUserRegistry,
+                                    @Value("${websocket.presence.ttl-seconds:60}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.localUserRegistry = localUserRegistry;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        if (user == null) return;
+
+        try {
+            markOnline(Set.of(user.getName()));
+        } catch (Exception e) {
+            log.error("Error marking WebSocket user {} online: {}", user.getName(), e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user == null) return;
+
+        // Còn session khác của user trên node này thì vẫn giữ node trong presence
+        SimpUser localUser = localUserRegistry.getUser(user.getName());
+        if (localUser != null) {
+            for (SimpSession session : localUser.getSessions()) {
+                if (!session.getId().equals(event.getSessionId())) return;
+            }
+        }
+
+        try {
+            String nodesKey = USER_NODES_PREFIX + user.getName();
+            redisTemplate.opsForSet().remove(nodesKey, nodeId);
+            Long remaining = redisTemplate.opsForSet().size(nodesKey);
+            if (remaining == null || remaining == 0) {
+                redisTemplate.opsForZSet().remove(ONLINE_KEY, user.getName());
+            }
+        } catch (Exception e) {
+            log.error("Error marking WebSocket user {} offline: {}", user.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Gia hạn presence của node và mọi user đang kết nối vào node này (gọi định kỳ, xem WebSocketPresenceTasks)
+     */
+    public void heartbeat() {
+        redisTemplate.opsForValue().set(NODE_PREFIX + nodeId, String.valueOf(System.currentTimeMillis()), ttl);
+
+        Set<String> localUsers = new HashSet<>();
+        for (SimpUser user : localUserRegistry.getUsers()) {
+            localUsers.add(user.getName());
+        }
+        markOnline(localUsers);
+    }
+
+    public boolean isOnline(String userName) {
+        Double lastSeen = redisTemplate.opsForZSet().score(ONLINE_KEY, userName);
+        return lastSeen != null && lastSeen >= staleBefore();
+    }
+
+    public long countOnline() {
+        Long count = redisTemplate.opsForZSet().count(ONLINE_KEY, staleBefore(), Double.MAX_VALUE);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Các node đang giữ session của user (có thể gồm node đã chết cho tới khi key hết hạn)
+     */
+    public Set<String> nodesOf(String userName) {
+        Set<String> nodes = redisTemplate.opsForSet().members(USER_NODES_PREFIX + userName);
+        return nodes != null ? nodes : Set.of();
+    }
+
+    /**
+     * Xoá user không còn heartbeat khỏi danh sách online, trả về số user bị xoá
+     */
+    public long removeStale() {
+        Long removed = redisTemplate.opsForZSet().removeRangeByScore(ONLINE_KEY, 0, staleBefore());
+        return removed != null ? removed : 0;
+    }
+
+    private void markOnline(Set<String> userNames) {
+        if (userNames.isEmpty()) return;
+
+        double now = System.currentTimeMillis();
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String userName : userNames) {
+                    String nodesKey = USER_NODES_PREFIX + userName;
+                    ops.opsForZSet().add(ONLINE_KEY, userName, now);
+                    ops.opsForSet().add(nodesKey, nodeId);
+                    ops.expire(nodesKey, ttl);
+                }
+                return null;
+            }
+        });
+    }
+
+    private double staleBefore() {
+        return System.currentTimeMillis() - ttl.toMillis();
+    }
+}
@@ -6,26 +6,27 @@ import com.quadra.ecommerce_api.dto.custom.chatBot.TypingIndicatorDto;
 import com.quadra.ecommerce_api.dto.custom.chatBot.WebSocketMessageDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketService {
 
+    // Phiên chatbot của user, dùng chung giữa các node
+    private static final String USER_SESSION_KEY = "ws:chatbot:user-session";
+    private static final String SESSION_USER_KEY = "ws:chatbot:session-user";
+
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
-
-    // Track connected users
-    private final ConcurrentMap<Long, String> connectedUsers = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Long> sessionToUser = new ConcurrentHashMap<>();
+    private final StringRedisTemplate redisTemplate;
+    private final WebSocketPresenceService presenceService;
 
     public void sendToUser(Long userId, StreamChunkDto chunk) {
         try {
@@ -89,8 +90,7 @@ public class WebSocketService {
         sendToUser(userId, "/queue/status", joinPayload);
 
         // Track user connection
-        connectedUsers.put(userId, sessionId);
-        sessionToUser.put(sessionId, userId);
+        trackSession(userId, sessionId);
 
         log.info("User {} joined session {}", userId, sessionId);
     }
@@ -106,8 +106,7 @@ public class WebSocketService {
         sendToUser(userId, "/queue/status", leavePayload);
 
         // Remove user tracking
-        connectedUsers.remove(userId);
-        sessionToUser.remove(sessionId);
+        untrackSession(userId, sessionId);
 
         log.info("User {} left session {}", userId, sessionId);
     }
@@ -163,33 +162,34 @@ public class WebSocketService {
 
     // User connection management
     public void addConnectedUser(Long userId, String sessionId) {
-        connectedUsers.put(userId, sessionId);
-        sessionToUser.put(sessionId, userId);
+        trackSession(userId, sessionId);
         log.debug("Added connected user: {} with session: {}", userId, sessionId);
     }
 
     public void removeConnectedUser(Long userId) {
-        String sessionId = connectedUsers.remove(userId);
+        String sessionId = getUserSession(userId);
         if (sessionId != null) {
-            sessionToUser.remove(sessionId);
+            untrackSession(userId, sessionId);
             log.debug("Removed connected user: {} with session: {}", userId, sessionId);
         }
     }
 
     public boolean isUserConnected(Long userId) {
-        return connectedUsers.containsKey(userId);
+        return presenceService.isOnline(userId.toString());
     }
 
     public String getUserSession(Long userId) {
-        return connectedUsers.get(userId);
+        Object sessionId = redisTemplate.opsForHash().get(USER_SESSION_KEY, userId.toString());
+        return sessionId != null ? sessionId.toString() : null;
     }
 
     public Long getSessionUser(String sessionId) {
-        return sessionToUser.get(sessionId);
+        Object userId = redisTemplate.opsForHash().get(SESSION_USER_KEY, sessionId);
+        return userId != null ? Long.valueOf(userId.toString()) : null;
     }
 
     public long getConnectedUsersCount() {
-        return connectedUsers.size();
+        return presenceService.countOnline();
     }
 
     public void disconnectUser(Long userId, String reason) {
@@ -208,17 +208,37 @@ public class WebSocketService {
     // Statistics and monitoring
     public Map<String, Object> getWebSocketStatistics() {
         return Map.of(
-                "connected_users", connectedUsers.size(),
-                "active_sessions", sessionToUser.size(),
+                "connected_users", presenceService.countOnline(),
+                "active_sessions", redisTemplate.opsForHash().size(SESSION_USER_KEY),
+                "node_id", presenceService.getNodeId(),
                 "timestamp", LocalDateTime.now()
         );
     }
 
     // Cleanup methods
+    // Xoá user đã hết heartbeat và phiên chatbot của họ (gọi định kỳ, xem WebSocketPresenceTasks)
     public void cleanupStaleConnections() {
-        // This method can be called periodically to clean up stale connections
-        // Implementation would depend on your specific requirements
-        log.debug("Cleaning up stale WebSocket connections");
+        long staleUsers = presenceService.removeStale();
+
+        int staleSessions = 0;
+        Map<Object, Object> userSessions = redisTemplate.opsForHash().entries(USER_SESSION_KEY);
+        for (Map.Entry<Object, Object> entry : userSessions.entrySet()) {
+            if (!presenceService.isOnline(entry.getKey().toString())) {
+                untrackSession(Long.valueOf(entry.getKey().toString()), entry.getValue().toString());
+                staleSessions++;
+            }
+        }
+        log.debug("Cleaned up stale WebSocket connections: {} users, {} chatbot sessions", staleUsers, staleSessions);
+    }
+
+    private void trackSession(Long userId, String sessionId) {
+        redisTemplate.opsForHash().put(USER_SESSION_KEY, userId.toString(), sessionId);
+        redisTemplate.opsForHash().put(SESSION_USER_KEY, sessionId, userId.toString());
+    }
+
+    private void untrackSession(Long userId, String sessionId) {
+        redisTemplate.opsForHash().delete(USER_SESSION_KEY, userId.toString());
+        redisTemplate.opsForHash().delete(SESSION_USER_KEY, sessionId);
     }
 
     // Helper method for JSON serialization
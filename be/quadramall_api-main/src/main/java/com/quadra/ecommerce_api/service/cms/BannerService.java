@@ -59,9 +59,9 @@ public class BannerService {
 
         // Xóa cache nếu cần
         if (Boolean.TRUE.equals(dto.getIsIntro())) {
-            redisCacheUtil.delete(RedisCacheKey.HOME_INTRO.key());
+            redisCacheUtil.evictAfterCommit(RedisCacheKey.HOME_INTRO);
         }
-        redisCacheUtil.delete(RedisCacheKey.BANNERS_ACTIVE.key());
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.BANNERS_ACTIVE);
 
         return bannerMapper.toDto(savedBanner);
     }
@@ -87,9 +87,9 @@ public class BannerService {
 
         // Xóa cache nếu ảnh hưởng đến intro
         if (wasIntro || Boolean.TRUE.equals(dto.getIsIntro())) {
-            redisCacheUtil.delete(RedisCacheKey.HOME_INTRO.key());
+            redisCacheUtil.evictAfterCommit(RedisCacheKey.HOME_INTRO);
         }
-        redisCacheUtil.delete(RedisCacheKey.BANNERS_ACTIVE.key());
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.BANNERS_ACTIVE);
 
         return bannerMapper.toDto(updatedBanner);
     }
@@ -103,9 +103,9 @@ public class BannerService {
 
         bannerRepo.delete(banner);
 
-        redisCacheUtil.delete(RedisCacheKey.BANNERS_ACTIVE.key());
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.BANNERS_ACTIVE);
         if (wasIntro) {
-            redisCacheUtil.delete(RedisCacheKey.HOME_INTRO.key());
+            redisCacheUtil.evictAfterCommit(RedisCacheKey.HOME_INTRO);
         }
     }
 
@@ -117,9 +117,9 @@ public class BannerService {
         banner.setActive(!Boolean.TRUE.equals(banner.getActive()));
         Banner updatedBanner = bannerRepo.save(banner);
 
-        redisCacheUtil.delete(RedisCacheKey.BANNERS_ACTIVE.key());
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.BANNERS_ACTIVE);
         if (Boolean.TRUE.equals(banner.getIsIntro())) {
-            redisCacheUtil.delete(RedisCacheKey.HOME_INTRO.key());
+            redisCacheUtil.evictAfterCommit(RedisCacheKey.HOME_INTRO);
         }
 
         return bannerMapper.toDto(updatedBanner);
@@ -140,7 +140,7 @@ public class BannerService {
         }
 
         bannerRepo.saveAll(banners);
-        redisCacheUtil.delete(RedisCacheKey.BANNERS_ACTIVE.key());
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.BANNERS_ACTIVE);
     }
 
     @Transactional
@@ -158,8 +158,8 @@ public class BannerService {
             bannerRepo.save(banner);
         }
 
-        redisCacheUtil.delete(RedisCacheKey.HOME_INTRO.key());
-        redisCacheUtil.delete(RedisCacheKey.BANNERS_ACTIVE.key());
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.HOME_INTRO);
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.BANNERS_ACTIVE);
 
         return bannerMapper.toDto(banner);
     }
@@ -24,12 +24,12 @@ public class MessageService {
         messagingTemplate.convertAndSend("/chat/conversation/" + message.getConversation().getId(), saved);
         // Gửi thông báo cho user nếu cần
         messagingTemplate.convertAndSendToUser(
-                message.getConversation().getCustomer().getEmail(),
+                String.valueOf(message.getConversation().getCustomer().getId()),
                 "/queue/notifications",
                 buildNotification(message)
         );
         messagingTemplate.convertAndSendToUser(
-                message.getConversation().getStore().getOwner().getEmail(),
+                String.valueOf(message.getConversation().getStore().getOwner().getId()),
                 "/queue/notifications",
                 buildNotification(message)
         );
@@ -1,7 +1,6 @@
 package com.quadra.ecommerce_api.service.customer.address;
 
 import com.quadra.ecommerce_api.dto.base.address.AddressDTO;
-import com.quadra.ecommerce_api.dto.custom.address.ProvinceResponse;
 import com.quadra.ecommerce_api.dto.custom.address.request.AddAddress;
 import com.quadra.ecommerce_api.entity.address.Address;
 import com.quadra.ecommerce_api.entity.address.District;
@@ -9,40 +8,35 @@ import com.quadra.ecommerce_api.entity.address.Province;
 import com.quadra.ecommerce_api.entity.address.Ward;
 import com.quadra.ecommerce_api.entity.user.User;
 import com.quadra.ecommerce_api.repository.address.AddressRepo;
+import com.quadra.ecommerce_api.service.address.AdministrativeDivisionCatalog;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.Arrays;
 import java.util.List;
 
 @Service
 public class AddressService {
     private final AddressRepo addressRepository;
-    private final RestTemplate restTemplate;
+    private final AdministrativeDivisionCatalog divisionCatalog;
 
     @Autowired
-    public AddressService(AddressRepo addressRepository, RestTemplate restTemplate) {
+    public AddressService(AddressRepo addressRepository, AdministrativeDivisionCatalog divisionCatalog) {
         this.addressRepository = addressRepository;
-        this.restTemplate = restTemplate;
+        this.divisionCatalog = divisionCatalog;
     }
+
+    // Tỉnh / huyện / xã lấy từ danh mục trong bộ nhớ, không gọi API ngoài
     public List<Province> getAllProvinces() {
-        String url = "https://provinces.open-api.vn/api/?depth=1";
-        Province[] provinces = restTemplate.getForObject(url, Province[].class);
-        return Arrays.asList(provinces);
+        return divisionCatalog.getProvinces();
     }
 
     public List<District> getDistrictsByProvince(String provinceCode) {
-        String url = "https://provinces.open-api.vn/api/p/" + provinceCode + "?depth=2";
-        ProvinceResponse response = restTemplate.getForObject(url, ProvinceResponse.class);
-        return response.getDistricts();
+        return divisionCatalog.getDistricts(provinceCode);
     }
 
     public List<Ward> getWardsByDistrict(String districtCode) {
-        String url = "https://provinces.open-api.vn/api/d/" + districtCode + "?depth=2";
-        District district = restTemplate.getForObject(url, District.class);
-        return district.getWards();
+        return divisionCatalog.getWards(districtCode);
     }
 
     public List<Address> getAddressesByUser(User user) {
@@ -0,0 +1,214 @@
+package com.quadra.ecommerce_api.service.customer.cart;
+
+import com.quadra.ecommerce_api.dto.custom.cart.response.*;
+import com.quadra.ecommerce_api.entity.cart.CartItem;
+import com.quadra.ecommerce_api.entity.cart.CartItemAddon;
+import com.quadra.ecommerce_api.entity.discount.FlashSale;
+import com.quadra.ecommerce_api.entity.product.Attribute;
+import com.quadra.ecommerce_api.entity.product.Product;
+import com.quadra.ecommerce_api.entity.product.ProductDetail;
+import com.quadra.ecommerce_api.entity.product.ProductVariant;
+import com.quadra.ecommerce_api.entity.store.Store;
+import com.quadra.ecommerce_api.repository.cart.CartItemAddonRepo;
+import com.quadra.ecommerce_api.repository.flashsale.FlashSaleRepo;
+import com.quadra.ecommerce_api.repository.product.ProductDetailRepo;
+import com.quadra.ecommerce_api.repository.product.ProductVariantRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Dựng giỏ hàng (nhóm theo shop) từ danh sách CartItem đã fetch join biến thể / sản phẩm / shop.
+ * Addon, flash sale, thuộc tính và biến thể của mọi dòng được nạp bằng 4 truy vấn IN rồi ghép trong bộ nhớ,
+ * số truy vấn không phụ thuộc số dòng trong giỏ.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CartReadModel {
+
+    private final CartItemAddonRepo cartItemAddonRepo;
+    private final FlashSaleRepo flashSaleRepo;
+    private final ProductDetailRepo productDetailRepo;
+    private final ProductVariantRepo productVariantRepo;
+
+    /**
+     * Dữ liệu liên quan của cả giỏ, đánh chỉ mục theo id
+     */
+    private record CartGraph(Map<Long, List<CartItemAddon>> addonsByItem,
+                             Map<Long, FlashSale> flashSalesByProduct,
+                             Map<Long, List<ProductDetail>> detailsByProduct,
+                             Map<Long, List<ProductVariant>> activeVariantsByProduct) {
+    }
+
+    public List<CartStoreDTO> assemble(List<CartItem> cartItems) {
+        if (cartItems.isEmpty()) return new ArrayList<>();
+
+        CartGraph graph = load(cartItems);
+
+        // Giữ thứ tự shop theo dòng đầu tiên trong giỏ
+        Map<Long, Store> stores = new LinkedHashMap<>();
+        Map<Long, List<CartItemDTO>> itemsByStore = new LinkedHashMap<>();
+        for (CartItem item : cartItems) {
+            Store store = item.getVariant().getProduct().getStore();
+            stores.putIfAbsent(store.getId(), store);
+            itemsByStore.computeIfAbsent(store.getId(), id -> new ArrayList<>()).add(toItemDTO(item, graph));
+        }
+
+        List<CartStoreDTO> result = new ArrayList<>(stores.size());
+        for (Store store : stores.values()) {
+            StoreDTO storeDTO = new StoreDTO();
+            storeDTO.setId(store.getId());
+            storeDTO.setName(store.getName());
+            storeDTO.setImage(store.getLogoUrl());
+
+            CartStoreDTO cartStoreDTO = new CartStoreDTO();
+            cartStoreDTO.setStore(storeDTO);
+            cartStoreDTO.setItems(itemsByStore.get(store.getId()));
+            result.add(cartStoreDTO);
+        }
+
+        log.debug("Assembled cart: {} items, {} stores", cartItems.size(), result.size());
+        return result;
+    }
+
+    private CartGraph load(List<CartItem> cartItems) {
+        List<Long> cartItemIds = cartItems.stream().map(CartItem::getId).toList();
+        List<Long> productIds = cartItems.stream()
+                .map(item -> item.getVariant().getProduct().getId())
+                .distinct()
+                .collect(Collectors.toList());
+
+        Map<Long, List<CartItemAddon>> addonsByItem = cartItemAddonRepo.findWithAddonByCartItemIdIn(cartItemIds).stream()
+                .collect(Collectors.groupingBy(addon -> addon.getCartItem().getId()));
+
+        Map<Long, FlashSale> flashSalesByProduct = flashSaleRepo.findActiveFlashSalesByProductIds(productIds).stream()
+                .collect(Collectors.toMap(fs -> fs.getProduct().getId(), fs -> fs, (existing, replacement) -> existing));
+
+        Map<Long, List<ProductDetail>> detailsByProduct = productDetailRepo.findWithAttributesByProductIdIn(productIds).stream()
+                .collect(Collectors.groupingBy(pd -> pd.getVariant().getProduct().getId()));
+
+        Map<Long, List<ProductVariant>> activeVariantsByProduct = productVariantRepo.findByProductIdInAndIsActiveTrue(productIds).stream()
+                .collect(Collectors.groupingBy(v -> v.getProduct().getId()));
+
+        return new CartGraph(addonsByItem, flashSalesByProduct, detailsByProduct, activeVariantsByProduct);
+    }
+
+    private CartItemDTO toItemDTO(CartItem item, CartGraph graph) {
+        ProductVariant variant = item.getVariant();
+        Product product = variant.getProduct();
+        Long productId = product.getId();
+        List<CartItemAddon> addons = graph.addonsByItem().getOrDefault(item.getId(), Collections.emptyList());
+        List<ProductDetail> productDetails = graph.detailsByProduct().getOrDefault(productId, Collections.emptyList());
+        FlashSale flashSale = graph.flashSalesByProduct().get(productId);
+
+        CartItemDTO dto = new CartItemDTO();
+        dto.setId(item.getId());
+        dto.setProductId(productId);
+        dto.setSlug(product.getSlug());
+        dto.setProductName(product.getName());
+        dto.setVariantId(variant.getId());
+        dto.setQuantity(item.getQuantity());
+        dto.setAddons(addons.stream()
+                .map(addonItem -> {
+                    CartAddonDTO addonDto = new CartAddonDTO();
+                    addonDto.setAddonId(addonItem.getAddon().getId());
+                    addonDto.setAddonName(addonItem.getAddon().getName());
+                    addonDto.setPriceAdjust(addonItem.getAddon().getPriceAdjust().doubleValue());
+                    return addonDto;
+                })
+                .collect(Collectors.toList()));
+
+        if (flashSale != null) {
+            FlashSaleDTO flashSaleDTO = new FlashSaleDTO();
+            flashSaleDTO.setId(flashSale.getId());
+            flashSaleDTO.setPercentageDiscount(flashSale.getPercentageDiscount());
+            flashSaleDTO.setEndTime(flashSale.getEndTime());
+            flashSaleDTO.setSoldCount(flashSale.getSoldCount());
+            flashSaleDTO.setQuantity(flashSale.getQuantity());
+            dto.setFlashSale(flashSaleDTO);
+        }
+        dto.setTotalPrice(totalPrice(item, flashSale, addons));
+
+        dto.setImage(product.getThumbnailUrl());
+        dto.setInStock(variant.isActive() && variant.getStockQuantity() > 0);
+        // price là giá gốc của variant
+        dto.setPrice(variant.getPrice().doubleValue());
+        dto.setIsActive(product.isActive());
+
+        // variantAttributes: chỉ variant hiện tại (cho UI card), allVariantAttributes: mọi variant (cho modal)
+        List<ProductDetail> currentVariantDetails = productDetails.stream()
+                .filter(pd -> pd.getVariant().getId().equals(variant.getId()))
+                .toList();
+        dto.setVariantAttributes(toVariantAttributes(currentVariantDetails));
+        dto.setAllVariantAttributes(toVariantAttributes(productDetails));
+
+        String variantAttributeNames = currentVariantDetails.stream()
+                .map(pd -> pd.getAttributeValue().getValue())
+                .collect(Collectors.joining(", "));
+        dto.setVariantAttributeNames(variantAttributeNames.isEmpty() ? variant.getSku() : variantAttributeNames);
+
+        dto.setAvailableAttributes(toAvailableAttributes(productDetails));
+
+        dto.setVariants(graph.activeVariantsByProduct().getOrDefault(productId, Collections.emptyList()).stream()
+                .map(v -> {
+                    VariantDTO vDTO = new VariantDTO();
+                    vDTO.setId(v.getId());
+                    vDTO.setSku(v.getSku());
+                    return vDTO;
+                })
+                .collect(Collectors.toList()));
+        return dto;
+    }
+
+    private List<VariantAttributeDTO> toVariantAttributes(List<ProductDetail> details) {
+        return details.stream()
+                .map(pd -> {
+                    VariantAttributeDTO vaDTO = new VariantAttributeDTO();
+                    vaDTO.setVariantId(pd.getVariant().getId());
+                    vaDTO.setAttributeName(pd.getAttributeValue().getAttribute().getName());
+                    vaDTO.setAttributeValue(pd.getAttributeValue().getValue());
+                    return vaDTO;
+                })
+                .collect(Collectors.toList());
+    }
+
+    // Các thuộc tính của sản phẩm cùng giá trị khác nhau, suy ra từ ProductDetail đã nạp
+    private List<AttributeDTO> toAvailableAttributes(List<ProductDetail> details) {
+        Map<Long, Attribute> attributes = new LinkedHashMap<>();
+        Map<Long, Set<String>> valuesByAttribute = new HashMap<>();
+        for (ProductDetail pd : details) {
+            Attribute attribute = pd.getAttributeValue().getAttribute();
+            attributes.putIfAbsent(attribute.getId(), attribute);
+            valuesByAttribute.computeIfAbsent(attribute.getId(), id -> new LinkedHashSet<>())
+                    .add(pd.getAttributeValue().getValue());
+        }
+
+        List<AttributeDTO> result = new ArrayList<>(attributes.size());
+        for (Attribute attribute : attributes.values()) {
+            AttributeDTO attrDTO = new AttributeDTO();
+            attrDTO.setName(attribute.getName());
+            attrDTO.setValues(new ArrayList<>(valuesByAttribute.get(attribute.getId())));
+            result.add(attrDTO);
+        }
+        return result;
+    }
+
+    /**
+     * (giá variant sau flash sale + tổng addon) * số lượng
+     */
+    static double totalPrice(CartItem item, FlashSale flashSale, List<CartItemAddon> addons) {
+        double basePrice = item.getVariant().getPrice().doubleValue();
+        if (flashSale != null) {
+            basePrice = basePrice * (100 - flashSale.getPercentageDiscount()) / 100.0;
+        }
+
+        double addonPrice = addons.stream()
+                .mapToDouble(addon -> addon.getAddon().getPriceAdjust().doubleValue())
+                .sum();
+        return (basePrice + addonPrice) * item.getQuantity();
+    }
+}
@@ -0,0 +1,113 @@
+package com.quadra.ecommerce_api.service.customer.product;
+
+import com.quadra.ecommerce_api.entity.order.Order;
+import com.quadra.ecommerce_api.entity.order.ProductReview;
+import com.quadra.ecommerce_api.entity.product.Product;
+import com.quadra.ecommerce_api.entity.product.ProductVariant;
+import com.quadra.ecommerce_api.enums.order.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Gom các sản phẩm bị thay đổi trong 1 transaction (sản phẩm, biến thể, review, đơn hàng vào / ra trạng thái đã bán)
+ * và báo cho ProductSearchIndex sau khi commit. Đăng ký trong HibernateEventConfig.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSearchEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String STATUS = "status";
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private static final class PendingChanges {
+        final Set<Long> productIds = new HashSet<>();
+        final Set<Long> orderIds = new HashSet<>();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        collect(event.getEntity(), null, event.getPersister());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        collect(event.getEntity(), event.getOldState(), event.getPersister());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        collect(event.getEntity(), event.getDeletedState(), event.getPersister());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void collect(Object entity, Object[] oldState, EntityPersister persister) {
+        if (entity instanceof Product product) {
+            enqueue(Set.of(product.getId()), Set.of());
+        } else if (entity instanceof ProductVariant variant && variant.getProduct() != null) {
+            enqueue(Set.of(variant.getProduct().getId()), Set.of());
+        } else if (entity instanceof Order order && affectsSoldCount(order, oldState, persister)) {
+            enqueue(Set.of(), Set.of(order.getId()));
+        } else if (entity instanceof ProductReview review && review.getOrderItem() != null) {
+            enqueue(Set.of(), Set.of(review.getOrderItem().getOrder().getId()));
+        }
+    }
+
+    // Số lượng đã bán chỉ đổi khi đơn chuyển vào hoặc ra khỏi trạng thái đã bán (xem ProductStatsService.countsAsSold)
+    private boolean affectsSoldCount(Order order, Object[] oldState, EntityPersister persister) {
+        OrderStatus oldStatus = null;
+        if (oldState != null) {
+            String[] properties = persister.getPropertyNames();
+            for (int i = 0; i < properties.length; i++) {
+                if (properties[i].equals(STATUS)) {
+                    oldStatus = (OrderStatus) oldState[i];
+                    break;
+                }
+            }
+        }
+        return ProductStatsService.countsAsSold(oldStatus) != ProductStatsService.countsAsSold(order.getStatus());
+    }
+
+    private void enqueue(Set<Long> productIds, Set<Long> orderIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productSearchIndex.markDirty(productIds, orderIds);
+            return;
+        }
+
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            PendingChanges created = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    productSearchIndex.markDirty(created.productIds, created.orderIds);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ProductSearchEventListener.this);
+                }
+            });
+            pending = created;
+        }
+        pending.productIds.addAll(productIds);
+        pending.orderIds.addAll(orderIds);
+    }
+}
@@ -0,0 +1,448 @@
+package com.quadra.ecommerce_api.service.customer.product;
+
+import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
+import com.quadra.ecommerce_api.repository.product.ProductRepo;
+import com.quadra.ecommerce_api.repository.product.ProductStatRepo;
+import com.quadra.ecommerce_api.repository.product.ProductVariantRepo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Chỉ mục tìm kiếm sản phẩm trong bộ nhớ: từ khoá (đã bỏ dấu tiếng Việt) → sản phẩm, kèm giá, số lượng đã bán,
+ * đánh giá, địa chỉ cửa hàng và loại hàng đã tính sẵn, nên tìm kiếm không còn quét LIKE '%kw%'
+ * và chạy subquery tương quan trên toàn bảng products.
+ * Dựng lại toàn bộ từ MySQL khi khởi động (xem ProductSearchIndexTasks), sau đó chỉ nạp lại các sản phẩm
+ * bị thay đổi (xem {@link ProductSearchEventListener}). Các node khác được báo qua Redis pub/sub.
+ */
+@Service
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final String DIRTY_CHANNEL = "search:product:dirty";
+    private static final String PRODUCT_PREFIX = "p:";
+    private static final String ORDER_PREFIX = "o:";
+    private static final int BATCH_SIZE = 500;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ProductRepo productRepo;
+    private final ProductVariantRepo productVariantRepo;
+    private final OrderItemRepo orderItemRepo;
+    private final ProductStatRepo productStatRepo;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    // null khi chưa dựng xong, lúc đó ProductService tìm bằng SQL như cũ
+    private volatile Index index;
+    private final Set<Long> dirtyProductIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> dirtyOrderIds = ConcurrentHashMap.newKeySet();
+    // rebuild và cập nhật từng phần không được chạy chồng lên nhau
+    private final Object writeLock = new Object();
+
+    public ProductSearchIndex(ProductRepo productRepo,
+                              ProductVariantRepo productVariantRepo,
+                              OrderItemRepo orderItemRepo,
+                              ProductStatRepo productStatRepo,
+                              StringRedisTemplate redisTemplate,
+                              RedisMessageListenerContainer listenerContainer) {
+        this.productRepo = productRepo;
+        this.productVariantRepo = productVariantRepo;
+        this.orderItemRepo = orderItemRepo;
+        this.productStatRepo = productStatRepo;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    public record SearchHit(Long productId, double price, long soldCount, double rating) {
+    }
+
+    private record Doc(Long id, String[] tokens, String address, Long itemTypeId, LocalDateTime createdAt,
+                       boolean active, BigDecimal[] prices, double minPrice, long soldCount, double rating) {
+
+        boolean matchesAll(List<String> queryTokens) {
+            for (String queryToken : queryTokens) {
+                boolean found = false;
+                for (String token : tokens) {
+                    if (token.startsWith(queryToken)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) return false;
+            }
+            return true;
+        }
+
+        boolean hasPriceBetween(BigDecimal min, BigDecimal max) {
+            for (BigDecimal price : prices) {
+                if ((min == null || price.compareTo(min) >= 0) && (max == null || price.compareTo(max) <= 0)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * docs và postings luôn được ghi theo thứ tự: thêm token mới → thay doc → xoá token cũ,
+     * người đọc kiểm tra lại doc nên không bao giờ thấy kết quả sai dù đang có cập nhật song song.
+     */
+    private static final class Index {
+        final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+
+        void put(Doc doc) {
+            for (String token : doc.tokens()) {
+                postings.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(doc.id());
+            }
+            Doc old = docs.put(doc.id(), doc);
+            if (old != null) {
+                Set<String> current = new HashSet<>(Arrays.asList(doc.tokens()));
+                for (String token : old.tokens()) {
+                    if (!current.contains(token)) {
+                        removePosting(token, doc.id());
+                    }
+                }
+            }
+        }
+
+        void remove(Long productId) {
+            Doc old = docs.remove(productId);
+            if (old == null) return;
+            for (String token : old.tokens()) {
+                removePosting(token, productId);
+            }
+        }
+
+        private void removePosting(String token, Long productId) {
+            postings.computeIfPresent(token, (t, ids) -> {
+                ids.remove(productId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+
+        // Sản phẩm có ít nhất 1 token bắt đầu bằng prefix
+        Set<Long> idsWithPrefix(String prefix) {
+            Set<Long> result = new HashSet<>();
+            for (Set<Long> ids : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                result.addAll(ids);
+            }
+            return result;
+        }
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                if (body.startsWith(PRODUCT_PREFIX)) {
+                    dirtyProductIds.addAll(parseIds(body.substring(PRODUCT_PREFIX.length())));
+                } else if (body.startsWith(ORDER_PREFIX)) {
+                    dirtyOrderIds.addAll(parseIds(body.substring(ORDER_PREFIX.length())));
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid search index message: {}", body);
+            }
+        }, new ChannelTopic(DIRTY_CHANNEL));
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * Tìm sản phẩm đang bán theo từ khoá / loại hàng / tỉnh thành / khoảng giá.
+     * Trả về Optional.empty() nếu chỉ mục chưa sẵn sàng.
+     */
+    public Optional<Page<SearchHit>> search(Collection<Long> itemTypeIds,
+                                            String keyword,
+                                            String province,
+                                            BigDecimal priceMin,
+                                            BigDecimal priceMax,
+                                            String sortBy,
+                                            Pageable pageable) {
+        Index current = index;
+        if (current == null) return Optional.empty();
+
+        List<String> queryTokens = keyword != null ? tokenize(keyword) : List.of();
+        String foldedProvince = province != null && !province.isBlank() ? fold(province.trim()) : null;
+        Set<Long> itemTypes = itemTypeIds != null ? new HashSet<>(itemTypeIds) : null;
+
+        Collection<Long> candidates = queryTokens.isEmpty() ? current.docs.keySet() : candidatesOf(current, queryTokens);
+
+        List<Doc> matches = new ArrayList<>();
+        for (Long id : candidates) {
+            Doc doc = current.docs.get(id);
+            if (doc == null || !doc.active() || doc.prices().length == 0) continue;
+            if (!queryTokens.isEmpty() && !doc.matchesAll(queryTokens)) continue;
+            if (itemTypes != null && !itemTypes.contains(doc.itemTypeId())) continue;
+            if (foldedProvince != null && (doc.address() == null || !doc.address().contains(foldedProvince))) continue;
+            if ((priceMin != null || priceMax != null) && !doc.hasPriceBetween(priceMin, priceMax)) continue;
+            matches.add(doc);
+        }
+
+        matches.sort(comparatorOf(sortBy));
+
+        int from = (int) Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        List<SearchHit> content = matches.subList(from, to).stream()
+                .map(doc -> new SearchHit(doc.id(), doc.minPrice(), doc.soldCount(), doc.rating()))
+                .toList();
+        return Optional.of(new PageImpl<>(content, pageable, matches.size()));
+    }
+
+    /**
+     * Đánh dấu sản phẩm / đơn hàng cần nạp lại, áp dụng ở lần applyPendingChanges() kế tiếp trên mọi node
+     */
+    public void markDirty(Collection<Long> productIds, Collection<Long> orderIds) {
+        dirtyProductIds.addAll(productIds);
+        dirtyOrderIds.addAll(orderIds);
+        try {
+            if (!productIds.isEmpty()) {
+                redisTemplate.convertAndSend(DIRTY_CHANNEL, PRODUCT_PREFIX + joinIds(productIds));
+            }
+            if (!orderIds.isEmpty()) {
+                redisTemplate.convertAndSend(DIRTY_CHANNEL, ORDER_PREFIX + joinIds(orderIds));
+            }
+        } catch (Exception e) {
+            // Node khác sẽ được sửa ở lần rebuild định kỳ
+            log.error("Error publishing search index changes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục từ MySQL rồi thay thế chỉ mục cũ
+     */
+    public void rebuild() {
+        synchronized (writeLock) {
+            long start = System.currentTimeMillis();
+
+            Map<Long, List<BigDecimal>> prices = groupPrices(productVariantRepo.findAllActivePrices());
+            Map<Long, Number> soldCounts = toMap(productStatRepo.findAllSoldCounts());
+            Map<Long, Number> ratings = toMap(productStatRepo.findAllAverageRatings());
+
+            Index rebuilt = new Index();
+            for (Object[] row : productRepo.findSearchRows()) {
+                rebuilt.put(toDoc(row, prices, soldCounts, ratings));
+            }
+            index = rebuilt;
+
+            log.info("Rebuilt product search index: {} products, {} tokens in {} ms",
+                    rebuilt.docs.size(), rebuilt.postings.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Nạp lại các sản phẩm đã được đánh dấu (sản phẩm / biến thể bị sửa, đơn hàng giao xong hoặc bị huỷ sau khi giao, review mới)
+     */
+    public void applyPendingChanges() {
+        synchronized (writeLock) {
+            Index current = index;
+            if (current == null) return;
+
+            Set<Long> productIds = drain(dirtyProductIds);
+            Set<Long> orderIds = drain(dirtyOrderIds);
+            Set<Long> pending = new HashSet<>(productIds);
+            try {
+                for (List<Long> chunk : chunks(orderIds)) {
+                    productIds.addAll(orderItemRepo.findProductIdsByOrderIds(chunk));
+                }
+                orderIds.clear();
+                pending.addAll(productIds);
+                if (productIds.isEmpty()) return;
+
+                for (List<Long> chunk : chunks(productIds)) {
+                    reindex(current, chunk);
+                    chunk.forEach(pending::remove);
+                }
+                log.debug("Reindexed {} products for search", productIds.size());
+            } finally {
+                // Lỗi giữa chừng (DB lỗi / timeout): trả lại các id chưa nạp để lần sau làm tiếp
+                if (!pending.isEmpty() || !orderIds.isEmpty()) {
+                    dirtyProductIds.addAll(pending);
+                    dirtyOrderIds.addAll(orderIds);
+                    log.warn("Search reindex interrupted, {} products and {} orders kept for retry",
+                            pending.size(), orderIds.size());
+                }
+            }
+        }
+    }
+
+    private void reindex(Index current, List<Long> productIds) {
+        Map<Long, List<BigDecimal>> prices = groupPrices(productVariantRepo.findActivePricesByProductIds(productIds));
+        Map<Long, Number> soldCounts = toMap(productStatRepo.findSoldCountsByProductIds(productIds));
+        Map<Long, Number> ratings = toMap(productStatRepo.findAverageRatingsByProductIds(productIds));
+
+        Set<Long> found = new HashSet<>();
+        for (Object[] row : productRepo.findSearchRowsByIds(productIds)) {
+            Doc doc = toDoc(row, prices, soldCounts, ratings);
+            current.put(doc);
+            found.add(doc.id());
+        }
+        for (Long productId : productIds) {
+            if (!found.contains(productId)) {
+                current.remove(productId);
+            }
+        }
+    }
+
+    // Hàng [id, name, storeId, storeAddress, itemTypeId, createdAt, isActive] của ProductRepo.findSearchRows
+    private Doc toDoc(Object[] row,
+                      Map<Long, List<BigDecimal>> prices,
+                      Map<Long, Number> soldCounts,
+                      Map<Long, Number> ratings) {
+        Long id = ((Number) row[0]).longValue();
+        String address = (String) row[3];
+        BigDecimal[] productPrices = prices.getOrDefault(id, List.of()).toArray(new BigDecimal[0]);
+        double minPrice = Arrays.stream(productPrices).min(Comparator.naturalOrder())
+                .map(BigDecimal::doubleValue)
+                .orElse(0.0);
+        Number sold = soldCounts.get(id);
+        Number rating = ratings.get(id);
+
+        return new Doc(
+                id,
+                tokenize((String) row[1]).toArray(new String[0]),
+                address != null ? fold(address) : null,
+                row[4] != null ? ((Number) row[4]).longValue() : null,
+                (LocalDateTime) row[5],
+                Boolean.TRUE.equals(row[6]),
+                productPrices,
+                minPrice,
+                sold != null ? sold.longValue() : 0L,
+                rating != null ? rating.doubleValue() : 0.0
+        );
+    }
+
+    // Giao các tập sản phẩm theo từng token truy vấn, bắt đầu từ tập nhỏ nhất
+    private Set<Long> candidatesOf(Index current, List<String> queryTokens) {
+        List<Set<Long>> sets = new ArrayList<>(queryTokens.size());
+        for (String token : queryTokens) {
+            Set<Long> ids = current.idsWithPrefix(token);
+            if (ids.isEmpty()) return Collections.emptySet();
+            sets.add(ids);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = sets.get(0);
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result.retainAll(sets.get(i));
+        }
+        return result;
+    }
+
+    private Comparator<Doc> comparatorOf(String sortBy) {
+        Comparator<Doc> byId = Comparator.comparing(Doc::id);
+        if (sortBy == null) return byId;
+
+        return switch (sortBy) {
+            case "priceAsc" -> Comparator.comparingDouble(Doc::minPrice).thenComparing(byId);
+            case "priceDesc" -> Comparator.comparingDouble(Doc::minPrice).reversed().thenComparing(byId);
+            case "sold" -> Comparator.comparingLong(Doc::soldCount).reversed().thenComparing(byId);
+            case "rating" -> Comparator.comparingDouble(Doc::rating).reversed().thenComparing(byId);
+            default -> Comparator.comparing(Doc::createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                    .thenComparing(byId);
+        };
+    }
+
+    /**
+     * Bỏ dấu tiếng Việt và chuyển về chữ thường: "Áo Đầm" → "ao dam"
+     */
+    static String fold(String text) {
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return stripped.replace('đ', 'd').replace('Đ', 'D').toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) return List.of();
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : TOKEN_SEPARATOR.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private Map<Long, List<BigDecimal>> groupPrices(List<Object[]> rows) {
+        Map<Long, List<BigDecimal>> map = new HashMap<>();
+        for (Object[] row : rows) {
+            if (row[1] == null) continue;
+            map.computeIfAbsent(((Number) row[0]).longValue(), id -> new ArrayList<>()).add((BigDecimal) row[1]);
+        }
+        return map;
+    }
+
+    // Hàng [productId, value] của các truy vấn GROUP BY
+    private Map<Long, Number> toMap(List<Object[]> rows) {
+        Map<Long, Number> map = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            map.put(((Number) row[0]).longValue(), (Number) row[1]);
+        }
+        return map;
+    }
+
+    private Set<Long> drain(Set<Long> source) {
+        Set<Long> drained = new HashSet<>();
+        for (Long id : source) {
+            if (source.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+
+    private List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> list = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += BATCH_SIZE) {
+            chunks.add(list.subList(i, Math.min(i + BATCH_SIZE, list.size())));
+        }
+        return chunks;
+    }
+
+    private String joinIds(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private List<Long> parseIds(String csv) {
+        List<Long> ids = new ArrayList<>();
+        for (String part : csv.split(",")) {
+            if (!part.isBlank()) {
+                ids.add(Long.parseLong(part.trim()));
+            }
+        }
+        return ids;
+    }
+}
@@ -7,15 +7,19 @@ import com.quadra.ecommerce_api.entity.discount.FlashSale;
 import com.quadra.ecommerce_api.entity.order.ProductReview;
 import com.quadra.ecommerce_api.entity.product.*;
 import com.quadra.ecommerce_api.entity.store.Store;
+import com.quadra.ecommerce_api.entity.store.StoreStat;
+import com.quadra.ecommerce_api.enums.redis.RedisCacheKey;
 import com.quadra.ecommerce_api.repository.discount.DiscountCodeRepository;
 import com.quadra.ecommerce_api.mapper.custom.product.response.ProductCardMapper;
 import com.quadra.ecommerce_api.repository.flashsale.FlashSaleRepo;
-import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
 import com.quadra.ecommerce_api.repository.order.ProductReviewRepo;
 import com.quadra.ecommerce_api.repository.product.*;
 import com.quadra.ecommerce_api.repository.store.StoreFavoriteRepo;
+import com.quadra.ecommerce_api.repository.store.StoreRepo;
 import com.quadra.ecommerce_api.repository.user.FavoriteRepo;
+import com.quadra.ecommerce_api.service.flashsale.FlashSaleReservationService;
 import com.quadra.ecommerce_api.service.store_owner.response.store.ItemTypeService;
+import com.quadra.ecommerce_api.utils.RedisCacheUtil;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
@@ -44,7 +48,11 @@ public class ProductService {
     private final ItemTypeService itemTypeService;
     protected final FlashSaleRepo flashSaleRepo;
     private final StoreFavoriteRepo storeFavoriteRepo;
-    private final OrderItemRepo orderItemRepo;
+    private final StoreRepo storeRepo;
+    private final ProductStatsService productStatsService;
+    private final FlashSaleReservationService flashSaleReservationService;
+    private final RedisCacheUtil redisCacheUtil;
+    private final ProductSearchIndex productSearchIndex;
 
     public ProductService(ProductRepo productRepo,
                           AttributeRepo attributeRepo,
@@ -61,7 +69,11 @@ public class ProductService {
                           ItemTypeService itemTypeService,
                           FlashSaleRepo flashSaleRepo,
                           StoreFavoriteRepo storeFavoriteRepo,
-                          OrderItemRepo orderItemRepo) {
+                          StoreRepo storeRepo,
+                          ProductStatsService productStatsService,
+                          FlashSaleReservationService flashSaleReservationService,
+                          RedisCacheUtil redisCacheUtil,
+                          ProductSearchIndex productSearchIndex) {
         this.productRepo = productRepo;
         this.attributeRepo = attributeRepo;
         this.productVariantRepo = productVariantRepo;
@@ -77,14 +89,39 @@ public class ProductService {
         this.itemTypeService = itemTypeService;
         this.flashSaleRepo = flashSaleRepo;
         this.storeFavoriteRepo = storeFavoriteRepo;
-        this.orderItemRepo = orderItemRepo;
+        this.storeRepo = storeRepo;
+        this.productStatsService = productStatsService;
+        this.flashSaleReservationService = flashSaleReservationService;
+        this.redisCacheUtil = redisCacheUtil;
+        this.productSearchIndex = productSearchIndex;
     }
 
+    /**
+     * Phần tĩnh của sản phẩm (thông tin, biến thể, thuộc tính, addon, ảnh, thông số) được cache dưới PRODUCT_DETAIL
+     * qua getOrLoad (L1 + Redis, mỗi key 1 thread nạp), bị xoá khi sản phẩm được sửa / bật / tắt.
+     * Mỗi request đọc lại cửa hàng, tồn kho, flash sale, voucher, đánh giá, lượt bán / điểm và trạng thái yêu thích.
+     */
     @Transactional(readOnly = true)
     public ProductDetailDTO getProductDetailBySlug(String slug, Long userId) {
-        Product product = productRepo.findBySlugAndIsActiveTrue(slug)
+        Long productId = productRepo.findActiveIdBySlug(slug)
                 .orElseThrow(() -> new EntityNotFoundException("Product not found with slug: " + slug));
 
+        ProductDetailDTO snapshot = redisCacheUtil.getOrLoad(RedisCacheKey.PRODUCT_DETAIL, new Object[]{productId},
+                ProductDetailDTO.class, () -> buildProductDetailSnapshot(productId));
+        // Snapshot dùng chung giữa các request (L1), chỉ ghi lên bản sao
+        ProductDetailDTO dto = copyOf(snapshot);
+
+        applyStore(dto, userId);
+        applyStockAndFlashSale(dto);
+        applyDiscountsReviewsAndStats(dto);
+
+        return dto;
+    }
+
+    private ProductDetailDTO buildProductDetailSnapshot(Long productId) {
+        Product product = productRepo.findById(productId)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + productId));
+
         ProductDetailDTO dto = new ProductDetailDTO();
         dto.setId(product.getId());
         dto.setName(product.getName());
@@ -94,64 +131,40 @@ public class ProductService {
         dto.setVideoUrl(product.getVideoUrl());
         dto.setStoreId(product.getStore().getId());
 
-        // Store with rating, productCount, and reviewCount
-        Store store = product.getStore();
-        StoreDTO storeDTO = new StoreDTO();
-        storeDTO.setId(store.getId());
-        storeDTO.setName(store.getName());
-        storeDTO.setSlug(store.getSlug());
-        storeDTO.setAddress(store.getAddress());
-        storeDTO.setDescription(store.getDescription());
-        storeDTO.setLogoUrl(store.getLogoUrl());
-        storeDTO.setRating(calculateStoreRating(store.getId()));
-        storeDTO.setProductCount(calculateProductCount(store.getId()));
-        storeDTO.setReviewCount(calculateStoreReviewCount(store.getId()));
-        storeDTO.setFavorite(userId != null && storeFavoriteRepo.existsByUserIdAndStoreId(userId, store.getId()));
-        dto.setStore(storeDTO);
-
-        // Attributes
-        List<Attribute> attributes = attributeRepo.findByProductIdThroughDetails(product.getId());
-        List<AttributeDTO> attributeDTOs = attributes.stream().map(attr -> {
-            AttributeDTO attrDTO = new AttributeDTO();
-            attrDTO.setName(attr.getName());
-            List<AttributeValue> values = productDetailRepo.findByProductId(product.getId()).stream()
-                    .map(ProductDetail::getAttributeValue)
-                    .filter(av -> av.getAttribute().getId().equals(attr.getId()))
-                    .distinct()
-                    .collect(Collectors.toList());
-            attrDTO.setValues(values.stream().map(AttributeValue::getValue).collect(Collectors.toList()));
-            return attrDTO;
-        }).collect(Collectors.toList());
-        dto.setAvailableAttributes(attributeDTOs);
-
-        // Tìm flash sale active cho product
-        Optional<FlashSale> optionalFlashSale = flashSaleRepo.findActiveByProduct_Id(product.getId());
-        FlashSale flashSale = optionalFlashSale.orElse(null);
-        boolean hasFlashSale = optionalFlashSale.isPresent();
+        // Attributes + Variant Attributes (1 truy vấn fetch join cho cả hai)
+        List<ProductDetail> productDetails = productDetailRepo.findByProductIdWithAttributes(productId);
+        Map<Long, AttributeDTO> attributeById = new LinkedHashMap<>();
+        List<VariantAttributeDTO> variantAttributeDTOs = new ArrayList<>();
+        for (ProductDetail pd : productDetails) {
+            AttributeValue av = pd.getAttributeValue();
+            Attribute attr = av.getAttribute();
+
+            AttributeDTO attrDTO = attributeById.computeIfAbsent(attr.getId(), id -> {
+                AttributeDTO created = new AttributeDTO();
+                created.setName(attr.getName());
+                created.setValues(new ArrayList<>());
+                return created;
+            });
+            if (!attrDTO.getValues().contains(av.getValue())) {
+                attrDTO.getValues().add(av.getValue());
+            }
 
-        // Set flashSaleEndTime
-        dto.setFlashSaleEndTime(hasFlashSale ? flashSale.getEndTime() : null);
+            VariantAttributeDTO vaDTO = new VariantAttributeDTO();
+            vaDTO.setVariantId(pd.getVariant().getId());
+            vaDTO.setAttributeName(attr.getName());
+            vaDTO.setAttributeValue(av.getValue());
+            variantAttributeDTOs.add(vaDTO);
+        }
+        dto.setAvailableAttributes(new ArrayList<>(attributeById.values()));
+        dto.setVariantDetails(variantAttributeDTOs);
 
-        // Variants (áp dụng discount nếu có flash sale, giữ giá gốc)
-        List<ProductVariant> variants = productVariantRepo.findByProductIdAndIsActiveTrue(product.getId());
+        // Variants (giá gốc, giá flash sale được tính lại mỗi request)
+        List<ProductVariant> variants = productVariantRepo.findByProductIdAndIsActiveTrue(productId);
         List<VariantDTO> variantDTOs = variants.stream().map(v -> {
             VariantDTO vDTO = new VariantDTO();
             vDTO.setId(v.getId());
             vDTO.setSku(v.getSku());
-            BigDecimal originalPrice = v.getPrice();
-            vDTO.setPrice(originalPrice); // Giữ giá gốc
-
-            // Áp dụng discount nếu có flash sale
-            if (hasFlashSale) {
-                BigDecimal discountPercentage = BigDecimal.valueOf(flashSale.getPercentageDiscount())
-                        .divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP);
-                BigDecimal discountedPrice = originalPrice.multiply(BigDecimal.ONE.subtract(discountPercentage))
-                        .setScale(2, RoundingMode.HALF_UP);
-                vDTO.setDiscountedPrice(discountedPrice);
-            } else {
-                vDTO.setDiscountedPrice(null);
-            }
-
+            vDTO.setPrice(v.getPrice());
             vDTO.setStockQuantity(v.getStockQuantity());
             vDTO.setImageUrl(v.getImageUrl());
             vDTO.setAltText(v.getAltText());
@@ -159,67 +172,28 @@ public class ProductService {
         }).collect(Collectors.toList());
         dto.setVariants(variantDTOs);
 
-        Integer totalStockQuantity = variantDTOs.stream()
-                .mapToInt(v -> v.getStockQuantity() != null ? v.getStockQuantity() : 0)
-                .sum();
-        dto.setTotalStockQuantity(totalStockQuantity);
-
-        // Tính minPrice và maxPrice (dựa trên giá sau discount nếu có)
-        if (!variantDTOs.isEmpty()) {
-            List<BigDecimal> prices = variantDTOs.stream()
-                    .map(v -> v.getDiscountedPrice() != null ? v.getDiscountedPrice() : v.getPrice())
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-            BigDecimal minPrice = prices.isEmpty() ? null : prices.stream()
-                    .min(BigDecimal::compareTo)
-                    .orElse(null);
-            BigDecimal maxPrice = prices.isEmpty() ? null : prices.stream()
-                    .max(BigDecimal::compareTo)
-                    .orElse(null);
-            dto.setMinPrice(minPrice);
-            dto.setMaxPrice(maxPrice);
-            // Kiểm tra nếu tất cả giá giống nhau
-            boolean isSamePrice = prices.isEmpty() || prices.stream().allMatch(price -> price.compareTo(prices.get(0)) == 0);
-            dto.setSamePrice(isSamePrice);
-        } else {
-            dto.setMinPrice(null);
-            dto.setMaxPrice(null);
-            dto.setSamePrice(true);
-        }
-
-        // Variant Attributes
-        List<ProductDetail> productDetails = productDetailRepo.findByProductId(product.getId());
-        List<VariantAttributeDTO> variantAttributeDTOs = productDetails.stream().map(pd -> {
-            VariantAttributeDTO vaDTO = new VariantAttributeDTO();
-            vaDTO.setVariantId(pd.getVariant().getId());
-            vaDTO.setAttributeName(pd.getAttributeValue().getAttribute().getName());
-            vaDTO.setAttributeValue(pd.getAttributeValue().getValue());
-            return vaDTO;
-        }).collect(Collectors.toList());
-        dto.setVariantDetails(variantAttributeDTOs);
-
-        // Addon Groups
-        List<AddonGroup> addonGroups = addonGroupRepo.findByProductId(product.getId());
+        // Addon Groups (addon của mọi nhóm lấy trong 1 truy vấn)
+        Map<Long, List<AddonDTO>> addonsByGroup = addonRepo.findActiveByProductId(productId).stream()
+                .collect(Collectors.groupingBy(a -> a.getAddonGroup().getId(), Collectors.mapping(a -> {
+                    AddonDTO aDTO = new AddonDTO();
+                    aDTO.setId(a.getId());
+                    aDTO.setName(a.getName());
+                    aDTO.setPriceAdjust(a.getPriceAdjust());
+                    return aDTO;
+                }, Collectors.toList())));
+        List<AddonGroup> addonGroups = addonGroupRepo.findByProductId(productId);
         List<AddonGroupDTO> addonGroupDTOs = addonGroups.stream().map(ag -> {
             AddonGroupDTO agDTO = new AddonGroupDTO();
             agDTO.setId(ag.getId());
             agDTO.setName(ag.getName());
             agDTO.setMaxChoice(ag.getMaxChoice());
-            List<AddonDTO> addonDTOs = addonRepo.findByAddonGroupIdAndIsActiveTrue(ag.getId()).stream()
-                    .map(a -> {
-                        AddonDTO aDTO = new AddonDTO();
-                        aDTO.setId(a.getId());
-                        aDTO.setName(a.getName());
-                        aDTO.setPriceAdjust(a.getPriceAdjust());
-                        return aDTO;
-                    }).collect(Collectors.toList());
-            agDTO.setAddons(addonDTOs);
+            agDTO.setAddons(addonsByGroup.getOrDefault(ag.getId(), new ArrayList<>()));
             return agDTO;
         }).collect(Collectors.toList());
         dto.setAddonGroups(addonGroupDTOs);
 
         // Images
-        List<ProductImage> images = productImageRepo.findByProductId(product.getId());
+        List<ProductImage> images = productImageRepo.findByProductId(productId);
         List<ProductImageDTO> imageDTOs = images.stream().map(img -> {
             ProductImageDTO imgDTO = new ProductImageDTO();
             imgDTO.setImageUrl(img.getImageUrl());
@@ -230,7 +204,7 @@ public class ProductService {
         dto.setImages(imageDTOs);
 
         // Specifications
-        List<SpecificationValue> specifications = specificationValueRepo.findByProductId(product.getId());
+        List<SpecificationValue> specifications = specificationValueRepo.findByProductIdWithSpecification(productId);
         List<SpecificationDTO> specificationDTOs = specifications.stream().map(sv -> {
             SpecificationDTO sDTO = new SpecificationDTO();
             sDTO.setName(sv.getSpecification().getName());
@@ -239,8 +213,68 @@ public class ProductService {
         }).collect(Collectors.toList());
         dto.setSpecifications(specificationDTOs);
 
+        return dto;
+    }
+
+    private ProductDetailDTO copyOf(ProductDetailDTO snapshot) {
+        ProductDetailDTO dto = new ProductDetailDTO();
+        dto.setId(snapshot.getId());
+        dto.setName(snapshot.getName());
+        dto.setSlug(snapshot.getSlug());
+        dto.setDescription(snapshot.getDescription());
+        dto.setThumbnailUrl(snapshot.getThumbnailUrl());
+        dto.setVideoUrl(snapshot.getVideoUrl());
+        dto.setStoreId(snapshot.getStoreId());
+        dto.setCategoryId(snapshot.getCategoryId());
+        dto.setAvailableAttributes(snapshot.getAvailableAttributes());
+        dto.setVariantDetails(snapshot.getVariantDetails());
+        dto.setAddonGroups(snapshot.getAddonGroups());
+        dto.setImages(snapshot.getImages());
+        dto.setSpecifications(snapshot.getSpecifications());
+        // Biến thể bị ghi tồn kho / giá flash sale nên sao chép từng phần tử
+        dto.setVariants(snapshot.getVariants().stream().map(v -> {
+            VariantDTO copy = new VariantDTO();
+            copy.setId(v.getId());
+            copy.setSku(v.getSku());
+            copy.setPrice(v.getPrice());
+            copy.setStockQuantity(v.getStockQuantity());
+            copy.setImageUrl(v.getImageUrl());
+            copy.setAltText(v.getAltText());
+            return copy;
+        }).collect(Collectors.toList()));
+        return dto;
+    }
+
+    /**
+     * Tên, địa chỉ, logo, số sản phẩm của cửa hàng đổi độc lập với sản phẩm nên không nằm trong snapshot
+     */
+    private void applyStore(ProductDetailDTO dto, Long userId) {
+        Store store = storeRepo.findById(dto.getStoreId())
+                .orElseThrow(() -> new EntityNotFoundException("Store not found with id: " + dto.getStoreId()));
+        StoreDTO storeDTO = new StoreDTO();
+        storeDTO.setId(store.getId());
+        storeDTO.setName(store.getName());
+        storeDTO.setSlug(store.getSlug());
+        storeDTO.setAddress(store.getAddress());
+        storeDTO.setDescription(store.getDescription());
+        storeDTO.setLogoUrl(store.getLogoUrl());
+        storeDTO.setProductCount(calculateProductCount(store.getId()));
+        storeDTO.setFavorite(userId != null && storeFavoriteRepo.existsByUserIdAndStoreId(userId, store.getId()));
+        dto.setStore(storeDTO);
+    }
+
+    /**
+     * Voucher, đánh giá, lượt bán và điểm của sản phẩm / cửa hàng đổi theo đơn hàng và đánh giá mới nên không nằm trong snapshot
+     */
+    private void applyDiscountsReviewsAndStats(ProductDetailDTO dto) {
+        // Cửa hàng chưa có dòng store_stats: chưa bán, chưa có đánh giá
+        StoreStat storeStat = productStatsService.findStoreStat(dto.getStoreId())
+                .orElseGet(() -> StoreStat.builder().storeId(dto.getStoreId()).build());
+        dto.getStore().setRating(storeStat.getAverageRating());
+        dto.getStore().setReviewCount(calculateStoreReviewCount(storeStat));
+
         // Discount Codes
-        List<DiscountCode> discountCodes = discountCodeRepo.findActiveDiscountCodesByStore(product.getStore().getId());
+        List<DiscountCode> discountCodes = discountCodeRepo.findActiveDiscountCodesByStore(dto.getStoreId());
         List<DiscountCodeDTO> discountCodeDTOs = discountCodes.stream().map(dc -> {
             DiscountCodeDTO dcDTO = new DiscountCodeDTO();
             dcDTO.setId(dc.getId());
@@ -254,11 +288,12 @@ public class ProductService {
         }).collect(Collectors.toList());
         dto.setDiscountCodes(discountCodeDTOs);
 
-        dto.setSoldCount(calculateSoldCount(product.getId()));
-        dto.setAverageRating(calculateAverageRating(product.getId()));
+        Optional<ProductStat> stat = productStatsService.findProductStat(dto.getId());
+        dto.setSoldCount(stat.map(ProductStat::getSoldCount).orElse(0L));
+        dto.setAverageRating(stat.map(ProductStat::getAverageRating).orElse(0.0));
 
         // Load reviews with user info
-        List<ProductReview> productReviews = productReviewRepo.findByProductIdWithUser(product.getId());
+        List<ProductReview> productReviews = productReviewRepo.findByProductIdWithUser(dto.getId());
         List<ReviewDTO> reviewDTOs = productReviews.stream().map(pr -> {
             ReviewDTO reviewDTO = new ReviewDTO();
             reviewDTO.setId(pr.getId());
@@ -271,42 +306,94 @@ public class ProductService {
             return reviewDTO;
         }).collect(Collectors.toList());
         dto.setReviews(reviewDTOs);
+    }
+
+    /**
+     * Tồn kho, giá flash sale và min/max price luôn lấy mới, không nằm trong snapshot
+     */
+    private void applyStockAndFlashSale(ProductDetailDTO dto) {
+        Map<Long, Integer> stockByVariant = new HashMap<>();
+        for (Object[] row : productVariantRepo.findActiveStockByProductId(dto.getId())) {
+            stockByVariant.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+
+        // Biến thể đã ngừng bán sau khi snapshot được tạo thì bỏ qua
+        List<VariantDTO> variantDTOs = dto.getVariants().stream()
+                .filter(v -> stockByVariant.containsKey(v.getId()))
+                .collect(Collectors.toList());
+        variantDTOs.forEach(v -> v.setStockQuantity(stockByVariant.get(v.getId())));
+        dto.setVariants(variantDTOs);
+
+        // Tìm flash sale active cho product
+        FlashSale flashSale = flashSaleRepo.findActiveByProduct_Id(dto.getId()).orElse(null);
+        boolean hasFlashSale = flashSale != null;
+
+        // Set flashSaleEndTime
+        dto.setFlashSaleEndTime(hasFlashSale ? flashSale.getEndTime() : null);
+
+        // Áp dụng discount nếu có flash sale, giữ giá gốc
+        for (VariantDTO vDTO : variantDTOs) {
+            if (hasFlashSale) {
+                BigDecimal discountPercentage = BigDecimal.valueOf(flashSale.getPercentageDiscount())
+                        .divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP);
+                BigDecimal discountedPrice = vDTO.getPrice().multiply(BigDecimal.ONE.subtract(discountPercentage))
+                        .setScale(2, RoundingMode.HALF_UP);
+                vDTO.setDiscountedPrice(discountedPrice);
+            } else {
+                vDTO.setDiscountedPrice(null);
+            }
+        }
+
+        Integer totalStockQuantity = variantDTOs.stream()
+                .mapToInt(v -> v.getStockQuantity() != null ? v.getStockQuantity() : 0)
+                .sum();
+        dto.setTotalStockQuantity(totalStockQuantity);
+
+        // Tính minPrice và maxPrice (dựa trên giá sau discount nếu có)
+        if (!variantDTOs.isEmpty()) {
+            List<BigDecimal> prices = variantDTOs.stream()
+                    .map(v -> v.getDiscountedPrice() != null ? v.getDiscountedPrice() : v.getPrice())
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            BigDecimal minPrice = prices.isEmpty() ? null : prices.stream()
+                    .min(BigDecimal::compareTo)
+                    .orElse(null);
+            BigDecimal maxPrice = prices.isEmpty() ? null : prices.stream()
+                    .max(BigDecimal::compareTo)
+                    .orElse(null);
+            dto.setMinPrice(minPrice);
+            dto.setMaxPrice(maxPrice);
+            // Kiểm tra nếu tất cả giá giống nhau
+            boolean isSamePrice = prices.isEmpty() || prices.stream().allMatch(price -> price.compareTo(prices.get(0)) == 0);
+            dto.setSamePrice(isSamePrice);
+        } else {
+            dto.setMinPrice(null);
+            dto.setMaxPrice(null);
+            dto.setSamePrice(true);
+        }
 
-        // Flash Sale DTO (nếu có)
-        if (hasFlashSale && flashSale != null) {
+        // Flash Sale DTO (nếu có), số suất còn lại ưu tiên bộ đếm Redis
+        if (hasFlashSale) {
             FlashSaleDTO fsDTO = new FlashSaleDTO();
             fsDTO.setPercentageDiscount(flashSale.getPercentageDiscount());
-            fsDTO.setRemainingQuantity(flashSale.getQuantity() - flashSale.getSoldCount());
+            fsDTO.setRemainingQuantity(flashSaleReservationService.getRemaining(flashSale.getId())
+                    .orElse(flashSale.getQuantity() - flashSale.getSoldCount()));
             fsDTO.setStartTime(flashSale.getStartTime());
             fsDTO.setEndTime(flashSale.getEndTime());
             dto.setFlashSale(fsDTO);
         } else {
             dto.setFlashSale(null);
         }
-
-        return dto;
     }
 
-    private Long calculateSoldCount(Long productId) {
-        return Optional.ofNullable(orderItemRepo.calculateSoldCount(productId)).orElse(0L);
-    }
-
-    private Double calculateAverageRating(Long productId) {
-        return productReviewRepo.findAverageRatingByProductId(productId).orElse(0.0);
-    }
-
-    private Integer calculateStoreReviewCount(Long storeId) {
-        long reviewCount = productReviewRepo.countByStoreId(storeId);
+    private Integer calculateStoreReviewCount(StoreStat storeStat) {
+        long reviewCount = storeStat.getReviewCount();
         if (reviewCount > Integer.MAX_VALUE) {
             throw new IllegalStateException("Review count exceeds maximum integer value");
         }
         return (int) reviewCount;
     }
 
-    private Double calculateStoreRating(Long storeId) {
-        return productReviewRepo.findAverageRatingByStoreId(storeId).orElse(0.0);
-    }
-
     private Integer calculateProductCount(Long storeId) {
         long productCount = productRepo.countByStoreIdAndIsActiveTrue(storeId);
         if (productCount > Integer.MAX_VALUE) {
@@ -331,6 +418,58 @@ public class ProductService {
             int page,
             int size) {
 
+        List<Long> itemTypeIds = (itemTypeId != null)
+                ? itemTypeService.getAllChildItemTypeIds(itemTypeId)
+                : null;
+
+        // Tìm trên chỉ mục trong bộ nhớ, chỉ nạp Product của trang hiện tại
+        Pageable pageRequest = PageRequest.of(page - 1, size);
+        Optional<Page<ProductSearchIndex.SearchHit>> indexed = productSearchIndex.search(
+                itemTypeIds, keyword, province, priceMin, priceMax, sortBy, pageRequest);
+        if (indexed.isPresent()) {
+            return toSearchCards(userId, indexed.get());
+        }
+
+        return searchProductsFromDb(userId, itemTypeIds, keyword, sortBy, province, priceMin, priceMax, page, size);
+    }
+
+    private Page<ProductCardDTO> toSearchCards(Long userId, Page<ProductSearchIndex.SearchHit> hits) {
+        List<Long> ids = hits.getContent().stream().map(ProductSearchIndex.SearchHit::productId).toList();
+        if (ids.isEmpty()) {
+            return new PageImpl<>(List.of(), hits.getPageable(), hits.getTotalElements());
+        }
+
+        Map<Long, Product> products = productRepo.findAllWithStoreByIdIn(ids).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+        Set<Long> favoriteProductIds = userId != null
+                ? new HashSet<>(favoriteRepo.findProductIdsByUserIdAndProductIdIn(userId, ids))
+                : Collections.emptySet();
+
+        // Sản phẩm có thể vừa bị xoá sau khi chỉ mục trả kết quả
+        List<ProductCardDTO> dtos = hits.getContent().stream()
+                .filter(hit -> products.containsKey(hit.productId()))
+                .map(hit -> productCardMapper.toDto(
+                        products.get(hit.productId()),
+                        hit.price(),
+                        hit.soldCount(),
+                        hit.rating(),
+                        favoriteProductIds.contains(hit.productId())
+                ))
+                .toList();
+        return new PageImpl<>(dtos, hits.getPageable(), hits.getTotalElements());
+    }
+
+    private Page<ProductCardDTO> searchProductsFromDb(
+            Long userId,
+            List<Long> itemTypeIds,
+            String keyword,
+            String sortBy,
+            String province,
+            BigDecimal priceMin,
+            BigDecimal priceMax,
+            int page,
+            int size) {
+
         // 1. Tạo Sort dựa trên sortBy
         Sort sort = Sort.unsorted();
         if (sortBy != null) {
@@ -346,22 +485,17 @@ public class ProductService {
         // 2. Tạo Pageable
         Pageable pageable = PageRequest.of(page - 1, size, sort);
 
-        // 3. Lấy danh sách itemTypeIds
-        List<Long> itemTypeIds = (itemTypeId != null)
-                ? itemTypeService.getAllChildItemTypeIds(itemTypeId)
-                : null;
-
-        // 4. Truy vấn Product
+        // 3. Truy vấn Product
         Page<Object[]> productPage = productRepo.searchProducts(
                 itemTypeIds, keyword, province, priceMin, priceMax, pageable
         );
 
-        // 5. Lấy danh sách favorite
+        // 4. Lấy danh sách favorite
         Set<Long> favoriteProductIds = favoriteRepo.findByUserId(userId).stream()
                 .map(fav -> fav.getProduct().getId())
                 .collect(Collectors.toSet());
 
-        // 6. Map Object[] → ProductCardDTO
+        // 5. Map Object[] → ProductCardDTO
         List<ProductCardDTO> dtos = productPage.getContent().stream()
                 .map(obj -> {
                     Product product = (Product) obj[0];
@@ -379,7 +513,7 @@ public class ProductService {
                 })
                 .toList();
 
-        // 7. Trả về PageImpl
+        // 6. Trả về PageImpl
         return new PageImpl<>(dtos, pageable, productPage.getTotalElements());
     }
 
@@ -0,0 +1,79 @@
+package com.quadra.ecommerce_api.service.customer.product;
+
+import com.quadra.ecommerce_api.entity.order.Order;
+import com.quadra.ecommerce_api.entity.order.ProductReview;
+import com.quadra.ecommerce_api.enums.order.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bắt các thay đổi Order (trạng thái) và ProductReview để cộng dồn product_stats / store_stats
+ * trong cùng transaction. Đăng ký trong HibernateEventConfig.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductStatsEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String STATUS = "status";
+    private static final String RATING = "rating";
+
+    private final ProductStatsService productStatsService;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Order order) {
+            // Dòng đơn được insert sau đơn, đơn tạo thẳng ở trạng thái đã bán sẽ được sửa ở lần dựng lại
+            productStatsService.applyOrderTransition(order.getId(), null, order.getStatus());
+        } else if (event.getEntity() instanceof ProductReview review) {
+            productStatsService.applyReview(review.getOrderItem().getId(), 1, review.getRating());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object[] oldState = event.getOldState();
+        if (oldState == null) return;
+
+        String[] properties = event.getPersister().getPropertyNames();
+        if (event.getEntity() instanceof Order order) {
+            productStatsService.applyOrderTransition(order.getId(),
+                    (OrderStatus) valueOf(properties, oldState, STATUS), order.getStatus());
+        } else if (event.getEntity() instanceof ProductReview review) {
+            Integer oldRating = (Integer) valueOf(properties, oldState, RATING);
+            if (oldRating == null) return;
+            productStatsService.applyReview(review.getOrderItem().getId(), 0, review.getRating() - oldRating);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        String[] properties = event.getPersister().getPropertyNames();
+        Object[] deletedState = event.getDeletedState();
+        if (event.getEntity() instanceof Order order) {
+            productStatsService.applyOrderTransition(order.getId(),
+                    (OrderStatus) valueOf(properties, deletedState, STATUS), null);
+        } else if (event.getEntity() instanceof ProductReview review) {
+            productStatsService.applyReview(review.getOrderItem().getId(), -1,
+                    -((Integer) valueOf(properties, deletedState, RATING)));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private Object valueOf(String[] properties, Object[] state, String property) {
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i].equals(property)) return state[i];
+        }
+        return null;
+    }
+}
@@ -0,0 +1,178 @@
+package com.quadra.ecommerce_api.service.customer.product;
+
+import com.quadra.ecommerce_api.entity.product.ProductStat;
+import com.quadra.ecommerce_api.entity.store.StoreStat;
+import com.quadra.ecommerce_api.enums.order.OrderStatus;
+import com.quadra.ecommerce_api.repository.product.ProductStatRepo;
+import com.quadra.ecommerce_api.repository.store.StoreStatRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+/**
+ * Số lượng đã bán / doanh thu / đánh giá của sản phẩm và cửa hàng được cộng dồn vào product_stats và store_stats
+ * khi đơn vào hoặc ra khỏi trạng thái đã bán và khi review được tạo / sửa / xoá (xem {@link ProductStatsEventListener}),
+ * nên trang sản phẩm, product card, top store... chỉ đọc 1 dòng theo khoá thay vì quét order_items / product_reviews.
+ * Bộ đếm được dựng lại từ dữ liệu gốc mỗi đêm (ProductStatsTasks) để sửa sai lệch.
+ */
+@Service
+@Slf4j
+public class ProductStatsService {
+
+    // Dòng của đơn đã giao, cộng (sign = 1) hoặc trừ (sign = -1) theo sản phẩm
+    private static final String PRODUCT_SALES_SQL =
+            "INSERT INTO product_stats (product_id, store_id, sold_count, revenue, review_count, rating_sum, " +
+            "average_rating, updated_at) " +
+            "SELECT pv.product_id, p.store_id, ? * SUM(oi.quantity), ? * SUM(oi.quantity * oi.price_at_time), " +
+            "0, 0, 0, NOW() " +
+            "FROM order_items oi " +
+            "JOIN product_variants pv ON pv.id = oi.variant_id " +
+            "JOIN products p ON p.id = pv.product_id " +
+            "WHERE oi.order_id = ? GROUP BY pv.product_id, p.store_id " +
+            "ON DUPLICATE KEY UPDATE sold_count = sold_count + VALUES(sold_count), " +
+            "revenue = revenue + VALUES(revenue), updated_at = NOW()";
+
+    private static final String STORE_SALES_SQL =
+            "INSERT INTO store_stats (store_id, sold_count, revenue, review_count, rating_sum, average_rating, updated_at) " +
+            "SELECT p.store_id, ? * SUM(oi.quantity), ? * SUM(oi.quantity * oi.price_at_time), 0, 0, 0, NOW() " +
+            "FROM order_items oi " +
+            "JOIN product_variants pv ON pv.id = oi.variant_id " +
+            "JOIN products p ON p.id = pv.product_id " +
+            "WHERE oi.order_id = ? GROUP BY p.store_id " +
+            "ON DUPLICATE KEY UPDATE sold_count = sold_count + VALUES(sold_count), " +
+            "revenue = revenue + VALUES(revenue), updated_at = NOW()";
+
+    // average_rating được gán sau cùng nên dùng review_count / rating_sum đã cộng
+    private static final String PRODUCT_REVIEW_SQL =
+            "INSERT INTO product_stats (product_id, store_id, sold_count, revenue, review_count, rating_sum, " +
+            "average_rating, updated_at) " +
+            "SELECT pv.product_id, p.store_id, 0, 0, ?, ?, ?, NOW() " +
+            "FROM order_items oi " +
+            "JOIN product_variants pv ON pv.id = oi.variant_id " +
+            "JOIN products p ON p.id = pv.product_id " +
+            "WHERE oi.id = ? " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + VALUES(review_count), " +
+            "rating_sum = rating_sum + VALUES(rating_sum), " +
+            "average_rating = IF(review_count > 0, rating_sum / review_count, 0), updated_at = NOW()";
+
+    private static final String STORE_REVIEW_SQL =
+            "INSERT INTO store_stats (store_id, sold_count, revenue, review_count, rating_sum, average_rating, updated_at) " +
+            "SELECT p.store_id, 0, 0, ?, ?, ?, NOW() " +
+            "FROM order_items oi " +
+            "JOIN product_variants pv ON pv.id = oi.variant_id " +
+            "JOIN products p ON p.id = pv.product_id " +
+            "WHERE oi.id = ? " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + VALUES(review_count), " +
+            "rating_sum = rating_sum + VALUES(rating_sum), " +
+            "average_rating = IF(review_count > 0, rating_sum / review_count, 0), updated_at = NOW()";
+
+    // Dựng lại product_stats của 1 cửa hàng từ order_items / product_reviews
+    private static final String REBUILD_PRODUCTS_SQL =
+            "INSERT INTO product_stats (product_id, store_id, sold_count, revenue, review_count, rating_sum, " +
+            "average_rating, updated_at) " +
+            "SELECT p.id, p.store_id, COALESCE(s.sold, 0), COALESCE(s.revenue, 0), COALESCE(r.cnt, 0), " +
+            "COALESCE(r.total, 0), COALESCE(r.total / r.cnt, 0), NOW() " +
+            "FROM products p " +
+            "LEFT JOIN (SELECT pv.product_id, SUM(oi.quantity) AS sold, SUM(oi.quantity * oi.price_at_time) AS revenue " +
+            "  FROM order_items oi " +
+            "  JOIN orders o ON o.id = oi.order_id " +
+            "  JOIN product_variants pv ON pv.id = oi.variant_id " +
+            "  WHERE o.store_id = ? AND o.status IN ('DELIVERED', 'CONFIRMED') " +
+            "  GROUP BY pv.product_id) s ON s.product_id = p.id " +
+            "LEFT JOIN (SELECT pv.product_id, COUNT(*) AS cnt, SUM(pr.rating) AS total " +
+            "  FROM product_reviews pr " +
+            "  JOIN order_items oi ON oi.id = pr.order_item_id " +
+            "  JOIN product_variants pv ON pv.id = oi.variant_id " +
+            "  JOIN products rp ON rp.id = pv.product_id " +
+            "  WHERE rp.store_id = ? " +
+            "  GROUP BY pv.product_id) r ON r.product_id = p.id " +
+            "WHERE p.store_id = ? " +
+            "ON DUPLICATE KEY UPDATE store_id = VALUES(store_id), sold_count = VALUES(sold_count), " +
+            "revenue = VALUES(revenue), review_count = VALUES(review_count), rating_sum = VALUES(rating_sum), " +
+            "average_rating = VALUES(average_rating), updated_at = NOW()";
+
+    private static final String REBUILD_STORE_SQL =
+            "INSERT INTO store_stats (store_id, sold_count, revenue, review_count, rating_sum, average_rating, updated_at) " +
+            "SELECT ?, COALESCE(SUM(sold_count), 0), COALESCE(SUM(revenue), 0), COALESCE(SUM(review_count), 0), " +
+            "COALESCE(SUM(rating_sum), 0), COALESCE(SUM(rating_sum) / NULLIF(SUM(review_count), 0), 0), NOW() " +
+            "FROM product_stats WHERE store_id = ? " +
+            "ON DUPLICATE KEY UPDATE sold_count = VALUES(sold_count), revenue = VALUES(revenue), " +
+            "review_count = VALUES(review_count), rating_sum = VALUES(rating_sum), " +
+            "average_rating = VALUES(average_rating), updated_at = NOW()";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductStatRepo productStatRepo;
+    private final StoreStatRepo storeStatRepo;
+    private final TransactionTemplate requiresNewTemplate;
+
+    public ProductStatsService(JdbcTemplate jdbcTemplate,
+                               ProductStatRepo productStatRepo,
+                               StoreStatRepo storeStatRepo,
+                               PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productStatRepo = productStatRepo;
+        this.storeStatRepo = storeStatRepo;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Đơn đã giao được tính là đã bán, kể cả sau khi khách xác nhận (CONFIRMED)
+     */
+    public static boolean countsAsSold(OrderStatus status) {
+        return status == OrderStatus.DELIVERED || status == OrderStatus.CONFIRMED;
+    }
+
+    /**
+     * Ghi nhận đơn đổi trạng thái (oldStatus = null khi tạo mới, newStatus = null khi xoá).
+     * Chạy bằng JDBC trên cùng connection/transaction với thay đổi của đơn.
+     */
+    public void applyOrderTransition(Long orderId, OrderStatus oldStatus, OrderStatus newStatus) {
+        boolean wasSold = countsAsSold(oldStatus);
+        if (wasSold == countsAsSold(newStatus)) return;
+
+        int sign = wasSold ? -1 : 1;
+        jdbcTemplate.update(PRODUCT_SALES_SQL, sign, sign, orderId);
+        jdbcTemplate.update(STORE_SALES_SQL, sign, sign, orderId);
+    }
+
+    /**
+     * Ghi nhận review của dòng đơn được tạo (reviewDelta = 1), xoá (-1) hoặc sửa điểm (0)
+     */
+    public void applyReview(Long orderItemId, int reviewDelta, int ratingDelta) {
+        if (reviewDelta == 0 && ratingDelta == 0) return;
+
+        // Giá trị khi chưa có dòng, lúc đó chỉ có thể là review đầu tiên
+        double insertedAverage = reviewDelta > 0 ? (double) ratingDelta / reviewDelta : 0;
+        jdbcTemplate.update(PRODUCT_REVIEW_SQL, reviewDelta, ratingDelta, insertedAverage, orderItemId);
+        jdbcTemplate.update(STORE_REVIEW_SQL, reviewDelta, ratingDelta, insertedAverage, orderItemId);
+    }
+
+    public Optional<ProductStat> findProductStat(Long productId) {
+        return productStatRepo.findById(productId);
+    }
+
+    public Optional<StoreStat> findStoreStat(Long storeId) {
+        return storeStatRepo.findById(storeId);
+    }
+
+    public boolean isEmpty() {
+        return storeStatRepo.count() == 0;
+    }
+
+    /**
+     * Dựng lại thống kê sản phẩm và cửa hàng của 1 cửa hàng từ dữ liệu gốc (backfill / đối soát)
+     */
+    public void rebuild(Long storeId) {
+        requiresNewTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(REBUILD_PRODUCTS_SQL, storeId, storeId, storeId);
+            jdbcTemplate.update(REBUILD_STORE_SQL, storeId, storeId);
+        });
+        log.debug("Rebuilt product stats for store {}", storeId);
+    }
+}
@@ -6,37 +6,35 @@ import com.quadra.ecommerce_api.dto.buyer.response.DiscountCodeDto;
 import com.quadra.ecommerce_api.dto.buyer.response.ProductDto;
 import com.quadra.ecommerce_api.dto.buyer.response.ShopDetailDto;
 import com.quadra.ecommerce_api.entity.product.Product;
-import com.quadra.ecommerce_api.entity.store.Category;
 import com.quadra.ecommerce_api.entity.store.Store;
 import com.quadra.ecommerce_api.entity.store.StoreFavorite;
+import com.quadra.ecommerce_api.entity.store.StoreStat;
 import com.quadra.ecommerce_api.entity.user.User;
+import com.quadra.ecommerce_api.enums.redis.RedisCacheKey;
 import com.quadra.ecommerce_api.enums.store.StoreStatus;
 import com.quadra.ecommerce_api.exception.ResourceNotFound;
-import com.quadra.ecommerce_api.repository.conversation.ConversationRepo;
 import com.quadra.ecommerce_api.repository.discount.DiscountCodeRepo;
 import com.quadra.ecommerce_api.repository.discount.UserSavedDiscountRepo;
-import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
-import com.quadra.ecommerce_api.repository.order.ProductReviewRepo;
 import com.quadra.ecommerce_api.repository.product.ProductRepo;
-import com.quadra.ecommerce_api.repository.product.ProductVariantRepo;
 import com.quadra.ecommerce_api.repository.store.CategoryRepo;
 import com.quadra.ecommerce_api.repository.store.StoreFavoriteRepo;
 import com.quadra.ecommerce_api.repository.store.StoreRepo;
-import com.quadra.ecommerce_api.repository.user.FavoriteRepo;
 import com.quadra.ecommerce_api.repository.user.UserRepo;
+import com.quadra.ecommerce_api.service.base.TaxonomySnapshotService;
+import com.quadra.ecommerce_api.service.chat.ChatStatsService;
+import com.quadra.ecommerce_api.service.customer.product.ProductStatsService;
+import com.quadra.ecommerce_api.service.home.ProductCardEnricher;
 import com.quadra.ecommerce_api.utils.RedisCacheUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -46,15 +44,14 @@ public class StoreService {
     private final CategoryRepo categoryRepo;
     private final ProductRepo productRepo;
     private final DiscountCodeRepo discountCodeRepo;
-    private final ProductVariantRepo productVariantRepo;
-    private final FavoriteRepo favoriteRepo;
-    private final OrderItemRepo orderItemRepo;
-    private final ProductReviewRepo productReviewRepo;
+    private final ProductStatsService productStatsService;
+    private final ProductCardEnricher productCardEnricher;
     private final RedisCacheUtil redisCacheUtil;
-    private final ConversationRepo conversationRepo;
+    private final ChatStatsService chatStatsService;
     private final StoreFavoriteRepo storeFavoriteRepo;
     private final UserSavedDiscountRepo userSavedDiscountRepo;
     private final UserRepo userRepo;
+    private final TaxonomySnapshotService taxonomySnapshotService;
 
     @Autowired
     public StoreService(
@@ -62,28 +59,26 @@ public class StoreService {
             CategoryRepo categoryRepo,
             ProductRepo productRepo,
             DiscountCodeRepo discountCodeRepo,
-            ProductVariantRepo productVariantRepo,
-            FavoriteRepo favoriteRepo,
-            OrderItemRepo orderItemRepo,
-            ProductReviewRepo productReviewRepo,
+            ProductStatsService productStatsService,
+            ProductCardEnricher productCardEnricher,
             RedisCacheUtil redisCacheUtil,
-            ConversationRepo conversationRepo,
+            ChatStatsService chatStatsService,
             StoreFavoriteRepo storeFavoriteRepo,
             UserSavedDiscountRepo userSavedDiscountRepo,
-            UserRepo userRepo) {
+            UserRepo userRepo,
+            TaxonomySnapshotService taxonomySnapshotService) {
         this.storeRepo = storeRepo;
         this.categoryRepo = categoryRepo;
         this.productRepo = productRepo;
         this.discountCodeRepo = discountCodeRepo;
-        this.productVariantRepo = productVariantRepo;
-        this.favoriteRepo = favoriteRepo;
-        this.orderItemRepo = orderItemRepo;
-        this.productReviewRepo = productReviewRepo;
+        this.productStatsService = productStatsService;
+        this.productCardEnricher = productCardEnricher;
         this.redisCacheUtil = redisCacheUtil;
-        this.conversationRepo = conversationRepo;
+        this.chatStatsService = chatStatsService;
         this.storeFavoriteRepo = storeFavoriteRepo;
         this.userSavedDiscountRepo = userSavedDiscountRepo;
         this.userRepo = userRepo;
+        this.taxonomySnapshotService = taxonomySnapshotService;
     }
 
     public Store getStoreById(Long id) {
@@ -91,14 +86,11 @@ public class StoreService {
     }
 
     public ShopDetailDto findStoreBySlug(String storeSlug, Long userId) {
-        String cacheKey = "STORE_DETAIL_" + storeSlug + "_USER_" + (userId != null ? userId : "ANONYMOUS");
-        Duration ttl = Duration.ofHours(1);
-
-        ShopDetailDto cached = redisCacheUtil.get(cacheKey, ShopDetailDto.class);
-        if (cached != null) {
-            return cached;
-        }
+        return redisCacheUtil.getOrLoad(RedisCacheKey.STORE_DETAIL, new Object[]{storeSlug, userId}, ShopDetailDto.class,
+                () -> loadStoreDetail(storeSlug, userId));
+    }
 
+    private ShopDetailDto loadStoreDetail(String storeSlug, Long userId) {
         Store store = storeRepo.findBySlugAndStatus(storeSlug, StoreStatus.ACTIVE)
                 .orElseThrow(() -> new ResourceNotFound("Store not found with slug: " + storeSlug));
 
@@ -125,37 +117,21 @@ public class StoreService {
         dto.setFollowerCount((int) storeFavoriteRepo.countDistinctUsersByStoreId(store.getId()));
 
         // Calculate review count and average rating
-        dto.setReviewCount((int) productReviewRepo.countByStoreId(store.getId()));
-        dto.setAverageRating(productReviewRepo.findAverageRatingByStoreId(store.getId()).orElse(0.0));
+        StoreStat storeStat = productStatsService.findStoreStat(store.getId())
+                .orElseGet(() -> StoreStat.builder().storeId(store.getId()).build());
+        dto.setReviewCount(storeStat.getReviewCount().intValue());
+        dto.setAverageRating(storeStat.getAverageRating());
 
         // Calculate chat response rate
-        long totalConversations = conversationRepo.countByStoreId(store.getId());
-        long respondedConversations = conversationRepo.countRespondedConversationsByStoreId(store.getId(), store.getOwner().getId());
-        double chatResponseRate = totalConversations > 0 ? (double) respondedConversations / totalConversations * 100 : 0.0;
-        dto.setChatResponseRate(chatResponseRate);
+        dto.setChatResponseRate(chatStatsService.responseRate(store.getId()));
 
         // Fetch categories
-        List<Category> categoryList = categoryRepo.findByStoreId(store.getId());
-        List<CategoryDto> categories = buildCategoryTree(categoryList);
-        dto.setCategories(categories);
+        dto.setCategories(taxonomySnapshotService.storeCategories(store.getId()).mapTree(
+                node -> new CategoryDto(node.id(), node.name(), node.slug(), node.description(), node.parentId()),
+                (parent, child) -> parent.getChildren().add(child)));
 
         // Fetch products
-        List<ProductDto> products = productRepo.findByStoreIdAndIsActiveTrue(store.getId())
-                .stream()
-                .map(product -> {
-                    ProductDto productDto = new ProductDto();
-                    productDto.setId(product.getId());
-                    productDto.setName(product.getName());
-                    productDto.setSlug(product.getSlug());
-                    productDto.setThumbnailUrl(product.getThumbnailUrl());
-                    productDto.setPrice(findMinPrice(product.getId()));
-                    productDto.setRating(findAverageRatingForProduct(product.getId()));
-                    productDto.setSoldCount(findSoldCount(product.getId()));
-                    productDto.setFav(userId != null && favoriteRepo.existsByUserIdAndProductId(userId, product.getId()));
-                    return productDto;
-                })
-                .collect(Collectors.toList());
-        dto.setProducts(products);
+        dto.setProducts(toProductDtos(productRepo.findByStoreIdAndIsActiveTrue(store.getId()), userId));
 
         // Fetch discount codes
         List<DiscountCodeDto> discountCodes = discountCodeRepo.findByStoreIdAndIsActiveTrue(store.getId())
@@ -178,88 +154,9 @@ public class StoreService {
                 ))
                 .collect(Collectors.toList());
         dto.setDiscountCodes(discountCodes);
-
-        redisCacheUtil.set(cacheKey, dto, ttl);
         return dto;
     }
 
-    // Method to build category tree structure
-    private List<CategoryDto> buildCategoryTree(List<Category> categoryList) {
-        // Map from entity to DTO
-        List<CategoryDto> categoryDtos = categoryList.stream()
-                .map(category -> new CategoryDto(
-                        category.getId(),
-                        category.getName(),
-                        category.getSlug(),
-                        category.getDescription(),
-                        category.getParent() != null ? category.getParent().getId() : null
-                ))
-                .collect(Collectors.toList());
-
-        Map<Long, CategoryDto> categoryMap = categoryDtos.stream()
-                .collect(Collectors.toMap(CategoryDto::getId, dto -> dto));
-
-        // Root categories (parentId = null)
-        List<CategoryDto> rootCategories = new ArrayList<>();
-
-        for (CategoryDto dto : categoryDtos) {
-            if (dto.getParentId() == null) {
-                dto.setChildren(new ArrayList<>());
-                rootCategories.add(dto);
-            } else {
-                CategoryDto parent = categoryMap.get(dto.getParentId());
-                if (parent != null) {
-                    if (parent.getChildren() == null) {
-                        parent.setChildren(new ArrayList<>());
-                    }
-                    parent.getChildren().add(dto);
-                }
-            }
-        }
-
-        return rootCategories;
-    }
-
-    // Reused methods from HomeService
-    public double findMinPrice(Long productId) {
-        String key = "PRODUCT_MIN_PRICE_" + productId;
-        Duration ttl = Duration.ofHours(1);
-
-        Double cached = redisCacheUtil.getDouble(key);
-        if (cached != null) return cached;
-
-        double minPrice = productVariantRepo.findMinPriceByProductId(productId)
-                .map(BigDecimal::doubleValue)
-                .orElse(0.0);
-
-        redisCacheUtil.setDouble(key, minPrice, ttl);
-        return minPrice;
-    }
-
-    public Long findSoldCount(Long productId) {
-        String key = "PRODUCT_SOLD_COUNT_" + productId;
-        Duration ttl = Duration.ofHours(1);
-
-        Long cached = redisCacheUtil.getLong(key);
-        if (cached != null) return cached;
-
-        Long actual = Optional.ofNullable(orderItemRepo.calculateSoldCount(productId)).orElse(0L);
-        redisCacheUtil.setLong(key, actual, ttl);
-        return actual;
-    }
-
-    public double findAverageRatingForProduct(Long productId) {
-        String key = "PRODUCT_RATING_" + productId;
-        Duration ttl = Duration.ofHours(1);
-
-        Double cached = redisCacheUtil.getDouble(key);
-        if (cached != null) return cached;
-
-        double rating = productReviewRepo.findAverageRatingByProductId(productId).orElse(0.0);
-        redisCacheUtil.setDouble(key, rating, ttl);
-        return rating;
-    }
-
     public Page<ProductDto> findStoreProducts(String storeSlug, Long categoryId, String sort, Long userId, Pageable pageable) {
         // Kiểm tra cửa hàng tồn tại
         Store store = storeRepo.findBySlugAndStatus(storeSlug, StoreStatus.ACTIVE)
@@ -267,26 +164,40 @@ public class StoreService {
 
         System.out.println("categoryId trong sv = " + categoryId);
 
-        // Lấy danh sách ID danh mục con nếu categoryId được cung cấp
-        List<Long> categoryIds = categoryId != null ? categoryRepo.findAllDescendantIds(categoryId) : null;
+        // Lấy danh sách ID danh mục và mọi danh mục con cháu từ ảnh chụp cây danh mục của shop
+        List<Long> categoryIds = categoryId != null
+                ? taxonomySnapshotService.storeCategories(store.getId()).descendantIds(categoryId)
+                : null;
         System.out.println("categoryIds = " + categoryIds);
 
         // Truy vấn sản phẩm với bộ lọc và phân trang
         Page<Product> productPage = productRepo.findByStoreIdAndFilters(store.getId(), categoryIds, sort, pageable);
 
         // Chuyển đổi sang ProductDto
-        return productPage.map(product -> {
-            ProductDto productDto = new ProductDto();
-            productDto.setId(product.getId());
-            productDto.setName(product.getName());
-            productDto.setSlug(product.getSlug());
-            productDto.setThumbnailUrl(product.getThumbnailUrl());
-            productDto.setPrice(findMinPrice(product.getId()));
-            productDto.setRating(findAverageRatingForProduct(product.getId()));
-            productDto.setSoldCount(findSoldCount(product.getId()));
-            productDto.setFav(userId != null && favoriteRepo.existsByUserIdAndProductId(userId, product.getId()));
-            return productDto;
-        });
+        return new PageImpl<>(toProductDtos(productPage.getContent(), userId), pageable, productPage.getTotalElements());
+    }
+
+    // Giá, đánh giá, lượt bán và yêu thích được lấy theo lô cho cả danh sách
+    private List<ProductDto> toProductDtos(List<Product> products, Long userId) {
+        List<Long> productIds = products.stream().map(Product::getId).toList();
+        Map<Long, ProductCardEnricher.CardMetrics> metricsById = productCardEnricher.enrich(productIds);
+        Set<Long> favoriteProductIds = productCardEnricher.findFavoriteProductIds(userId, productIds);
+
+        return products.stream()
+                .map(product -> {
+                    ProductCardEnricher.CardMetrics metrics = metricsById.get(product.getId());
+                    ProductDto productDto = new ProductDto();
+                    productDto.setId(product.getId());
+                    productDto.setName(product.getName());
+                    productDto.setSlug(product.getSlug());
+                    productDto.setThumbnailUrl(product.getThumbnailUrl());
+                    productDto.setPrice(metrics.price());
+                    productDto.setRating(metrics.rating());
+                    productDto.setSoldCount(metrics.soldCount());
+                    productDto.setFav(favoriteProductIds.contains(product.getId()));
+                    return productDto;
+                })
+                .collect(Collectors.toList());
     }
 
 
@@ -313,8 +224,7 @@ public class StoreService {
         storeFavoriteRepo.save(storeFavorite);
 
         // Xóa cache để cập nhật số lượng người theo dõi và trạng thái yêu thích
-        String cacheKey = "STORE_DETAIL_" + store.getSlug() + "_USER_" + favoriteDto.getUserId();
-        redisCacheUtil.delete(cacheKey);
+        redisCacheUtil.evict(RedisCacheKey.STORE_DETAIL, store.getSlug(), favoriteDto.getUserId());
     }
 
     public void removeStoreFavorite(Long userId, Long storeId) {
@@ -334,7 +244,6 @@ public class StoreService {
         storeFavoriteRepo.delete(storeFavorite);
 
         // Xóa cache để cập nhật số lượng người theo dõi và trạng thái yêu thích
-        String cacheKey = "STORE_DETAIL_" + store.getSlug() + "_USER_" + userId;
-        redisCacheUtil.delete(cacheKey);
+        redisCacheUtil.evict(RedisCacheKey.STORE_DETAIL, store.getSlug(), userId);
     }
 }
\ No newline at end of file
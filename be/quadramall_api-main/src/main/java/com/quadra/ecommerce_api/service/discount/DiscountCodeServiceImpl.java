@@ -36,7 +36,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -54,6 +56,7 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
     private final ProductRepo productRepository;
     private final OrderRepo orderRepository;
     private final DiscountCodeMapper discountCodeMapper;
+    private final DiscountRuleIndex discountRuleIndex;
 
     @Override
     public DiscountCodeDTO createDiscountCode(CreateDiscountCodeRequest request, Long createdBy) {
@@ -119,6 +122,7 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
         }
 
         DiscountCode savedDiscountCode = discountCodeRepository.save(discountCode);
+        discountRuleIndex.storeChanged(request.getStoreId());
         log.info("Discount code created successfully with ID: {}", savedDiscountCode.getId());
 
         return discountCodeMapper.toDto(savedDiscountCode);
@@ -178,6 +182,7 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
         }
 
         DiscountCode updatedDiscountCode = discountCodeRepository.save(discountCode);
+        discountRuleIndex.storeChanged(updatedDiscountCode.getStore().getId());
         log.info("Discount code updated successfully with ID: {}", updatedDiscountCode.getId());
 
         return discountCodeMapper.toDto(updatedDiscountCode);
@@ -264,6 +269,7 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
         // Soft delete by setting isActive to false
         discountCode.setIsActive(false);
         discountCodeRepository.save(discountCode);
+        discountRuleIndex.storeChanged(discountCode.getStore().getId());
 
         log.info("Discount code with ID: {} has been deleted by user: {}", discountCodeId, deletedBy);
     }
@@ -283,6 +289,7 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
 
         discountCode.setIsActive(isActive);
         discountCodeRepository.save(discountCode);
+        discountRuleIndex.storeChanged(discountCode.getStore().getId());
 
         log.info("Discount code with ID: {} status changed to: {} by user: {}",
                 discountCodeId, isActive, updatedBy);
@@ -382,16 +389,12 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
         log.info("Getting applicable discount codes for store: {}, user: {}, products: {}",
                 storeId, userId, productIds);
 
-        LocalDateTime currentTime = LocalDateTime.now();
-        List<DiscountCode> applicableDiscountCodes = discountCodeRepository
-                .findAllValidDiscountCodes(storeId, productIds != null ? productIds : List.of(), currentTime);
+        List<DiscountCode> applicableDiscountCodes = discountRuleIndex
+                .applicable(storeId, productIds, LocalDateTime.now(), false);
+        Map<Long, Integer> usageCounts = userUsageCounts(userId, applicableDiscountCodes);
 
         return applicableDiscountCodes.stream()
-                .filter(dc -> {
-                    int userUsageCount = userDiscountRepository
-                            .countUserDiscountUsage(dc.getId(), userId);
-                    return dc.canUserUse(userUsageCount);
-                })
+                .filter(dc -> dc.canUserUse(usageCounts.getOrDefault(dc.getId(), 0)))
                 .map(discountCodeMapper::toDto)
                 .collect(Collectors.toList());
     }
@@ -402,18 +405,16 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
                                                            Long userId, BigDecimal orderAmount) {
         log.info("Finding auto best discount for store: {}, user: {}, amount: {}", storeId, userId, orderAmount);
 
-        LocalDateTime currentTime = LocalDateTime.now();
-        List<DiscountCode> autoApplyDiscountCodes = discountCodeRepository
-                .findAutoApplyDiscountCodes(storeId, productIds != null ? productIds : List.of(), currentTime);
+        List<DiscountCode> autoApplyDiscountCodes = discountRuleIndex
+                .applicable(storeId, productIds, LocalDateTime.now(), true);
+        Map<Long, Integer> usageCounts = userUsageCounts(userId, autoApplyDiscountCodes);
 
         DiscountCode bestDiscount = null;
         BigDecimal maxDiscountAmount = BigDecimal.ZERO;
 
         for (DiscountCode discountCode : autoApplyDiscountCodes) {
             // Check if user can use this discount
-            int userUsageCount = userDiscountRepository
-                    .countUserDiscountUsage(discountCode.getId(), userId);
-            if (!discountCode.canUserUse(userUsageCount)) {
+            if (!discountCode.canUserUse(usageCounts.getOrDefault(discountCode.getId(), 0))) {
                 continue;
             }
 
@@ -469,9 +470,10 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy đơn hàng"));
 
-        // Increment used count
-        discount.setUsedCount(discount.getUsedCount() + 1);
-        discountCodeRepository.save(discount);
+        // Cộng lượt dùng trên DB, chỉ khi voucher còn lượt (ảnh chụp DiscountRuleIndex có thể chưa thấy lượt dùng mới nhất)
+        if (discountCodeRepository.incrementUsedCountIfAvailable(discount.getId()) == 0) {
+            throw new BusinessException("Mã giảm giá đã hết số lần sử dụng");
+        }
 
         // Create user discount record
         UserDiscountId userDiscountId = UserDiscountId.builder()
@@ -627,6 +629,17 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
         }
     }
 
+    // Số lần user đã dùng từng voucher, voucher chưa dùng không có trong map
+    private Map<Long, Integer> userUsageCounts(Long userId, List<DiscountCode> discountCodes) {
+        if (userId == null || discountCodes.isEmpty()) return Map.of();
+        List<Long> ids = discountCodes.stream().map(DiscountCode::getId).toList();
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Object[] row : userDiscountRepository.countUserDiscountUsages(userId, ids)) {
+            counts.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+
     private String formatCurrency(BigDecimal amount) {
         return String.format("%,.0f VNĐ", amount);
     }
@@ -637,19 +650,13 @@ public class DiscountCodeServiceImpl implements DiscountCodeService {
         log.info("Getting applicable discount codes with context for store: {}, user: {}, products: {}",
                 storeId, userId, productIds);
 
-        LocalDateTime currentTime = LocalDateTime.now();
-
         // Lấy tất cả voucher valid của store
-        List<DiscountCode> applicableDiscountCodes = discountCodeRepository
-                .findAllValidDiscountCodes(storeId, productIds != null ? productIds : List.of(), currentTime);
+        List<DiscountCode> applicableDiscountCodes = discountRuleIndex
+                .applicable(storeId, productIds, LocalDateTime.now(), false);
+        Map<Long, Integer> usageCounts = userUsageCounts(userId, applicableDiscountCodes);
 
         return applicableDiscountCodes.stream()
-                .filter(dc -> {
-                    // Kiểm tra user usage
-                    int userUsageCount = userDiscountRepository
-                            .countUserDiscountUsage(dc.getId(), userId);
-                    return dc.canUserUse(userUsageCount);
-                })
+                .filter(dc -> dc.canUserUse(usageCounts.getOrDefault(dc.getId(), 0)))
                 .map(dc -> {
                     // Map với context để có applicableProductIds
                     DiscountCodeDTO dto = discountCodeMapper.toDtoWithContext(dc, productIds);
@@ -0,0 +1,124 @@
+package com.quadra.ecommerce_api.service.discount;
+
+import com.quadra.ecommerce_api.entity.discount.DiscountCode;
+import com.quadra.ecommerce_api.entity.product.Product;
+import com.quadra.ecommerce_api.enums.discount.AppliesTo;
+import com.quadra.ecommerce_api.repository.discount.DiscountCodeRepository;
+import com.quadra.ecommerce_api.utils.KeyedSnapshotCache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Voucher đang hoạt động của từng shop, chia theo SHOP (cả giỏ) và theo sản phẩm (PRODUCTS), nạp 1 lần rồi giữ trong bộ nhớ.
+ * Danh sách voucher / chọn voucher tự động chỉ lọc thời gian hiệu lực, lượt dùng và sản phẩm trên ảnh chụp này.
+ * Tạo / sửa / bật tắt / xoá voucher bỏ ảnh chụp của shop sau khi commit và báo node khác qua Redis pub/sub;
+ * dùng voucher không bỏ ảnh chụp nên usedCount ở đây có thể cũ tới max-age-ms: lượt dùng còn lại được kiểm tra
+ * trên DB khi đặt hàng (checkDiscountCodeUsability) và khi ghi nhận lượt dùng (incrementUsedCountIfAvailable).
+ */
+@Service
+@Slf4j
+public class DiscountRuleIndex {
+
+    private static final String CHANGED_CHANNEL = "discount:changed";
+
+    // Cùng thứ tự với các truy vấn voucher cũ: priority DESC, discountValue DESC
+    private static final Comparator<DiscountCode> RULE_ORDER = Comparator
+            .comparing(DiscountCode::getPriority, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(DiscountCode::getDiscountValue, Comparator.reverseOrder());
+
+    private final DiscountCodeRepository discountCodeRepository;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final KeyedSnapshotCache<Long, StoreRules> stores;
+
+    /**
+     * Voucher của 1 shop. Entity đã nạp sẵn products / store / createdBy và không được sửa hay gắn lại vào session.
+     */
+    private record StoreRules(List<DiscountCode> shopWide, Map<Long, List<DiscountCode>> byProduct) {
+    }
+
+    public DiscountRuleIndex(DiscountCodeRepository discountCodeRepository,
+                             StringRedisTemplate redisTemplate,
+                             RedisMessageListenerContainer listenerContainer,
+                             @Value("${discount.rule-index.max-stores:10000}") int maxStores,
+                             @Value("${discount.rule-index.max-age-ms:300000}") long maxAgeMs) {
+        this.discountCodeRepository = discountCodeRepository;
+        this.listenerContainer = listenerContainer;
+        this.stores = new KeyedSnapshotCache<>(CHANGED_CHANNEL, this::loadStore, Long::valueOf,
+                redisTemplate, maxStores, Duration.ofMillis(maxAgeMs));
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        stores.subscribe(listenerContainer);
+    }
+
+    /**
+     * Voucher còn hiệu lực lúc now, còn lượt dùng và áp dụng được cho ít nhất 1 sản phẩm trong productIds
+     * (voucher SHOP luôn áp dụng), sắp xếp priority DESC, discountValue DESC.
+     */
+    public List<DiscountCode> applicable(Long storeId, Collection<Long> productIds, LocalDateTime now, boolean autoApplyOnly) {
+        StoreRules rules = stores.get(storeId);
+
+        Map<Long, DiscountCode> candidates = new LinkedHashMap<>();
+        rules.shopWide().forEach(discount -> candidates.put(discount.getId(), discount));
+        if (productIds != null) {
+            for (Long productId : productIds) {
+                for (DiscountCode discount : rules.byProduct().getOrDefault(productId, List.of())) {
+                    candidates.putIfAbsent(discount.getId(), discount);
+                }
+            }
+        }
+
+        List<DiscountCode> result = new ArrayList<>(candidates.size());
+        for (DiscountCode discount : candidates.values()) {
+            if (autoApplyOnly && !Boolean.TRUE.equals(discount.getAutoApply())) continue;
+            if (now.isBefore(discount.getStartDate()) || now.isAfter(discount.getEndDate())) continue;
+            if (discount.getUsedCount() >= discount.getMaxUses()) continue;
+            result.add(discount);
+        }
+        result.sort(RULE_ORDER);
+        return result;
+    }
+
+    /**
+     * Voucher của shop vừa thay đổi: bỏ ảnh chụp sau khi transaction hiện tại (nếu có) commit và báo các node khác
+     */
+    public void storeChanged(Long storeId) {
+        stores.changed(storeId);
+    }
+
+    private StoreRules loadStore(Long storeId) {
+        // Voucher chưa bắt đầu vẫn được nạp, thời gian hiệu lực được lọc lúc đọc
+        List<DiscountCode> discounts = discountCodeRepository.findIndexableByStoreId(storeId, LocalDateTime.now());
+        List<DiscountCode> shopWide = new ArrayList<>();
+        Map<Long, List<DiscountCode>> byProduct = new HashMap<>();
+        for (DiscountCode discount : discounts) {
+            if (discount.getAppliesTo() == AppliesTo.SHOP) {
+                shopWide.add(discount);
+            } else if (discount.getProducts() != null) {
+                Set<Long> productIds = discount.getProducts().stream()
+                        .map(Product::getId)
+                        .collect(Collectors.toSet());
+                productIds.forEach(productId -> byProduct.computeIfAbsent(productId, id -> new ArrayList<>()).add(discount));
+            }
+        }
+        log.debug("Discount rules loaded for store {}: {} vouchers", storeId, discounts.size());
+        return new StoreRules(List.copyOf(shopWide), Map.copyOf(byProduct));
+    }
+}
@@ -0,0 +1,388 @@
+package com.quadra.ecommerce_api.service.flashsale;
+
+import com.quadra.ecommerce_api.common.RedisKey;
+import com.quadra.ecommerce_api.entity.discount.FlashSale;
+import com.quadra.ecommerce_api.entity.order.OrderItem;
+import com.quadra.ecommerce_api.exception.ExCustom;
+import com.quadra.ecommerce_api.repository.flashsale.FlashSaleRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Giữ chỗ số lượng Flash Sale trên Redis thay vì đọc-rồi-ghi trực tiếp bảng flash_sale.
+ *
+ * <ul>
+ *     <li>{@code flashSale:stock:{id}}: số suất còn lại, trừ bằng 1 Lua script nguyên tử</li>
+ *     <li>{@code flashSale:hold:{orderId}}: suất đang giữ cho đơn chờ VNPay (có TTL)</li>
+ *     <li>{@code flashSale:held} / {@code flashSale:pending}: tổng đang giữ / delta soldCount chưa ghi xuống MySQL</li>
+ * </ul>
+ * Delta được {@link #flushPendingSoldCounts(Consumer)} ghi bù theo lô,
+ * hold quá hạn được {@link #releaseExpiredHolds(int)} trả lại kho.
+ */
+@Service
+@Slf4j
+public class FlashSaleReservationService {
+
+    private static final String HELD_KEY = "flashSale:held";
+    private static final String PENDING_KEY = "flashSale:pending";
+    private static final String HOLD_EXPIRY_KEY = "flashSale:hold-expiry";
+    private static final String STOCK_PREFIX = "flashSale:stock:";
+    private static final String NO_FLASH_SALE = "0";
+    private static final Duration NEGATIVE_CACHE_TTL = Duration.ofSeconds(30);
+
+    // KEYS: stock, held, pending | ARGV: flashSaleId, remainingInDb, ttlSeconds
+    private static final DefaultRedisScript<Long> INIT_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current then return tonumber(current) end
+            local held = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+            local pending = tonumber(redis.call('HGET', KEYS[3], ARGV[1]) or '0')
+            local remaining = tonumber(ARGV[2]) - held - pending
+            if remaining < 0 then remaining = 0 end
+            redis.call('SET', KEYS[1], remaining, 'EX', tonumber(ARGV[3]))
+            return remaining
+            """, Long.class);
+
+    // KEYS: stock, held, hold, holdExpiry | ARGV: flashSaleId, qty, orderId, expireAtMillis, holdTtlSeconds
+    private static final DefaultRedisScript<Long> HOLD_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if not current then return -1 end
+            local qty = tonumber(ARGV[2])
+            if tonumber(current) < qty then return -2 end
+            local remaining = redis.call('DECRBY', KEYS[1], qty)
+            redis.call('HINCRBY', KEYS[2], ARGV[1], qty)
+            redis.call('HINCRBY', KEYS[3], ARGV[1], qty)
+            redis.call('EXPIRE', KEYS[3], tonumber(ARGV[5]))
+            redis.call('ZADD', KEYS[4], tonumber(ARGV[4]), ARGV[3])
+            return remaining
+            """, Long.class);
+
+    // KEYS: stock, pending | ARGV: flashSaleId, qty, allowOversell
+    // allowOversell = 1: không đủ suất vẫn trừ (số suất âm) và trả về -3
+    private static final DefaultRedisScript<Long> CONSUME_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if not current then return -1 end
+            local qty = tonumber(ARGV[2])
+            if tonumber(current) < qty and ARGV[3] ~= '1' then return -2 end
+            local remaining = redis.call('DECRBY', KEYS[1], qty)
+            redis.call('HINCRBY', KEYS[2], ARGV[1], qty)
+            if remaining < 0 then return -3 end
+            return remaining
+            """, Long.class);
+
+    // KEYS: hold, held, pending, holdExpiry | ARGV: orderId
+    private static final DefaultRedisScript<Long> COMMIT_SCRIPT = new DefaultRedisScript<>("""
+            local entries = redis.call('HGETALL', KEYS[1])
+            for i = 1, #entries, 2 do
+                local qty = tonumber(entries[i + 1])
+                redis.call('HINCRBY', KEYS[2], entries[i], -qty)
+                redis.call('HINCRBY', KEYS[3], entries[i], qty)
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('ZREM', KEYS[4], ARGV[1])
+            return #entries / 2
+            """, Long.class);
+
+    // KEYS: hold, held, holdExpiry | ARGV: orderId, stockPrefix
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            local entries = redis.call('HGETALL', KEYS[1])
+            for i = 1, #entries, 2 do
+                local qty = tonumber(entries[i + 1])
+                redis.call('HINCRBY', KEYS[2], entries[i], -qty)
+                local stockKey = ARGV[2] .. entries[i]
+                if redis.call('EXISTS', stockKey) == 1 then
+                    redis.call('INCRBY', stockKey, qty)
+                end
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('ZREM', KEYS[3], ARGV[1])
+            return #entries / 2
+            """, Long.class);
+
+    // KEYS: stock, pending | ARGV: flashSaleId, qty
+    private static final DefaultRedisScript<Long> RESTORE_SCRIPT = new DefaultRedisScript<>("""
+            local qty = tonumber(ARGV[2])
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                redis.call('INCRBY', KEYS[1], qty)
+            end
+            redis.call('HINCRBY', KEYS[2], ARGV[1], -qty)
+            return qty
+            """, Long.class);
+
+    // Trừ phần delta đã ghi xuống MySQL, delta cộng thêm trong lúc ghi vẫn được giữ lại
+    // KEYS: pending | ARGV: flashSaleId1, delta1, flashSaleId2, delta2, ...
+    private static final DefaultRedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #ARGV, 2 do
+                local left = redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1]))
+                if left == 0 then redis.call('HDEL', KEYS[1], ARGV[i]) end
+            end
+            return #ARGV / 2
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final FlashSaleRepo flashSaleRepo;
+    private final long holdMinutes;
+
+    public FlashSaleReservationService(
+            StringRedisTemplate redisTemplate,
+            FlashSaleRepo flashSaleRepo,
+            @Value("${flashsale.reservation.hold-minutes:15}") long holdMinutes) {
+        this.redisTemplate = redisTemplate;
+        this.flashSaleRepo = flashSaleRepo;
+        this.holdMinutes = holdMinutes;
+    }
+
+    /**
+     * Giữ suất Flash Sale cho đơn đang chờ thanh toán VNPay.
+     * Hold tự hết hạn sau {@code holdMinutes} nếu không được xác nhận.
+     */
+    public void holdForOrder(Long orderId, List<OrderItem> orderItems) {
+        long expireAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(holdMinutes);
+        // Giữ hash lâu hơn mốc hết hạn để job dọn dẹp còn đọc được số lượng cần trả lại
+        long holdTtlSeconds = TimeUnit.MINUTES.toSeconds(holdMinutes * 2);
+
+        sumQuantityByProduct(orderItems).forEach((productId, quantity) -> {
+            Optional<Long> flashSaleId = resolveActiveFlashSaleId(productId);
+            if (flashSaleId.isEmpty()) return;
+
+            Long result = runWithInit(flashSaleId.get(), () -> redisTemplate.execute(HOLD_SCRIPT,
+                    List.of(stockKey(flashSaleId.get()), HELD_KEY, holdKey(orderId), HOLD_EXPIRY_KEY),
+                    String.valueOf(flashSaleId.get()), String.valueOf(quantity), String.valueOf(orderId),
+                    String.valueOf(expireAt), String.valueOf(holdTtlSeconds)));
+
+            if (result < 0) {
+                log.warn("Flash Sale {} does not have {} items left to hold for order {}",
+                        flashSaleId.get(), quantity, orderId);
+                // Trả lại các suất đã giữ cho những sản phẩm trước đó của đơn
+                releaseOrder(orderId);
+                throw new ExCustom(HttpStatus.BAD_REQUEST, "Sản phẩm Flash Sale đã hết suất, vui lòng cập nhật giỏ hàng");
+            }
+            log.info("Held {} Flash Sale items of product {} for order {}, remaining {}",
+                    quantity, productId, orderId, result);
+        });
+
+        // Transaction tạo đơn rollback thì hold cũng phải được trả lại
+        afterRollback(() -> releaseOrder(orderId));
+    }
+
+    /**
+     * Xác nhận hold khi thanh toán thành công. Nếu hold đã hết hạn (hoặc chưa từng giữ)
+     * thì trừ trực tiếp từ số suất còn lại. Tiền đã được trừ nên không từ chối đơn:
+     * hết suất thì vẫn trừ (số suất âm) và ghi log bán vượt để xử lý.
+     */
+    public void commitOrder(Long orderId, List<OrderItem> orderItems) {
+        Long committed = redisTemplate.execute(COMMIT_SCRIPT,
+                List.of(holdKey(orderId), HELD_KEY, PENDING_KEY, HOLD_EXPIRY_KEY),
+                String.valueOf(orderId));
+
+        if (committed != null && committed > 0) {
+            log.info("Committed {} Flash Sale holds for order {}", committed, orderId);
+            return;
+        }
+
+        sumQuantityByProduct(orderItems).forEach((productId, quantity) -> consume(productId, quantity, true));
+    }
+
+    /**
+     * Trả lại suất đang giữ khi thanh toán thất bại.
+     */
+    public void releaseOrder(Long orderId) {
+        Long released = redisTemplate.execute(RELEASE_SCRIPT,
+                List.of(holdKey(orderId), HELD_KEY, HOLD_EXPIRY_KEY),
+                String.valueOf(orderId), STOCK_PREFIX);
+
+        if (released != null && released > 0) {
+            log.info("Released {} Flash Sale holds for order {}", released, orderId);
+        }
+    }
+
+    /**
+     * Trừ ngay số suất Flash Sale của sản phẩm (không qua hold), dùng cho COD / ví.
+     */
+    public void consume(Long productId, int quantity) {
+        consume(productId, quantity, false);
+    }
+
+    private void consume(Long productId, int quantity, boolean paid) {
+        Optional<Long> flashSaleId = resolveActiveFlashSaleId(productId);
+        if (flashSaleId.isEmpty()) return;
+
+        Long result = runWithInit(flashSaleId.get(), () -> redisTemplate.execute(CONSUME_SCRIPT,
+                List.of(stockKey(flashSaleId.get()), PENDING_KEY),
+                String.valueOf(flashSaleId.get()), String.valueOf(quantity), paid ? "1" : "0"));
+
+        if (result == -3) {
+            log.error("Flash Sale {} oversold: {} items of product {} were paid after the quantity ran out",
+                    flashSaleId.get(), quantity, productId);
+        } else if (result < 0) {
+            log.warn("Cannot consume Flash Sale {} for product {}: would exceed quantity limit",
+                    flashSaleId.get(), productId);
+            if (!paid) {
+                throw new ExCustom(HttpStatus.BAD_REQUEST, "Sản phẩm Flash Sale đã hết suất, vui lòng cập nhật giỏ hàng");
+            }
+            return;
+        }
+
+        // Đơn bị huỷ giữa chừng (vd. sản phẩm sau hết suất) thì hoàn lại phần đã trừ
+        afterRollback(() -> restore(productId, quantity));
+    }
+
+    /**
+     * Hoàn lại suất đã bán khi hủy đơn đã thanh toán.
+     */
+    public void restore(Long productId, int quantity) {
+        Optional<Long> flashSaleId = resolveActiveFlashSaleId(productId);
+        if (flashSaleId.isEmpty()) return;
+
+        redisTemplate.execute(RESTORE_SCRIPT,
+                List.of(stockKey(flashSaleId.get()), PENDING_KEY),
+                String.valueOf(flashSaleId.get()), String.valueOf(quantity));
+        log.info("Restored {} Flash Sale items of product {}", quantity, productId);
+    }
+
+    /**
+     * Số suất còn lại theo Redis (đã trừ hold và delta chưa ghi), rỗng nếu chưa khởi tạo.
+     */
+    public Optional<Integer> getRemaining(Long flashSaleId) {
+        String value = redisTemplate.opsForValue().get(stockKey(flashSaleId));
+        // Âm khi đơn đã thanh toán bị bán vượt, hiển thị là hết suất
+        return Optional.ofNullable(value).map(v -> Math.max(0, Integer.parseInt(v)));
+    }
+
+    /**
+     * Xoá cache khi seller tạo / sửa / xoá Flash Sale, lần dùng sau sẽ khởi tạo lại từ MySQL.
+     */
+    public void evict(Long flashSaleId, Long productId) {
+        if (flashSaleId != null) redisTemplate.delete(stockKey(flashSaleId));
+        if (productId != null) redisTemplate.delete(productKey(productId));
+    }
+
+    /**
+     * Trả lại kho các hold đã quá hạn (VNPay không gọi về).
+     */
+    public int releaseExpiredHolds(int batchSize) {
+        Set<String> expiredOrderIds = redisTemplate.opsForZSet()
+                .rangeByScore(HOLD_EXPIRY_KEY, 0, System.currentTimeMillis(), 0, batchSize);
+        if (expiredOrderIds == null || expiredOrderIds.isEmpty()) return 0;
+
+        expiredOrderIds.forEach(orderId -> releaseOrder(Long.valueOf(orderId)));
+        return expiredOrderIds.size();
+    }
+
+    /**
+     * Đọc delta soldCount đang chờ và ghi xuống MySQL qua {@code writer} (writer phải commit trước khi trả về).
+     * Delta chỉ bị trừ khỏi Redis sau khi ghi thành công, ghi lỗi / tiến trình dừng giữa chừng thì lần sau ghi lại.
+     */
+    public Map<Long, Integer> flushPendingSoldCounts(Consumer<Map<Long, Integer>> writer) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(PENDING_KEY);
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
+        entries.forEach((flashSaleId, value) -> {
+            int delta = Integer.parseInt(String.valueOf(value));
+            if (delta != 0) {
+                deltas.put(Long.valueOf(String.valueOf(flashSaleId)), delta);
+            }
+        });
+
+        if (deltas.isEmpty()) return deltas;
+
+        writer.accept(deltas);
+
+        List<String> args = new ArrayList<>(deltas.size() * 2);
+        deltas.forEach((flashSaleId, delta) -> {
+            args.add(String.valueOf(flashSaleId));
+            args.add(String.valueOf(delta));
+        });
+        redisTemplate.execute(ACK_SCRIPT, List.of(PENDING_KEY), args.toArray());
+        return deltas;
+    }
+
+    // ======================== Helper ========================= //
+
+    private void afterRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) return;
+                try {
+                    compensation.run();
+                } catch (Exception e) {
+                    // Hold quá hạn vẫn được releaseExpiredHolds trả lại
+                    log.error("Error compensating Flash Sale reservation after rollback: {}", e.getMessage());
+                }
+            }
+        });
+    }
+
+    private Optional<Long> resolveActiveFlashSaleId(Long productId) {
+        String cached = redisTemplate.opsForValue().get(productKey(productId));
+        if (cached != null) {
+            return NO_FLASH_SALE.equals(cached) ? Optional.empty() : Optional.of(Long.valueOf(cached));
+        }
+
+        Optional<FlashSale> flashSale = flashSaleRepo.findActiveByProduct_Id(productId);
+        if (flashSale.isEmpty()) {
+            redisTemplate.opsForValue().set(productKey(productId), NO_FLASH_SALE, NEGATIVE_CACHE_TTL);
+            return Optional.empty();
+        }
+
+        FlashSale fs = flashSale.get();
+        redisTemplate.opsForValue().set(productKey(productId), String.valueOf(fs.getId()), ttlUntilEnd(fs));
+        initStock(fs);
+        return Optional.of(fs.getId());
+    }
+
+    private Long runWithInit(Long flashSaleId, Supplier<Long> script) {
+        Long result = script.get();
+        if (result != null && result == -1) {
+            flashSaleRepo.findById(flashSaleId).ifPresent(this::initStock);
+            result = script.get();
+        }
+        return result == null ? -1 : result;
+    }
+
+    private void initStock(FlashSale flashSale) {
+        int remainingInDb = flashSale.getQuantity() - flashSale.getSoldCount();
+        redisTemplate.execute(INIT_SCRIPT,
+                List.of(stockKey(flashSale.getId()), HELD_KEY, PENDING_KEY),
+                String.valueOf(flashSale.getId()), String.valueOf(remainingInDb),
+                String.valueOf(ttlUntilEnd(flashSale).plusDays(1).toSeconds()));
+    }
+
+    private Duration ttlUntilEnd(FlashSale flashSale) {
+        Duration ttl = Duration.between(LocalDateTime.now(), flashSale.getEndTime());
+        return ttl.isNegative() || ttl.isZero() ? Duration.ofMinutes(1) : ttl;
+    }
+
+    private Map<Long, Integer> sumQuantityByProduct(List<OrderItem> orderItems) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem item : orderItems) {
+            quantities.merge(item.getVariant().getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    private String stockKey(Long flashSaleId) {
+        return RedisKey.flashSale("stock", flashSaleId);
+    }
+
+    private String holdKey(Long orderId) {
+        return RedisKey.flashSale("hold", orderId);
+    }
+
+    private String productKey(Long productId) {
+        return RedisKey.flashSale("product", productId);
+    }
+}
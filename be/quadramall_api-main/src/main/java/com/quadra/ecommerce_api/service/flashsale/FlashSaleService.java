@@ -28,6 +28,7 @@ public class FlashSaleService {
     private final FlashSaleRepo flashSaleRepository;
     private final ProductVariantRepo productVariantRepository;
     private final ProductRepo productRepository;
+    private final FlashSaleReservationService flashSaleReservationService;
 
     public Page<BuyerFlashSaleProductDTO> getFlashSaleProductsForHome(Pageable pageable) {
         Page<FlashSale> flashSales = flashSaleRepository.findActiveFlashSales(pageable);
@@ -88,7 +89,10 @@ public class FlashSaleService {
                 .endTime(dto.getEndTime())
                 .build();
 
-        return this.mapToSellerDTO(flashSaleRepository.save(flashSale));
+        FlashSale saved = flashSaleRepository.save(flashSale);
+        flashSaleReservationService.evict(null, product.getId());
+
+        return this.mapToSellerDTO(saved);
     }
 
     @Transactional
@@ -105,7 +109,10 @@ public class FlashSaleService {
         flashSale.setStartTime(dto.getStartTime());
         flashSale.setEndTime(dto.getEndTime());
 
-        return mapToSellerDTO(flashSaleRepository.save(flashSale));
+        FlashSale saved = flashSaleRepository.save(flashSale);
+        flashSaleReservationService.evict(saved.getId(), product.getId());
+
+        return mapToSellerDTO(saved);
     }
 
     private void validateFlashSaleInput(FlashSaleInput dto, Product product, boolean isCreate) {
@@ -171,6 +178,7 @@ public class FlashSaleService {
         FlashSale flashSale = flashSaleRepository.findByIdAndProductStoreId(fsId, storeId)
                 .orElseThrow(() -> new IllegalArgumentException("Flash sale not found or you do not own it"));
         flashSaleRepository.delete(flashSale);
+        flashSaleReservationService.evict(fsId, flashSale.getProduct().getId());
     }
 
     public Optional<FlashSale> getActiveFlashSaleForProduct(Long productId) {
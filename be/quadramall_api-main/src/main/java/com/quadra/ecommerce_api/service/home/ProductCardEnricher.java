@@ -0,0 +1,153 @@
+package com.quadra.ecommerce_api.service.home;
+
+import com.quadra.ecommerce_api.enums.redis.RedisCacheKey;
+import com.quadra.ecommerce_api.repository.product.ProductStatRepo;
+import com.quadra.ecommerce_api.repository.product.ProductVariantRepo;
+import com.quadra.ecommerce_api.repository.user.FavoriteRepo;
+import com.quadra.ecommerce_api.utils.RedisCacheUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Tính giá thấp nhất, số lượng đã bán và đánh giá cho cả 1 trang product card.
+ * Mỗi chỉ số chỉ tốn 1 MGET Redis, phần thiếu lấy bằng 1 truy vấn IN (số lượng đã bán / đánh giá đọc từ product_stats)
+ * và ghi lại bằng 1 pipeline, nên số round-trip không phụ thuộc vào kích thước trang.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProductCardEnricher {
+
+    private final ProductVariantRepo productVariantRepo;
+    private final ProductStatRepo productStatRepo;
+    private final FavoriteRepo favoriteRepo;
+    private final RedisCacheUtil redisCacheUtil;
+
+    public record CardMetrics(double price, long soldCount, double rating) {
+    }
+
+    /**
+     * Lấy chỉ số của các sản phẩm, sản phẩm nào cũng có mặt trong kết quả (mặc định 0)
+     */
+    public Map<Long, CardMetrics> enrich(Collection<Long> productIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        if (ids.isEmpty()) return Collections.emptyMap();
+
+        Map<Long, Double> prices = loadDoubles(RedisCacheKey.PRODUCT_MIN_PRICE, ids,
+                productVariantRepo::findMinPricesByProductIds);
+        Map<Long, Long> soldCounts = loadLongs(RedisCacheKey.PRODUCT_SOLD_COUNT, ids,
+                productStatRepo::findSoldCountsByProductIds);
+        Map<Long, Double> ratings = loadDoubles(RedisCacheKey.PRODUCT_RATING, ids,
+                productStatRepo::findAverageRatingsByProductIds);
+
+        Map<Long, CardMetrics> result = new HashMap<>(ids.size() * 2);
+        for (Long id : ids) {
+            result.put(id, new CardMetrics(prices.get(id), soldCounts.get(id), ratings.get(id)));
+        }
+        return result;
+    }
+
+    public CardMetrics enrich(Long productId) {
+        return enrich(List.of(productId)).get(productId);
+    }
+
+    /**
+     * Các sản phẩm trong danh sách mà user đã yêu thích (1 truy vấn IN)
+     */
+    public Set<Long> findFavoriteProductIds(Long userId, Collection<Long> productIds) {
+        if (userId == null || productIds.isEmpty()) return Collections.emptySet();
+        return new HashSet<>(favoriteRepo.findProductIdsByUserIdAndProductIdIn(userId, productIds));
+    }
+
+    private Map<Long, Double> loadDoubles(RedisCacheKey cacheKey, List<Long> ids,
+                                          Function<Collection<Long>, List<Object[]>> loader) {
+        List<String> keys = keysOf(cacheKey, ids);
+        List<Double> cached = redisCacheUtil.multiGetDouble(keys);
+
+        Map<Long, Double> result = new HashMap<>(ids.size() * 2);
+        List<Long> misses = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Double value = cached.get(i);
+            if (value != null) {
+                result.put(ids.get(i), value);
+            } else {
+                misses.add(ids.get(i));
+            }
+        }
+        if (misses.isEmpty()) return result;
+
+        Map<Long, Number> loaded = toMap(loader.apply(misses));
+        Map<String, Double> writeBack = new LinkedHashMap<>();
+        for (Long id : misses) {
+            Number value = loaded.get(id);
+            double actual = value != null ? value.doubleValue() : 0.0;
+            result.put(id, actual);
+            writeBack.put(cacheKey.key(id), actual);
+        }
+        redisCacheUtil.multiSetDouble(writeBack, cacheKey.ttl());
+
+        log.debug("{}: {} hit, {} loaded from DB", cacheKey, ids.size() - misses.size(), misses.size());
+        return result;
+    }
+
+    private Map<Long, Long> loadLongs(RedisCacheKey cacheKey, List<Long> ids,
+                                      Function<Collection<Long>, List<Object[]>> loader) {
+        List<String> keys = keysOf(cacheKey, ids);
+        List<Long> cached = redisCacheUtil.multiGetLong(keys);
+
+        Map<Long, Long> result = new HashMap<>(ids.size() * 2);
+        List<Long> misses = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long value = cached.get(i);
+            if (value != null) {
+                result.put(ids.get(i), value);
+            } else {
+                misses.add(ids.get(i));
+            }
+        }
+        if (misses.isEmpty()) return result;
+
+        Map<Long, Number> loaded = toMap(loader.apply(misses));
+        Map<String, Long> writeBack = new LinkedHashMap<>();
+        for (Long id : misses) {
+            Number value = loaded.get(id);
+            long actual = value != null ? value.longValue() : 0L;
+            result.put(id, actual);
+            writeBack.put(cacheKey.key(id), actual);
+        }
+        redisCacheUtil.multiSetLong(writeBack, cacheKey.ttl());
+
+        log.debug("{}: {} hit, {} loaded from DB", cacheKey, ids.size() - misses.size(), misses.size());
+        return result;
+    }
+
+    private List<String> keysOf(RedisCacheKey cacheKey, List<Long> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            keys.add(cacheKey.key(id));
+        }
+        return keys;
+    }
+
+    // Hàng [productId, value] của các truy vấn theo sản phẩm
+    private Map<Long, Number> toMap(List<Object[]> rows) {
+        Map<Long, Number> map = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            map.put(((Number) row[0]).longValue(), (Number) row[1]);
+        }
+        return map;
+    }
+}
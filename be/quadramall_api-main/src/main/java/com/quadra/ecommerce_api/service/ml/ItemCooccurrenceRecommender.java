@@ -0,0 +1,559 @@
+package com.quadra.ecommerce_api.service.ml;
+
+import com.quadra.ecommerce_api.service.base.UserBehaviorService.BehaviorEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gợi ý item-item chạy trong JVM, dự phòng khi job product_recommender (Python) chưa ghi kết quả vào Redis.
+ * Mỗi sự kiện VIEW / LIKE / ADD_TO_CART / PURCHASE đã ghi DB (UserBehaviorService) được đưa vào hàng đợi riêng
+ * (queue-capacity, đầy thì bỏ, đếm ở recommendation.cooc.dropped) và 1 luồng riêng cộng vào ma trận đồng xuất hiện
+ * giữa sản phẩm đó và các sản phẩm gần đây của cùng user. Điểm giảm dần theo thời gian (half-life) bằng cách nhân
+ * phần cộng thêm với hệ số tăng theo thời gian thay vì giảm mọi điểm cũ. Mỗi hàng giữ tối đa max-neighbors sản phẩm,
+ * top-K (đã chuẩn hoá cosine) được tính lại khi có người đọc và hàng đã đổi.
+ * Ma trận được lưu ra file định kỳ (RecommendationTasks), các hàng được chép dưới khoá của từng hàng rồi mới nén / ghi
+ * file nên không chặn luồng cộng sự kiện; khi khởi động nạp file rồi phát lại user_behavior_log từ lúc lưu,
+ * chưa có file thì phát lại bootstrap-days ngày gần nhất.
+ */
+@Service
+@Slf4j
+public class ItemCooccurrenceRecommender {
+
+    private static final Map<String, Double> BEHAVIOR_WEIGHTS = Map.of(
+            "VIEW", 1.0,
+            "LIKE", 2.0,
+            "ADD_TO_CART", 3.0,
+            "PURCHASE", 5.0);
+
+    private static final int SNAPSHOT_MAGIC = 0x51434F43;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int REPLAY_CHUNK = 10_000;
+    // Hệ số thời gian vượt ngưỡng này thì chia lại toàn bộ điểm để không tràn số
+    private static final double RENORMALIZE_AT = 1e12;
+    private static final double LN2 = Math.log(2);
+
+    private static final String HISTORY_SQL =
+            "SELECT product_id, behavior_type, behavior_time FROM user_behavior_log " +
+            "WHERE user_id = ? ORDER BY behavior_time DESC LIMIT ?";
+
+    private static final String REPLAY_RANGE_SQL =
+            "SELECT (SELECT MIN(id) FROM user_behavior_log WHERE behavior_time > ?), MAX(id) FROM user_behavior_log";
+
+    private static final String REPLAY_SQL =
+            "SELECT id, user_id, product_id, behavior_type, behavior_time FROM user_behavior_log " +
+            "WHERE id > ? AND id <= ? ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long halfLifeMillis;
+    private final int maxNeighbors;
+    private final int topK;
+    private final int historySize;
+    private final int maxUsers;
+    private final int bootstrapDays;
+    private final int bootstrapLimit;
+    private final Path snapshotPath;
+    private final BlockingQueue<BehaviorEvent> ingestQueue;
+    private Thread ingester;
+
+    private final Map<Long, ItemRow> rows = new ConcurrentHashMap<>();
+    private final Map<Long, UserHistory> histories;
+    // Chỉ 1 luồng cộng sự kiện vào ma trận tại 1 thời điểm (luồng ingest, phát lại khi khởi động, nạp file)
+    private final Object writeLock = new Object();
+    private volatile long epochMillis = System.currentTimeMillis();
+    private volatile boolean warm;
+
+    private final Counter ingestedCounter;
+    private final Counter droppedCounter;
+    private final Timer recommendTimer;
+
+    private record RowCopy(long id, double total, long[] keys, double[] values, int count) {
+    }
+
+    private record TopNeighbors(long[] ids, double[] scores, int size) {
+        static final TopNeighbors EMPTY = new TopNeighbors(new long[0], new double[0], 0);
+    }
+
+    private static final class ItemRow {
+        final LongDoubleHashMap neighbors = new LongDoubleHashMap(16);
+        // Tổng trọng số tương tác của sản phẩm, dùng chuẩn hoá cosine
+        volatile double total;
+        volatile TopNeighbors top = TopNeighbors.EMPTY;
+        volatile boolean dirty;
+    }
+
+    /**
+     * Các sản phẩm gần nhất của 1 user, mỗi sản phẩm giữ trọng số hành vi cao nhất, cũ nhất bị đẩy ra trước
+     */
+    private static final class UserHistory {
+        final long[] items;
+        final double[] weights;
+        final long[] times;
+        int size;
+
+        UserHistory(int capacity) {
+            items = new long[capacity];
+            weights = new double[capacity];
+            times = new long[capacity];
+        }
+
+        synchronized double weightOf(long productId) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == productId) return weights[i];
+            }
+            return 0.0;
+        }
+
+        synchronized void record(long productId, double weight, long at) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == productId) {
+                    weight = Math.max(weight, weights[i]);
+                    remove(i);
+                    break;
+                }
+            }
+            if (size == items.length) remove(0);
+            items[size] = productId;
+            weights[size] = weight;
+            times[size++] = at;
+        }
+
+        synchronized UserHistory copy() {
+            UserHistory copy = new UserHistory(items.length);
+            System.arraycopy(items, 0, copy.items, 0, size);
+            System.arraycopy(weights, 0, copy.weights, 0, size);
+            System.arraycopy(times, 0, copy.times, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        boolean contains(long productId) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == productId) return true;
+            }
+            return false;
+        }
+
+        private void remove(int index) {
+            int tail = size - index - 1;
+            System.arraycopy(items, index + 1, items, index, tail);
+            System.arraycopy(weights, index + 1, weights, index, tail);
+            System.arraycopy(times, index + 1, times, index, tail);
+            size--;
+        }
+    }
+
+    public ItemCooccurrenceRecommender(JdbcTemplate jdbcTemplate,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${recommendation.cooc.half-life-hours:72}") long halfLifeHours,
+                                       @Value("${recommendation.cooc.max-neighbors:200}") int maxNeighbors,
+                                       @Value("${recommendation.cooc.top-k:50}") int topK,
+                                       @Value("${recommendation.cooc.history-size:20}") int historySize,
+                                       @Value("${recommendation.cooc.max-users:100000}") int maxUsers,
+                                       @Value("${recommendation.cooc.bootstrap-days:30}") int bootstrapDays,
+                                       @Value("${recommendation.cooc.bootstrap-limit:1000000}") int bootstrapLimit,
+                                       @Value("${recommendation.cooc.snapshot-path:data/recommendation-cooc.bin.gz}") String snapshotPath,
+                                       @Value("${recommendation.cooc.queue-capacity:50000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.halfLifeMillis = Duration.ofHours(Math.max(1, halfLifeHours)).toMillis();
+        this.maxNeighbors = Math.max(1, maxNeighbors);
+        this.topK = Math.max(1, Math.min(topK, this.maxNeighbors));
+        this.historySize = Math.max(1, historySize);
+        this.maxUsers = Math.max(1, maxUsers);
+        this.bootstrapDays = Math.max(0, bootstrapDays);
+        this.bootstrapLimit = Math.max(0, bootstrapLimit);
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.ingestQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.histories = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserHistory> eldest) {
+                return size() > ItemCooccurrenceRecommender.this.maxUsers;
+            }
+        };
+
+        meterRegistry.gaugeMapSize("recommendation.cooc.items", Tags.empty(), rows);
+        meterRegistry.gaugeCollectionSize("recommendation.cooc.queue.size", Tags.empty(), ingestQueue);
+        this.ingestedCounter = meterRegistry.counter("recommendation.cooc.ingested");
+        this.droppedCounter = meterRegistry.counter("recommendation.cooc.dropped");
+        this.recommendTimer = meterRegistry.timer("recommendation.cooc.recommend");
+    }
+
+    @PostConstruct
+    public void start() {
+        ingester = new Thread(this::drainQueue, "cooc-recommender-ingester");
+        ingester.setDaemon(true);
+        ingester.start();
+    }
+
+    /**
+     * Nạp ma trận đã lưu và phát lại các sự kiện sau lúc lưu; chưa có file thì dựng từ user_behavior_log
+     */
+    public void warmUp() {
+        long since = System.currentTimeMillis() - Duration.ofDays(bootstrapDays).toMillis();
+        try {
+            Long writtenAt = readSnapshot();
+            if (writtenAt != null) since = writtenAt;
+        } catch (IOException e) {
+            log.warn("Cannot read recommendation snapshot {}: {}", snapshotPath, e.getMessage());
+            synchronized (writeLock) {
+                rows.clear();
+            }
+        }
+
+        int replayed = replay(toLocalDateTime(since));
+        warm = true;
+        log.info("Co-occurrence recommender ready: {} items, {} events replayed", rows.size(), replayed);
+    }
+
+    /**
+     * Nhận 1 hành vi đã ghi DB, không chặn luồng gọi (luồng flush của UserBehaviorService).
+     * Hàng đợi đầy thì bỏ sự kiện: hành vi vẫn nằm trong DB, lần khởi động sau được phát lại.
+     */
+    public void submit(BehaviorEvent event) {
+        if (!ingestQueue.offer(event)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void drainQueue() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ingest(ingestQueue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Error ingesting behavior into co-occurrence matrix: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Cộng 1 hành vi vào ma trận, chạy trên luồng ingest hoặc luồng phát lại khi khởi động
+    private void ingest(BehaviorEvent event) {
+        Double weight = BEHAVIOR_WEIGHTS.get(event.behaviorType());
+        if (weight == null || event.userId() == null || event.productId() == null || event.behaviorTime() == null) return;
+
+        long productId = event.productId();
+        long at = toMillis(event.behaviorTime());
+        synchronized (writeLock) {
+            double factor = timeFactor(at);
+            if (factor > RENORMALIZE_AT) {
+                renormalize(at);
+                factor = 1.0;
+            }
+
+            ItemRow row = rows.computeIfAbsent(productId, id -> new ItemRow());
+            synchronized (row) {
+                row.total += weight * factor;
+                row.dirty = true;
+            }
+
+            UserHistory history = historyOf(event.userId());
+            double previous = history.weightOf(productId);
+            if (weight > previous) {
+                UserHistory others = history.copy();
+                for (int i = 0; i < others.size; i++) {
+                    long otherId = others.items[i];
+                    if (otherId == productId) continue;
+                    // Độ mạnh của cặp là min(trọng số 2 bên), chỉ cộng phần tăng thêm nên xem lại nhiều lần không bị thổi phồng
+                    double amount = Math.min(weight, others.weights[i]) - Math.min(previous, others.weights[i]);
+                    if (amount <= 0) continue;
+                    addPair(row, otherId, amount * factor);
+                    addPair(rows.computeIfAbsent(otherId, id -> new ItemRow()), productId, amount * factor);
+                }
+            }
+            history.record(productId, weight, at);
+        }
+        ingestedCounter.increment();
+    }
+
+    /**
+     * Tối đa limit sản phẩm gợi ý cho user từ các sản phẩm user tương tác gần đây, bỏ qua sản phẩm đã tương tác
+     */
+    public List<Long> recommend(Long userId, int limit) {
+        if (userId == null || limit <= 0 || rows.isEmpty()) return List.of();
+        return recommendTimer.record(() -> {
+            UserHistory history = historyOrLoad(userId).copy();
+            if (history.size == 0) return List.of();
+
+            long now = System.currentTimeMillis();
+            LongDoubleHashMap scores = new LongDoubleHashMap(topK * history.size);
+            for (int i = 0; i < history.size; i++) {
+                ItemRow row = rows.get(history.items[i]);
+                if (row == null) continue;
+
+                // Sản phẩm tương tác càng lâu thì đóng góp càng ít
+                double weight = history.weights[i] * Math.exp(-(now - history.times[i]) * LN2 / halfLifeMillis);
+                TopNeighbors top = topOf(row);
+                for (int j = 0; j < top.size(); j++) {
+                    if (!history.contains(top.ids()[j])) {
+                        scores.addTo(top.ids()[j], weight * top.scores()[j]);
+                    }
+                }
+            }
+
+            long[] ids = new long[limit];
+            double[] values = new double[limit];
+            int count = scores.topK(limit, ids, values);
+            List<Long> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(ids[i]);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Lưu ma trận ra file tạm rồi đổi tên, bỏ qua khi chưa nạp xong (tránh ghi đè file bằng ma trận dở dang).
+     * Chỉ giữ khoá từng hàng lúc chép, nén và ghi file không giữ writeLock.
+     */
+    public void writeSnapshot() throws IOException {
+        if (!warm) return;
+
+        long epoch;
+        List<RowCopy> copies;
+        do {
+            epoch = epochMillis;
+            copies = copyRows();
+            // renormalize chạy giữa chừng thì các hàng đã chép lệch mốc thời gian, chép lại
+        } while (epoch != epochMillis);
+
+        Path parent = snapshotPath.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(epoch);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(copies.size());
+            for (RowCopy copy : copies) {
+                out.writeLong(copy.id());
+                out.writeDouble(copy.total());
+                out.writeInt(copy.count());
+                for (int i = 0; i < copy.count(); i++) {
+                    out.writeLong(copy.keys()[i]);
+                    out.writeDouble(copy.values()[i]);
+                }
+            }
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Saved co-occurrence snapshot with {} items to {}", copies.size(), snapshotPath);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ingester != null) ingester.interrupt();
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            log.warn("Cannot save recommendation snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private List<RowCopy> copyRows() {
+        List<RowCopy> copies = new ArrayList<>(rows.size());
+        for (Map.Entry<Long, ItemRow> entry : rows.entrySet()) {
+            ItemRow row = entry.getValue();
+            synchronized (row) {
+                long[] keys = new long[row.neighbors.size()];
+                double[] values = new double[keys.length];
+                int count = row.neighbors.copyTo(keys, values);
+                copies.add(new RowCopy(entry.getKey(), row.total, keys, values, count));
+            }
+        }
+        return copies;
+    }
+
+    // Trả về thời điểm lưu, null nếu chưa có file
+    private Long readSnapshot() throws IOException {
+        if (!Files.isRegularFile(snapshotPath)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(snapshotPath))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot format");
+            }
+            synchronized (writeLock) {
+                // Sự kiện đã cộng trước khi nạp file được đổi sang mốc thời gian của file
+                long snapshotEpoch = in.readLong();
+                double rebase = Math.exp((epochMillis - snapshotEpoch) * LN2 / halfLifeMillis);
+                for (ItemRow row : rows.values()) {
+                    synchronized (row) {
+                        row.neighbors.scale(rebase);
+                        row.total *= rebase;
+                    }
+                }
+                epochMillis = snapshotEpoch;
+
+                long writtenAt = in.readLong();
+                int itemCount = in.readInt();
+                for (int i = 0; i < itemCount; i++) {
+                    ItemRow row = rows.computeIfAbsent(in.readLong(), id -> new ItemRow());
+                    row.total += in.readDouble();
+                    int count = in.readInt();
+                    for (int j = 0; j < count; j++) {
+                        row.neighbors.addTo(in.readLong(), in.readDouble());
+                    }
+                    row.dirty = true;
+                }
+                return writtenAt;
+            }
+        }
+    }
+
+    // Phát lại theo từng khoảng id để không nạp cả kết quả vào bộ nhớ
+    private int replay(LocalDateTime since) {
+        if (bootstrapLimit == 0) return 0;
+
+        Long[] range = jdbcTemplate.queryForObject(REPLAY_RANGE_SQL,
+                (rs, i) -> new Long[]{rs.getObject(1, Long.class), rs.getObject(2, Long.class)},
+                Timestamp.valueOf(since));
+        if (range == null || range[0] == null || range[1] == null) return 0;
+
+        long lastId = Math.max(range[0] - 1, range[1] - bootstrapLimit);
+        long maxId = range[1];
+        int replayed = 0;
+        while (lastId < maxId) {
+            long to = Math.min(lastId + REPLAY_CHUNK, maxId);
+            List<BehaviorEvent> events = jdbcTemplate.query(REPLAY_SQL,
+                    (rs, i) -> toEvent(rs, rs.getObject("user_id", Long.class)),
+                    lastId, to);
+            for (BehaviorEvent event : events) {
+                ingest(event);
+            }
+            replayed += events.size();
+            lastId = to;
+        }
+        return replayed;
+    }
+
+    private void addPair(ItemRow row, long neighborId, double amount) {
+        synchronized (row) {
+            row.neighbors.addTo(neighborId, amount);
+            if (row.neighbors.size() > maxNeighbors * 2) {
+                row.neighbors.retainTop(maxNeighbors);
+            }
+            row.dirty = true;
+        }
+    }
+
+    // Tính lại top-K của hàng nếu hàng đã đổi: điểm đồng xuất hiện / sqrt(total_i * total_j)
+    private TopNeighbors topOf(ItemRow row) {
+        if (!row.dirty) return row.top;
+        synchronized (row) {
+            if (!row.dirty) return row.top;
+            row.dirty = false;
+
+            double total = row.total;
+            LongDoubleHashMap normalized = new LongDoubleHashMap(row.neighbors.size());
+            row.neighbors.forEach((neighborId, score) -> {
+                ItemRow neighbor = rows.get(neighborId);
+                double neighborTotal = neighbor != null ? neighbor.total : 0.0;
+                if (total > 0 && neighborTotal > 0) {
+                    normalized.addTo(neighborId, score / Math.sqrt(total * neighborTotal));
+                }
+            });
+
+            long[] ids = new long[topK];
+            double[] scores = new double[topK];
+            row.top = new TopNeighbors(ids, scores, normalized.topK(topK, ids, scores));
+            return row.top;
+        }
+    }
+
+    private UserHistory historyOf(Long userId) {
+        synchronized (histories) {
+            return histories.computeIfAbsent(userId, id -> new UserHistory(historySize));
+        }
+    }
+
+    // User chưa có trong bộ nhớ (vd. sau khi khởi động lại) thì lấy các hành vi gần nhất từ DB
+    private UserHistory historyOrLoad(Long userId) {
+        synchronized (histories) {
+            UserHistory history = histories.get(userId);
+            if (history != null) return history;
+        }
+
+        UserHistory loaded = new UserHistory(historySize);
+        List<BehaviorEvent> recent = jdbcTemplate.query(HISTORY_SQL,
+                (rs, i) -> toEvent(rs, userId),
+                userId, historySize * 2);
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            BehaviorEvent event = recent.get(i);
+            if (event.productId() == null || event.behaviorTime() == null) continue;
+            Double weight = BEHAVIOR_WEIGHTS.get(event.behaviorType());
+            if (weight != null) loaded.record(event.productId(), weight, toMillis(event.behaviorTime()));
+        }
+
+        synchronized (histories) {
+            return histories.computeIfAbsent(userId, id -> loaded);
+        }
+    }
+
+    private double timeFactor(long atMillis) {
+        return Math.exp((atMillis - epochMillis) * LN2 / halfLifeMillis);
+    }
+
+    // Dời mốc thời gian về at và chia mọi điểm cho hệ số tương ứng, thứ hạng không đổi
+    private void renormalize(long at) {
+        double scale = 1.0 / timeFactor(at);
+        for (ItemRow row : rows.values()) {
+            synchronized (row) {
+                row.neighbors.scale(scale);
+                row.total *= scale;
+                row.dirty = true;
+            }
+        }
+        epochMillis = at;
+    }
+
+    // product_id / behavior_time NULL được giữ là null (getLong trả 0, trùng khoá rỗng của LongDoubleHashMap) để bỏ qua dòng đó
+    private static BehaviorEvent toEvent(ResultSet rs, Long userId) throws SQLException {
+        Timestamp behaviorTime = rs.getTimestamp("behavior_time");
+        return new BehaviorEvent(userId, rs.getObject("product_id", Long.class), rs.getString("behavior_type"),
+                behaviorTime != null ? behaviorTime.toLocalDateTime() : null);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
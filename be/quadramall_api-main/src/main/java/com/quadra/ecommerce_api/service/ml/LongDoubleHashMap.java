@@ -0,0 +1,168 @@
+package com.quadra.ecommerce_api.service.ml;
+
+import java.util.Arrays;
+
+/**
+ * Map long -> double địa chỉ mở (linear probing), không boxing, dùng cho hàng thưa của ma trận đồng xuất hiện.
+ * Khoá 0 được dùng làm ô trống nên không nhận khoá 0 (id sản phẩm luôn dương). Không thread-safe.
+ */
+final class LongDoubleHashMap {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private double[] values;
+    private int size;
+    private int resizeAt;
+
+    LongDoubleHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Cộng delta vào giá trị của key (chưa có thì coi là 0), trả về giá trị mới
+     */
+    double addTo(long key, double delta) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return values[slot] += delta;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size > resizeAt) rehash(keys.length << 1);
+        return delta;
+    }
+
+    void scale(double factor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) values[i] *= factor;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0L);
+        size = 0;
+    }
+
+    interface Visitor {
+        void accept(long key, double value);
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) visitor.accept(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Chép toàn bộ cặp vào 2 mảng có độ dài >= size(), trả về số cặp đã chép
+     */
+    int copyTo(long[] outKeys, double[] outValues) {
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0) continue;
+            outKeys[count] = keys[i];
+            outValues[count++] = values[i];
+        }
+        return count;
+    }
+
+    /**
+     * Ghi tối đa k cặp có giá trị lớn nhất vào outKeys / outValues (giảm dần), trả về số cặp đã ghi.
+     * Dùng min-heap kích thước k nên O(n log k).
+     */
+    int topK(int k, long[] outKeys, double[] outValues) {
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0) continue;
+            if (count < k) {
+                outKeys[count] = keys[i];
+                outValues[count] = values[i];
+                siftUp(outKeys, outValues, count++);
+            } else if (values[i] > outValues[0]) {
+                outKeys[0] = keys[i];
+                outValues[0] = values[i];
+                siftDown(outKeys, outValues, 0, count);
+            }
+        }
+        // Lấy dần phần tử nhỏ nhất ra cuối mảng để được thứ tự giảm dần
+        for (int end = count - 1; end > 0; end--) {
+            swap(outKeys, outValues, 0, end);
+            siftDown(outKeys, outValues, 0, end);
+        }
+        return count;
+    }
+
+    /**
+     * Giữ lại keep cặp có giá trị lớn nhất, bỏ phần còn lại (hàng quá dài)
+     */
+    void retainTop(int keep) {
+        if (size <= keep) return;
+        long[] topKeys = new long[keep];
+        double[] topValues = new double[keep];
+        int count = topK(keep, topKeys, topValues);
+        clear();
+        for (int i = 0; i < count; i++) {
+            addTo(topKeys[i], topValues[i]);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) addTo(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void siftUp(long[] heapKeys, double[] heapValues, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heapValues[parent] <= heapValues[index]) return;
+            swap(heapKeys, heapValues, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heapKeys, double[] heapValues, int index, int length) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < length && heapValues[left] < heapValues[smallest]) smallest = left;
+            if (right < length && heapValues[right] < heapValues[smallest]) smallest = right;
+            if (smallest == index) return;
+            swap(heapKeys, heapValues, smallest, index);
+            index = smallest;
+        }
+    }
+
+    private static void swap(long[] heapKeys, double[] heapValues, int a, int b) {
+        long key = heapKeys[a];
+        heapKeys[a] = heapKeys[b];
+        heapKeys[b] = key;
+        double value = heapValues[a];
+        heapValues[a] = heapValues[b];
+        heapValues[b] = value;
+    }
+}
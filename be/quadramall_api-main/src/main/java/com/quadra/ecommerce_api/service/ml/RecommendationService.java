@@ -3,6 +3,7 @@ package com.quadra.ecommerce_api.service.ml;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -14,14 +15,20 @@ public class RecommendationService {
 
     private final ObjectMapper objectMapper;
     private final RedisTemplate<String, String> redis;
+    private final ItemCooccurrenceRecommender cooccurrenceRecommender;
+    private final int fallbackLimit;
 
     @Autowired
     public RecommendationService(
             ObjectMapper objectMapper,
-            RedisTemplate<String, String> redis
+            RedisTemplate<String, String> redis,
+            ItemCooccurrenceRecommender cooccurrenceRecommender,
+            @Value("${recommendation.cooc.limit:20}") int fallbackLimit
     ) {
         this.objectMapper = objectMapper;
         this.redis = redis;
+        this.cooccurrenceRecommender = cooccurrenceRecommender;
+        this.fallbackLimit = fallbackLimit;
     }
 
     public List<Long> getRecommendationsForUser(Long userId) {
@@ -29,22 +36,29 @@ public class RecommendationService {
         String dynamicKey = "rec_user_dynamic:" + userId;
         String raw = redis.opsForValue().get(dynamicKey);
 
-        if (raw != null) {
-            try {
-                return objectMapper.readValue(raw, new TypeReference<>() {});
-            } catch (IOException e) {
-                // Fallback to static recommendations
-            }
+        List<Long> recommendations = parse(raw);
+        if (!recommendations.isEmpty()) {
+            return recommendations;
         }
 
         // Nếu không có đề xuất động, lấy đề xuất tĩnh
         String staticKey = "rec_user:" + userId;
-        raw = redis.opsForValue().get(staticKey);
+        recommendations = parse(redis.opsForValue().get(staticKey));
+        if (!recommendations.isEmpty()) {
+            return recommendations;
+        }
+
+        // Job Python chưa có kết quả cho user: gợi ý item-item tính trong JVM
+        return cooccurrenceRecommender.recommend(userId, fallbackLimit);
+    }
+
+    private List<Long> parse(String raw) {
         if (raw == null) {
-            return List.of(); // Fallback rỗng
+            return List.of();
         }
         try {
-            return objectMapper.readValue(raw, new TypeReference<>() {});
+            List<Long> ids = objectMapper.readValue(raw, new TypeReference<>() {});
+            return ids != null ? ids : List.of();
         } catch (IOException e) {
             return List.of();
         }
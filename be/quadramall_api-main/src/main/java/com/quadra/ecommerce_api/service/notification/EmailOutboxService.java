@@ -0,0 +1,320 @@
+package com.quadra.ecommerce_api.service.notification;
+
+import com.quadra.ecommerce_api.entity.notification.EmailOutbox;
+import com.quadra.ecommerce_api.enums.notification.EmailOutboxStatus;
+import com.quadra.ecommerce_api.repository.notification.EmailOutboxRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi email qua bảng email_outbox: request chỉ ghi 1 dòng rồi trả về, việc gửi SMTP chạy nền.
+ * Mỗi lượt gửi nhận tối đa batch-size dòng đến hạn (UPDATE ... LIMIT, nhiều node không nhận trùng),
+ * chia thành từng nhóm connection-batch-size gửi song song trên emailSenderExecutor, mỗi nhóm dùng chung 1 kết nối SMTP.
+ * Email gửi lỗi được thử lại sau base-backoff-ms, 2x, 4x... (tối đa max-backoff-ms); quá max-attempts lần
+ * thì chuyển DEAD và được giữ lại trong bảng (dead-letter). Email có expiresAt (OTP, link đặt lại mật khẩu) bị bỏ
+ * khi đã quá hạn hoặc lần thử lại kế tiếp rơi sau hạn, người dùng sẽ yêu cầu mã mới.
+ * Lượt gửi chạy ngay sau khi email được commit và định kỳ mỗi poll-interval-ms (xem EmailOutboxTasks).
+ */
+@Service
+@Slf4j
+public class EmailOutboxService {
+
+    private static final String FROM_ADDRESS = "tavandat205@gmail.com";
+    private static final String FROM_NAME = "QuadraMall";
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepo emailOutboxRepo;
+    private final JavaMailSender mailSender;
+    private final ThreadPoolTaskExecutor senderExecutor;
+    private final int batchSize;
+    private final int connectionBatchSize;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final Duration lease;
+
+    // Điều phối lượt gửi trên 1 luồng để các lượt không chạy chồng nhau trong cùng node
+    private ExecutorService dispatcher;
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong deadCount = new AtomicLong();
+
+    private final Counter enqueuedCounter;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+    private final Counter expiredCounter;
+    private final Timer sendTimer;
+
+    private record Delivery(EmailOutbox email, Exception error) {
+    }
+
+    public EmailOutboxService(EmailOutboxRepo emailOutboxRepo,
+                              JavaMailSender mailSender,
+                              @Qualifier("emailSenderExecutor") ThreadPoolTaskExecutor senderExecutor,
+                              MeterRegistry meterRegistry,
+                              @Value("${mail.outbox.batch-size:100}") int batchSize,
+                              @Value("${mail.outbox.connection-batch-size:20}") int connectionBatchSize,
+                              @Value("${mail.outbox.max-attempts:5}") int maxAttempts,
+                              @Value("${mail.outbox.base-backoff-ms:5000}") long baseBackoffMs,
+                              @Value("${mail.outbox.max-backoff-ms:600000}") long maxBackoffMs,
+                              @Value("${mail.outbox.lease-seconds:120}") long leaseSeconds) {
+        this.emailOutboxRepo = emailOutboxRepo;
+        this.mailSender = mailSender;
+        this.senderExecutor = senderExecutor;
+        this.batchSize = Math.max(1, batchSize);
+        this.connectionBatchSize = Math.max(1, connectionBatchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMs = Math.max(0, baseBackoffMs);
+        this.maxBackoffMs = Math.max(this.baseBackoffMs, maxBackoffMs);
+        this.lease = Duration.ofSeconds(Math.max(1, leaseSeconds));
+
+        meterRegistry.gauge("email.outbox.pending", pendingCount);
+        meterRegistry.gauge("email.outbox.dead", deadCount);
+        this.enqueuedCounter = meterRegistry.counter("email.outbox.enqueued");
+        this.sentCounter = meterRegistry.counter("email.outbox.sent");
+        this.retriedCounter = meterRegistry.counter("email.outbox.retried");
+        this.deadCounter = meterRegistry.counter("email.outbox.dead_lettered");
+        this.expiredCounter = meterRegistry.counter("email.outbox.expired");
+        this.sendTimer = meterRegistry.timer("email.outbox.send");
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        dispatcher.shutdown();
+        // Email chưa gửi vẫn nằm trong bảng, node khác / lần khởi động sau sẽ gửi tiếp
+        dispatcher.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ghi email vào outbox, gửi sau khi transaction hiện tại (nếu có) commit
+     */
+    public void enqueue(String recipient, String subject, String body) {
+        enqueue(recipient, subject, body, null);
+    }
+
+    /**
+     * Như enqueue(recipient, subject, body) nhưng bỏ email nếu chưa gửi được trước expiresAt
+     */
+    public void enqueue(String recipient, String subject, String body, LocalDateTime expiresAt) {
+        emailOutboxRepo.save(EmailOutbox.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .body(body)
+                .nextAttemptAt(LocalDateTime.now())
+                .expiresAt(expiresAt)
+                .build());
+        enqueuedCounter.increment();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            requestDrain();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                requestDrain();
+            }
+        });
+    }
+
+    /**
+     * Yêu cầu 1 lượt gửi; các yêu cầu tới trong lúc đang chờ được gộp vào cùng lượt
+     */
+    public void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            dispatcher.execute(this::drainSafely);
+        }
+    }
+
+    /**
+     * Cập nhật gauge số email đang chờ / DEAD
+     */
+    public void refreshMetrics() {
+        pendingCount.set(emailOutboxRepo.countByStatus(EmailOutboxStatus.PENDING)
+                + emailOutboxRepo.countByStatus(EmailOutboxStatus.SENDING));
+        deadCount.set(emailOutboxRepo.countByStatus(EmailOutboxStatus.DEAD));
+    }
+
+    private void drainSafely() {
+        drainRequested.set(false);
+        try {
+            int claimed;
+            do {
+                claimed = drainBatch();
+            } while (claimed == batchSize); // Đủ 1 batch thì có thể còn email đến hạn
+        } catch (Exception e) {
+            log.error("Error draining email outbox: {}", e.getMessage());
+        }
+    }
+
+    private int drainBatch() {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        int claimed = emailOutboxRepo.claimDue(token, now, now.plus(lease), batchSize);
+        if (claimed == 0) return 0;
+
+        List<Long> expiredIds = new ArrayList<>();
+        List<EmailOutbox> emails = new ArrayList<>();
+        for (EmailOutbox email : emailOutboxRepo.findByClaimToken(token)) {
+            if (isExpired(email, now)) {
+                expiredIds.add(email.getId());
+            } else {
+                emails.add(email);
+            }
+        }
+
+        List<CompletableFuture<List<Delivery>>> chunks = new ArrayList<>();
+        for (int from = 0; from < emails.size(); from += connectionBatchSize) {
+            List<EmailOutbox> chunk = emails.subList(from, Math.min(from + connectionBatchSize, emails.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> sendChunk(chunk), senderExecutor));
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        List<EmailOutbox> failed = new ArrayList<>();
+        for (CompletableFuture<List<Delivery>> chunk : chunks) {
+            for (Delivery delivery : chunk.join()) {
+                if (delivery.error() == null) {
+                    sentIds.add(delivery.email().getId());
+                } else if (isExpired(delivery.email(), nextAttemptAt(delivery.email()))) {
+                    log.warn("Email {} to {} failed and expires before the next attempt, dropping it",
+                            delivery.email().getId(), delivery.email().getRecipient());
+                    expiredIds.add(delivery.email().getId());
+                } else {
+                    failed.add(scheduleRetry(delivery.email(), delivery.error()));
+                }
+            }
+        }
+
+        if (!sentIds.isEmpty()) {
+            emailOutboxRepo.deleteAllByIdInBatch(sentIds);
+            sentCounter.increment(sentIds.size());
+        }
+        if (!expiredIds.isEmpty()) {
+            emailOutboxRepo.deleteAllByIdInBatch(expiredIds);
+            expiredCounter.increment(expiredIds.size());
+        }
+        if (!failed.isEmpty()) {
+            emailOutboxRepo.saveAll(failed);
+        }
+        return claimed;
+    }
+
+    // Gửi cả nhóm trên 1 kết nối SMTP, trả về kết quả từng email
+    private List<Delivery> sendChunk(List<EmailOutbox> emails) {
+        Map<MimeMessage, EmailOutbox> messages = new IdentityHashMap<>();
+        List<Delivery> results = new ArrayList<>(emails.size());
+        for (EmailOutbox email : emails) {
+            try {
+                messages.put(toMimeMessage(email), email);
+            } catch (Exception e) {
+                results.add(new Delivery(email, e));
+            }
+        }
+        if (messages.isEmpty()) return results;
+
+        long start = System.nanoTime();
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+            messages.values().forEach(email -> results.add(new Delivery(email, null)));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failedMessages = e.getFailedMessages();
+            messages.forEach((message, email) -> {
+                // Không có danh sách lỗi từng email nghĩa là cả nhóm không gửi được
+                Exception error = failedMessages.isEmpty() ? e : failedMessages.get(message);
+                results.add(new Delivery(email, error));
+            });
+        } catch (Exception e) {
+            messages.values().forEach(email -> results.add(new Delivery(email, e)));
+        } finally {
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return results;
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox email) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(email.getRecipient());
+        helper.setFrom(new InternetAddress(FROM_ADDRESS, FROM_NAME));
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), false);
+        return message;
+    }
+
+    private EmailOutbox scheduleRetry(EmailOutbox email, Exception error) {
+        int attempts = email.getAttempts() + 1;
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        email.setAttempts(attempts);
+        email.setClaimToken(null);
+        email.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+
+        if (attempts >= maxAttempts) {
+            email.setStatus(EmailOutboxStatus.DEAD);
+            deadCounter.increment();
+            log.error("Email {} to {} moved to dead letter after {} attempts: {}",
+                    email.getId(), email.getRecipient(), attempts, message);
+        } else {
+            long backoff = backoffMs(attempts);
+            email.setStatus(EmailOutboxStatus.PENDING);
+            email.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoff)));
+            retriedCounter.increment();
+            log.warn("Email {} to {} failed (attempt {}), retrying in {} ms: {}",
+                    email.getId(), email.getRecipient(), attempts, backoff, message);
+        }
+        return email;
+    }
+
+    private long backoffMs(int attempts) {
+        return Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempts - 1, 20));
+    }
+
+    // Thời điểm thử lại nếu lần gửi này lỗi (lần cuối thì coi như ngay lúc này, email sẽ chuyển DEAD)
+    private LocalDateTime nextAttemptAt(EmailOutbox email) {
+        int attempts = email.getAttempts() + 1;
+        LocalDateTime now = LocalDateTime.now();
+        return attempts >= maxAttempts ? now : now.plus(Duration.ofMillis(backoffMs(attempts)));
+    }
+
+    private boolean isExpired(EmailOutbox email, LocalDateTime at) {
+        return email.getExpiresAt() != null && !at.isBefore(email.getExpiresAt());
+    }
+}
@@ -0,0 +1,117 @@
+package com.quadra.ecommerce_api.service.notification;
+
+import com.quadra.ecommerce_api.dto.custom.notification.response.NotificationSummaryDTO;
+import com.quadra.ecommerce_api.entity.notification.Notification;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Gộp các thay đổi thông báo của cùng 1 user trong notification.push.coalesce-window-ms thành 1 message WebSocket:
+ * - đúng 1 thông báo mới và không có gì khác: gửi thông báo đó lên /queue/notifications như trước
+ * - còn lại: gửi 1 NotificationSummaryDTO lên /queue/notifications/summary
+ * Cửa sổ = 0 thì gửi ngay, không gộp.
+ */
+@Component
+@Slf4j
+public class NotificationPushCoalescer {
+
+    private static final String NOTIFICATION_DESTINATION = "/queue/notifications";
+    private static final String SUMMARY_DESTINATION = "/queue/notifications/summary";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long windowMs;
+
+    private final Map<String, Pending> pendingByUser = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    private static final class Pending {
+        final List<Notification> created = new ArrayList<>();
+        int read;
+        int deleted;
+    }
+
+    public NotificationPushCoalescer(SimpMessagingTemplate messagingTemplate,
+                                     @Value("${notification.push.coalesce-window-ms:300}") long windowMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.windowMs = Math.max(0, windowMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-push-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        // Gửi nốt những gì đang chờ
+        pendingByUser.keySet().forEach(this::flush);
+    }
+
+    public void pushCreated(String userName, Notification notification) {
+        add(userName, pending -> pending.created.add(notification));
+    }
+
+    public void pushChanged(String userName, int read, int deleted) {
+        if (read <= 0 && deleted <= 0) return;
+        add(userName, pending -> {
+            pending.read += read;
+            pending.deleted += deleted;
+        });
+    }
+
+    private void add(String userName, Consumer<Pending> change) {
+        if (userName == null) return;
+
+        boolean[] first = new boolean[1];
+        pendingByUser.compute(userName, (key, pending) -> {
+            if (pending == null) {
+                pending = new Pending();
+                first[0] = true;
+            }
+            change.accept(pending);
+            return pending;
+        });
+
+        if (windowMs == 0) {
+            flush(userName);
+        } else if (first[0]) {
+            // Message đầu tiên của cửa sổ đặt lịch gửi, các message sau chỉ cộng dồn
+            flusher.schedule(() -> flush(userName), windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(String userName) {
+        Pending pending = pendingByUser.remove(userName);
+        if (pending == null) return;
+
+        try {
+            if (pending.created.size() == 1 && pending.read == 0 && pending.deleted == 0) {
+                messagingTemplate.convertAndSendToUser(userName, NOTIFICATION_DESTINATION, pending.created.get(0));
+                return;
+            }
+            Notification latest = pending.created.isEmpty() ? null : pending.created.get(pending.created.size() - 1);
+            messagingTemplate.convertAndSendToUser(userName, SUMMARY_DESTINATION, new NotificationSummaryDTO(
+                    pending.created.size(), pending.read, pending.deleted, latest));
+        } catch (Exception e) {
+            log.error("Error pushing notifications to {}: {}", userName, e.getMessage());
+        }
+    }
+}
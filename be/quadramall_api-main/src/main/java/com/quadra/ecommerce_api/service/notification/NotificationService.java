@@ -8,17 +8,48 @@ import com.quadra.ecommerce_api.exception.ExCustom;
 import com.quadra.ecommerce_api.repository.notification.NotificationRepo;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class NotificationService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_SQL =
+            "INSERT INTO notifications (user_id, type, title, message, reference_id, is_read, created_at, priority, category, icon) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     private final NotificationRepo repo;
     private final SimpMessagingTemplate messagingTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationPushCoalescer pushCoalescer;
+
+    /**
+     * 1 thông báo trong sendBatch, cùng tham số với sendNotification
+     */
+    public record NotificationCommand(User user,
+                                      NotificationType type,
+                                      String title,
+                                      String message,
+                                      Long refId,
+                                      Notification.Priority priority,
+                                      Notification.Category category,
+                                      String icon) {
+    }
 
     @Async
     public void sendNotification(
@@ -42,7 +73,35 @@ public class NotificationService {
                 .icon(icon)
                 .build();
         repo.save(noti);
-        messagingTemplate.convertAndSendToUser(user.getEmail(), "/queue/notifications", noti);
+        pushCoalescer.pushCreated(String.valueOf(user.getId()), noti);
+    }
+
+    /**
+     * Lưu nhiều thông báo bằng JDBC batch, mỗi user nhận 1 message WebSocket cho cả lô (xem NotificationPushCoalescer)
+     */
+    @Async
+    public void sendBatch(List<NotificationCommand> commands) {
+        if (commands.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> notifications = commands.stream()
+                .map(command -> Notification.builder()
+                        .user(command.user())
+                        .type(command.type())
+                        .title(command.title())
+                        .message(command.message())
+                        .referenceId(command.refId())
+                        .priority(command.priority() != null ? command.priority() : Notification.Priority.MEDIUM)
+                        .category(command.category() != null ? command.category() : Notification.Category.SYSTEM)
+                        .icon(command.icon())
+                        .createdAt(now)
+                        .build())
+                .toList();
+
+        for (int from = 0; from < notifications.size(); from += BATCH_SIZE) {
+            insertBatch(notifications.subList(from, Math.min(from + BATCH_SIZE, notifications.size())));
+        }
+        notifications.forEach(noti -> pushCoalescer.pushCreated(String.valueOf(noti.getUser().getId()), noti));
     }
 
     public void markAsRead(Long notificationId) {
@@ -51,24 +110,55 @@ public class NotificationService {
         if (!noti.isRead()) {
             noti.setRead(true);
             repo.save(noti);
-            messagingTemplate.convertAndSendToUser(noti.getUser().getEmail(), "/queue/notifications", noti);
+            messagingTemplate.convertAndSendToUser(String.valueOf(noti.getUser().getId()), "/queue/notifications", noti);
         }
     }
 
-    public void markAllAsRead(Long userId) {
-        List<Notification> notifications = repo.findByUserIdAndIsReadFalse(userId);
-        notifications.forEach(noti -> {
-            noti.setRead(true);
-            messagingTemplate.convertAndSendToUser(noti.getUser().getEmail(), "/queue/notifications", noti);
-        });
-        repo.saveAll(notifications);
+    public void markAllAsRead(User user) {
+        int updated = repo.markAllAsReadByUserId(user.getId());
+        pushCoalescer.pushChanged(String.valueOf(user.getId()), updated, 0);
     }
 
     public void deleteNotifications(List<Long> notificationIds) {
         List<Notification> notifications = repo.findAllById(notificationIds);
-        repo.deleteAll(notifications);
-        // Gửi cập nhật qua WebSocket để frontend cập nhật danh sách
-        notifications.forEach(noti ->
-                messagingTemplate.convertAndSendToUser(noti.getUser().getEmail(), "/queue/notifications", noti));
+        repo.deleteAllInBatch(notifications);
+        // Gửi 1 cập nhật qua WebSocket cho mỗi user để frontend tải lại danh sách
+        Map<String, Long> deletedByUser = notifications.stream()
+                .collect(Collectors.groupingBy(noti -> String.valueOf(noti.getUser().getId()), Collectors.counting()));
+        deletedByUser.forEach((userName, count) -> pushCoalescer.pushChanged(userName, 0, count.intValue()));
+    }
+
+    // INSERT nhiều dòng trong 1 batch và gán lại id sinh tự động để gửi kèm qua WebSocket
+    private void insertBatch(List<Notification> batch) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Notification noti : batch) {
+                    ps.setLong(1, noti.getUser().getId());
+                    ps.setString(2, noti.getType().name());
+                    ps.setString(3, noti.getTitle());
+                    ps.setString(4, noti.getMessage());
+                    if (noti.getReferenceId() != null) {
+                        ps.setLong(5, noti.getReferenceId());
+                    } else {
+                        ps.setNull(5, Types.BIGINT);
+                    }
+                    ps.setBoolean(6, noti.isRead());
+                    ps.setTimestamp(7, Timestamp.valueOf(noti.getCreatedAt()));
+                    ps.setString(8, noti.getPriority().name());
+                    ps.setString(9, noti.getCategory().name());
+                    ps.setString(10, noti.getIcon());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < batch.size()) {
+                        batch.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.quadra.ecommerce_api.service.orderManagement;
 
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.dto.custom.orderManagerment.request.OrderFilterRequest;
 import com.quadra.ecommerce_api.dto.custom.orderManagerment.response.*;
 import com.quadra.ecommerce_api.entity.order.Order;
@@ -13,13 +14,16 @@ import com.quadra.ecommerce_api.repository.order.OrderRepo;
 import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
 import com.quadra.ecommerce_api.repository.shipping.OrderShippingRepo;
 import com.quadra.ecommerce_api.repository.store.StoreRepo;
+import com.quadra.ecommerce_api.utils.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.criteria.Predicate;
@@ -39,66 +43,32 @@ public class OrderManagementService {
     private final OrderItemRepo orderItemRepository;
     private final OrderShippingRepo orderShippingRepository;
     private final StoreRepo storeRepository;
+    private final OrderStatsService orderStatsService;
 
     /**
      * Get order statistics for seller dashboard (specific store or all stores)
+     * Đọc từ store_order_stats, không chạy trong transaction để thấy được dữ liệu vừa rebuild
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public OrderStatsResponse getOrderStats(Long userId, Long storeId) {
         log.info("Getting order stats for user: {} and store: {}", userId, storeId);
 
         List<Store> stores = getUserStores(userId);
 
         // If storeId is provided, filter to that specific store
-        List<Store> targetStores = storeId != null ?
-                stores.stream().filter(store -> store.getId().equals(storeId)).collect(Collectors.toList()) :
-                stores;
+        List<Long> targetStoreIds = stores.stream()
+                .map(Store::getId)
+                .filter(id -> storeId == null || id.equals(storeId))
+                .collect(Collectors.toList());
 
-        if (targetStores.isEmpty()) {
+        if (targetStoreIds.isEmpty()) {
             throw new ExCustom(HttpStatus.NOT_FOUND, "Không tìm thấy cửa hàng");
         }
 
-        // Get all orders for target stores
-        List<Order> allOrders = new ArrayList<>();
-        for (Store store : targetStores) {
-            allOrders.addAll(orderRepository.findByStoreIdOrderByCreatedAtDesc(store.getId()));
-        }
-
-        // Calculate stats
-        long totalOrders = allOrders.size();
-        long pendingOrders = countOrdersByStatus(allOrders, OrderStatus.PENDING);
-        long processingOrders = countOrdersByStatus(allOrders, OrderStatus.PROCESSING);
-        long confirmedPreparingOrders = countOrdersByStatus(allOrders, OrderStatus.CONFIRMED_PREPARING);
-        long assignedToShipperOrders = countOrdersByStatus(allOrders, OrderStatus.ASSIGNED_TO_SHIPPER);
-        long deliveredOrders = countOrdersByStatus(allOrders, OrderStatus.DELIVERED);
-        long cancelledOrders = countOrdersByStatus(allOrders, OrderStatus.CANCELLED);
-
-        // Calculate revenue
-        BigDecimal totalRevenue = calculateTotalRevenue(allOrders);
-
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startOfMonth = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-        LocalDateTime startOfWeek = now.minusDays(now.getDayOfWeek().getValue() - 1)
-                .withHour(0).withMinute(0).withSecond(0).withNano(0);
-
-        BigDecimal monthlyRevenue = calculateRevenueFromDate(allOrders, startOfMonth);
-        BigDecimal weeklyRevenue = calculateRevenueFromDate(allOrders, startOfWeek);
-
-        OrderStatsResponse stats = OrderStatsResponse.builder()
-                .totalOrders(totalOrders)
-                .pendingOrders(pendingOrders)
-                .processingOrders(processingOrders)
-                .confirmedPreparingOrders(confirmedPreparingOrders)
-                .assignedToShipperOrders(assignedToShipperOrders)
-                .deliveredOrders(deliveredOrders)
-                .cancelledOrders(cancelledOrders)
-                .totalRevenue(totalRevenue)
-                .monthlyRevenue(monthlyRevenue)
-                .weeklyRevenue(weeklyRevenue)
-                .build();
+        OrderStatsResponse stats = orderStatsService.getStats(targetStoreIds);
 
         log.info("Generated stats for {} stores: {} total orders, {} revenue",
-                targetStores.size(), totalOrders, totalRevenue);
+                targetStoreIds.size(), stats.getTotalOrders(), stats.getTotalRevenue());
 
         return stats;
     }
@@ -136,6 +106,34 @@ public class OrderManagementService {
         return response;
     }
 
+    /**
+     * Danh sách đơn hàng theo cursor (createdAt, id) giảm dần, cùng bộ lọc với getOrders.
+     * Chỉ đếm tổng khi withTotal = true.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<OrderSummaryResponse> getOrders(Long userId, Long storeId, String cursor, Integer size,
+                                                      boolean withTotal, OrderFilterRequest filter) {
+        int pageSize = KeysetCursor.normalizeSize(size);
+        List<Store> stores = getUserStores(userId);
+        Specification<Order> spec = buildOrderSpecification(stores, storeId, filter);
+
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Specification<Order> pageSpec = after == null ? spec : spec.and((root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), after.createdAt()),
+                cb.and(cb.equal(root.get("createdAt"), after.createdAt()), cb.lessThan(root.get("id"), after.id()))));
+
+        List<Order> rows = orderRepository.findBy(pageSpec, q -> q
+                .sortBy(Sort.by(Sort.Direction.DESC, "createdAt", "id"))
+                .limit(pageSize + 1)
+                .all());
+        Long total = withTotal ? orderRepository.count(spec) : null;
+
+        return KeysetCursor.page(rows, pageSize,
+                order -> new KeysetCursor(order.getCreatedAt(), order.getId()),
+                this::mapToOrderSummary,
+                total);
+    }
+
     /**
      * Get detailed information about a specific order
      */
@@ -331,43 +329,6 @@ public class OrderManagementService {
         }
     }
 
-    /**
-     * Count orders by status
-     */
-    private long countOrdersByStatus(List<Order> orders, OrderStatus status) {
-        return orders.stream()
-                .filter(order -> order.getStatus() == status)
-                .count();
-    }
-
-    /**
-     * Calculate total revenue excluding cancelled/returned orders
-     */
-    private BigDecimal calculateTotalRevenue(List<Order> orders) {
-        return orders.stream()
-                .filter(order -> !isExcludedFromRevenue(order.getStatus()))
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    /**
-     * Calculate revenue from specific date
-     */
-    private BigDecimal calculateRevenueFromDate(List<Order> orders, LocalDateTime fromDate) {
-        return orders.stream()
-                .filter(order -> !isExcludedFromRevenue(order.getStatus()))
-                .filter(order -> order.getCreatedAt().isAfter(fromDate))
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    /**
-     * Check if order status should be excluded from revenue calculation
-     */
-    private boolean isExcludedFromRevenue(OrderStatus status) {
-        return status == OrderStatus.CANCELLED || status == OrderStatus.RETURNED;
-    }
-
     /**
      * Build JPA Specification for order filtering
      */
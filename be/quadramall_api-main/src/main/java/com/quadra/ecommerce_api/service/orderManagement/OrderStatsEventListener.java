@@ -0,0 +1,87 @@
+package com.quadra.ecommerce_api.service.orderManagement;
+
+import com.quadra.ecommerce_api.entity.order.Order;
+import com.quadra.ecommerce_api.enums.order.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Bắt mọi lần insert / update / delete Order để cộng dồn store_order_stats,
+ * không cần sửa từng chỗ order.setStatus(...) trong các service.
+ * Đăng ký trong HibernateEventConfig.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStatsEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String STATUS = "status";
+    private static final String TOTAL_AMOUNT = "totalAmount";
+
+    private final OrderStatsService orderStatsService;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!(event.getEntity() instanceof Order order)) return;
+
+        orderStatsService.applyTransition(order.getStore().getId(), order.getCreatedAt(),
+                null, null, order.getStatus(), order.getTotalAmount());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Order order)) return;
+
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            log.warn("No previous state for order {}, order stats may drift until next rebuild", order.getId());
+            return;
+        }
+
+        String[] properties = event.getPersister().getPropertyNames();
+        OrderStatus oldStatus = (OrderStatus) valueOf(properties, oldState, STATUS);
+        BigDecimal oldAmount = (BigDecimal) valueOf(properties, oldState, TOTAL_AMOUNT);
+
+        boolean sameAmount = oldAmount == null ? order.getTotalAmount() == null
+                : order.getTotalAmount() != null && oldAmount.compareTo(order.getTotalAmount()) == 0;
+        if (Objects.equals(oldStatus, order.getStatus()) && sameAmount) return;
+
+        orderStatsService.applyTransition(order.getStore().getId(), order.getCreatedAt(),
+                oldStatus, oldAmount, order.getStatus(), order.getTotalAmount());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof Order order)) return;
+
+        String[] properties = event.getPersister().getPropertyNames();
+        Object[] deletedState = event.getDeletedState();
+        orderStatsService.applyTransition(order.getStore().getId(), order.getCreatedAt(),
+                (OrderStatus) valueOf(properties, deletedState, STATUS),
+                (BigDecimal) valueOf(properties, deletedState, TOTAL_AMOUNT),
+                null, null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private Object valueOf(String[] properties, Object[] state, String property) {
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i].equals(property)) return state[i];
+        }
+        return null;
+    }
+}
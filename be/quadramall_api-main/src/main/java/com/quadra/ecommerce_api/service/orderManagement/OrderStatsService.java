@@ -0,0 +1,242 @@
+package com.quadra.ecommerce_api.service.orderManagement;
+
+import com.quadra.ecommerce_api.dto.custom.orderManagerment.response.OrderStatsResponse;
+import com.quadra.ecommerce_api.entity.order.StoreOrderStat;
+import com.quadra.ecommerce_api.enums.order.OrderStatus;
+import com.quadra.ecommerce_api.repository.order.OrderRepo;
+import com.quadra.ecommerce_api.repository.order.StoreOrderStatRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thống kê đơn hàng theo cửa hàng được cộng dồn vào bảng store_order_stats mỗi khi đơn được tạo / đổi trạng thái
+ * (xem {@link OrderStatsEventListener}), nên dashboard chỉ cần đọc vài dòng theo khoá thay vì tải toàn bộ đơn.
+ * Cửa hàng chưa có dòng meta:rebuilt được OrderStatsRebuildTasks dựng lại từ bảng orders; lượt đọc không bao giờ dựng lại,
+ * chỉ trả về những gì đang có. Mỗi lần dựng lại khoá dòng stores của cửa hàng nên các node không dựng chồng lên nhau.
+ */
+@Service
+@Slf4j
+public class OrderStatsService {
+
+    static final String STATUS_PREFIX = "status:";
+    static final String REVENUE_TOTAL = "revenue:total";
+    static final String REVENUE_MONTH_PREFIX = "revenue:month:";
+    static final String REVENUE_WEEK_PREFIX = "revenue:week:";
+    static final String REBUILT_MARKER = "meta:rebuilt";
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO store_order_stats (store_id, stat_key, order_count, revenue, updated_at) " +
+            "VALUES (?, ?, ?, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), " +
+            "revenue = revenue + VALUES(revenue), updated_at = NOW()";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StoreOrderStatRepo storeOrderStatRepo;
+    private final OrderRepo orderRepo;
+    private final TransactionTemplate requiresNewTemplate;
+
+    public OrderStatsService(JdbcTemplate jdbcTemplate,
+                             StoreOrderStatRepo storeOrderStatRepo,
+                             OrderRepo orderRepo,
+                             PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storeOrderStatRepo = storeOrderStatRepo;
+        this.orderRepo = orderRepo;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    private record Delta(long count, BigDecimal revenue) {
+        Delta plus(long otherCount, BigDecimal otherRevenue) {
+            return new Delta(count + otherCount, revenue.add(otherRevenue));
+        }
+    }
+
+    /**
+     * Ghi nhận đơn chuyển từ trạng thái cũ sang mới (oldStatus = null khi tạo mới, newStatus = null khi xoá).
+     * Chạy bằng JDBC trên cùng connection/transaction với thay đổi của đơn.
+     */
+    public void applyTransition(Long storeId, LocalDateTime createdAt,
+                                OrderStatus oldStatus, BigDecimal oldAmount,
+                                OrderStatus newStatus, BigDecimal newAmount) {
+        Map<String, Delta> deltas = new LinkedHashMap<>();
+        contribute(deltas, oldStatus, oldAmount, createdAt, -1);
+        contribute(deltas, newStatus, newAmount, createdAt, 1);
+        deltas.values().removeIf(d -> d.count() == 0 && d.revenue().signum() == 0);
+        if (deltas.isEmpty()) return;
+
+        upsert(storeId, deltas);
+    }
+
+    /**
+     * Thống kê gộp của các cửa hàng, đọc từ store_order_stats
+     */
+    public OrderStatsResponse getStats(Collection<Long> storeIds) {
+        LocalDate today = LocalDate.now();
+        String monthKey = monthKey(today);
+        String weekKey = weekKey(today);
+
+        List<String> keys = new ArrayList<>();
+        for (OrderStatus status : OrderStatus.values()) {
+            keys.add(STATUS_PREFIX + status.name());
+        }
+        keys.add(REVENUE_TOTAL);
+        keys.add(monthKey);
+        keys.add(weekKey);
+
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, BigDecimal> revenues = new HashMap<>();
+        for (StoreOrderStat stat : storeOrderStatRepo.findByStoreIdsAndStatKeys(storeIds, keys)) {
+            counts.merge(stat.getStatKey(), stat.getOrderCount(), Long::sum);
+            revenues.merge(stat.getStatKey(), stat.getRevenue(), BigDecimal::add);
+        }
+
+        long totalOrders = 0;
+        for (OrderStatus status : OrderStatus.values()) {
+            totalOrders += counts.getOrDefault(STATUS_PREFIX + status.name(), 0L);
+        }
+
+        return OrderStatsResponse.builder()
+                .totalOrders(totalOrders)
+                .pendingOrders(countOf(counts, OrderStatus.PENDING))
+                .processingOrders(countOf(counts, OrderStatus.PROCESSING))
+                .confirmedPreparingOrders(countOf(counts, OrderStatus.CONFIRMED_PREPARING))
+                .assignedToShipperOrders(countOf(counts, OrderStatus.ASSIGNED_TO_SHIPPER))
+                .deliveredOrders(countOf(counts, OrderStatus.DELIVERED))
+                .cancelledOrders(countOf(counts, OrderStatus.CANCELLED))
+                .totalRevenue(revenues.getOrDefault(REVENUE_TOTAL, BigDecimal.ZERO))
+                .monthlyRevenue(revenues.getOrDefault(monthKey, BigDecimal.ZERO))
+                .weeklyRevenue(revenues.getOrDefault(weekKey, BigDecimal.ZERO))
+                .build();
+    }
+
+    /**
+     * Dựng lại toàn bộ thống kê của 1 cửa hàng từ bảng orders (backfill / đối soát)
+     */
+    public void rebuild(Long storeId) {
+        requiresNewTemplate.executeWithoutResult(status -> {
+            lockStore(storeId);
+            rebuildLocked(storeId);
+        });
+        log.info("Rebuilt order stats for store {}", storeId);
+    }
+
+    /**
+     * Dựng thống kê cho cửa hàng chưa có dòng meta:rebuilt, bỏ qua nếu node khác vừa dựng xong. Trả về true nếu đã dựng.
+     */
+    public boolean buildIfMissing(Long storeId) {
+        Boolean built = requiresNewTemplate.execute(status -> {
+            lockStore(storeId);
+            Integer markers = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM store_order_stats WHERE store_id = ? AND stat_key = ?",
+                    Integer.class, storeId, REBUILT_MARKER);
+            if (markers != null && markers > 0) return false;
+            rebuildLocked(storeId);
+            return true;
+        });
+        return Boolean.TRUE.equals(built);
+    }
+
+    /**
+     * Cửa hàng chưa được dựng thống kê lần nào
+     */
+    public List<Long> findStoresMissingStats() {
+        return storeOrderStatRepo.findStoreIdsMissingStatKey(REBUILT_MARKER);
+    }
+
+    // Khoá dòng stores tới hết transaction để 2 lần dựng lại của cùng cửa hàng (kể cả ở node khác) chạy lần lượt
+    private void lockStore(Long storeId) {
+        jdbcTemplate.queryForList("SELECT id FROM stores WHERE id = ? FOR UPDATE", Long.class, storeId);
+    }
+
+    private void rebuildLocked(Long storeId) {
+        jdbcTemplate.update("DELETE FROM store_order_stats WHERE store_id = ?", storeId);
+
+        Map<String, Delta> rows = new LinkedHashMap<>();
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        for (Object[] row : orderRepo.aggregateByStatus(storeId)) {
+            OrderStatus orderStatus = OrderStatus.valueOf((String) row[0]);
+            BigDecimal revenue = toBigDecimal(row[2]);
+            rows.put(STATUS_PREFIX + orderStatus.name(), new Delta(((Number) row[1]).longValue(), BigDecimal.ZERO));
+            if (!isExcludedFromRevenue(orderStatus)) {
+                totalRevenue = totalRevenue.add(revenue);
+            }
+        }
+        rows.put(REVENUE_TOTAL, new Delta(0, totalRevenue));
+
+        for (Object[] row : orderRepo.aggregateMonthlyRevenue(storeId)) {
+            rows.put(REVENUE_MONTH_PREFIX + row[0], new Delta(0, toBigDecimal(row[1])));
+        }
+        for (Object[] row : orderRepo.aggregateWeeklyRevenue(storeId)) {
+            rows.put(REVENUE_WEEK_PREFIX + row[0], new Delta(0, toBigDecimal(row[1])));
+        }
+        rows.put(REBUILT_MARKER, new Delta(1, BigDecimal.ZERO));
+
+        upsert(storeId, rows);
+    }
+
+    private void upsert(Long storeId, Map<String, Delta> deltas) {
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> batchArgs.add(new Object[]{storeId, key, delta.count(), delta.revenue()}));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+    }
+
+    private void contribute(Map<String, Delta> deltas, OrderStatus status, BigDecimal amount,
+                            LocalDateTime createdAt, int sign) {
+        if (status == null) return;
+
+        deltas.merge(STATUS_PREFIX + status.name(), new Delta(sign, BigDecimal.ZERO),
+                (a, b) -> a.plus(b.count(), b.revenue()));
+
+        if (isExcludedFromRevenue(status) || amount == null) return;
+
+        BigDecimal signed = sign > 0 ? amount : amount.negate();
+        LocalDate day = (createdAt != null ? createdAt : LocalDateTime.now()).toLocalDate();
+        for (String key : List.of(REVENUE_TOTAL, monthKey(day), weekKey(day))) {
+            deltas.merge(key, new Delta(0, signed), (a, b) -> a.plus(b.count(), b.revenue()));
+        }
+    }
+
+    /**
+     * Đơn bị huỷ / trả lại không tính vào doanh thu
+     */
+    private boolean isExcludedFromRevenue(OrderStatus status) {
+        return status == OrderStatus.CANCELLED || status == OrderStatus.RETURNED;
+    }
+
+    private long countOf(Map<String, Long> counts, OrderStatus status) {
+        return counts.getOrDefault(STATUS_PREFIX + status.name(), 0L);
+    }
+
+    private String monthKey(LocalDate day) {
+        return REVENUE_MONTH_PREFIX + day.format(MONTH_FORMAT);
+    }
+
+    // Tuần bắt đầu từ thứ 2, giống cách tính weeklyRevenue trước đây
+    private String weekKey(LocalDate day) {
+        return REVENUE_WEEK_PREFIX + day.minusDays(day.getDayOfWeek().getValue() - 1);
+    }
+
+    private BigDecimal toBigDecimal(Object value) {
+        if (value == null) return BigDecimal.ZERO;
+        if (value instanceof BigDecimal decimal) return decimal;
+        return new BigDecimal(value.toString());
+    }
+}
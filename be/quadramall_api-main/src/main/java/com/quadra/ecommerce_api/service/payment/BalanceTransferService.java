@@ -2,7 +2,6 @@ package com.quadra.ecommerce_api.service.payment;
 
 import com.quadra.ecommerce_api.entity.notification.Notification;
 import com.quadra.ecommerce_api.entity.order.Order;
-import com.quadra.ecommerce_api.entity.user.Role;
 import com.quadra.ecommerce_api.entity.user.User;
 import com.quadra.ecommerce_api.entity.wallet.Wallet;
 import com.quadra.ecommerce_api.entity.wallet.WalletTransaction;
@@ -13,11 +12,10 @@ import com.quadra.ecommerce_api.enums.payment.TransactionStatus;
 import com.quadra.ecommerce_api.enums.wallet.WalletTransactionType;
 import com.quadra.ecommerce_api.exception.ExCustom;
 import com.quadra.ecommerce_api.repository.order.OrderRepo;
-import com.quadra.ecommerce_api.repository.user.RoleRepo;
-import com.quadra.ecommerce_api.repository.user.UserRepo;
 import com.quadra.ecommerce_api.repository.wallet.WalletRepo;
 import com.quadra.ecommerce_api.repository.wallet.WalletTransactionRepo;
 import com.quadra.ecommerce_api.service.notification.NotificationService;
+import com.quadra.ecommerce_api.service.wallet.EscrowWalletService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,7 +26,6 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Set;
 
 @Service
 @Slf4j
@@ -39,25 +36,18 @@ public class BalanceTransferService {
     private final WalletTransactionRepo walletTransactionRepo;
     private final OrderRepo orderRepo;
     private final NotificationService notificationService;
-    private final UserRepo userRepo;
-    private final RoleRepo roleRepo;
+    private final EscrowWalletService escrowWalletService;
 
     // Admin user ID (configure this based on your system)
     private static final long AUTO_CONFIRM_DAYS = 3;
 
     /**
-     * Lấy userID của admin dựa trên vai trò ADMIN
+     * Lấy userID của admin dựa trên vai trò ADMIN (được cache trong EscrowWalletService)
      * @return Long userID của admin
      * @throws ExCustom nếu không tìm thấy admin
      */
     public Long getAdminUserId() {
-        Role adminRole = roleRepo.findByName("ROLE_ADMIN")
-                .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Role ADMIN not found"));
-        Set<User> adminUsers = adminRole.getUsers();
-        if (adminUsers.isEmpty()) {
-            throw new ExCustom(HttpStatus.NOT_FOUND, "No users found with ADMIN role");
-        }
-        return adminUsers.iterator().next().getId();
+        return escrowWalletService.getAdminUserId();
     }
 
     /**
@@ -70,13 +60,7 @@ public class BalanceTransferService {
             return;
         }
 
-        User admin = userRepo.findById(getAdminUserId())
-                .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Admin user not found"));
-
-        Wallet adminWallet = walletRepo.findByUserId(admin.getId());
-        if (adminWallet == null) {
-            throw new ExCustom(HttpStatus.INTERNAL_SERVER_ERROR, "Admin wallet not found");
-        }
+        Wallet adminWallet = escrowWalletService.getAdminWallet();
 
         BigDecimal amount = order.getTotalAmount();
 
@@ -92,9 +76,8 @@ public class BalanceTransferService {
         adminTransaction.setCreatedAt(LocalDateTime.now());
         walletTransactionRepo.save(adminTransaction);
 
-        // Update admin wallet balance
-        adminWallet.setBalance(adminWallet.getBalance().add(amount));
-        walletRepo.save(adminWallet);
+        // Update admin wallet balance (cộng vào shard, không khoá dòng ví admin)
+        escrowWalletService.holdForOrder(order, amount);
 
         log.info("Credited {} VND to admin for order {}", amount, order.getId());
 
@@ -116,15 +99,13 @@ public class BalanceTransferService {
      */
     @Transactional
     public void transferToShopOnConfirmed(Order order) {
-        User admin = userRepo.findById(getAdminUserId())
-                .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Admin user not found"));
         User shopOwner = order.getStore().getOwner();
 
-        Wallet adminWallet = walletRepo.findByUserId(admin.getId());
+        Wallet adminWallet = escrowWalletService.getAdminWallet();
         Wallet shopWallet = walletRepo.findByUserId(shopOwner.getId());
 
-        if (adminWallet == null || shopWallet == null) {
-            throw new ExCustom(HttpStatus.INTERNAL_SERVER_ERROR, "Wallet not found for admin or shop");
+        if (shopWallet == null) {
+            throw new ExCustom(HttpStatus.INTERNAL_SERVER_ERROR, "Wallet not found for shop");
         }
 
         BigDecimal amount = order.getTotalAmount();
@@ -154,9 +135,8 @@ public class BalanceTransferService {
         walletTransactionRepo.save(shopTransaction);
 
         // Update wallet balances
-        adminWallet.setBalance(adminWallet.getBalance().subtract(amount));
+        escrowWalletService.releaseForOrder(order, amount);
         shopWallet.setBalance(shopWallet.getBalance().add(amount));
-        walletRepo.save(adminWallet);
         walletRepo.save(shopWallet);
 
         log.info("Transferred {} VND from admin to shop (ID: {}) for order {}",
@@ -192,14 +172,12 @@ public class BalanceTransferService {
         }
 
         User customer = order.getCustomer();
-        User admin = userRepo.findById(getAdminUserId())
-                .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Admin user not found"));
 
         Wallet customerWallet = walletRepo.findByUserId(customer.getId());
-        Wallet adminWallet = walletRepo.findByUserId(admin.getId());
+        Wallet adminWallet = escrowWalletService.getAdminWallet();
 
-        if (customerWallet == null || adminWallet == null) {
-            throw new ExCustom(HttpStatus.INTERNAL_SERVER_ERROR, "Wallet not found for customer or admin");
+        if (customerWallet == null) {
+            throw new ExCustom(HttpStatus.INTERNAL_SERVER_ERROR, "Wallet not found for customer");
         }
 
         BigDecimal amount = order.getTotalAmount();
@@ -229,9 +207,8 @@ public class BalanceTransferService {
         walletTransactionRepo.save(customerTransaction);
 
         // Update wallet balances
-        adminWallet.setBalance(adminWallet.getBalance().subtract(amount));
+        escrowWalletService.releaseForOrder(order, amount);
         customerWallet.setBalance(customerWallet.getBalance().add(amount));
-        walletRepo.save(adminWallet);
         walletRepo.save(customerWallet);
 
         log.info("Refunded {} VND to customer (ID: {}) for cancelled order {}",
@@ -0,0 +1,232 @@
+package com.quadra.ecommerce_api.service.payment;
+
+import com.quadra.ecommerce_api.entity.discount.DiscountCode;
+import com.quadra.ecommerce_api.entity.order.OrderDiscount;
+import com.quadra.ecommerce_api.entity.order.OrderItem;
+import com.quadra.ecommerce_api.entity.product.Product;
+import com.quadra.ecommerce_api.entity.shipping.OrderShipping;
+import com.quadra.ecommerce_api.enums.discount.AppliesTo;
+import com.quadra.ecommerce_api.enums.discount.DiscountType;
+import com.quadra.ecommerce_api.repository.discount.DiscountCodeRepository;
+import com.quadra.ecommerce_api.repository.order.OrderItemAddonRepo;
+import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tính tiền cho 1 lượt thanh toán nhiều đơn: item, addon của mọi đơn và các voucher được nạp 1 lần bằng fetch join,
+ * tổng tiền / giảm giá tính trong bộ nhớ, OrderShipping và OrderDiscount được ghi bằng JDBC batch.
+ * Giá luôn lấy từ priceAtTime của OrderItem (đã gồm Flash Sale).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CheckoutPricingService {
+
+    private static final String INSERT_SHIPPING_SQL =
+            "INSERT INTO order_shipping (order_id, shipping_status, shipping_cost, " +
+            "pickup_name, pickup_phone, pickup_address, pickup_ward, pickup_district, pickup_province, " +
+            "delivery_name, delivery_phone, delivery_address, delivery_ward, delivery_district, delivery_province, " +
+            "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_DISCOUNT_SQL =
+            "INSERT INTO order_discounts (order_id, discount_code_id, discount_amount, original_amount, final_amount, " +
+            "applied_at, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final OrderItemRepo orderItemRepo;
+    private final OrderItemAddonRepo orderItemAddonRepo;
+    private final DiscountCodeRepository discountCodeRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Dữ liệu giá của các đơn trong lượt thanh toán, chỉ đọc sau khi nạp
+     */
+    public static final class CheckoutPricing {
+        private final Map<Long, List<OrderItem>> itemsByOrder;
+        // Tổng tiền của từng dòng: priceAtTime * quantity + addon
+        private final Map<Long, BigDecimal> lineTotals;
+        private final Map<Long, DiscountCode> vouchers;
+
+        private CheckoutPricing(Map<Long, List<OrderItem>> itemsByOrder,
+                                Map<Long, BigDecimal> lineTotals,
+                                Map<Long, DiscountCode> vouchers) {
+            this.itemsByOrder = itemsByOrder;
+            this.lineTotals = lineTotals;
+            this.vouchers = vouchers;
+        }
+
+        /**
+         * Tổng tiền hàng của đơn (chưa gồm phí ship và giảm giá)
+         */
+        public BigDecimal itemsTotal(Long orderId) {
+            BigDecimal total = BigDecimal.ZERO;
+            for (OrderItem item : itemsOf(orderId)) {
+                total = total.add(lineTotals.get(item.getId()));
+            }
+            return total;
+        }
+
+        public Optional<DiscountCode> voucher(Long voucherId) {
+            return Optional.ofNullable(vouchers.get(voucherId));
+        }
+
+        /**
+         * Số tiền giảm của voucher trên đơn, 0 nếu chưa đạt giá trị tối thiểu
+         */
+        public BigDecimal discountFor(Long orderId, DiscountCode discountCode) {
+            BigDecimal orderTotal = itemsTotal(orderId);
+
+            if (orderTotal.compareTo(discountCode.getMinOrderAmount()) < 0) {
+                log.warn("Order total {} is less than minimum required {}", orderTotal, discountCode.getMinOrderAmount());
+                return BigDecimal.ZERO;
+            }
+
+            BigDecimal discountAmount = BigDecimal.ZERO;
+            if (discountCode.getAppliesTo() == AppliesTo.SHOP) {
+                discountAmount = discountCode.calculateDiscountAmount(orderTotal);
+            } else if (discountCode.getAppliesTo() == AppliesTo.PRODUCTS) {
+                discountAmount = productsDiscount(orderId, discountCode);
+            }
+
+            // Không giảm quá tổng tiền hàng
+            return discountAmount.min(orderTotal);
+        }
+
+        // Voucher PRODUCTS: giảm theo từng dòng thuộc danh sách sản phẩm của voucher
+        private BigDecimal productsDiscount(Long orderId, DiscountCode discountCode) {
+            Set<Long> voucherProductIds = discountCode.getProducts() == null ? Set.of()
+                    : discountCode.getProducts().stream().map(Product::getId).collect(Collectors.toSet());
+
+            BigDecimal totalDiscount = BigDecimal.ZERO;
+            for (OrderItem item : itemsOf(orderId)) {
+                if (!voucherProductIds.contains(item.getVariant().getProduct().getId())) continue;
+
+                BigDecimal lineTotal = lineTotals.get(item.getId());
+                BigDecimal itemDiscount;
+                if (discountCode.getDiscountType() == DiscountType.PERCENTAGE) {
+                    itemDiscount = lineTotal.multiply(discountCode.getDiscountValue())
+                            .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+                    // maxDiscountValue áp dụng cho mỗi sản phẩm
+                    if (discountCode.getMaxDiscountValue() != null
+                            && itemDiscount.compareTo(discountCode.getMaxDiscountValue()) > 0) {
+                        itemDiscount = discountCode.getMaxDiscountValue();
+                    }
+                } else {
+                    // FIXED_AMOUNT: giảm cố định cho mỗi đơn vị, không quá giá trị dòng
+                    itemDiscount = discountCode.getDiscountValue()
+                            .multiply(BigDecimal.valueOf(item.getQuantity()))
+                            .min(lineTotal);
+                }
+                totalDiscount = totalDiscount.add(itemDiscount);
+            }
+            return totalDiscount;
+        }
+
+        private List<OrderItem> itemsOf(Long orderId) {
+            return itemsByOrder.getOrDefault(orderId, List.of());
+        }
+    }
+
+    /**
+     * Nạp item (kèm biến thể, sản phẩm), giá addon và voucher của cả lượt thanh toán: 3 truy vấn cố định
+     */
+    public CheckoutPricing load(Collection<Long> orderIds, Collection<Long> voucherIds) {
+        if (orderIds.isEmpty()) {
+            return new CheckoutPricing(Map.of(), Map.of(), Map.of());
+        }
+
+        List<OrderItem> items = orderItemRepo.findWithProductByOrderIdIn(orderIds);
+
+        Map<Long, BigDecimal> addonTotals = new HashMap<>();
+        for (Object[] row : orderItemAddonRepo.findPricesByOrderIdIn(orderIds)) {
+            if (row[1] == null) continue;
+            addonTotals.merge(((Number) row[0]).longValue(), (BigDecimal) row[1], BigDecimal::add);
+        }
+
+        Map<Long, List<OrderItem>> itemsByOrder = new HashMap<>();
+        Map<Long, BigDecimal> lineTotals = new HashMap<>();
+        for (OrderItem item : items) {
+            itemsByOrder.computeIfAbsent(item.getOrder().getId(), id -> new ArrayList<>()).add(item);
+            BigDecimal lineTotal = item.getPriceAtTime().multiply(BigDecimal.valueOf(item.getQuantity()))
+                    .add(addonTotals.getOrDefault(item.getId(), BigDecimal.ZERO));
+            lineTotals.put(item.getId(), lineTotal);
+        }
+
+        Map<Long, DiscountCode> vouchers = new HashMap<>();
+        Set<Long> distinctVoucherIds = new HashSet<>(voucherIds);
+        if (!distinctVoucherIds.isEmpty()) {
+            for (DiscountCode discountCode : discountCodeRepository.findAllWithProductsByIdIn(distinctVoucherIds)) {
+                vouchers.put(discountCode.getId(), discountCode);
+            }
+        }
+
+        log.debug("Loaded checkout pricing: {} orders, {} items, {} vouchers",
+                orderIds.size(), items.size(), vouchers.size());
+        return new CheckoutPricing(itemsByOrder, lineTotals, vouchers);
+    }
+
+    public void insertShippings(List<OrderShipping> shippings) {
+        if (shippings.isEmpty()) return;
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>(shippings.size());
+        for (OrderShipping shipping : shippings) {
+            batchArgs.add(new Object[]{
+                    shipping.getOrder().getId(),
+                    shipping.getShippingStatus().name(),
+                    shipping.getShippingCost(),
+                    shipping.getPickupName(),
+                    shipping.getPickupPhone(),
+                    shipping.getPickupAddress(),
+                    shipping.getPickupWard(),
+                    shipping.getPickupDistrict(),
+                    shipping.getPickupProvince(),
+                    shipping.getDeliveryName(),
+                    shipping.getDeliveryPhone(),
+                    shipping.getDeliveryAddress(),
+                    shipping.getDeliveryWard(),
+                    shipping.getDeliveryDistrict(),
+                    shipping.getDeliveryProvince(),
+                    now,
+                    now
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_SHIPPING_SQL, batchArgs);
+    }
+
+    public void insertDiscounts(List<OrderDiscount> discounts) {
+        if (discounts.isEmpty()) return;
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>(discounts.size());
+        for (OrderDiscount discount : discounts) {
+            batchArgs.add(new Object[]{
+                    discount.getOrder().getId(),
+                    discount.getDiscountCode().getId(),
+                    discount.getDiscountAmount(),
+                    discount.getOriginalAmount(),
+                    discount.getFinalAmount(),
+                    Timestamp.valueOf(discount.getAppliedAt()),
+                    now,
+                    now
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_DISCOUNT_SQL, batchArgs);
+    }
+}
@@ -4,6 +4,7 @@ import com.quadra.ecommerce_api.entity.discount.FlashSale;
 import com.quadra.ecommerce_api.entity.product.Product;
 import com.quadra.ecommerce_api.entity.product.ProductVariant;
 import com.quadra.ecommerce_api.repository.flashsale.FlashSaleRepo;
+import com.quadra.ecommerce_api.service.flashsale.FlashSaleReservationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -21,6 +22,7 @@ import java.util.stream.Collectors;
 public class FlashSaleHelper {
 
     private final FlashSaleRepo flashSaleRepo;
+    private final FlashSaleReservationService flashSaleReservationService;
 
     /**
      * Kiểm tra sản phẩm có Flash Sale đang hoạt động không
@@ -70,7 +72,9 @@ public class FlashSaleHelper {
             return false;
         }
 
-        int remainingQuantity = flashSale.getQuantity() - flashSale.getSoldCount();
+        // Ưu tiên số suất còn lại trên Redis (đã trừ hold đang chờ VNPay)
+        int remainingQuantity = flashSaleReservationService.getRemaining(flashSale.getId())
+                .orElse(flashSale.getQuantity() - flashSale.getSoldCount());
         return remainingQuantity >= requestedQuantity;
     }
 
@@ -124,87 +128,33 @@ public class FlashSaleHelper {
     }
 
     /**
-     * ✅ FIX: Cập nhật số lượng đã bán cho Flash Sale (khi đặt hàng thành công)
-     * Sử dụng native query để tránh validation error
+     * Cập nhật số lượng đã bán cho Flash Sale (khi đặt hàng thành công)
+     * Trừ nguyên tử trên Redis, soldCount được FlashSaleReconcileTasks ghi bù xuống DB theo lô
      */
     public void updateFlashSaleSoldCount(Long productId, int quantity) {
-        Optional<FlashSale> flashSaleOpt = flashSaleRepo.findActiveByProduct_Id(productId);
-
-        if (flashSaleOpt.isPresent()) {
-            FlashSale flashSale = flashSaleOpt.get();
-
-            // Kiểm tra không vượt quá số lượng cho phép
-            if (flashSale.getSoldCount() + quantity <= flashSale.getQuantity()) {
-                int newSoldCount = flashSale.getSoldCount() + quantity;
-
-                // ✅ SỬ DỤNG NATIVE UPDATE QUERY ĐỂ TRÁNH VALIDATION
-                flashSaleRepo.updateSoldCount(flashSale.getId(), newSoldCount);
-
-                log.info("Updated Flash Sale sold count for product {}: {} + {} = {}",
-                        productId, flashSale.getSoldCount(), quantity, newSoldCount);
-            } else {
-                log.warn("Cannot update Flash Sale sold count for product {}: would exceed quantity limit",
-                        productId);
-            }
-        }
+        flashSaleReservationService.consume(productId, quantity);
     }
 
     /**
-     * ✅ FIX: Hoàn nguyên số lượng đã bán khi hủy đơn hàng
-     * Sử dụng native query để tránh validation error
+     * Hoàn nguyên số lượng đã bán khi hủy đơn hàng
+     * Cộng lại trên Redis, soldCount được FlashSaleReconcileTasks ghi bù xuống DB theo lô
      */
     public void revertFlashSaleSoldCount(Long productId, int quantity) {
-        Optional<FlashSale> flashSaleOpt = flashSaleRepo.findActiveByProduct_Id(productId);
-
-        if (flashSaleOpt.isPresent()) {
-            FlashSale flashSale = flashSaleOpt.get();
-
-            // Đảm bảo không giảm xuống dưới 0
-            int newSoldCount = Math.max(0, flashSale.getSoldCount() - quantity);
-
-            // ✅ SỬ DỤNG NATIVE UPDATE QUERY ĐỂ TRÁNH VALIDATION
-            flashSaleRepo.updateSoldCount(flashSale.getId(), newSoldCount);
-
-            log.info("Reverted Flash Sale sold count for product {}: {} - {} = {}",
-                    productId, flashSale.getSoldCount(), quantity, newSoldCount);
-        }
+        flashSaleReservationService.restore(productId, quantity);
     }
 
     /**
-     * ✅ ALTERNATIVE: Sử dụng increment method (nếu muốn atomic operation)
+     * ✅ ALTERNATIVE: Giữ lại cho tương thích, tương đương updateFlashSaleSoldCount
      */
     public void incrementFlashSaleSoldCount(Long productId, int quantity) {
-        Optional<FlashSale> flashSaleOpt = flashSaleRepo.findActiveByProduct_Id(productId);
-
-        if (flashSaleOpt.isPresent()) {
-            FlashSale flashSale = flashSaleOpt.get();
-
-            // Kiểm tra không vượt quá số lượng cho phép
-            if (flashSale.getSoldCount() + quantity <= flashSale.getQuantity()) {
-                // ✅ ATOMIC INCREMENT
-                flashSaleRepo.incrementSoldCount(flashSale.getId(), quantity);
-
-                log.info("Incremented Flash Sale sold count for product {}: +{} items", productId, quantity);
-            } else {
-                log.warn("Cannot increment Flash Sale sold count for product {}: would exceed quantity limit", productId);
-            }
-        }
+        flashSaleReservationService.consume(productId, quantity);
     }
 
     /**
-     * ✅ ALTERNATIVE: Sử dụng decrement method (nếu muốn atomic operation)
+     * ✅ ALTERNATIVE: Giữ lại cho tương thích, tương đương revertFlashSaleSoldCount
      */
     public void decrementFlashSaleSoldCount(Long productId, int quantity) {
-        Optional<FlashSale> flashSaleOpt = flashSaleRepo.findActiveByProduct_Id(productId);
-
-        if (flashSaleOpt.isPresent()) {
-            FlashSale flashSale = flashSaleOpt.get();
-
-            // ✅ ATOMIC DECREMENT (đã đảm bảo không âm trong query)
-            flashSaleRepo.decrementSoldCount(flashSale.getId(), quantity);
-
-            log.info("Decremented Flash Sale sold count for product {}: -{} items", productId, quantity);
-        }
+        flashSaleReservationService.restore(productId, quantity);
     }
 
     /**
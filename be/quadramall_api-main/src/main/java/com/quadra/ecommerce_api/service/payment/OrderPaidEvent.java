@@ -0,0 +1,10 @@
+package com.quadra.ecommerce_api.service.payment;
+
+import java.util.List;
+
+/**
+ * Các đơn của 1 lượt thanh toán VNPay vừa thanh toán thành công (phát trong transaction callback,
+ * OrderPaidEventListener xử lý sau khi commit)
+ */
+public record OrderPaidEvent(String txnRef, Long userId, List<Long> orderIds) {
+}
@@ -0,0 +1,136 @@
+package com.quadra.ecommerce_api.service.payment;
+
+import com.quadra.ecommerce_api.entity.notification.Notification;
+import com.quadra.ecommerce_api.enums.notification.NotificationType;
+import com.quadra.ecommerce_api.enums.order.OrderStatus;
+import com.quadra.ecommerce_api.enums.payment.TransactionStatus;
+import com.quadra.ecommerce_api.repository.order.OrderRepo;
+import com.quadra.ecommerce_api.repository.payment.PaymentTransactionRepo;
+import com.quadra.ecommerce_api.repository.shipping.DeliveryAssignmentRepository;
+import com.quadra.ecommerce_api.service.customer.cart.CartService;
+import com.quadra.ecommerce_api.service.notification.NotificationService;
+import com.quadra.ecommerce_api.service.notification.NotificationService.NotificationCommand;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Việc phụ sau khi thanh toán VNPay thành công: tạo delivery assignment, gửi thông báo, xoá giỏ hàng.
+ * Chạy trên orderPaidExecutor sau khi transaction callback commit nên không giữ request của VNPay.
+ * Mỗi đơn / mỗi bước chạy trong transaction riêng, 1 bước lỗi chỉ được log và không kéo các bước khác rollback theo;
+ * tiền / tồn kho / voucher đã được ghi trong callback.
+ * Executor chỉ nằm trong bộ nhớ: nếu tiến trình dừng trước khi bước tạo delivery assignment chạy,
+ * {@link #createMissingDeliveryAssignments()} (OrderPaidTasks) tạo bù từ các giao dịch VNPay COMPLETED.
+ * Thông báo và xoá giỏ hàng không được chạy bù.
+ */
+@Component
+@Slf4j
+public class OrderPaidEventListener {
+
+    private final OrderRepo orderRepository;
+    private final OrderService orderService;
+    private final NotificationService notificationService;
+    private final CartService cartService;
+    private final PaymentTransactionRepo paymentTransactionRepository;
+    private final DeliveryAssignmentRepository deliveryAssignmentRepository;
+    private final TransactionTemplate requiresNewTemplate;
+    private final Duration sweepGrace;
+    private final Duration sweepLookback;
+
+    public OrderPaidEventListener(OrderRepo orderRepository,
+                                  OrderService orderService,
+                                  NotificationService notificationService,
+                                  CartService cartService,
+                                  PaymentTransactionRepo paymentTransactionRepository,
+                                  DeliveryAssignmentRepository deliveryAssignmentRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${vnpay.callback.assignment-sweep-grace-minutes:5}") long sweepGraceMinutes,
+                                  @Value("${vnpay.callback.assignment-sweep-lookback-hours:72}") long sweepLookbackHours) {
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.notificationService = notificationService;
+        this.cartService = cartService;
+        this.paymentTransactionRepository = paymentTransactionRepository;
+        this.deliveryAssignmentRepository = deliveryAssignmentRepository;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sweepGrace = Duration.ofMinutes(Math.max(1, sweepGraceMinutes));
+        this.sweepLookback = Duration.ofHours(Math.max(1, sweepLookbackHours));
+    }
+
+    @Async("orderPaidExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderPaid(OrderPaidEvent event) {
+        for (Long orderId : event.orderIds()) {
+            runStep(event, "delivery assignment of order " + orderId, () ->
+                    orderRepository.findById(orderId).ifPresent(orderService::createDeliveryAssignment));
+        }
+
+        runStep(event, "paid notifications", () ->
+                notificationService.sendBatch(orderRepository.findByIdIn(event.orderIds()).stream()
+                        .map(order -> new NotificationCommand(
+                                order.getCustomer(),
+                                NotificationType.ORDER_UPDATE,
+                                "Đặt hàng thành công",
+                                "Đơn hàng #" + order.getId() + " đã được thanh toán qua VNPay. Tổng: " + order.getTotalAmount(),
+                                order.getId(),
+                                Notification.Priority.HIGH,
+                                Notification.Category.ORDER,
+                                "💸"))
+                        .toList()));
+
+        runStep(event, "cart cleanup", () ->
+                cartService.deleteCartItemsByOrderIds(event.orderIds(), event.userId()));
+
+        log.info("Post-payment work done for txnRef {} ({} orders)", event.txnRef(), event.orderIds().size());
+    }
+
+    /**
+     * Tạo delivery assignment còn thiếu cho đơn đã thanh toán VNPay (đã qua sweepGrace để không tranh với listener),
+     * mỗi đơn 1 transaction; order_id của delivery_assignments là unique nên chạy trùng cũng không tạo 2 dòng
+     */
+    public int createMissingDeliveryAssignments() {
+        LocalDateTime to = LocalDateTime.now().minus(sweepGrace);
+        List<Long> orderIds = paymentTransactionRepository.findPaidOrderIdsWithoutDeliveryAssignment(
+                "VNPAY", TransactionStatus.COMPLETED,
+                List.of(OrderStatus.PROCESSING, OrderStatus.CONFIRMED_PREPARING),
+                to.minus(sweepLookback), to);
+
+        int created = 0;
+        for (Long orderId : orderIds) {
+            try {
+                Boolean done = requiresNewTemplate.execute(status -> {
+                    if (deliveryAssignmentRepository.findByOrderId(orderId).isPresent()) return false;
+                    orderRepository.findById(orderId).ifPresent(orderService::createDeliveryAssignment);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(done)) created++;
+            } catch (Exception e) {
+                log.error("Error creating missing delivery assignment of order {}: {}", orderId, e.getMessage());
+            }
+        }
+        if (created > 0) {
+            log.warn("Created {} delivery assignments missed after VNPay payment", created);
+        }
+        return created;
+    }
+
+    private void runStep(OrderPaidEvent event, String step, Runnable work) {
+        try {
+            requiresNewTemplate.executeWithoutResult(status -> work.run());
+        } catch (Exception e) {
+            // Gồm cả UnexpectedRollbackException khi bước đó tự bắt lỗi nhưng transaction đã bị đánh dấu rollback
+            log.error("Error running {} after payment {}: {}", step, event.txnRef(), e.getMessage());
+        }
+    }
+}
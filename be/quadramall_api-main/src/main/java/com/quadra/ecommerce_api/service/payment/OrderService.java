@@ -8,7 +8,6 @@ import com.quadra.ecommerce_api.entity.address.Address;
 import com.quadra.ecommerce_api.entity.discount.DiscountCode;
 import com.quadra.ecommerce_api.entity.discount.FlashSale;
 import com.quadra.ecommerce_api.entity.discount.UserDiscount;
-import com.quadra.ecommerce_api.entity.notification.Notification;
 import com.quadra.ecommerce_api.entity.order.Order;
 import com.quadra.ecommerce_api.entity.order.OrderDiscount;
 import com.quadra.ecommerce_api.entity.order.OrderItem;
@@ -21,9 +20,6 @@ import com.quadra.ecommerce_api.entity.shipping.DeliveryAssignment;
 import com.quadra.ecommerce_api.entity.shipping.OrderShipping;
 import com.quadra.ecommerce_api.entity.store.Store;
 import com.quadra.ecommerce_api.entity.user.User;
-import com.quadra.ecommerce_api.enums.discount.AppliesTo;
-import com.quadra.ecommerce_api.enums.discount.DiscountType;
-import com.quadra.ecommerce_api.enums.notification.NotificationType;
 import com.quadra.ecommerce_api.enums.order.OrderStatus;
 import com.quadra.ecommerce_api.enums.payment.PaymentMethod;
 import com.quadra.ecommerce_api.enums.payment.TransactionStatus;
@@ -45,23 +41,30 @@ import com.quadra.ecommerce_api.repository.payment.PaymentTransactionRepo;
 import com.quadra.ecommerce_api.repository.product.AddonRepo;
 import com.quadra.ecommerce_api.repository.shipping.DeliveryAssignmentRepository;
 import com.quadra.ecommerce_api.repository.shipping.OrderShippingRepo;
-import com.quadra.ecommerce_api.service.customer.cart.CartService;
+import com.quadra.ecommerce_api.service.address.AdministrativeDivisionCatalog;
 import com.quadra.ecommerce_api.service.customer.order.OrderItemAddonService;
 import com.quadra.ecommerce_api.service.customer.order.OrderItemService;
 import com.quadra.ecommerce_api.service.customer.product.ProductService;
 import com.quadra.ecommerce_api.service.discount.DiscountCodeService;
-import com.quadra.ecommerce_api.service.notification.NotificationService;
+import com.quadra.ecommerce_api.service.flashsale.FlashSaleReservationService;
+import com.quadra.ecommerce_api.service.shiping.ShipperDispatchService;
+import com.quadra.ecommerce_api.utils.RedisCacheUtil;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -76,23 +79,29 @@ public class OrderService {
     private final UserDiscountRepository userDiscountRepository;
     private final AddressRepo addressRepo;
     private final PaymentTransactionRepo paymentTransactionRepository;
-    private final CartService cartService;
     private final OrderItemRepo orderItemRepo;
     private final ProductService productService;
     private final AddonRepo addonRepo;
-    private final NotificationService notificationService;
     private final DiscountCodeService discountCodeService;
     private final OrderDiscountRepository orderDiscountRepository;
     private final DeliveryAssignmentRepository deliveryAssignmentRepository;
     private final FlashSaleRepo flashSaleRepo;
 
     private static final BigDecimal SHIPPING_COST = BigDecimal.valueOf(30000);
+    private static final String VNPAY_CALLBACK_KEY_PREFIX = "payment:vnpay:callback:";
+    private static final Duration VNPAY_CALLBACK_TTL = Duration.ofDays(1);
     private final BalanceTransferService balanceTransferService;
     private final OrderItemAddonService orderItemAddonService;
     private final OrderItemService orderItemService;
     private final CategoryMapper categoryMapper;
     private final ItemTypeMapper itemTypeMapper;
     private final FlashSaleHelper flashSaleHelper;
+    private final FlashSaleReservationService flashSaleReservationService;
+    private final CheckoutPricingService checkoutPricingService;
+    private final AdministrativeDivisionCatalog divisionCatalog;
+    private final ShipperDispatchService shipperDispatchService;
+    private final RedisCacheUtil redisCacheUtil;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Order save(Order order) {
         return orderRepository.save(order);
@@ -134,28 +143,6 @@ public class OrderService {
         return orderRepository.findByIdInAndCustomer_Id(orderIds, id);
     }
 
-    /**
-     * ✅ FIX: Tính tổng tiền của các items trong order (không bao gồm shipping và discount)
-     * SỬ DỤNG GIÁ ĐÃ LƯU TRONG ORDER ITEM (priceAtTime) - đã bao gồm Flash Sale
-     */
-    private BigDecimal calculateItemsTotal(Order order) {
-        List<OrderItem> orderItems = orderItemRepo.findByOrderId(order.getId());
-        return orderItems.stream()
-                .map(item -> {
-                    // ✅ SỬ DỤNG GIÁ ĐÃ LƯU SẴN (đã bao gồm Flash Sale nếu có)
-                    BigDecimal itemTotal = item.getPriceAtTime().multiply(BigDecimal.valueOf(item.getQuantity()));
-
-                    // Thêm giá addon nếu có
-                    List<OrderItemAddon> addons = orderItemAddonService.getByOrderItem(item);
-                    BigDecimal addonTotal = addons.stream()
-                            .map(OrderItemAddon::getPriceAdjustAtTime)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    return itemTotal.add(addonTotal);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
     /**
      * ✅ HELPER METHOD: Lấy thông tin Flash Sale cho OrderItem để hiển thị
      * CHỈ dùng để tạo response, KHÔNG dùng để tính giá
@@ -196,31 +183,44 @@ public class OrderService {
         log.info("Processing payment for orders: {}", orderRequest.getOrderIds());
         log.info("Voucher IDs: {}", orderRequest.getVoucherIds());
 
-        List<Order> orders = getOrdersByIdAndUserId(orderRequest.getOrderIds(), user.getId());
+        List<Order> orders = orderRepository.findWithStoreByIdInAndCustomerId(orderRequest.getOrderIds(), user.getId());
         if (orders.isEmpty()) {
             throw new ExCustom(HttpStatus.BAD_REQUEST, "Đơn hàng không tồn tại. Vui lòng thử lại sau.");
         }
 
-        List<Order> ordersResponse = new ArrayList<>();
+        Address address = addressRepo.findByIdAndUser(orderRequest.getAddressId(), user);
+        if (address == null) {
+            throw new ResourceNotFound("Không tìm thấy địa chỉ giao hàng của bạn.");
+        }
+
+        PaymentMethod paymentMethod = PaymentMethod.valueOf(orderRequest.getPaymentMethod());
+        Map<Long, String> notes = orderRequest.getNotes();
+        Map<Long, Long> voucherIds = orderRequest.getVoucherIds() != null ? orderRequest.getVoucherIds() : Map.of();
+
+        // Nạp item, addon và voucher của mọi đơn 1 lần, tính toán trong bộ nhớ
+        CheckoutPricingService.CheckoutPricing pricing = checkoutPricingService.load(
+                orders.stream().map(Order::getId).toList(),
+                voucherIds.values().stream().filter(Objects::nonNull).toList());
+
+        List<OrderShipping> shippings = new ArrayList<>(orders.size());
+        List<OrderDiscount> discounts = new ArrayList<>();
 
         for (Order order : orders) {
             order.setStatus(OrderStatus.PENDING);
-            PaymentMethod paymentMethod = PaymentMethod.valueOf(orderRequest.getPaymentMethod());
             order.setPaymentMethod(paymentMethod);
             order.setShippingMethod(ShippingMethod.STANDARD);
 
             // Xử lý ghi chú
-            Map<Long, String> notes = orderRequest.getNotes();
             if (notes != null) {
                 order.setNote(notes.get(order.getId()));
             }
 
             // Xử lý OrderShipping
-            OrderShipping orderShipping = createOrderShipping(order, user, orderRequest.getAddressId());
-            orderShippingRepository.save(orderShipping);
+            OrderShipping orderShipping = createOrderShipping(order, address);
+            shippings.add(orderShipping);
 
             // ✅ FIX: SỬ DỤNG GIÁ ĐÃ LƯU SẴN (đã bao gồm Flash Sale)
-            BigDecimal itemsTotal = calculateItemsTotal(order);
+            BigDecimal itemsTotal = pricing.itemsTotal(order.getId());
 
             // Tính tổng tiền bao gồm shipping cost
             BigDecimal totalWithShipping = itemsTotal.add(orderShipping.getShippingCost());
@@ -233,44 +233,38 @@ public class OrderService {
 
             // Xử lý voucher nếu có
             BigDecimal finalTotalAmount = totalWithShipping;
-            if (orderRequest.getVoucherIds() != null && orderRequest.getVoucherIds().containsKey(order.getId())) {
-                Long voucherId = orderRequest.getVoucherIds().get(order.getId());
-
-                if (voucherId != null) {
-                    log.info("Applying voucher {} to order {}", voucherId, order.getId());
+            Long voucherId = voucherIds.get(order.getId());
+            if (voucherId != null) {
+                log.info("Applying voucher {} to order {}", voucherId, order.getId());
 
-                    BigDecimal discountAmount = applyVoucherToOrder(order, voucherId, user);
+                OrderDiscount orderDiscount = applyVoucherToOrder(order, voucherId, pricing);
+                discounts.add(orderDiscount);
 
-                    // Cập nhật tổng tiền sau giảm giá
-                    if (discountAmount.compareTo(BigDecimal.ZERO) > 0) {
-                        finalTotalAmount = totalWithShipping.subtract(discountAmount);
-                        log.info("Applied discount {} to order {}, final total: {}",
-                                discountAmount, order.getId(), finalTotalAmount);
-                    }
-                }
+                // Cập nhật tổng tiền sau giảm giá
+                finalTotalAmount = orderDiscount.getFinalAmount();
+                log.info("Applied discount {} to order {}, final total: {}",
+                        orderDiscount.getDiscountAmount(), order.getId(), finalTotalAmount);
             }
 
             // Set final total amount
             order.setTotalAmount(finalTotalAmount);
-
-            // ✅ REMOVE: Không cần cập nhật giá Flash Sale nữa vì đã tính khi tạo order
-            // updateOrderItemsWithFlashSale(order);
-
-            orderRepository.save(order);
-            ordersResponse.add(order);
         }
 
-        return ordersResponse;
+        // Ghi OrderShipping / OrderDiscount của cả lượt bằng batch insert
+        checkoutPricingService.insertShippings(shippings);
+        checkoutPricingService.insertDiscounts(discounts);
+
+        return orderRepository.saveAll(orders);
     }
 
-    private OrderShipping createOrderShipping(Order order, User user, Long addressId) {
+    private OrderShipping createOrderShipping(Order order, Address address) {
         OrderShipping orderShipping = new OrderShipping();
         orderShipping.setOrder(order);
         orderShipping.setShippingStatus(ShippingStatus.PENDING);
         orderShipping.setCreatedAt(LocalDateTime.now());
 
         // Set pickup address (store address)
-        String[] parts = order.getStore().getAddress().split("\\s*,\\ss*");
+        String[] parts = order.getStore().getAddress().split("\\s*,\\s*");
         if (parts == null || parts.length < 6) {
             throw new ResourceNotFound( "Không tìm thấy địa chỉ giao hàng của người bán. Hoặc không đúng định dạng ");
         }
@@ -285,11 +279,6 @@ public class OrderService {
         orderShipping.setUpdatedAt(LocalDateTime.now());
 
         // Set delivery address
-        Address address = addressRepo.findByIdAndUser(addressId, user);
-        if (address == null) {
-            throw new ResourceNotFound("Không tìm thấy địa chỉ giao hàng của bạn.");
-        }
-
         orderShipping.setDeliveryName(address.getReceiverName());
         orderShipping.setDeliveryPhone(address.getReceiverPhone());
         orderShipping.setDeliveryProvince(address.getCity());
@@ -298,10 +287,10 @@ public class OrderService {
         orderShipping.setDeliveryAddress(address.getDetailAddress());
         orderShipping.setUpdatedAt(LocalDateTime.now());
 
-        // ✅ TÍNH SHIPPING COST DỰA TRÊN TỈNH THÀNH
+        // ✅ TÍNH SHIPPING COST DỰA TRÊN TỈNH THÀNH (ưu tiên mã tỉnh đã lưu trong địa chỉ giao hàng)
         BigDecimal shippingCost = calculateShippingCost(
                 orderShipping.getPickupProvince(),
-                orderShipping.getDeliveryProvince()
+                address.getCityCode() != null ? address.getCityCode() : address.getCity()
         );
         orderShipping.setShippingCost(shippingCost);
 
@@ -309,33 +298,31 @@ public class OrderService {
     }
 
     /**
-     * Tính phí vận chuyển dựa trên tỉnh thành
+     * Tính phí vận chuyển dựa trên tỉnh thành (tên hoặc mã tỉnh, so theo mã chuẩn hoá)
      * Miễn phí nếu cùng tỉnh, có phí nếu khác tỉnh
      */
     private BigDecimal calculateShippingCost(String pickupProvince, String deliveryProvince) {
-        if (pickupProvince.equals(deliveryProvince)) {
+        if (divisionCatalog.isSameProvince(pickupProvince, deliveryProvince)) {
             return BigDecimal.ZERO; // Miễn phí vận chuyển cùng tỉnh
         } else {
             return SHIPPING_COST; // 30,000 VND cho khác tỉnh
         }
     }
 
-    @Transactional
-    public BigDecimal applyVoucherToOrder(Order order, Long voucherId, User user) {
+    /**
+     * Áp voucher cho đơn, trả về OrderDiscount chưa lưu (được ghi batch cùng các đơn khác)
+     */
+    private OrderDiscount applyVoucherToOrder(Order order, Long voucherId, CheckoutPricingService.CheckoutPricing pricing) {
         try {
-            // Lấy thông tin voucher từ database
-            DiscountCode discountCode = discountCodeRepository.findById(voucherId)
+            DiscountCode discountCode = pricing.voucher(voucherId)
                     .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Không tìm thấy mã giảm giá"));
 
             // Log thông tin voucher
             log.info("Applying voucher {} to order {}", discountCode.getCode(), order.getId());
             log.info("Voucher type: {}, applies to: {}", discountCode.getDiscountType(), discountCode.getAppliesTo());
 
-            // Lấy danh sách OrderItems của order
-            List<OrderItem> orderItems = orderItemRepo.findByOrderId(order.getId());
-
             // ✅ FIX: Tính toán discount amount (áp dụng trên giá đã có Flash Sale)
-            BigDecimal discountAmount = calculateDiscountForOrder(discountCode, orderItems);
+            BigDecimal discountAmount = pricing.discountFor(order.getId(), discountCode);
 
             log.info("Calculated discount amount: {} for order {}", discountAmount, order.getId());
 
@@ -343,8 +330,7 @@ public class OrderService {
                 // Set discountCode trong Order entity
                 order.setDiscountCode(discountCode);
 
-                // Lưu thông tin discount vào OrderDiscount
-                OrderDiscount orderDiscount = OrderDiscount.builder()
+                return OrderDiscount.builder()
                         .order(order)
                         .discountCode(discountCode)
                         .discountAmount(discountAmount)
@@ -352,13 +338,6 @@ public class OrderService {
                         .finalAmount(order.getTotalAmount().subtract(discountAmount))
                         .appliedAt(LocalDateTime.now())
                         .build();
-
-                orderDiscountRepository.save(orderDiscount);
-
-                log.info("Successfully applied voucher {} to order {}, discount amount: {}",
-                        discountCode.getCode(), order.getId(), discountAmount);
-
-                return discountAmount;
             } else {
                 log.warn("No discount applied for voucher {} on order {}",
                         discountCode.getCode(), order.getId());
@@ -371,133 +350,68 @@ public class OrderService {
     }
 
     /**
-     * ✅ FIX: Tính toán discount amount cho order dựa trên loại voucher
-     * SỬ DỤNG GIÁ ĐÃ LƯU TRONG ORDER ITEM (đã bao gồm Flash Sale)
+     * Callback VNPay (return / IPN / retry) của 1 lượt thanh toán nhiều đơn, xử lý đúng 1 lần theo vnp_TxnRef.
+     * Trong transaction chỉ ghi giao dịch, tồn kho, flash sale, tiền và voucher; delivery assignment,
+     * thông báo và xoá giỏ hàng chạy sau commit qua OrderPaidEvent.
      */
-    private BigDecimal calculateDiscountForOrder(DiscountCode discountCode, List<OrderItem> orderItems) {
-        BigDecimal discountAmount = BigDecimal.ZERO;
-
-        // ✅ FIX: Tính tổng giá trị đơn hàng từ priceAtTime (đã bao gồm flash sale)
-        BigDecimal orderTotal = orderItems.stream()
-                .map(item -> {
-                    BigDecimal itemTotal = item.getPriceAtTime().multiply(BigDecimal.valueOf(item.getQuantity()));
-
-                    // Thêm giá addon nếu có
-                    List<OrderItemAddon> addons = orderItemAddonService.getByOrderItem(item);
-                    BigDecimal addonTotal = addons.stream()
-                            .map(OrderItemAddon::getPriceAdjustAtTime)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    return itemTotal.add(addonTotal);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        log.info("Order total (with flash sale already applied, without shipping): {}", orderTotal);
-
-        // Kiểm tra minimum order amount
-        if (orderTotal.compareTo(discountCode.getMinOrderAmount()) < 0) {
-            log.warn("Order total {} is less than minimum required {}",
-                    orderTotal, discountCode.getMinOrderAmount());
-            return BigDecimal.ZERO;
-        }
-
-        if (discountCode.getAppliesTo() == AppliesTo.SHOP) {
-            // Voucher áp dụng cho toàn shop
-            discountAmount = discountCode.calculateDiscountAmount(orderTotal);
-            log.info("Shop discount calculated: {}", discountAmount);
-        } else if (discountCode.getAppliesTo() == AppliesTo.PRODUCTS) {
-            // ✅ FIX: Voucher áp dụng cho sản phẩm cụ thể - sử dụng giá đã có Flash Sale
-            discountAmount = calculateProductsDiscountWithExistingPrices(discountCode, orderItems);
-            log.info("Products discount calculated: {}", discountAmount);
-        }
-
-        // Đảm bảo discount không vượt quá tổng giá trị đơn hàng
-        return discountAmount.min(orderTotal);
-    }
-
-    /**
-     * ✅ FIX: Tính discount cho voucher loại PRODUCTS với giá đã áp dụng Flash Sale
-     * SỬ DỤNG priceAtTime thay vì tính lại Flash Sale
-     */
-    private BigDecimal calculateProductsDiscountWithExistingPrices(DiscountCode discountCode, List<OrderItem> orderItems) {
-        BigDecimal totalDiscount = BigDecimal.ZERO;
-
-        // Lấy danh sách product IDs mà voucher áp dụng
-        List<Long> voucherProductIds = discountCode.getProducts().stream()
-                .map(Product::getId)
-                .collect(Collectors.toList());
-
-        log.info("Voucher applies to products: {}", voucherProductIds);
-
-        // Duyệt qua từng OrderItem
-        for (OrderItem orderItem : orderItems) {
-            Long productId = orderItem.getVariant().getProduct().getId();
-
-            // Kiểm tra xem product này có được áp dụng voucher không
-            if (voucherProductIds.contains(productId)) {
-                log.info("Product {} is eligible for discount", productId);
-
-                // ✅ FIX: Sử dụng giá đã lưu (đã bao gồm Flash Sale) thay vì tính lại
-                BigDecimal itemTotalWithExistingPrice = orderItem.getPriceAtTime().multiply(BigDecimal.valueOf(orderItem.getQuantity()));
-
-                // Thêm giá addon nếu có
-                List<OrderItemAddon> addons = orderItemAddonService.getByOrderItem(orderItem);
-                BigDecimal addonTotal = addons.stream()
-                        .map(OrderItemAddon::getPriceAdjustAtTime)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                itemTotalWithExistingPrice = itemTotalWithExistingPrice.add(addonTotal);
-
-                BigDecimal itemDiscount = BigDecimal.ZERO;
-
-                if (discountCode.getDiscountType() == DiscountType.PERCENTAGE) {
-                    // Giảm % cho sản phẩm này (trên giá đã có trong OrderItem)
-                    itemDiscount = itemTotalWithExistingPrice.multiply(discountCode.getDiscountValue())
-                            .divide(BigDecimal.valueOf(100), 2, BigDecimal.ROUND_HALF_UP);
-
-                    // Áp dụng max discount cho mỗi sản phẩm nếu có
-                    if (discountCode.getMaxDiscountValue() != null &&
-                            itemDiscount.compareTo(discountCode.getMaxDiscountValue()) > 0) {
-                        itemDiscount = discountCode.getMaxDiscountValue();
-                    }
-                } else {
-                    // FIXED_AMOUNT - Giảm số tiền cố định cho MỖI số lượng sản phẩm
-                    BigDecimal discountPerUnit = discountCode.getDiscountValue();
-                    itemDiscount = discountPerUnit.multiply(BigDecimal.valueOf(orderItem.getQuantity()));
-
-                    // Đảm bảo không giảm quá giá trị sản phẩm (đã có Flash Sale)
-                    itemDiscount = itemDiscount.min(itemTotalWithExistingPrice);
-                }
-
-                log.info("Item discount for product {}: {} (quantity: {}, using existing price with flash sale)",
-                        productId, itemDiscount, orderItem.getQuantity());
-                totalDiscount = totalDiscount.add(itemDiscount);
-            }
-        }
-
-        log.info("Total products discount calculated (using existing prices): {}", totalDiscount);
-        return totalDiscount;
-    }
-
     @Transactional
     public OrderResult handleOrderPaymentVNPay(Map<String, String> params, List<Long> orderIds) {
         String vnpTxnRef = params.get("vnp_TxnRef"); // Base transaction code từ VNPay
         String transactionCodeFromVNPay = params.get("vnp_TransactionNo");
         String responseCode = params.get("vnp_ResponseCode");
 
-        List<Order> orders = orderRepository.findByIdIn(orderIds);
-        String status = "";
-        String message = "";
-        Long userId = orders.getFirst().getCustomer().getId();
+        OrderResult cached = findCallbackResult(vnpTxnRef);
+        if (cached != null) {
+            log.info("VNPay callback {} already handled, status {}", vnpTxnRef, cached.getStatus());
+            return cached;
+        }
+
+        // Transaction code theo format: baseTxnRef + "-" + orderId
+        Map<String, PaymentTransaction> transactions = paymentTransactionRepository
+                .findForUpdateByTransactionCodeIn(orderIds.stream().map(orderId -> vnpTxnRef + "-" + orderId).toList())
+                .stream()
+                .collect(Collectors.toMap(PaymentTransaction::getTransactionCode, transaction -> transaction));
 
+        List<Order> orders = orderRepository.findByIdIn(orderIds);
+        if (orders.isEmpty()) {
+            throw new ExCustom(HttpStatus.BAD_REQUEST, "Đơn hàng không tồn tại. Vui lòng thử lại sau.");
+        }
+        List<PaymentTransaction> pending = new ArrayList<>(orders.size());
         for (Order order : orders) {
-            // Tạo transaction code theo format mới: baseTxnRef + "-" + orderId
             String expectedTxnRef = vnpTxnRef + "-" + order.getId();
+            PaymentTransaction transaction = transactions.get(expectedTxnRef);
+            if (transaction == null) {
+                throw new ExCustom(HttpStatus.BAD_REQUEST,
+                        "Không tìm thấy giao dịch cho order " + order.getId() + " với code " + expectedTxnRef);
+            }
+            if (transaction.getStatus() == TransactionStatus.PENDING) {
+                pending.add(transaction);
+            }
+        }
 
-            PaymentTransaction transaction = paymentTransactionRepository
-                    .findByOrderIdAndTransactionCode(order.getId(), expectedTxnRef)
-                    .orElseThrow(() -> new ExCustom(HttpStatus.BAD_REQUEST,
-                            "Không tìm thấy giao dịch cho order " + order.getId() + " với code " + expectedTxnRef));
+        // Lượt callback trước đã xử lý xong (đã commit) thì trả lại kết quả đã ghi
+        if (pending.isEmpty()) {
+            OrderResult result = callbackResult(vnpTxnRef, transactions.get(vnpTxnRef + "-" + orders.getLast().getId()));
+            rememberCallbackResult(vnpTxnRef, result);
+            return result;
+        }
+
+        boolean success = "00".equals(responseCode);
+        Map<Long, Order> ordersById = orders.stream().collect(Collectors.toMap(Order::getId, order -> order));
+        List<Long> pendingOrderIds = pending.stream().map(transaction -> transaction.getOrder().getId()).toList();
+        Map<Long, List<OrderItem>> itemsByOrder = success
+                ? orderItemRepo.findWithProductByOrderIdIn(pendingOrderIds).stream()
+                        .collect(Collectors.groupingBy(item -> item.getOrder().getId()))
+                : Map.of();
+        Map<Long, OrderDiscount> discountsByOrder = success
+                ? orderDiscountRepository.findByOrderIds(pendingOrderIds).stream()
+                        .collect(Collectors.toMap(discount -> discount.getOrder().getId(), discount -> discount, (a, b) -> a))
+                : Map.of();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Order> updatedOrders = new ArrayList<>(pending.size());
+        for (PaymentTransaction transaction : pending) {
+            Order order = ordersById.get(transaction.getOrder().getId());
 
             // Lưu VNPay response vào gateway_response
             if (transactionCodeFromVNPay != null && !"0".equals(transactionCodeFromVNPay)) {
@@ -506,72 +420,80 @@ public class OrderService {
                 transaction.setGatewayResponse("VNPAY-FAIL-" + System.currentTimeMillis());
             }
 
-            transaction.setPaidAt(LocalDateTime.now());
-            transaction.setUpdatedAt(LocalDateTime.now());
+            transaction.setPaidAt(now);
+            transaction.setUpdatedAt(now);
+
+            if (success) {
+                List<OrderItem> orderItems = itemsByOrder.getOrDefault(order.getId(), List.of());
 
-            if ("00".equals(responseCode)) {
                 // Kiểm tra tồn kho trước khi trừ
-                validateAndUpdateStock(order);
+                validateAndUpdateStock(orderItems);
 
-                // ✅ CẬP NHẬT FLASH SALE SOLD COUNT KHI THANH TOÁN THÀNH CÔNG
-                updateFlashSaleSoldCountForOrder(order);
+                // Xác nhận suất Flash Sale đã giữ khi tạo link VNPay, nếu hold đã hết hạn thì trừ trực tiếp
+                flashSaleReservationService.commitOrder(order.getId(), orderItems);
 
                 transaction.setStatus(TransactionStatus.COMPLETED);
                 balanceTransferService.processOrderStatusChange(order, OrderStatus.PROCESSING);
-                message = "Thanh toán thành công";
 
                 // Xác nhận sử dụng voucher nếu có
-                confirmVoucherUsage(order);
-
-                // Tạo delivery assignment sau khi thanh toán thành công
-                createDeliveryAssignment(order);
-
-                notificationService.sendNotification(
-                        order.getCustomer(),
-                        NotificationType.ORDER_UPDATE,
-                        "Đặt hàng thành công",
-                        "Đơn hàng #" + order.getId() + " đã được thanh toán qua VNPay. Tổng: " + order.getTotalAmount(),
-                        order.getId(),
-                        Notification.Priority.HIGH,
-                        Notification.Category.ORDER,
-                        "💸"
-                );
+                confirmVoucherUsage(order, discountsByOrder.get(order.getId()));
             } else {
                 transaction.setStatus(TransactionStatus.FAILED);
                 balanceTransferService.processOrderStatusChange(order, OrderStatus.CANCELLED);
-                message = "Thanh toán thất bại";
+
+                // Trả lại suất Flash Sale đã giữ khi tạo link VNPay
+                flashSaleReservationService.releaseOrder(order.getId());
             }
 
-            order.setUpdatedAt(LocalDateTime.now());
-            orderRepository.save(order);
-            paymentTransactionRepository.save(transaction);
-            status = transaction.getStatus().toString();
+            order.setUpdatedAt(now);
+            updatedOrders.add(order);
         }
 
-        if ("00".equals(responseCode)) {
-            cartService.deleteCartItemsByOrderIds(orderIds, userId);
+        orderRepository.saveAll(updatedOrders);
+        paymentTransactionRepository.saveAll(pending);
+
+        if (success) {
+            eventPublisher.publishEvent(new OrderPaidEvent(vnpTxnRef, orders.getFirst().getCustomer().getId(), pendingOrderIds));
         }
 
-        return new OrderResult(vnpTxnRef, status, message);
+        OrderResult result = callbackResult(vnpTxnRef, pending.getLast());
+        rememberCallbackResult(vnpTxnRef, result);
+        return result;
     }
 
-    private void updateFlashSaleSoldCountForOrder(Order order) {
-        log.info("Updating Flash Sale sold count for order: {}", order.getId());
-
-        List<OrderItem> orderItems = orderItemRepo.findByOrderId(order.getId());
-        for (OrderItem item : orderItems) {
-            ProductVariant variant = item.getVariant();
-            Long productId = variant.getProduct().getId();
-            int quantity = item.getQuantity();
-
-            // Cập nhật Flash Sale sold count
-            flashSaleHelper.updateFlashSaleSoldCount(productId, quantity);
+    private OrderResult callbackResult(String vnpTxnRef, PaymentTransaction transaction) {
+        String message = transaction.getStatus() == TransactionStatus.COMPLETED
+                ? "Thanh toán thành công"
+                : "Thanh toán thất bại";
+        return new OrderResult(vnpTxnRef, transaction.getStatus().toString(), message);
+    }
 
-            log.info("Updated Flash Sale sold count for product {}: +{} items",
-                    variant.getProduct().getName(), quantity);
+    private OrderResult findCallbackResult(String vnpTxnRef) {
+        try {
+            return redisCacheUtil.get(VNPAY_CALLBACK_KEY_PREFIX + vnpTxnRef, OrderResult.class);
+        } catch (Exception e) {
+            // Redis lỗi thì dựa vào trạng thái giao dịch trong DB
+            log.warn("Error reading VNPay callback result {}: {}", vnpTxnRef, e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * Ghi kết quả callback sau khi commit, các lần VNPay gọi lại trả kết quả ngay không cần khoá giao dịch
+     */
+    private void rememberCallbackResult(String vnpTxnRef, OrderResult result) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    redisCacheUtil.set(VNPAY_CALLBACK_KEY_PREFIX + vnpTxnRef, result, VNPAY_CALLBACK_TTL);
+                } catch (Exception e) {
+                    log.warn("Error caching VNPay callback result {}: {}", vnpTxnRef, e.getMessage());
+                }
+            }
+        });
+    }
+
     /**
      * Tạo delivery assignment cho order sau khi thanh toán thành công
      */
@@ -584,9 +506,11 @@ public class OrderService {
                     .order(order)
                     .status(DeliveryStatus.AVAILABLE)
                     .estimatedDelivery(estimatedDelivery)
+                    .provinceCode(divisionCatalog.resolveProvinceCodeFromAddress(order.getStore().getAddress()).orElse(null))
                     .build();
 
             deliveryAssignmentRepository.save(assignment);
+            shipperDispatchService.publishAvailable(assignment);
 
             log.info("Created delivery assignment for order {}", order.getId());
         } catch (Exception e) {
@@ -607,7 +531,7 @@ public class OrderService {
         String pickupProvince = orderShipping.getPickupProvince();
         String deliveryProvince = orderShipping.getDeliveryProvince();
 
-        if (pickupProvince.equals(deliveryProvince)) {
+        if (divisionCatalog.isSameProvince(pickupProvince, deliveryProvince)) {
             // Cùng tỉnh: 6-12 giờ
             return LocalDateTime.now().plusHours(8);
         } else {
@@ -616,9 +540,7 @@ public class OrderService {
         }
     }
 
-    private void validateAndUpdateStock(Order order) {
-        List<OrderItem> orderItems = orderItemRepo.findByOrderId(order.getId());
-
+    private void validateAndUpdateStock(List<OrderItem> orderItems) {
         // Validate stock
         for (OrderItem item : orderItems) {
             ProductVariant variant = item.getVariant();
@@ -638,7 +560,10 @@ public class OrderService {
     }
 
     protected void confirmVoucherUsage(Order order) {
-        OrderDiscount orderDiscount = orderDiscountRepository.findByOrderId(order.getId());
+        confirmVoucherUsage(order, orderDiscountRepository.findByOrderId(order.getId()));
+    }
+
+    private void confirmVoucherUsage(Order order, OrderDiscount orderDiscount) {
         if (orderDiscount != null) {
             DiscountCode discountCode = orderDiscount.getDiscountCode();
 
@@ -690,6 +615,9 @@ public class OrderService {
                 log.info("Reverted stock and flash sale for product {}: restored {} items",
                         variant.getProduct().getName(), item.getQuantity());
             }
+        } else {
+            // Đơn chưa thanh toán VNPay: trả lại suất Flash Sale đang giữ (nếu có)
+            flashSaleReservationService.releaseOrder(orderId);
         }
     }
 
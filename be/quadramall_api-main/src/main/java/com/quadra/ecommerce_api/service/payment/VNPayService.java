@@ -19,10 +19,12 @@ import com.quadra.ecommerce_api.enums.wallet.WalletTransactionType;
 import com.quadra.ecommerce_api.exception.ExCustom;
 import com.quadra.ecommerce_api.exception.payment.VnPayException;
 import com.quadra.ecommerce_api.mapper.base.payment.PaymentTransactionMapper;
+import com.quadra.ecommerce_api.repository.order.OrderItemRepo;
 import com.quadra.ecommerce_api.repository.order.OrderRepo;
 import com.quadra.ecommerce_api.repository.payment.PaymentTransactionRepo;
 import com.quadra.ecommerce_api.repository.wallet.WalletRepo;
 import com.quadra.ecommerce_api.repository.wallet.WalletTransactionRepo;
+import com.quadra.ecommerce_api.service.flashsale.FlashSaleReservationService;
 import com.quadra.ecommerce_api.service.notification.NotificationService;
 import com.quadra.ecommerce_api.utils.payment.VNPayUtil;
 import jakarta.transaction.Transactional;
@@ -53,6 +55,8 @@ public class VNPayService {
     private final NotificationService notificationService;
     private final OrderRepo orderRepo;
     private final RedisTemplate<String, String> redisTemplate;
+    private final OrderItemRepo orderItemRepo;
+    private final FlashSaleReservationService flashSaleReservationService;
 
     @Value("BASE_URL")
     private String BASE_URL;
@@ -67,7 +71,9 @@ public class VNPayService {
             PaymentTransactionMapper paymentTransactionMapper,
             ObjectMapper objectMapper,
             NotificationService notificationService,
-            OrderRepo orderRepo, RedisTemplate<String, String> redisTemplate) {
+            OrderRepo orderRepo, RedisTemplate<String, String> redisTemplate,
+            OrderItemRepo orderItemRepo,
+            FlashSaleReservationService flashSaleReservationService) {
         this.vnpayConfig = vnpayConfig;
         this.paymentService = paymentService;
         this.paymentTransactionRepo = paymentTransactionRepo;
@@ -78,6 +84,8 @@ public class VNPayService {
         this.notificationService = notificationService;
         this.orderRepo = orderRepo;
         this.redisTemplate = redisTemplate;
+        this.orderItemRepo = orderItemRepo;
+        this.flashSaleReservationService = flashSaleReservationService;
     }
 
     @Transactional
@@ -109,6 +117,9 @@ public class VNPayService {
             transaction.setTransactionCode(uniqueTxnRef); // ✅ Unique per order
             paymentTransactionRepo.save(transaction);
 
+            // ✅ Giữ suất Flash Sale trong thời gian chờ VNPay (hết hạn cùng vnp_ExpireDate)
+            flashSaleReservationService.holdForOrder(order.getId(), orderItemRepo.findByOrderId(order.getId()));
+
             log.info("Created transaction for order {}: {}", order.getId(), uniqueTxnRef);
         }
 
@@ -9,6 +9,7 @@ import com.quadra.ecommerce_api.enums.shipping.DeliveryStatus;
 import com.quadra.ecommerce_api.repository.order.OrderRepo;
 import com.quadra.ecommerce_api.repository.shipping.DeliveryAssignmentRepository;
 import com.quadra.ecommerce_api.service.notification.NotificationService;
+import com.quadra.ecommerce_api.service.notification.NotificationService.NotificationCommand;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -16,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -27,6 +29,7 @@ public class DeliverySchedulerService {
     private final OrderRepo orderRepository;
     private final NotificationService notificationService;
     private final DeliveryNotificationService deliveryNotificationService;
+    private final ShipperDispatchService dispatchService;
 
     /**
      * Kiểm tra và xử lý các đơn hàng quá hạn giao hàng
@@ -42,10 +45,11 @@ public class DeliverySchedulerService {
         List<DeliveryAssignment> overdueDeliveries = deliveryAssignmentRepository
                 .findOverdueDeliveries(DeliveryStatus.IN_TRANSIT, cutoffTime);
 
+        List<NotificationCommand> notifications = new ArrayList<>();
         for (DeliveryAssignment assignment : overdueDeliveries) {
             // Gửi thông báo cảnh báo cho shipper
             if (assignment.getShipper() != null) {
-                notificationService.sendNotification(
+                notifications.add(new NotificationCommand(
                         assignment.getShipper().getUser(),
                         NotificationType.ORDER_UPDATE,
                         "Đơn hàng quá hạn",
@@ -54,11 +58,11 @@ public class DeliverySchedulerService {
                         Notification.Priority.HIGH,
                         Notification.Category.ORDER,
                         "⚠️"
-                );
+                ));
             }
 
             // Gửi thông báo cho khách hàng
-            notificationService.sendNotification(
+            notifications.add(new NotificationCommand(
                     assignment.getOrder().getCustomer(),
                     NotificationType.ORDER_UPDATE,
                     "Đơn hàng chậm trễ",
@@ -67,8 +71,9 @@ public class DeliverySchedulerService {
                     Notification.Priority.MEDIUM,
                     Notification.Category.ORDER,
                     "🕐"
-            );
+            ));
         }
+        notificationService.sendBatch(notifications);
 
         log.info("Found {} overdue deliveries", overdueDeliveries.size());
     }
@@ -87,12 +92,14 @@ public class DeliverySchedulerService {
         List<DeliveryAssignment> unassignedOrders = deliveryAssignmentRepository
                 .findOverdueDeliveries(DeliveryStatus.AVAILABLE, cutoffTime);
 
+        List<NotificationCommand> notifications = new ArrayList<>();
         for (DeliveryAssignment assignment : unassignedOrders) {
             // Hủy assignment
             assignment.setStatus(DeliveryStatus.CANCELLED);
             assignment.setCancelledAt(LocalDateTime.now());
             assignment.setCancellationReason("Tự động hủy do không có shipper nhận trong 24 giờ");
             deliveryAssignmentRepository.save(assignment);
+            dispatchService.publishCancelled(assignment);
 
             // Hủy order
             Order order = assignment.getOrder();
@@ -100,7 +107,7 @@ public class DeliverySchedulerService {
             orderRepository.save(order);
 
             // Gửi thông báo cho khách hàng
-            notificationService.sendNotification(
+            notifications.add(new NotificationCommand(
                     order.getCustomer(),
                     NotificationType.ORDER_UPDATE,
                     "Đơn hàng bị hủy",
@@ -109,8 +116,9 @@ public class DeliverySchedulerService {
                     Notification.Priority.HIGH,
                     Notification.Category.ORDER,
                     "❌"
-            );
+            ));
         }
+        notificationService.sendBatch(notifications);
 
         log.info("Auto-cancelled {} unassigned orders", unassignedOrders.size());
     }
@@ -128,9 +136,10 @@ public class DeliverySchedulerService {
         List<DeliveryAssignment> assignedOrders = deliveryAssignmentRepository
                 .findOverdueDeliveries(DeliveryStatus.ASSIGNED, oneHourAgo);
 
+        List<NotificationCommand> notifications = new ArrayList<>();
         for (DeliveryAssignment assignment : assignedOrders) {
             if (assignment.getShipper() != null) {
-                notificationService.sendNotification(
+                notifications.add(new NotificationCommand(
                         assignment.getShipper().getUser(),
                         NotificationType.ORDER_UPDATE,
                         "Nhắc nhở lấy hàng",
@@ -139,9 +148,10 @@ public class DeliverySchedulerService {
                         Notification.Priority.MEDIUM,
                         Notification.Category.ORDER,
                         "📦"
-                );
+                ));
             }
         }
+        notificationService.sendBatch(notifications);
 
         log.info("Sent pickup reminders for {} orders", assignedOrders.size());
     }
@@ -183,6 +193,7 @@ public class DeliverySchedulerService {
         List<DeliveryAssignment> deliveredOrders = deliveryAssignmentRepository
                 .findOverdueDeliveries(DeliveryStatus.DELIVERED, sevenDaysAgo);
 
+        List<NotificationCommand> notifications = new ArrayList<>();
         for (DeliveryAssignment assignment : deliveredOrders) {
             // Tự động xác nhận
             assignment.setStatus(DeliveryStatus.CONFIRMED);
@@ -195,7 +206,7 @@ public class DeliverySchedulerService {
             orderRepository.save(order);
 
             // Gửi thông báo
-            notificationService.sendNotification(
+            notifications.add(new NotificationCommand(
                     order.getCustomer(),
                     NotificationType.ORDER_UPDATE,
                     "Đơn hàng tự động xác nhận",
@@ -204,8 +215,9 @@ public class DeliverySchedulerService {
                     Notification.Priority.LOW,
                     Notification.Category.ORDER,
                     "✅"
-            );
+            ));
         }
+        notificationService.sendBatch(notifications);
 
         log.info("Auto-confirmed {} deliveries", deliveredOrders.size());
     }
@@ -25,7 +25,9 @@ import com.quadra.ecommerce_api.repository.shipping.DeliveryAssignmentRepository
 import com.quadra.ecommerce_api.repository.shipping.DeliveryConfirmationRepository;
 import com.quadra.ecommerce_api.repository.shipping.OrderShippingRepo;
 import com.quadra.ecommerce_api.repository.shipping.ShipperRepository;
+import com.quadra.ecommerce_api.service.address.AdministrativeDivisionCatalog;
 import com.quadra.ecommerce_api.service.notification.NotificationService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -39,6 +41,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Random;
 
 @Service
@@ -54,17 +57,52 @@ public class DeliveryService {
     private final NotificationService notificationService;
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
+    private final AdministrativeDivisionCatalog divisionCatalog;
+    private final ShipperDispatchService dispatchService;
+    private final EntityManager entityManager;
 
-    public Page<AvailableOrderDTO> getAvailableOrders(User shipperUser, Pageable pageable) {
+    /**
+     * Đơn có thể nhận, cũ nhất trước; province (tên hoặc mã tỉnh lấy hàng) = null là mọi tỉnh
+     */
+    public Page<AvailableOrderDTO> getAvailableOrders(User shipperUser, String province, Pageable pageable) {
         Shipper shipper = shipperRepository.findByUserId(shipperUser.getId())
                 .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Không tìm thấy thông tin shipper"));
 
-        log.info("Get available check orders for shipper {}", shipper.getId());
-        Page<DeliveryAssignment> assignments = deliveryAssignmentRepository.findAvailableOrders(pageable);
-        log.info("Get available orders for shipper {}", assignments.getContent());
+        String provinceCode = null;
+        if (province != null && !province.isBlank()) {
+            provinceCode = divisionCatalog.resolveProvinceCode(province)
+                    .orElseThrow(() -> new ExCustom(HttpStatus.BAD_REQUEST, "Tỉnh / thành phố không hợp lệ"));
+        }
+
+        log.info("Get available orders for shipper {}, province {}", shipper.getId(), provinceCode);
+        String filter = provinceCode;
+        Page<DeliveryAssignment> assignments = dispatchService.findAvailable(provinceCode, pageable)
+                .orElseGet(() -> filter != null
+                        ? deliveryAssignmentRepository.findAvailableOrdersByProvince(filter, pageable)
+                        : deliveryAssignmentRepository.findAvailableOrders(pageable));
         return assignments.map(this::mapToAvailableOrderDTO);
     }
 
+    /**
+     * Điền mã tỉnh lấy hàng cho assignment cũ từ địa chỉ cửa hàng (cùng cách với lúc tạo assignment),
+     * để đơn đang chờ không bị mất khỏi danh sách lọc theo tỉnh. Địa chỉ không xác định được tỉnh thì để trống,
+     * đơn đó vẫn hiện khi shipper xem mọi tỉnh.
+     */
+    @Transactional
+    public int backfillProvinceCodes() {
+        int updated = 0;
+        for (Object[] row : deliveryAssignmentRepository.findWithoutProvinceCode()) {
+            Optional<String> provinceCode = divisionCatalog.resolveProvinceCodeFromAddress((String) row[1]);
+            if (provinceCode.isPresent()) {
+                updated += deliveryAssignmentRepository.updateProvinceCode((Long) row[0], provinceCode.get());
+            }
+        }
+        if (updated > 0) {
+            log.info("Backfilled province code of {} delivery assignments", updated);
+        }
+        return updated;
+    }
+
     @Transactional
     public void acceptOrder(User shipperUser, Long orderId, AcceptOrderRequest request) {
         Shipper shipper = shipperRepository.findByUserId(shipperUser.getId())
@@ -74,23 +112,28 @@ public class DeliveryService {
                 .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Không tìm thấy đơn hàng"));
 
         if (assignment.getStatus() != DeliveryStatus.AVAILABLE) {
+            dispatchService.evict(assignment.getId());
             throw new ExCustom(HttpStatus.BAD_REQUEST, "Đơn hàng không khả dụng để nhận");
         }
 
-        // Kiểm tra số lượng đơn hàng đang xử lý của shipper
-        Long activeDeliveries = deliveryAssignmentRepository.countActiveDeliveriesByShipper(shipper.getId());
-        if (activeDeliveries >= 5) { // Giới hạn 5 đơn hàng cùng lúc
-            throw new ExCustom(HttpStatus.BAD_REQUEST, "Bạn đã có quá nhiều đơn hàng đang xử lý");
+        // Giới hạn số đơn đang xử lý của shipper, đếm trong bộ nhớ
+        dispatchService.reserveSlot(shipper.getId());
+
+        // Nhận đơn bằng UPDATE có điều kiện, 2 shipper nhận cùng lúc thì chỉ 1 người thành công
+        int claimed = deliveryAssignmentRepository.claimAvailable(
+                assignment.getId(),
+                shipper,
+                DeliveryStatus.ASSIGNED,
+                LocalDateTime.now(),
+                request != null ? request.getNotes() : null,
+                calculateEstimatedDelivery(assignment.getOrder()));
+        if (claimed == 0) {
+            dispatchService.evict(assignment.getId());
+            throw new ExCustom(HttpStatus.CONFLICT, "Đơn hàng đã được shipper khác nhận");
         }
-
-        // Cập nhật assignment
-        assignment.setShipper(shipper);
-        assignment.setStatus(DeliveryStatus.ASSIGNED);
-        assignment.setAssignedAt(LocalDateTime.now());
-        assignment.setDeliveryNotes(request.getNotes());
-        assignment.setEstimatedDelivery(calculateEstimatedDelivery(assignment.getOrder()));
-
-        deliveryAssignmentRepository.save(assignment);
+        // UPDATE chạy thẳng trên DB: đọc lại để assignment có shipper / status vừa nhận
+        entityManager.refresh(assignment);
+        dispatchService.publishClaimed(assignment);
 
         // Cập nhật trạng thái order
         Order order = assignment.getOrder();
@@ -210,6 +253,7 @@ public class DeliveryService {
                 .build();
 
         deliveryConfirmationRepository.save(confirmation);
+        dispatchService.releaseSlot(assignment.getShipper().getId());
 
         // Cập nhật trạng thái order
         Order order = assignment.getOrder();
@@ -289,6 +333,7 @@ public class DeliveryService {
             throw new ExCustom(HttpStatus.BAD_REQUEST, "Không thể hủy đơn hàng đã giao");
         }
 
+        dispatchService.releaseSlot(assignment.getShipper().getId());
         assignment.setStatus(DeliveryStatus.CANCELLED);
         assignment.setCancelledAt(LocalDateTime.now());
         assignment.setCancellationReason(request.getCancellationReason());
@@ -305,8 +350,10 @@ public class DeliveryService {
                 .order(order)
                 .status(DeliveryStatus.AVAILABLE)
                 .estimatedDelivery(calculateEstimatedDelivery(order))
+                .provinceCode(assignment.getProvinceCode())
                 .build();
         deliveryAssignmentRepository.save(newAssignment);
+        dispatchService.publishAvailable(newAssignment);
 
         // Gửi thông báo cho customer
         notificationService.sendNotification(
@@ -380,7 +427,7 @@ public class DeliveryService {
         String pickupProvince = orderShipping.getPickupProvince();
         String deliveryProvince = orderShipping.getDeliveryProvince();
 
-        if (pickupProvince.equals(deliveryProvince)) {
+        if (divisionCatalog.isSameProvince(pickupProvince, deliveryProvince)) {
             return LocalDateTime.now().plusHours(6); // 6 hours for same province
         } else {
             return LocalDateTime.now().plusDays(2); // 2 days for different provinces
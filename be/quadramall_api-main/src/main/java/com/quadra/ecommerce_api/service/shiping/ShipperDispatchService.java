@@ -0,0 +1,321 @@
+package com.quadra.ecommerce_api.service.shiping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quadra.ecommerce_api.dto.custom.shipping.response.ShipperFeedEventDTO;
+import com.quadra.ecommerce_api.entity.shipping.DeliveryAssignment;
+import com.quadra.ecommerce_api.enums.shipping.DeliveryStatus;
+import com.quadra.ecommerce_api.exception.ExCustom;
+import com.quadra.ecommerce_api.repository.shipping.DeliveryAssignmentRepository;
+import com.quadra.ecommerce_api.utils.TransactionHooks;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Hàng đợi đơn chờ shipper nhận: chỉ mục trong bộ nhớ các assignment AVAILABLE, chia theo mã tỉnh lấy hàng
+ * và sắp theo thời gian tạo (đơn cũ trước), nên danh sách đơn của shipper không còn phân trang trên toàn bảng.
+ * Dựng lại từ MySQL khi khởi động và định kỳ (xem ShipperDispatchTasks), giữa 2 lần dựng được cập nhật
+ * sau commit khi đơn được tạo / nhận / huỷ, các node khác được báo qua Redis pub/sub.
+ * Chỉ mục chỉ dùng để liệt kê, việc nhận đơn vẫn do câu UPDATE có điều kiện status = 'AVAILABLE' quyết định.
+ * Số đơn đang giao của mỗi shipper được đếm trong bộ nhớ, nạp lại từ MySQL sau shipping.dispatch.active-count-ttl-seconds
+ * nên sai lệch giữa các node chỉ tồn tại trong khoảng đó.
+ */
+@Service
+@Slf4j
+public class ShipperDispatchService {
+
+    private static final String EVENT_CHANNEL = "shipping:dispatch";
+    private static final String NEW_ORDERS_TOPIC = "/topic/shipper/new-orders";
+    // Bucket của đơn chưa xác định được tỉnh lấy hàng
+    private static final String UNKNOWN_PROVINCE = "";
+
+    private static final Comparator<Entry> OLDEST_FIRST = Comparator
+            .comparing(Entry::createdAt)
+            .thenComparing(Entry::assignmentId);
+
+    private final DeliveryAssignmentRepository deliveryAssignmentRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final int maxActiveDeliveries;
+    private final long activeCountTtlMillis;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    // null khi chưa dựng xong, lúc đó DeliveryService đọc thẳng từ MySQL
+    private volatile Index index;
+    private final Map<Long, ActiveCount> activeCounts = new ConcurrentHashMap<>();
+    // rebuild và cập nhật từng phần không được chạy chồng lên nhau
+    private final Object writeLock = new Object();
+
+    public ShipperDispatchService(DeliveryAssignmentRepository deliveryAssignmentRepository,
+                                  SimpMessagingTemplate messagingTemplate,
+                                  StringRedisTemplate redisTemplate,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  ObjectMapper objectMapper,
+                                  @Value("${shipping.delivery.max-active-deliveries:5}") int maxActiveDeliveries,
+                                  @Value("${shipping.dispatch.active-count-ttl-seconds:300}") long activeCountTtlSeconds) {
+        this.deliveryAssignmentRepository = deliveryAssignmentRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.maxActiveDeliveries = maxActiveDeliveries;
+        this.activeCountTtlMillis = activeCountTtlSeconds * 1000;
+    }
+
+    enum EventType {
+        AVAILABLE, CLAIMED, CANCELLED
+    }
+
+    record Entry(Long assignmentId, Long orderId, String provinceCode, LocalDateTime createdAt) {
+    }
+
+    record Event(String origin, EventType type, Entry entry) {
+    }
+
+    private record ActiveCount(AtomicInteger count, long loadedAt) {
+    }
+
+    private static final class Index {
+        final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+        final NavigableSet<Entry> all = new ConcurrentSkipListSet<>(OLDEST_FIRST);
+        final Map<String, NavigableSet<Entry>> byProvince = new ConcurrentHashMap<>();
+
+        void add(Entry entry) {
+            if (byId.putIfAbsent(entry.assignmentId(), entry) != null) return;
+            byProvince.computeIfAbsent(bucketOf(entry.provinceCode()), p -> new ConcurrentSkipListSet<>(OLDEST_FIRST))
+                    .add(entry);
+            all.add(entry);
+        }
+
+        void remove(Long assignmentId) {
+            Entry entry = byId.remove(assignmentId);
+            if (entry == null) return;
+            all.remove(entry);
+            byProvince.computeIfPresent(bucketOf(entry.provinceCode()), (p, entries) -> {
+                entries.remove(entry);
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+
+        NavigableSet<Entry> bucket(String provinceCode) {
+            if (provinceCode == null) return all;
+            return byProvince.getOrDefault(provinceCode, new ConcurrentSkipListSet<>(OLDEST_FIRST));
+        }
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                Event event = objectMapper.readValue(body, Event.class);
+                if (!nodeId.equals(event.origin())) {
+                    apply(event.type(), event.entry());
+                }
+            } catch (Exception e) {
+                log.warn("Invalid dispatch message: {}", body);
+            }
+        }, new ChannelTopic(EVENT_CHANNEL));
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * Đơn đang chờ nhận, cũ nhất trước; provinceCode = null là mọi tỉnh.
+     * Trả về Optional.empty() nếu chỉ mục chưa sẵn sàng.
+     */
+    public Optional<Page<DeliveryAssignment>> findAvailable(String provinceCode, Pageable pageable) {
+        Index current = index;
+        if (current == null) return Optional.empty();
+
+        NavigableSet<Entry> bucket = current.bucket(provinceCode);
+        List<Long> ids = new ArrayList<>(pageable.getPageSize());
+        long skipped = 0;
+        for (Entry entry : bucket) {
+            if (skipped++ < pageable.getOffset()) continue;
+            if (ids.size() == pageable.getPageSize()) break;
+            ids.add(entry.assignmentId());
+        }
+        if (ids.isEmpty()) {
+            return Optional.of(new PageImpl<>(List.of(), pageable, bucket.size()));
+        }
+
+        Map<Long, DeliveryAssignment> loaded = deliveryAssignmentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(DeliveryAssignment::getId, Function.identity()));
+        List<DeliveryAssignment> content = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            DeliveryAssignment assignment = loaded.get(id);
+            // Đã được nhận / huỷ ở node khác nhưng message chưa tới
+            if (assignment == null || assignment.getStatus() != DeliveryStatus.AVAILABLE) {
+                current.remove(id);
+                continue;
+            }
+            content.add(assignment);
+        }
+        return Optional.of(new PageImpl<>(content, pageable, bucket.size()));
+    }
+
+    /**
+     * Giữ 1 suất đang giao cho shipper trước khi nhận đơn, báo lỗi nếu đã đủ shipping.delivery.max-active-deliveries.
+     * Suất được trả lại nếu transaction nhận đơn không commit.
+     */
+    public void reserveSlot(Long shipperId) {
+        AtomicInteger count = activeCountOf(shipperId);
+        if (count.incrementAndGet() > maxActiveDeliveries) {
+            count.decrementAndGet();
+            throw new ExCustom(HttpStatus.BAD_REQUEST, "Bạn đã có quá nhiều đơn hàng đang xử lý");
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    decrement(count);
+                }
+            }
+        });
+    }
+
+    /**
+     * Trả suất khi đơn của shipper đã giao xong / bị huỷ
+     */
+    public void releaseSlot(Long shipperId) {
+        ActiveCount current = activeCounts.get(shipperId);
+        if (current == null) return;
+        TransactionHooks.afterCommit(() -> decrement(current.count()));
+    }
+
+    /**
+     * Đưa assignment vừa tạo vào hàng đợi và báo cho shipper, sau khi transaction commit
+     */
+    public void publishAvailable(DeliveryAssignment assignment) {
+        publishAfterCommit(EventType.AVAILABLE, toEntry(assignment));
+    }
+
+    /**
+     * Bỏ assignment khỏi hàng đợi vì đã có shipper nhận
+     */
+    public void publishClaimed(DeliveryAssignment assignment) {
+        publishAfterCommit(EventType.CLAIMED, toEntry(assignment));
+    }
+
+    /**
+     * Bỏ assignment khỏi hàng đợi vì bị huỷ
+     */
+    public void publishCancelled(DeliveryAssignment assignment) {
+        publishAfterCommit(EventType.CANCELLED, toEntry(assignment));
+    }
+
+    /**
+     * Bỏ ngay assignment khỏi chỉ mục của node này, dùng khi nhận đơn thất bại vì đơn không còn AVAILABLE
+     */
+    public void evict(Long assignmentId) {
+        Index current = index;
+        if (current != null) {
+            current.remove(assignmentId);
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ hàng đợi từ MySQL và bỏ bộ đếm đơn đang giao để nạp lại
+     */
+    public void rebuild() {
+        synchronized (writeLock) {
+            long start = System.currentTimeMillis();
+
+            Index rebuilt = new Index();
+            for (Object[] row : deliveryAssignmentRepository.findAvailableDispatchRows()) {
+                rebuilt.add(new Entry((Long) row[0], (Long) row[1], (String) row[2], (LocalDateTime) row[3]));
+            }
+            index = rebuilt;
+            activeCounts.clear();
+
+            log.info("Rebuilt shipper dispatch queue: {} available assignments in {} provinces ({} ms)",
+                    rebuilt.byId.size(), rebuilt.byProvince.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private void publishAfterCommit(EventType type, Entry entry) {
+        TransactionHooks.afterCommit(() -> {
+            apply(type, entry);
+            try {
+                redisTemplate.convertAndSend(EVENT_CHANNEL, objectMapper.writeValueAsString(new Event(nodeId, type, entry)));
+            } catch (Exception e) {
+                // Node khác sẽ được sửa ở lần rebuild định kỳ
+                log.error("Error publishing dispatch event for assignment {}: {}", entry.assignmentId(), e.getMessage());
+            }
+            // RedisBrokerRelay chuyển tiếp tới shipper đang kết nối ở các node khác
+            messagingTemplate.convertAndSend(NEW_ORDERS_TOPIC, new ShipperFeedEventDTO(
+                    type.name(), entry.orderId(), entry.provinceCode(), entry.createdAt()));
+        });
+    }
+
+    private void apply(EventType type, Entry entry) {
+        synchronized (writeLock) {
+            Index current = index;
+            if (current == null) return;
+            if (type == EventType.AVAILABLE) {
+                current.add(entry);
+            } else {
+                current.remove(entry.assignmentId());
+            }
+        }
+    }
+
+    private AtomicInteger activeCountOf(Long shipperId) {
+        long now = System.currentTimeMillis();
+        ActiveCount current = activeCounts.get(shipperId);
+        if (current != null && current.loadedAt() + activeCountTtlMillis > now) {
+            return current.count();
+        }
+
+        Long count = deliveryAssignmentRepository.countActiveDeliveriesByShipper(shipperId);
+        ActiveCount loaded = new ActiveCount(new AtomicInteger(count != null ? count.intValue() : 0), now);
+        activeCounts.put(shipperId, loaded);
+        return loaded.count();
+    }
+
+    private static void decrement(AtomicInteger count) {
+        count.updateAndGet(value -> Math.max(0, value - 1));
+    }
+
+    private static Entry toEntry(DeliveryAssignment assignment) {
+        LocalDateTime createdAt = assignment.getCreatedAt() != null ? assignment.getCreatedAt() : LocalDateTime.now();
+        return new Entry(assignment.getId(), assignment.getOrder().getId(), assignment.getProvinceCode(), createdAt);
+    }
+
+    private static String bucketOf(String provinceCode) {
+        return provinceCode != null ? provinceCode : UNKNOWN_PROVINCE;
+    }
+}
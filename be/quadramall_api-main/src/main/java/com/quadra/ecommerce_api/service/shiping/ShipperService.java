@@ -16,6 +16,7 @@ import com.quadra.ecommerce_api.exception.ExCustom;
 import com.quadra.ecommerce_api.repository.shipping.ShipperRegistrationRepository;
 import com.quadra.ecommerce_api.repository.shipping.ShipperRepository;
 import com.quadra.ecommerce_api.repository.user.RoleRepo;
+import com.quadra.ecommerce_api.service.auth.PrincipalCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -37,6 +38,7 @@ public class ShipperService {
     private final ShipperRepository shipperRepository;
     private final RoleRepo roleRepository;
     private final ObjectMapper objectMapper;
+    private final PrincipalCacheService principalCacheService;
 
     @Transactional
     public ShipperRegistrationResponse registerShipper(User user, ShipperRegistrationRequest request) {
@@ -112,6 +114,7 @@ public class ShipperService {
                     .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Không tìm thấy role SHIPPER"));
 
             registration.getUser().getRoles().add(shipperRole);
+            principalCacheService.evict(registration.getUser().getId());
 
             log.info("Approved shipper registration {} for user {}", registrationId, registration.getUser().getId());
 
@@ -9,6 +9,7 @@ import com.quadra.ecommerce_api.entity.store.Store;
 import com.quadra.ecommerce_api.repository.product.ProductRepo;
 import com.quadra.ecommerce_api.repository.store.CategoryRepo;
 import com.quadra.ecommerce_api.repository.store.StoreRepo;
+import com.quadra.ecommerce_api.service.base.TaxonomySnapshotService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -25,12 +26,15 @@ public class CategoryCommandService {
     private final CategoryRepo categoryRepo;
     private final StoreRepo storeRepo;
     private final ProductRepo productRepo;
+    private final TaxonomySnapshotService taxonomySnapshotService;
 
     @Autowired
-    public CategoryCommandService(CategoryRepo categoryRepo, StoreRepo storeRepo, ProductRepo productRepo) {
+    public CategoryCommandService(CategoryRepo categoryRepo, StoreRepo storeRepo, ProductRepo productRepo,
+                                  TaxonomySnapshotService taxonomySnapshotService) {
         this.categoryRepo = categoryRepo;
         this.storeRepo = storeRepo;
         this.productRepo = productRepo;
+        this.taxonomySnapshotService = taxonomySnapshotService;
     }
 
     private String generateBaseSlug(String name) {
@@ -97,6 +101,7 @@ public class CategoryCommandService {
         }
         category.setSlug(finalSlug);
         category = categoryRepo.save(category);
+        taxonomySnapshotService.storeCategoriesChanged(requestDto.getStoreId());
 
         return convertToDto(category);
     }
@@ -140,6 +145,7 @@ public class CategoryCommandService {
         }
 
         category = categoryRepo.save(category);
+        taxonomySnapshotService.storeCategoriesChanged(category.getStore().getId());
         return convertToDto(category);
     }
 
@@ -148,13 +154,15 @@ public class CategoryCommandService {
         Category category = categoryRepo.findById(categoryId)
                 .orElseThrow(() -> new EntityNotFoundException("Danh mục với ID " + categoryId + " không tồn tại"));
 
+        // Kiểm tra trên DB thay vì ảnh chụp, để không xoá nhầm khi ảnh chụp của node này chưa kịp cập nhật
+        Long storeId = category.getStore().getId();
         List<Long> descendantIds = categoryRepo.findAllDescendantIds(categoryId);
         if (descendantIds.size() > 1) {
             throw new IllegalArgumentException("Không thể xóa danh mục vì nó có danh mục con");
         }
 
         // Lấy tất cả sản phẩm thuộc danh mục và đặt category về null
-        List<Product> products = productRepo.findByStoreIdAndCategoryIdAndIsActiveTrue(category.getStore().getId(), categoryId);
+        List<Product> products = productRepo.findByStoreIdAndCategoryIdAndIsActiveTrue(storeId, categoryId);
         for (Product product : products) {
             product.setCategory(null);
             productRepo.save(product);
@@ -162,6 +170,7 @@ public class CategoryCommandService {
 
         // Xóa danh mục
         categoryRepo.delete(category);
+        taxonomySnapshotService.storeCategoriesChanged(storeId);
     }
 
     @Transactional
@@ -7,9 +7,11 @@ import com.quadra.ecommerce_api.entity.product.*;
 import com.quadra.ecommerce_api.entity.store.ItemType;
 import com.quadra.ecommerce_api.entity.store.Store;
 import com.quadra.ecommerce_api.enums.product.AttributeType;
+import com.quadra.ecommerce_api.enums.redis.RedisCacheKey;
 import com.quadra.ecommerce_api.mapper.store_owner.request.product.StoreOwnerProductMapper;
 import com.quadra.ecommerce_api.repository.product.*;
 import com.quadra.ecommerce_api.repository.store.*;
+import com.quadra.ecommerce_api.utils.RedisCacheUtil;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,6 +37,7 @@ public class ProductServiceReq {
     protected final Cloudinary cloudinary;
     protected final ItemTypeRepo itemTypeRepo;
     private final AttributeRepo attributeRepo;
+    private final RedisCacheUtil redisCacheUtil;
 
     public ProductServiceReq(
             ProductRepo productRepo,
@@ -50,7 +53,8 @@ public class ProductServiceReq {
             StoreOwnerProductMapper productMapper,
             Cloudinary cloudinary,
             ItemTypeRepo itemTypeRepo,
-            AttributeRepo attributeRepo) {
+            AttributeRepo attributeRepo,
+            RedisCacheUtil redisCacheUtil) {
         this.productRepo = productRepo;
         this.productVariantRepo = productVariantRepo;
         this.productDetailRepo = productDetailRepo;
@@ -65,6 +69,7 @@ public class ProductServiceReq {
         this.cloudinary = cloudinary;
         this.itemTypeRepo = itemTypeRepo;
         this.attributeRepo = attributeRepo;
+        this.redisCacheUtil = redisCacheUtil;
     }
 
     private String generateBaseSlug(String name) {
@@ -282,6 +287,7 @@ public class ProductServiceReq {
 
         product.setActive(false);
         productRepo.save(product);
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.PRODUCT_DETAIL, productId);
     }
 
     /**
@@ -298,5 +304,7 @@ public class ProductServiceReq {
 
         product.setActive(true);
         productRepo.save(product);
+        // Snapshot còn lại từ trước khi tắt có thể đã cũ
+        redisCacheUtil.evictAfterCommit(RedisCacheKey.PRODUCT_DETAIL, productId);
     }
 }
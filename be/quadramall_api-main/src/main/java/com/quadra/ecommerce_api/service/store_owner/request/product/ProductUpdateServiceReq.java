@@ -5,9 +5,11 @@ import com.quadra.ecommerce_api.entity.product.*;
 import com.quadra.ecommerce_api.entity.store.ItemType;
 import com.quadra.ecommerce_api.entity.store.Store;
 import com.quadra.ecommerce_api.enums.product.AttributeType;
+import com.quadra.ecommerce_api.enums.redis.RedisCacheKey;
 import com.quadra.ecommerce_api.mapper.store_owner.request.product.StoreOwnerProductUpdateMapper;
 import com.quadra.ecommerce_api.repository.product.*;
 import com.quadra.ecommerce_api.repository.store.*;
+import com.quadra.ecommerce_api.utils.RedisCacheUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -40,6 +42,7 @@ public class ProductUpdateServiceReq {
     private final StoreOwnerProductUpdateMapper productUpdateMapper;
     private final ItemTypeRepo itemTypeRepo;
     private final AttributeRepo attributeRepo;
+    private final RedisCacheUtil redisCacheUtil;
 
     public ProductUpdateServiceReq(
             ProductRepo productRepo,
@@ -54,7 +57,8 @@ public class ProductUpdateServiceReq {
             SpecificationRepo specificationRepo,
             StoreOwnerProductUpdateMapper productUpdateMapper,
             ItemTypeRepo itemTypeRepo,
-            AttributeRepo attributeRepo) {
+            AttributeRepo attributeRepo,
+            RedisCacheUtil redisCacheUtil) {
         this.productRepo = productRepo;
         this.productVariantRepo = productVariantRepo;
         this.productDetailRepo = productDetailRepo;
@@ -68,6 +72,7 @@ public class ProductUpdateServiceReq {
         this.productUpdateMapper = productUpdateMapper;
         this.itemTypeRepo = itemTypeRepo;
         this.attributeRepo = attributeRepo;
+        this.redisCacheUtil = redisCacheUtil;
     }
 
     private String generateBaseSlug(String name) {
@@ -483,6 +488,9 @@ public class ProductUpdateServiceReq {
                     logger.info("Deleted all specification values for product_id: {}", product.getId());
                 }
 
+                // Snapshot trang chi tiết sẽ được dựng lại ở lần xem tiếp theo
+                redisCacheUtil.deleteAfterCommit(RedisCacheKey.PRODUCT_DETAIL.key(product.getId()));
+
                 // Trả về DTO
                 ProductUpdateDto result = productUpdateMapper.toProductDTO(product);
                 logger.info("Product updated successfully: id={}", product.getId());
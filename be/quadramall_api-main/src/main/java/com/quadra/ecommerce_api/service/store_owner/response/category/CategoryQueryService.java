@@ -9,14 +9,14 @@ import com.quadra.ecommerce_api.repository.product.ProductRepo;
 import com.quadra.ecommerce_api.repository.product.ProductVariantRepo;
 import com.quadra.ecommerce_api.repository.store.CategoryRepo;
 import com.quadra.ecommerce_api.repository.store.StoreRepo;
+import com.quadra.ecommerce_api.service.base.TaxonomySnapshotService;
+import com.quadra.ecommerce_api.service.base.TaxonomyTree;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,18 +26,21 @@ public class CategoryQueryService {
     private final StoreRepo storeRepo;
     private final ProductRepo productRepo;
     private final ProductVariantRepo productVariantRepo;
+    private final TaxonomySnapshotService taxonomySnapshotService;
 
     @Autowired
     public CategoryQueryService(
             CategoryRepo categoryRepo,
             StoreRepo storeRepo,
             ProductRepo productRepo,
-            ProductVariantRepo productVariantRepo
+            ProductVariantRepo productVariantRepo,
+            TaxonomySnapshotService taxonomySnapshotService
     ) {
         this.categoryRepo = categoryRepo;
         this.storeRepo = storeRepo;
         this.productRepo = productRepo;
         this.productVariantRepo = productVariantRepo;
+        this.taxonomySnapshotService = taxonomySnapshotService;
     }
 
     public List<CategoryDto> getCategoryTreeByStoreId(Long storeId) {
@@ -45,29 +48,14 @@ public class CategoryQueryService {
             throw new EntityNotFoundException("Cửa hàng với ID " + storeId + " không tồn tại");
         }
 
-        List<Category> categories = categoryRepo.findByStoreId(storeId);
-        Long totalCategories = categoryRepo.countByStoreId(storeId);
+        TaxonomyTree<TaxonomySnapshotService.CategoryNode> tree = taxonomySnapshotService.storeCategories(storeId);
+        Long totalCategories = (long) tree.size();
         Long totalProducts = productRepo.countByStoreIdAndIsActiveTrue(storeId);
         Long totalProductsWithCategory = categoryRepo.countProductsWithCategoryByStoreId(storeId);
 
-        List<CategoryDto> categoryDtos = categories.stream()
-                .map(this::convertToCategoryDto)
-                .collect(Collectors.toList());
-
-        Map<Long, CategoryDto> categoryMap = categoryDtos.stream()
-                .collect(Collectors.toMap(CategoryDto::getId, dto -> dto));
-
-        List<CategoryDto> rootCategories = new ArrayList<>();
-        for (CategoryDto dto : categoryDtos) {
-            if (dto.getParentId() == null) {
-                rootCategories.add(dto);
-            } else {
-                CategoryDto parent = categoryMap.get(dto.getParentId());
-                if (parent != null) {
-                    parent.getChildren().add(dto);
-                }
-            }
-        }
+        List<CategoryDto> rootCategories = tree.mapTree(
+                node -> new CategoryDto(node.id(), node.name(), node.slug(), node.description(), node.parentId()),
+                (parent, child) -> parent.getChildren().add(child));
 
         rootCategories.forEach(dto -> {
             dto.setTotalCategories(totalCategories);
@@ -104,16 +92,6 @@ public class CategoryQueryService {
         return dto;
     }
 
-    private CategoryDto convertToCategoryDto(Category category) {
-        return new CategoryDto(
-                category.getId(),
-                category.getName(),
-                category.getSlug(),
-                category.getDescription(),
-                category.getParent() != null ? category.getParent().getId() : null
-        );
-    }
-
     private ProductDto convertToProductDto(Product product) {
         return new ProductDto(
                 product.getId(),
@@ -9,18 +9,17 @@ import com.quadra.ecommerce_api.entity.store.Store;
 import com.quadra.ecommerce_api.repository.product.ProductRepo;
 import com.quadra.ecommerce_api.repository.store.CategoryRepo;
 import com.quadra.ecommerce_api.repository.store.StoreRepo;
+import com.quadra.ecommerce_api.service.base.TaxonomySnapshotService;
+import com.quadra.ecommerce_api.service.base.TaxonomyTree;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.text.Normalizer;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Service
 public class CategoryService {
@@ -28,12 +27,15 @@ public class CategoryService {
     private final CategoryRepo categoryRepo;
     private final StoreRepo storeRepo;
     private final ProductRepo productRepo;
+    private final TaxonomySnapshotService taxonomySnapshotService;
 
     @Autowired
-    public CategoryService(CategoryRepo categoryRepo, StoreRepo storeRepo, ProductRepo productRepo) {
+    public CategoryService(CategoryRepo categoryRepo, StoreRepo storeRepo, ProductRepo productRepo,
+                           TaxonomySnapshotService taxonomySnapshotService) {
         this.categoryRepo = categoryRepo;
         this.storeRepo = storeRepo;
         this.productRepo = productRepo;
+        this.taxonomySnapshotService = taxonomySnapshotService;
     }
 
     private String generateBaseSlug(String name) {
@@ -65,46 +67,22 @@ public class CategoryService {
             throw new EntityNotFoundException("Cửa hàng với ID " + storeId + " không tồn tại");
         }
 
-        // Lấy tất cả danh mục theo storeId
-        List<Category> categories = categoryRepo.findByStoreId(storeId);
+        // Cây danh mục lấy từ ảnh chụp, không truy vấn lại bảng categories
+        TaxonomyTree<TaxonomySnapshotService.CategoryNode> tree = taxonomySnapshotService.storeCategories(storeId);
 
         // Tính toán số liệu tổng hợp
-        Long totalCategories = categoryRepo.countByStoreId(storeId);
+        Long totalCategories = (long) tree.size();
         Long totalProducts = productRepo.countByStoreIdAndIsActiveTrue(storeId);
         Long totalProductsWithCategory = categoryRepo.countProductsWithCategoryByStoreId(storeId);
 
-        // Chuyển đổi sang DTO
-        List<CategoryDto> categoryDtos = categories.stream()
-                .map(category -> {
-                    CategoryDto dto = convertToDto(category);
-                    // Gán số liệu tổng hợp cho mỗi DTO
-                    dto.setTotalCategories(totalCategories);
-                    dto.setTotalProducts(totalProducts);
-                    dto.setTotalProductsWithCategory(totalProductsWithCategory);
-                    return dto;
-                })
-                .collect(Collectors.toList());
-
-        // Tạo map để tra cứu nhanh theo ID
-        Map<Long, CategoryDto> categoryMap = categoryDtos.stream()
-                .collect(Collectors.toMap(CategoryDto::getId, dto -> dto));
-
-        // Danh sách chứa các danh mục gốc (root)
-        List<CategoryDto> rootCategories = new ArrayList<>();
-
-        // Phân loại danh mục thành cây
-        for (CategoryDto dto : categoryDtos) {
-            if (dto.getParentId() == null) {
-                rootCategories.add(dto);
-            } else {
-                CategoryDto parent = categoryMap.get(dto.getParentId());
-                if (parent != null) {
-                    parent.getChildren().add(dto);
-                }
-            }
-        }
-
-        return rootCategories;
+        // Chuyển đổi sang DTO phân cấp, gán số liệu tổng hợp cho mỗi DTO
+        return tree.mapTree(node -> {
+            CategoryDto dto = new CategoryDto(node.id(), node.name(), node.slug(), node.description(), node.parentId());
+            dto.setTotalCategories(totalCategories);
+            dto.setTotalProducts(totalProducts);
+            dto.setTotalProductsWithCategory(totalProductsWithCategory);
+            return dto;
+        }, (parent, child) -> parent.getChildren().add(child));
     }
 
 
@@ -157,6 +135,7 @@ public class CategoryService {
         }
         category.setSlug(finalSlug);
         category = categoryRepo.save(category);
+        taxonomySnapshotService.storeCategoriesChanged(requestDto.getStoreId());
 
         // Trả về DTO
         return convertToDto(category);
@@ -209,6 +188,7 @@ public class CategoryService {
 
         // Lưu danh mục
         category = categoryRepo.save(category);
+        taxonomySnapshotService.storeCategoriesChanged(category.getStore().getId());
 
         // Trả về DTO
         return convertToDto(category);
@@ -228,6 +208,7 @@ public class CategoryService {
 
         // Xóa danh mục
         categoryRepo.delete(category);
+        taxonomySnapshotService.storeCategoriesChanged(category.getStore().getId());
     }
 
     private CategoryDto convertToDto(Category category) {
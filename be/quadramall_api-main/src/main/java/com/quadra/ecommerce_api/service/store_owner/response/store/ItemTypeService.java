@@ -3,6 +3,7 @@ package com.quadra.ecommerce_api.service.store_owner.response.store;
 import com.quadra.ecommerce_api.dto.store_owner.response.store.ItemTypeDTO;
 import com.quadra.ecommerce_api.entity.store.ItemType;
 import com.quadra.ecommerce_api.repository.store.ItemTypeRepo;
+import com.quadra.ecommerce_api.service.base.TaxonomySnapshotService;
 import org.springframework.stereotype.Service;
 
 import java.text.Normalizer;
@@ -17,9 +18,11 @@ import java.util.stream.Collectors;
 public class ItemTypeService {
 
     protected final ItemTypeRepo itemTypeRepository;
+    private final TaxonomySnapshotService taxonomySnapshotService;
 
-    public ItemTypeService(ItemTypeRepo itemTypeRepository) {
+    public ItemTypeService(ItemTypeRepo itemTypeRepository, TaxonomySnapshotService taxonomySnapshotService) {
         this.itemTypeRepository = itemTypeRepository;
+        this.taxonomySnapshotService = taxonomySnapshotService;
     }
 
     // Tạo slug từ tên: chuẩn hóa tên, loại bỏ dấu và thay khoảng trắng bằng dấu gạch ngang
@@ -119,6 +122,7 @@ public class ItemTypeService {
         }
         savedItemType.setSlug(finalSlug);
         savedItemType = itemTypeRepository.save(savedItemType);
+        taxonomySnapshotService.itemTypesChanged();
 
         return convertToDTO(savedItemType, new HashMap<>());
     }
@@ -157,6 +161,7 @@ public class ItemTypeService {
 
         // Lưu ItemType đã cập nhật
         ItemType updatedItemType = itemTypeRepository.save(itemType);
+        taxonomySnapshotService.itemTypesChanged();
         return convertToDTO(updatedItemType, new HashMap<>());
     }
 
@@ -196,18 +201,9 @@ public class ItemTypeService {
                 .collect(Collectors.toList());
     }
 
+    // rootId và mọi loại hàng con cháu (kể cả đã ẩn), lấy từ ảnh chụp cây loại hàng (danh sách chỉ đọc)
     public List<Long> getAllChildItemTypeIds(Long rootId) {
-        List<Long> result = new ArrayList<>();
-        collectItemTypeIds(rootId, result);
-        return result;
-    }
-
-    private void collectItemTypeIds(Long parentId, List<Long> result) {
-        result.add(parentId);
-        List<ItemType> children = itemTypeRepository.findByParentId(parentId);
-        for (ItemType child : children) {
-            collectItemTypeIds(child.getId(), result);
-        }
+        return taxonomySnapshotService.itemTypes().descendantIds(rootId);
     }
 
 }
\ No newline at end of file
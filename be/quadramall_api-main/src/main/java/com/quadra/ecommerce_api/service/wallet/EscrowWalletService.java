@@ -0,0 +1,175 @@
+package com.quadra.ecommerce_api.service.wallet;
+
+import com.quadra.ecommerce_api.entity.order.Order;
+import com.quadra.ecommerce_api.entity.user.Role;
+import com.quadra.ecommerce_api.entity.user.User;
+import com.quadra.ecommerce_api.entity.wallet.Wallet;
+import com.quadra.ecommerce_api.entity.wallet.WalletShard;
+import com.quadra.ecommerce_api.exception.ExCustom;
+import com.quadra.ecommerce_api.repository.order.OrderRepo;
+import com.quadra.ecommerce_api.repository.user.RoleRepo;
+import com.quadra.ecommerce_api.repository.wallet.WalletRepo;
+import com.quadra.ecommerce_api.repository.wallet.WalletShardRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ví ký quỹ của admin được chia thành nhiều shard (wallet_shards) để các giao dịch thanh toán
+ * không cùng chờ khoá 1 dòng wallets. Shard của đơn (orderId % shardCount) được lưu vào orders.escrow_shard_index
+ * lúc nhận tiền, hoàn tiền / chuyển cho shop đọc lại shard đó nên không bị lệch shard khi đổi shard-count.
+ */
+@Service
+@Slf4j
+public class EscrowWalletService {
+
+    private final WalletRepo walletRepo;
+    private final WalletShardRepo walletShardRepo;
+    private final RoleRepo roleRepo;
+    private final OrderRepo orderRepo;
+    private final TransactionTemplate requiresNewTemplate;
+    private final int shardCount;
+
+    // Cache theo tiến trình, admin không đổi trong lúc chạy
+    private volatile Long adminUserId;
+    private volatile Long adminWalletId;
+    private volatile boolean shardsReady;
+
+    public EscrowWalletService(
+            WalletRepo walletRepo,
+            WalletShardRepo walletShardRepo,
+            RoleRepo roleRepo,
+            OrderRepo orderRepo,
+            PlatformTransactionManager transactionManager,
+            @Value("${wallet.escrow.shard-count:16}") int shardCount) {
+        this.walletRepo = walletRepo;
+        this.walletShardRepo = walletShardRepo;
+        this.roleRepo = roleRepo;
+        this.orderRepo = orderRepo;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.shardCount = Math.max(1, shardCount);
+    }
+
+    /**
+     * Lấy userID của admin dựa trên vai trò ADMIN (chỉ truy vấn lần đầu)
+     */
+    public Long getAdminUserId() {
+        Long cached = adminUserId;
+        if (cached != null) return cached;
+
+        Role adminRole = roleRepo.findByName("ROLE_ADMIN")
+                .orElseThrow(() -> new ExCustom(HttpStatus.NOT_FOUND, "Role ADMIN not found"));
+        Set<User> adminUsers = adminRole.getUsers();
+        if (adminUsers.isEmpty()) {
+            throw new ExCustom(HttpStatus.NOT_FOUND, "No users found with ADMIN role");
+        }
+        adminUserId = adminUsers.iterator().next().getId();
+        return adminUserId;
+    }
+
+    /**
+     * Tham chiếu tới ví admin (không SELECT), dùng làm khoá ngoại cho WalletTransaction
+     */
+    public Wallet getAdminWallet() {
+        return walletRepo.getReferenceById(getAdminWalletId());
+    }
+
+    /**
+     * Nhận tiền của đơn vào 1 shard và lưu shard đó vào đơn hàng
+     */
+    public void holdForOrder(Order order, BigDecimal amount) {
+        int shardIndex = order.getEscrowShardIndex() != null
+                ? order.getEscrowShardIndex()
+                : shardIndexOf(order.getId());
+        if (order.getEscrowShardIndex() == null) {
+            orderRepo.assignEscrowShardIndex(order.getId(), shardIndex);
+            order.setEscrowShardIndex(shardIndex);
+        }
+        addToShard(order.getId(), shardIndex, amount);
+    }
+
+    /**
+     * Trừ tiền của đơn (chuyển cho shop / hoàn tiền) khỏi đúng shard đã nhận tiền
+     */
+    public void releaseForOrder(Order order, BigDecimal amount) {
+        Integer shardIndex = order.getEscrowShardIndex();
+        if (shardIndex == null) {
+            // Đơn nhận tiền trước khi có cột escrow_shard_index
+            shardIndex = shardIndexOf(order.getId());
+        }
+        addToShard(order.getId(), shardIndex, amount.negate());
+    }
+
+    private void addToShard(Long orderId, int shardIndex, BigDecimal amount) {
+        Long walletId = getAdminWalletId();
+        ensureShards(walletId);
+
+        int updated = walletShardRepo.addToBalance(walletId, shardIndex, amount);
+        if (updated == 0) {
+            throw new ExCustom(HttpStatus.INTERNAL_SERVER_ERROR, "Admin wallet shard " + shardIndex + " not found");
+        }
+
+        log.debug("Escrow shard {} of wallet {} changed by {} for order {}", shardIndex, walletId, amount, orderId);
+    }
+
+    private Long getAdminWalletId() {
+        Long cached = adminWalletId;
+        if (cached != null) return cached;
+
+        Wallet adminWallet = walletRepo.findByUserId(getAdminUserId());
+        if (adminWallet == null) {
+            throw new ExCustom(HttpStatus.INTERNAL_SERVER_ERROR, "Admin wallet not found");
+        }
+        adminWalletId = adminWallet.getId();
+        return adminWalletId;
+    }
+
+    private int shardIndexOf(Long orderId) {
+        return (int) Math.floorMod(orderId, (long) shardCount);
+    }
+
+    /**
+     * Tạo các shard còn thiếu trong transaction riêng để không giữ khoá của giao dịch thanh toán
+     */
+    private void ensureShards(Long walletId) {
+        if (shardsReady) return;
+
+        synchronized (this) {
+            if (shardsReady) return;
+
+            requiresNewTemplate.executeWithoutResult(status -> {
+                Set<Integer> existing = new HashSet<>(walletShardRepo.findShardIndexesByWalletId(walletId));
+                Wallet wallet = walletRepo.getReferenceById(walletId);
+                List<WalletShard> missing = new ArrayList<>();
+                for (int i = 0; i < shardCount; i++) {
+                    if (!existing.contains(i)) {
+                        missing.add(WalletShard.builder().wallet(wallet).shardIndex(i).build());
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    try {
+                        walletShardRepo.saveAllAndFlush(missing);
+                        log.info("Created {} escrow shards for admin wallet {}", missing.size(), walletId);
+                    } catch (DataIntegrityViolationException e) {
+                        // Node khác vừa tạo cùng lúc, unique(wallet_id, shard_index) đảm bảo không trùng
+                        status.setRollbackOnly();
+                        log.info("Escrow shards for wallet {} were created concurrently", walletId);
+                    }
+                }
+            });
+            shardsReady = true;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.quadra.ecommerce_api.dto.base.wallet.WalletTransactionDTO;
 import com.quadra.ecommerce_api.dto.custom.payment.request.DepositRequest;
 import com.quadra.ecommerce_api.dto.custom.payment.response.DepositResponse;
 import com.quadra.ecommerce_api.dto.custom.payment.response.TransactionResult;
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
 import com.quadra.ecommerce_api.dto.custom.wallet.response.TransactionHistory;
 import com.quadra.ecommerce_api.dto.custom.wallet.response.WalletDashboardResponse;
 import com.quadra.ecommerce_api.entity.notification.Notification;
@@ -22,14 +23,17 @@ import com.quadra.ecommerce_api.enums.payment.TransactionStatus;
 import com.quadra.ecommerce_api.enums.payment.TransactionType;
 import com.quadra.ecommerce_api.enums.wallet.WalletTransactionStatus;
 import com.quadra.ecommerce_api.enums.wallet.WalletTransactionType;
+import com.quadra.ecommerce_api.exception.ExCustom;
 import com.quadra.ecommerce_api.exception.payment.VnPayException;
 import com.quadra.ecommerce_api.mapper.base.payment.PaymentTransactionMapper;
 import com.quadra.ecommerce_api.mapper.base.wallet.WalletTransactionMapper;
 import com.quadra.ecommerce_api.repository.order.OrderRepo;
 import com.quadra.ecommerce_api.repository.payment.PaymentTransactionRepo;
 import com.quadra.ecommerce_api.repository.wallet.WalletRepo;
+import com.quadra.ecommerce_api.repository.wallet.WalletShardRepo;
 import com.quadra.ecommerce_api.repository.wallet.WalletTransactionRepo;
 import com.quadra.ecommerce_api.service.notification.NotificationService;
+import com.quadra.ecommerce_api.utils.KeysetCursor;
 import com.quadra.ecommerce_api.utils.payment.ErrorMessageService;
 import com.quadra.ecommerce_api.utils.payment.VNPayUtil;
 import jakarta.transaction.Transactional;
@@ -37,9 +41,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -52,6 +58,7 @@ public class WalletService {
     private final WalletTransactionMapper walletTransactionMapper;
     private final WalletTransactionRepo walletTransactionRepo;
     private final NotificationService notificationService;
+    private final WalletShardRepo walletShardRepo;
 
 
 
@@ -60,6 +67,11 @@ public class WalletService {
         return walletRepo.findByUserId(user.getId());
     }
 
+    // Số dư nằm trong các shard ký quỹ (chỉ ví admin có shard)
+    public BigDecimal getShardBalance(Long walletId) {
+        return walletShardRepo.sumBalanceByWalletId(walletId);
+    }
+
     @Transactional
     public void save(Wallet wallet) {
         walletRepo.save(wallet);
@@ -88,6 +100,50 @@ public class WalletService {
         return walletRepo.findTransactionsByUserIdAndFilters(userId, status, type, startDate, endDate, pageable);
     }
 
+    // Lịch sử giao dịch theo cursor, chỉ đếm tổng khi withTotal = true
+    public CursorPage<TransactionHistory> getTransactionHistory(Long userId, String type, String status,
+                                                                LocalDateTime startDate, LocalDateTime endDate,
+                                                                String cursor, Integer size, boolean withTotal) {
+        int pageSize = KeysetCursor.normalizeSize(size);
+        Wallet wallet = walletRepo.findByUserId(userId);
+        if (wallet == null) {
+            return new CursorPage<>(List.of(), null, false, pageSize, withTotal ? 0L : null);
+        }
+
+        TransactionStatus statusFilter = parseEnum(TransactionStatus.class, status, "Trạng thái giao dịch không hợp lệ");
+        WalletTransactionType typeFilter = parseEnum(WalletTransactionType.class, type, "Loại giao dịch không hợp lệ");
+        KeysetCursor after = KeysetCursor.decode(cursor);
+
+        List<WalletTransaction> rows = walletTransactionRepo.findPageAfterCursor(wallet.getId(), statusFilter, typeFilter,
+                startDate, endDate,
+                after != null ? after.createdAt() : null, after != null ? after.id() : null,
+                KeysetCursor.fetchLimit(pageSize));
+        Long total = withTotal
+                ? walletTransactionRepo.countByFilters(wallet.getId(), statusFilter, typeFilter, startDate, endDate)
+                : null;
+
+        return KeysetCursor.page(rows, pageSize,
+                wt -> new KeysetCursor(wt.getCreatedAt(), wt.getId()),
+                wt -> new TransactionHistory(wt.getId(), wt.getType().name(), wt.getStatus().name(),
+                        wt.getDescription(), wt.getAmount(), lastUpdatedAt(wt)),
+                total);
+    }
+
+    // Giao dịch cũ có thể chưa có updated_at: dùng created_at thay thế
+    private static Timestamp lastUpdatedAt(WalletTransaction wt) {
+        LocalDateTime time = wt.getUpdatedAt() != null ? wt.getUpdatedAt() : wt.getCreatedAt();
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String message) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ExCustom(HttpStatus.BAD_REQUEST, message);
+        }
+    }
+
 
 
     @Transactional
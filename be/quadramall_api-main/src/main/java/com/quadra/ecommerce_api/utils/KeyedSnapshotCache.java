@@ -0,0 +1,132 @@
+package com.quadra.ecommerce_api.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Ảnh chụp chỉ đọc theo từng key (voucher của 1 shop, cây danh mục của 1 shop...), nạp lười từ DB khi được dùng.
+ * Mỗi key được nạp trong ConcurrentHashMap.compute: chỉ 1 luồng nạp 1 key, key khác không phải chờ, và evict
+ * cùng key chờ lần nạp đang chạy xong mới xoá nên ảnh cũ không ghi đè lên thay đổi mới hơn.
+ * Ảnh chụp cũ hơn maxAge được nạp lại ở lần đọc kế tiếp (phòng khi node bỏ lỡ message thay đổi),
+ * vượt maxSize thì bỏ key lâu không được đọc nhất. Thay đổi được báo cho node khác qua Redis pub/sub.
+ */
+@Slf4j
+public final class KeyedSnapshotCache<K, V> {
+
+    private final String channel;
+    private final Function<K, V> loader;
+    private final Function<String, K> keyParser;
+    private final StringRedisTemplate redisTemplate;
+    private final int maxSize;
+    private final long maxAgeNanos;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAtNanos = System.nanoTime();
+        volatile long lastReadNanos = loadedAtNanos;
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param maxAge 0 là không tự nạp lại, chỉ bỏ khi có thay đổi
+     */
+    public KeyedSnapshotCache(String channel,
+                              Function<K, V> loader,
+                              Function<String, K> keyParser,
+                              StringRedisTemplate redisTemplate,
+                              int maxSize,
+                              Duration maxAge) {
+        this.channel = channel;
+        this.loader = loader;
+        this.keyParser = keyParser;
+        this.redisTemplate = redisTemplate;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * Nghe thay đổi từ node khác, gọi 1 lần khi khởi động
+     */
+    public void subscribe(RedisMessageListenerContainer listenerContainer) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                evict(keyParser.apply(body));
+            } catch (Exception e) {
+                log.warn("Invalid snapshot change message on {}: {}", channel, body);
+            }
+        }, new ChannelTopic(channel));
+    }
+
+    public V get(K key) {
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+        if (entry == null || isStale(entry, now)) {
+            entry = entries.compute(key, (k, current) ->
+                    current != null && !isStale(current, System.nanoTime()) ? current : new Entry<>(loader.apply(k)));
+            if (entries.size() > maxSize) evictLeastRecentlyRead(key);
+        }
+        entry.lastReadNanos = now;
+        return entry.value;
+    }
+
+    /**
+     * Dữ liệu của key vừa thay đổi: bỏ ảnh chụp sau khi transaction hiện tại (nếu có) commit và báo các node khác
+     */
+    public void changed(K key) {
+        if (key == null) return;
+        TransactionHooks.afterCommit(() -> {
+            evict(key);
+            publish(key);
+        });
+    }
+
+    public void evict(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean isStale(Entry<V> entry, long now) {
+        return maxAgeNanos > 0 && now - entry.loadedAtNanos > maxAgeNanos;
+    }
+
+    // Chỉ chạy khi vượt maxSize nên quét toàn bộ để tìm key lâu không đọc nhất
+    private void evictLeastRecentlyRead(K keep) {
+        K oldestKey = null;
+        long oldestRead = 0;
+        for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+            if (candidate.getKey().equals(keep)) continue;
+            long lastRead = candidate.getValue().lastReadNanos;
+            if (oldestKey == null || lastRead - oldestRead < 0) {
+                oldestKey = candidate.getKey();
+                oldestRead = lastRead;
+            }
+        }
+        if (oldestKey != null) entries.remove(oldestKey);
+    }
+
+    private void publish(K key) {
+        try {
+            redisTemplate.convertAndSend(channel, String.valueOf(key));
+        } catch (Exception e) {
+            // Node khác sẽ nạp lại khi ảnh chụp quá maxAge
+            log.error("Error publishing snapshot change {} on {}: {}", key, channel, e.getMessage());
+        }
+    }
+}
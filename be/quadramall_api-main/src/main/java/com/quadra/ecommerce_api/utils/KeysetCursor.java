@@ -0,0 +1,69 @@
+package com.quadra.ecommerce_api.utils;
+
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
+import com.quadra.ecommerce_api.exception.ExCustom;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Vị trí (created_at, id) của dòng cuối trang trước, cho các danh sách sắp xếp created_at DESC, id DESC.
+ * Trang kế tiếp lọc "created_at < c OR (created_at = c AND id < i)" trên index (..., created_at)
+ * nên không phải quét rồi bỏ qua OFFSET dòng. Client chỉ thấy chuỗi Base64 URL, không tự tạo cursor.
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * null / rỗng là trang đầu tiên
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new ExCustom(HttpStatus.BAD_REQUEST, "Cursor không hợp lệ");
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int normalizeSize(Integer size) {
+        if (size == null || size <= 0) return DEFAULT_SIZE;
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * Lấy dư 1 dòng để biết còn trang sau hay không, không cần COUNT
+     */
+    public static Pageable fetchLimit(int size) {
+        return PageRequest.of(0, size + 1);
+    }
+
+    /**
+     * Dựng trang từ tối đa size + 1 dòng đã sắp xếp created_at DESC, id DESC
+     */
+    public static <E, T> CursorPage<T> page(List<E> rows, int size, Function<E, KeysetCursor> keyOf,
+                                            Function<E, T> mapper, Long totalElements) {
+        boolean hasNext = rows.size() > size;
+        List<E> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? keyOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(content.stream().map(mapper).toList(), nextCursor, hasNext, size, totalElements);
+    }
+}
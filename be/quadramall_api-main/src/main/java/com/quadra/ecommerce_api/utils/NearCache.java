@@ -0,0 +1,110 @@
+package com.quadra.ecommerce_api.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache L1 trong bộ nhớ của RedisCacheUtil.getOrLoad: giới hạn số phần tử, mỗi phần tử sống
+ * min(TTL của key, maxTtl) để node bỏ lỡ message evict cũng không giữ dữ liệu cũ quá lâu.
+ * Đọc / ghi không khoá (ConcurrentHashMap); vượt maxSize thì 1 luồng dọn phần tử hết hạn rồi bỏ bớt phần tử
+ * lâu không được đọc nhất. Giá trị được dùng chung giữa các request nên phải được coi là chỉ đọc.
+ */
+final class NearCache {
+
+    // Mỗi lần dọn bỏ xuống còn 90% maxSize, để không phải dọn lại ngay ở lần ghi kế tiếp
+    private static final double TRIM_RATIO = 0.9;
+
+    private final int maxSize;
+    private final long maxTtlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Tăng mỗi lần evict, để không ghi vào L1 giá trị đã nạp trước khi evict xảy ra
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    private static final class Entry {
+        final Object value;
+        final long expiresAt;
+        volatile long lastReadAt;
+
+        Entry(Object value, long expiresAt, long now) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.lastReadAt = now;
+        }
+    }
+
+    private record Candidate(String key, Entry entry, long lastReadAt) {
+    }
+
+    NearCache(int maxSize, Duration maxTtl) {
+        this.maxSize = Math.max(1, maxSize);
+        this.maxTtlMillis = maxTtl.toMillis();
+    }
+
+    Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        long now = System.currentTimeMillis();
+        if (entry.expiresAt <= now) {
+            entries.remove(key, entry);
+            return null;
+        }
+        entry.lastReadAt = now;
+        return entry.value;
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Ghi giá trị đã nạp khi bắt đầu ở loadedGeneration, bỏ qua nếu từ đó tới giờ đã có evict
+     */
+    void put(String key, Object value, Duration ttl, long loadedGeneration) {
+        if (maxTtlMillis <= 0 || loadedGeneration != generation.get()) return;
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(value, now + Math.min(ttl.toMillis(), maxTtlMillis), now);
+        entries.put(key, entry);
+        // Evict chen vào giữa lần kiểm tra ở trên và put: tự gỡ giá trị vừa ghi
+        if (loadedGeneration != generation.get()) {
+            entries.remove(key, entry);
+            return;
+        }
+        if (entries.size() > maxSize) trim(now);
+    }
+
+    void evict(String key) {
+        generation.incrementAndGet();
+        entries.remove(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void trim(long now) {
+        if (!trimming.compareAndSet(false, true)) return;
+        try {
+            entries.entrySet().removeIf(e -> e.getValue().expiresAt <= now);
+            int excess = entries.size() - (int) (maxSize * TRIM_RATIO);
+            if (excess <= 0) return;
+
+            // Chụp lastReadAt trước khi sắp xếp, vì luồng đọc vẫn cập nhật nó trong lúc dọn
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, entry) -> candidates.add(new Candidate(key, entry, entry.lastReadAt)));
+            candidates.sort(Comparator.comparingLong(Candidate::lastReadAt));
+            for (int i = 0; i < excess && i < candidates.size(); i++) {
+                Candidate candidate = candidates.get(i);
+                entries.remove(candidate.key(), candidate.entry());
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+}
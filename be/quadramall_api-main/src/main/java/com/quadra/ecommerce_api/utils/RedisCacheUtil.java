@@ -2,21 +2,50 @@ package com.quadra.ecommerce_api.utils;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quadra.ecommerce_api.enums.redis.RedisCacheKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * RedisCacheUtil: tiện ích dùng để đọc/ghi dữ liệu cache từ Redis
  * Hỗ trợ Object (JSON), Long, Double
+ * getOrLoad thêm 1 tầng L1 trong bộ nhớ (NearCache) phía trước Redis, mỗi key chỉ 1 thread nạp lại khi miss,
+ * evict được phát qua Redis pub/sub để L1 của mọi node cùng xoá.
  */
 @Component
+@Slf4j
 public class RedisCacheUtil {
 
+    private static final String NEAR_EVICT_CHANNEL = "cache:near:evict";
+
     private final ObjectMapper objectMapper;
 
     private final RedisTemplate<String, Object> objectRedis;
@@ -25,17 +54,178 @@ public class RedisCacheUtil {
 
     private final RedisTemplate<String, Double> doubleRedis;
 
+    private final StringRedisTemplate stringRedis;
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final NearCache nearCache;
+
+    // Key đang được nạp: các thread khác chờ chung 1 kết quả thay vì cùng truy vấn DB
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<RedisCacheKey, CacheMetrics> metrics = new EnumMap<>(RedisCacheKey.class);
+
+    private record CacheMetrics(Counter l1Hits, Counter l2Hits, Counter misses, Timer load) {
+    }
+
     @Autowired
     public RedisCacheUtil(
             ObjectMapper objectMapper,
             @Qualifier("objectRedisTemplate") RedisTemplate<String, Object> objectRedis,
             @Qualifier("longRedisTemplate") RedisTemplate<String, Long> longRedis,
-            @Qualifier("doubleRedisTemplate") RedisTemplate<String, Double> doubleRedis
+            @Qualifier("doubleRedisTemplate") RedisTemplate<String, Double> doubleRedis,
+            StringRedisTemplate stringRedis,
+            RedisMessageListenerContainer listenerContainer,
+            MeterRegistry meterRegistry,
+            @Value("${cache.near.max-size:5000}") int nearMaxSize,
+            @Value("${cache.near.ttl-seconds:30}") long nearTtlSeconds
     ) {
         this.objectMapper = objectMapper;
         this.objectRedis = objectRedis;
         this.longRedis = longRedis;
         this.doubleRedis = doubleRedis;
+        this.stringRedis = stringRedis;
+        this.listenerContainer = listenerContainer;
+        this.nearCache = new NearCache(nearMaxSize, Duration.ofSeconds(nearTtlSeconds));
+
+        meterRegistry.gauge("cache.near.size", nearCache, NearCache::size);
+        for (RedisCacheKey cacheKey : RedisCacheKey.values()) {
+            String name = cacheKey.name();
+            metrics.put(cacheKey, new CacheMetrics(
+                    meterRegistry.counter("cache.requests", "key", name, "result", "l1_hit"),
+                    meterRegistry.counter("cache.requests", "key", name, "result", "l2_hit"),
+                    meterRegistry.counter("cache.requests", "key", name, "result", "miss"),
+                    meterRegistry.timer("cache.load", "key", name)));
+        }
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> nearCache.evict(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(NEAR_EVICT_CHANNEL));
+    }
+
+    // ======================== Near cache ========================= //
+
+    /**
+     * Lấy giá trị của key theo thứ tự L1 → Redis → loader; giá trị nạp được ghi lại vào Redis và L1.
+     * Loader trả null thì không cache gì. Giá trị trả về có thể dùng chung giữa các request, không được sửa.
+     */
+    public <T> T getOrLoad(RedisCacheKey cacheKey, Object[] args, TypeReference<T> typeRef, Supplier<T> loader) {
+        return getOrLoad(cacheKey, args, raw -> objectMapper.convertValue(raw, typeRef), loader);
+    }
+
+    public <T> T getOrLoad(RedisCacheKey cacheKey, Object[] args, Class<T> clazz, Supplier<T> loader) {
+        return getOrLoad(cacheKey, args, raw -> objectMapper.convertValue(raw, clazz), loader);
+    }
+
+    /**
+     * getOrLoad cho key tĩnh (không có tham số)
+     */
+    public <T> T getOrLoad(RedisCacheKey cacheKey, TypeReference<T> typeRef, Supplier<T> loader) {
+        return getOrLoad(cacheKey, new Object[0], typeRef, loader);
+    }
+
+    public <T> T getOrLoad(RedisCacheKey cacheKey, Class<T> clazz, Supplier<T> loader) {
+        return getOrLoad(cacheKey, new Object[0], clazz, loader);
+    }
+
+    /**
+     * Xoá key khỏi Redis và L1 của mọi node
+     */
+    public void evict(RedisCacheKey cacheKey, Object... args) {
+        evictEverywhere(cacheKey.key(args));
+    }
+
+    /**
+     * Như evict nhưng chỉ chạy sau khi transaction hiện tại commit (chạy ngay nếu không có transaction)
+     */
+    public void evictAfterCommit(RedisCacheKey cacheKey, Object... args) {
+        String key = cacheKey.key(args);
+        TransactionHooks.afterCommit(() -> evictEverywhere(key));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getOrLoad(RedisCacheKey cacheKey, Object[] args, Function<Object, T> converter, Supplier<T> loader) {
+        String key = cacheKey.key(args);
+        CacheMetrics keyMetrics = metrics.get(cacheKey);
+
+        Object local = nearCache.get(key);
+        if (local != null) {
+            keyMetrics.l1Hits().increment();
+            return (T) local;
+        }
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return (T) await(running);
+        }
+
+        try {
+            T value = loadThrough(cacheKey, key, converter, loader, keyMetrics);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private <T> T loadThrough(RedisCacheKey cacheKey, String key, Function<Object, T> converter,
+                              Supplier<T> loader, CacheMetrics keyMetrics) {
+        long generation = nearCache.generation();
+
+        T value = null;
+        try {
+            Object raw = objectRedis.opsForValue().get(key);
+            if (raw != null) {
+                value = converter.apply(raw);
+            }
+        } catch (Exception e) {
+            // Redis lỗi thì vẫn nạp từ DB
+            log.error("Error reading cache key {}: {}", key, e.getMessage());
+        }
+
+        if (value != null) {
+            keyMetrics.l2Hits().increment();
+        } else {
+            keyMetrics.misses().increment();
+            value = keyMetrics.load().record(loader);
+            if (value == null) return null;
+
+            try {
+                objectRedis.opsForValue().set(key, value, cacheKey.ttl());
+            } catch (Exception e) {
+                log.error("Error writing cache key {}: {}", key, e.getMessage());
+            }
+        }
+
+        nearCache.put(key, value, cacheKey.ttl(), generation);
+        return value;
+    }
+
+    private Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void evictEverywhere(String key) {
+        objectRedis.delete(key);
+        nearCache.evict(key);
+        try {
+            stringRedis.convertAndSend(NEAR_EVICT_CHANNEL, key);
+        } catch (Exception e) {
+            // L1 của node khác sẽ tự hết hạn theo cache.near.ttl-seconds
+            log.error("Error publishing near cache evict for {}: {}", key, e.getMessage());
+        }
     }
 
     // ======================== Object / JSON ========================= //
@@ -97,6 +287,20 @@ public class RedisCacheUtil {
         return longRedis.opsForValue().increment(key);
     }
 
+    /**
+     * Lấy nhiều giá trị Long trong 1 lệnh MGET, kết quả cùng thứ tự với keys (null nếu không có)
+     */
+    public List<Long> multiGetLong(List<String> keys) {
+        return multiGet(longRedis, keys);
+    }
+
+    /**
+     * Ghi nhiều giá trị Long kèm TTL trong 1 pipeline
+     */
+    public void multiSetLong(Map<String, Long> values, Duration ttl) {
+        multiSet(longRedis, values, ttl);
+    }
+
     /**
      * Xoá key long
      */
@@ -127,6 +331,20 @@ public class RedisCacheUtil {
         return doubleRedis.opsForValue().increment(key, step);
     }
 
+    /**
+     * Lấy nhiều giá trị Double trong 1 lệnh MGET, kết quả cùng thứ tự với keys (null nếu không có)
+     */
+    public List<Double> multiGetDouble(List<String> keys) {
+        return multiGet(doubleRedis, keys);
+    }
+
+    /**
+     * Ghi nhiều giá trị Double kèm TTL trong 1 pipeline
+     */
+    public void multiSetDouble(Map<String, Double> values, Duration ttl) {
+        multiSet(doubleRedis, values, ttl);
+    }
+
     /**
      * Xoá key double
      */
@@ -145,11 +363,46 @@ public class RedisCacheUtil {
     }
 
     public void delete(String key) {
-        deleteObject(key);
         deleteLong(key);
         deleteDouble(key);
+        evictEverywhere(key);
     }
 
-}
+    /**
+     * Xoá key sau khi transaction hiện tại commit (xoá ngay nếu không có transaction),
+     * tránh request khác nạp lại dữ liệu cũ vào cache trước khi thay đổi được ghi xuống DB
+     */
+    public void deleteAfterCommit(String key) {
+        TransactionHooks.afterCommit(() -> evictEverywhere(key));
+    }
+
+    // ======================== Batch ========================= //
 
+    private <V> List<V> multiGet(RedisTemplate<String, V> template, List<String> keys) {
+        if (keys.isEmpty()) return Collections.emptyList();
 
+        List<V> values = template.opsForValue().multiGet(keys);
+        if (values != null) return values;
+
+        // multiGet trả về null khi chạy trong pipeline/transaction
+        return new ArrayList<>(Collections.nCopies(keys.size(), null));
+    }
+
+    /**
+     * MSET không hỗ trợ TTL nên dùng pipeline SET EX: 1 round-trip cho cả lô
+     */
+    private <V> void multiSet(RedisTemplate<String, V> template, Map<String, V> values, Duration ttl) {
+        if (values.isEmpty()) return;
+
+        template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, HV> Object execute(RedisOperations<K, HV> operations) throws DataAccessException {
+                RedisOperations<String, V> ops = (RedisOperations<String, V>) operations;
+                values.forEach((key, value) -> ops.opsForValue().set(key, value, ttl));
+                return null;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.quadra.ecommerce_api.service.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaxonomyTreeTest {
+
+    private record Node(Long id, Long parentId) {
+    }
+
+    private static final class Dto {
+        final Long id;
+        final List<Dto> children = new ArrayList<>();
+
+        Dto(Long id) {
+            this.id = id;
+        }
+    }
+
+    private static TaxonomyTree<Node> tree(Node... nodes) {
+        return TaxonomyTree.of(1, List.of(nodes), Node::id, Node::parentId);
+    }
+
+    @Test
+    void subtreesAreContiguousInPreorder() {
+        TaxonomyTree<Node> tree = tree(new Node(3L, 1L), new Node(1L, null), new Node(4L, 2L), new Node(2L, 1L));
+
+        assertThat(tree.rootIds()).containsExactly(1L);
+        assertThat(tree.descendantIds(1L)).containsExactly(1L, 2L, 4L, 3L);
+        assertThat(tree.descendantIds(2L)).containsExactly(2L, 4L);
+        assertThat(tree.childIds(1L)).containsExactly(2L, 3L);
+        assertThat(tree.ancestorIds(4L)).containsExactly(1L, 2L, 4L);
+        assertThat(tree.isInSubtree(2L, 4L)).isTrue();
+        assertThat(tree.isInSubtree(2L, 3L)).isFalse();
+    }
+
+    @Test
+    void unknownIdExpandsToItself() {
+        TaxonomyTree<Node> tree = tree(new Node(1L, null));
+
+        assertThat(tree.descendantIds(99L)).containsExactly(99L);
+        assertThat(tree.ancestorIds(99L)).isEmpty();
+    }
+
+    @Test
+    void orphanIsItsOwnSubtreeButNotARoot() {
+        TaxonomyTree<Node> tree = tree(new Node(1L, null), new Node(5L, 42L), new Node(6L, 5L));
+
+        assertThat(tree.rootIds()).containsExactly(1L);
+        assertThat(tree.contains(5L)).isTrue();
+        assertThat(tree.descendantIds(5L)).containsExactly(5L, 6L);
+        assertThat(tree.ancestorIds(6L)).containsExactly(5L, 6L);
+
+        List<Dto> roots = tree.mapTree(node -> new Dto(node.id()), (parent, child) -> parent.children.add(child));
+        assertThat(roots).extracting(dto -> dto.id).containsExactly(1L);
+        assertThat(roots.get(0).children).isEmpty();
+    }
+
+    @Test
+    void cycleNodesAreWalkedOnce() {
+        TaxonomyTree<Node> tree = tree(new Node(1L, null), new Node(7L, 8L), new Node(8L, 7L), new Node(9L, 9L));
+
+        assertThat(tree.size()).isEqualTo(4);
+        assertThat(tree.rootIds()).containsExactly(1L);
+        assertThat(tree.descendantIds(7L)).containsExactly(7L, 8L);
+        assertThat(tree.descendantIds(9L)).containsExactly(9L);
+        assertThat(tree.descendantIds(1L)).containsExactly(1L);
+        assertThat(tree.ancestorIds(8L)).containsExactly(7L, 8L);
+        assertThat(tree.isInSubtree(7L, 8L)).isTrue();
+    }
+}
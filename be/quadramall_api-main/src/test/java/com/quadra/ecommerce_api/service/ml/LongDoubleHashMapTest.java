@@ -0,0 +1,91 @@
+package com.quadra.ecommerce_api.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongDoubleHashMapTest {
+
+    @Test
+    void addToKeepsValuesAcrossRehash() {
+        LongDoubleHashMap map = new LongDoubleHashMap(2);
+        for (long key = 1; key <= 1000; key++) {
+            map.addTo(key, key);
+        }
+        for (long key = 1; key <= 1000; key++) {
+            assertThat(map.addTo(key, 0.5)).isEqualTo(key + 0.5);
+        }
+
+        assertThat(map.size()).isEqualTo(1000);
+        assertThat(contents(map)).hasSize(1000).containsEntry(1L, 1.5).containsEntry(1000L, 1000.5);
+    }
+
+    @Test
+    void topKReturnsLargestValuesInDescendingOrder() {
+        LongDoubleHashMap map = new LongDoubleHashMap(8);
+        map.addTo(10, 3.0);
+        map.addTo(20, 9.0);
+        map.addTo(30, 1.0);
+        map.addTo(40, 7.0);
+        map.addTo(50, 5.0);
+
+        long[] keys = new long[3];
+        double[] values = new double[3];
+        int count = map.topK(3, keys, values);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(keys).containsExactly(20, 40, 50);
+        assertThat(values).containsExactly(9.0, 7.0, 5.0);
+    }
+
+    @Test
+    void topKReturnsEverythingWhenKExceedsSize() {
+        LongDoubleHashMap map = new LongDoubleHashMap(4);
+        map.addTo(1, 2.0);
+        map.addTo(2, 4.0);
+
+        long[] keys = new long[5];
+        double[] values = new double[5];
+        int count = map.topK(5, keys, values);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(keys[0]).isEqualTo(2);
+        assertThat(keys[1]).isEqualTo(1);
+    }
+
+    @Test
+    void retainTopDropsSmallestEntries() {
+        LongDoubleHashMap map = new LongDoubleHashMap(16);
+        for (long key = 1; key <= 10; key++) {
+            map.addTo(key, key * 10);
+        }
+
+        map.retainTop(3);
+
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(contents(map)).containsOnly(Map.entry(8L, 80.0), Map.entry(9L, 90.0), Map.entry(10L, 100.0));
+        // Khoá đã bị bỏ được thêm lại từ 0
+        assertThat(map.addTo(1, 1.0)).isEqualTo(1.0);
+        assertThat(map.size()).isEqualTo(4);
+    }
+
+    @Test
+    void retainTopIsNoOpWhenRowIsShortEnough() {
+        LongDoubleHashMap map = new LongDoubleHashMap(4);
+        map.addTo(1, 1.0);
+        map.addTo(2, 2.0);
+
+        map.retainTop(5);
+
+        assertThat(contents(map)).containsOnly(Map.entry(1L, 1.0), Map.entry(2L, 2.0));
+    }
+
+    private static Map<Long, Double> contents(LongDoubleHashMap map) {
+        Map<Long, Double> result = new HashMap<>();
+        map.forEach(result::put);
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package com.quadra.ecommerce_api.utils;
+
+import com.quadra.ecommerce_api.dto.custom.common.CursorPage;
+import com.quadra.ecommerce_api.exception.ExCustom;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    private record Row(LocalDateTime createdAt, Long id) {
+    }
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        KeysetCursor withNanos = new KeysetCursor(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_456_789), 42L);
+        KeysetCursor wholeMinute = new KeysetCursor(LocalDateTime.of(2024, 5, 1, 10, 15), 7L);
+
+        assertThat(KeysetCursor.decode(withNanos.encode())).isEqualTo(withNanos);
+        assertThat(KeysetCursor.decode(wholeMinute.encode())).isEqualTo(wholeMinute);
+    }
+
+    @Test
+    void blankCursorIsFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode(" ")).isNull();
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not-a-cursor")).isInstanceOf(ExCustom.class);
+    }
+
+    @Test
+    void pagesWalkRowsWithEqualCreatedAtExactlyOnce() {
+        LocalDateTime t1 = LocalDateTime.of(2024, 1, 1, 9, 0);
+        LocalDateTime t2 = t1.plusMinutes(1);
+        List<Row> rows = new ArrayList<>(List.of(
+                new Row(t2, 5L), new Row(t1, 1L), new Row(t2, 9L), new Row(t1, 4L),
+                new Row(t1, 3L), new Row(t2, 6L), new Row(t1, 2L)));
+        rows.sort(Comparator.comparing(Row::createdAt).thenComparing(Row::id).reversed());
+
+        List<Long> seen = new ArrayList<>();
+        KeysetCursor after = null;
+        int pages = 0;
+        while (true) {
+            CursorPage<Long> page = KeysetCursor.page(fetch(rows, after, 2), 2,
+                    row -> new KeysetCursor(row.createdAt(), row.id()), Row::id, null);
+            seen.addAll(page.getContent());
+            pages++;
+            if (!page.isHasNext()) break;
+            after = KeysetCursor.decode(page.getNextCursor());
+        }
+
+        assertThat(seen).containsExactly(9L, 6L, 5L, 4L, 3L, 2L, 1L);
+        assertThat(pages).isEqualTo(4);
+    }
+
+    @Test
+    void normalizeSizeClampsToLimits() {
+        assertThat(KeysetCursor.normalizeSize(null)).isEqualTo(KeysetCursor.DEFAULT_SIZE);
+        assertThat(KeysetCursor.normalizeSize(0)).isEqualTo(KeysetCursor.DEFAULT_SIZE);
+        assertThat(KeysetCursor.normalizeSize(1000)).isEqualTo(KeysetCursor.MAX_SIZE);
+        assertThat(KeysetCursor.normalizeSize(5)).isEqualTo(5);
+    }
+
+    // Cùng điều kiện với các truy vấn keyset: created_at < c OR (created_at = c AND id < i), lấy size + 1 dòng
+    private static List<Row> fetch(List<Row> sorted, KeysetCursor after, int size) {
+        return sorted.stream()
+                .filter(row -> after == null
+                        || row.createdAt().isBefore(after.createdAt())
+                        || (row.createdAt().isEqual(after.createdAt()) && row.id() < after.id()))
+                .limit(KeysetCursor.fetchLimit(size).getPageSize())
+                .toList();
+    }
+}
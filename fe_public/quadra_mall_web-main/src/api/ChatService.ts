@@ -34,7 +34,7 @@ export class ChatService {
       console.log(`WebSocket connected for user ${userId}`);
 
       // Subscribe tin nhắn cá nhân
-      this.stompClient!.subscribe(`/user/${userId}/queue/messages`, (message) => {
+      this.stompClient!.subscribe('/user/queue/messages', (message) => {
         if (this.onMessageReceived) {
           this.onMessageReceived(JSON.parse(message.body) as ChatMessage);
         }
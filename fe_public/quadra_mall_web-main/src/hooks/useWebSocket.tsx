@@ -83,7 +83,7 @@ export const useWebSocket = () => {
         console.log('WebSocket Connected for user:', user.email);
         reconnectAttempts.current = 0;
 
-        client.subscribe(`/user/${user.email}/queue/notifications`, (msg) => {
+        client.subscribe('/user/queue/notifications', (msg) => {
           try {
             const rawNoti: any = JSON.parse(msg.body);
             const noti: Notification = {
@@ -128,6 +128,11 @@ export const useWebSocket = () => {
             console.error('Failed to parse notification:', error);
           }
         });
+
+        // Thay đổi hàng loạt (đọc tất cả, xoá, nhiều thông báo mới cùng lúc) được gộp thành 1 message
+        client.subscribe('/user/queue/notifications/summary', () => {
+          dispatch(fetchNotifications({ page: 1 }));
+        });
       };
 
       client.onStompError = (frame) => {
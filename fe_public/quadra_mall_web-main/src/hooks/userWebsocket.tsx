@@ -175,7 +175,7 @@ export const useWebSocket = () => {
         try {
           // ✅ FIX 9: Enhanced subscription with error handling
           const subscription = client.subscribe(
-            `/user/${user.email}/queue/notifications`,
+            '/user/queue/notifications',
             (message) => {
               try {
                 console.log('📨 Received notification message:', message.body);
@@ -73,7 +73,7 @@ export const connectWebSocket = (
     console.log('WebSocket connected, subscribing to channels...');
     
     // Subscribe tin nhắn cá nhân
-    stompClient!.subscribe(`/user/${userId}/queue/messages`, (message: unknown) => {
+    stompClient!.subscribe('/user/queue/messages', (message: unknown) => {
       if (onMessageReceived && message && typeof message === 'object' && 'body' in message) {
         try {
           const parsedMessage = JSON.parse((message as { body: string }).body) as ChatMessageDTO;